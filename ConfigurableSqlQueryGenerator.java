@@ -1,16 +1,33 @@
-import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ConfigurableSqlQueryGenerator {
 
-    // Configuration loaded from the config.json file
-    private static Map<String, Object> config;
+    // Compiled query plans keyed by request shape, in least-recently-used order so unusual shapes
+    // evict each other instead of growing the cache without bound. Guarded by its own lock
+    private static final int MAX_CACHED_PLANS = 1024;
+    private static final Map<String, QueryPlan> PLAN_CACHE = new LinkedHashMap<String, QueryPlan>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, QueryPlan> eldest) {
+            return size() > MAX_CACHED_PLANS;
+        }
+    };
+    // Catalog version the cached plans were compiled against
+    private static long planCatalogVersion;
+    private static final AtomicLong PLAN_COMPILATIONS = new AtomicLong();
+
+    // Batches are split until a fork-join task handles at most this many requests
+    private static final int BATCH_TASK_SIZE = 16;
+
+    // Largest page a paginated request may ask for
+    private static final int MAX_PAGE_SIZE = 10000;
 
     public static void main(String[] args) throws Exception {
         // Load the configuration file
-        ObjectMapper mapper = new ObjectMapper();
-        config = mapper.readValue(new File("config.json"), Map.class);
+        SchemaCatalog.load(new File("config.json"));
 
         // Sample JSON input
         String jsonInput = "{\n" +
@@ -56,11 +73,11 @@ public class ConfigurableSqlQueryGenerator {
                 "    \"scheduledExpression\": \"rate(1 day)\"\n" +
                 "}";
 
-        // Parse the JSON input into a Map
-        Map<String, Object> jsonMap = mapper.readValue(jsonInput, Map.class);
+        // Parse the JSON input straight into the typed request model
+        QueryRequest request = QueryRequestParser.parse(jsonInput);
 
         // Generate SQL Query
-        String sqlQuery = generateSqlQuery(jsonMap);
+        String sqlQuery = generateSqlQuery(request);
         System.out.println("Generated SQL Query:");
         System.out.println(sqlQuery);
     }
@@ -68,203 +85,724 @@ public class ConfigurableSqlQueryGenerator {
     /**
      * Generates a dynamic SQL query based on the input JSON.
      */
+    public static String generateSqlQuery(String jsonInput) {
+        QueryRequest request;
+        try {
+            request = QueryRequestParser.parse(jsonInput);
+        } catch (IllegalArgumentException e) {
+            return useDefaultQuery(SchemaCatalog.get(), e);
+        }
+        return generateSqlQuery(request);
+    }
+
+    /**
+     * Generates a dynamic SQL query based on an already deserialized request.
+     */
     public static String generateSqlQuery(Map<String, Object> jsonMap) {
+        QueryRequest request;
         try {
-            validateInput(jsonMap);
+            request = QueryRequestParser.fromMap(jsonMap);
         } catch (IllegalArgumentException e) {
-            System.err.println("Validation error: " + e.getMessage());
-            // Use default query from configuration
-            String defaultQuery = (String) config.get("defaultQuery");
-            System.out.println("Using default query from configuration.");
-            return defaultQuery;
-        }
-
-        StringBuilder queryBuilder = new StringBuilder();
-
-        // Extract the table name and columns
-        String tableName = (String) jsonMap.get("tableName");
-        List<Map<String, String>> columns = (List<Map<String, String>>) jsonMap.get("columns");
-
-        // Build the SELECT part
-        StringJoiner columnJoiner = new StringJoiner(", ");
-        for (Map<String, String> column : columns) {
-            String columnName = column.get("name");
-            String aggregation = column.get("aggregation");
-            if (aggregation != null) {
-                columnJoiner.add(aggregation + "(" + columnName + ")");
+            return useDefaultQuery(SchemaCatalog.get(), e);
+        }
+        return generateSqlQuery(request);
+    }
+
+    /**
+     * Generates a dynamic SQL query for a typed request.
+     * Requests with the same shape reuse a cached query plan and only bind their filter values.
+     */
+    public static String generateSqlQuery(QueryRequest request) {
+        SchemaCatalog catalog = SchemaCatalog.get();
+        List<String> values = new ArrayList<>();
+        QueryPlan plan;
+        try {
+            plan = resolvePlan(request, catalog, values);
+        } catch (IllegalArgumentException e) {
+            return useDefaultQuery(catalog, e);
+        }
+
+        logScheduledExpression(request);
+
+        // Return the final query
+        return plan.bind(values);
+    }
+
+    /**
+     * Generates the query for a typed request with named parameter markers instead of
+     * inline filter values. Every request of the same shape yields the same SQL text.
+     */
+    public static ParameterizedQuery generateParameterizedQuery(QueryRequest request) {
+        SchemaCatalog catalog = SchemaCatalog.get();
+        List<String> values = new ArrayList<>();
+        QueryPlan plan;
+        try {
+            plan = resolvePlan(request, catalog, values);
+        } catch (IllegalArgumentException e) {
+            return new ParameterizedQuery(useDefaultQuery(catalog, e), Collections.emptyList());
+        }
+
+        logScheduledExpression(request);
+        return plan.bindParameters(values);
+    }
+
+    /**
+     * Generates the queries for many report requests in parallel on the common fork-join pool.
+     * Each item may be a JSON string, an already deserialized map or a QueryRequest. All items
+     * are generated against the same catalog snapshot. The results are in the same order as
+     * the requests; an invalid item gets an error result instead of failing the whole batch
+     * (and, unlike generateSqlQuery, is not replaced by the default query).
+     */
+    public static List<BatchResult> generateSqlQueries(List<?> requests) {
+        SchemaCatalog catalog = SchemaCatalog.get();
+        BatchResult[] results = new BatchResult[requests.size()];
+        ForkJoinPool.commonPool().invoke(new BatchTask(requests, catalog, results, 0, results.length));
+        return Arrays.asList(results);
+    }
+
+    private static BatchResult generateBatchItem(Object item, SchemaCatalog catalog) {
+        try {
+            QueryRequest request;
+            if (item instanceof QueryRequest) {
+                request = (QueryRequest) item;
+            } else if (item instanceof String) {
+                request = QueryRequestParser.parse((String) item);
+            } else if (item instanceof Map) {
+                request = QueryRequestParser.fromMap((Map<String, Object>) item);
             } else {
-                columnJoiner.add(columnName);
+                throw new IllegalArgumentException("Unsupported request type: " + (item == null ? "null" : item.getClass().getName()));
             }
+
+            List<String> values = new ArrayList<>();
+            QueryPlan plan = resolvePlan(request, catalog, values);
+            logScheduledExpression(request);
+            return new BatchResult(plan.bind(values), null);
+        } catch (RuntimeException e) {
+            // Malformed maps can also fail with e.g. a ClassCastException; report it on this item only
+            return new BatchResult(null, e.getMessage() != null ? e.getMessage() : e.toString());
         }
+    }
 
-        queryBuilder.append("SELECT ").append(columnJoiner.toString()).append(" FROM ").append(tableName);
+    /**
+     * Generates a contiguous range of a batch, splitting it in halves while it is large.
+     */
+    private static final class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<?> requests;
+        private final SchemaCatalog catalog;
+        private final BatchResult[] results;
+        private final int from;
+        private final int to;
+
+        BatchTask(List<?> requests, SchemaCatalog catalog, BatchResult[] results, int from, int to) {
+            this.requests = requests;
+            this.catalog = catalog;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
 
-        // Handle Joins (if provided)
-        List<Map<String, Object>> joins = (List<Map<String, Object>>) jsonMap.get("joins");
-        if (joins != null && !joins.isEmpty()) {
-            for (Map<String, Object> join : joins) {
-                String joinType = (String) join.get("joinType");
-                String joinTable = (String) join.get("tableName");
-                Map<String, String> onClause = (Map<String, String>) join.get("on");
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_TASK_SIZE) {
+                for (int i = from; i < to; i++) {
+                    results[i] = generateBatchItem(requests.get(i), catalog);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(requests, catalog, results, from, middle),
+                      new BatchTask(requests, catalog, results, middle, to));
+        }
+    }
 
-                String leftColumn = onClause.get("leftColumn");
-                String rightColumn = onClause.get("rightColumn");
+    /**
+     * The outcome of one request in a batch: either the generated SQL or an error message.
+     */
+    public static final class BatchResult {
+        private final String sql;
+        private final String error;
 
-                queryBuilder.append(" ").append(joinType).append(" JOIN ").append(joinTable)
-                        .append(" ON ").append(leftColumn).append(" = ").append(rightColumn);
-            }
+        private BatchResult(String sql, String error) {
+            this.sql = sql;
+            this.error = error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        public String getSql() {
+            return sql;
         }
 
-        // Build the WHERE clause (if filters are provided)
-        Map<String, Object> filters = (Map<String, Object>) jsonMap.get("filters");
-        if (filters != null && !filters.isEmpty()) {
-            String whereClause = buildWhereClause(filters);
-            queryBuilder.append(" WHERE ").append(whereClause);
+        public String getError() {
+            return error;
         }
+    }
 
-        // Build GROUP BY clause (if provided)
-        List<String> groupBy = (List<String>) jsonMap.get("groupBy");
-        if (groupBy != null && !groupBy.isEmpty()) {
-            StringJoiner groupByJoiner = new StringJoiner(", ");
-            for (String group : groupBy) {
-                groupByJoiner.add(group);
+    /**
+     * Returns the continuation token for the page after the one that ended with the given row,
+     * a column-name-to-value map from the paged query's result. Paged queries always select
+     * their seek columns, so the row has every value the token needs. Callers should only ask
+     * for a token when the page came back full; a shorter page is the last one.
+     */
+    public static String nextPageToken(QueryRequest request, Map<String, ?> lastRow) {
+        List<String> seekColumns = seekColumns(FilterOptimizer.optimize(request), SchemaCatalog.get());
+        List<String> values = new ArrayList<>(seekColumns.size());
+        for (String column : seekColumns) {
+            Object value = lastRow.get(column);
+            if (value == null && column.indexOf('.') >= 0) {
+                // Result columns are usually named without their table
+                value = lastRow.get(column.substring(column.lastIndexOf('.') + 1));
+            }
+            if (value == null) {
+                throw new IllegalArgumentException("Page key column '" + column + "' is missing or null in the last row.");
             }
-            queryBuilder.append(" GROUP BY ").append(groupByJoiner.toString());
+            values.add(String.valueOf(value));
         }
+        return PageToken.encode(seekColumns, values);
+    }
 
-        // Build ORDER BY clause (if provided)
-        Map<String, String> orderBy = (Map<String, String>) jsonMap.get("orderBy");
-        if (orderBy != null) {
-            String orderColumn = orderBy.get("column");
-            String orderDirection = orderBy.get("direction");
-            queryBuilder.append(" ORDER BY ").append(orderColumn).append(" ").append(orderDirection);
+    /**
+     * Looks up (or compiles and caches) the plan for the request's shape and collects
+     * its filter values. The filter tree is optimized first, so redundant variants of a
+     * request share one plan, and aggregate requests a rollup can answer are pointed at it.
+     * Throws IllegalArgumentException if the request is not valid.
+     */
+    private static QueryPlan resolvePlan(QueryRequest request, SchemaCatalog catalog, List<String> values) {
+        request = RollupRouter.route(FilterOptimizer.optimize(request), catalog);
+
+        // Describe the request shape and collect its filter values in rendering order
+        StringBuilder fingerprint = new StringBuilder(128).append(catalog.getVersion()).append('|');
+        describeRequest(request, fingerprint, values);
+
+        String planKey = fingerprint.toString();
+        QueryPlan plan;
+        synchronized (PLAN_CACHE) {
+            if (catalog.getVersion() > planCatalogVersion) {
+                // Plans compiled against an older configuration are no longer valid
+                PLAN_CACHE.clear();
+                planCatalogVersion = catalog.getVersion();
+            }
+            plan = PLAN_CACHE.get(planKey);
         }
+        if (plan == null) {
+            validateInput(request, catalog);
+
+            // Compiled outside the lock; warnings are logged once per compiled plan, not on every use
+            plan = compilePlan(request, catalog);
+            PLAN_COMPILATIONS.incrementAndGet();
+            for (String warning : plan.getWarnings()) {
+                System.err.println("Warning: " + warning);
+            }
+            synchronized (PLAN_CACHE) {
+                // A caller still holding an older catalog must not put its plan back after a reload
+                if (catalog.getVersion() == planCatalogVersion) {
+                    PLAN_CACHE.putIfAbsent(planKey, plan);
+                }
+            }
+        }
+        return plan;
+    }
+
+    // Number of plans compiled so far and currently cached, for tests
+    static long getPlanCompilations() {
+        return PLAN_COMPILATIONS.get();
+    }
 
-        // Handle scheduled expression (optional, just for logging/reporting)
-        String scheduledExpression = (String) jsonMap.get("scheduledExpression");
+    static int getCachedPlanCount() {
+        synchronized (PLAN_CACHE) {
+            return PLAN_CACHE.size();
+        }
+    }
+
+    // Handle scheduled expression (optional, just for logging/reporting)
+    private static void logScheduledExpression(QueryRequest request) {
+        String scheduledExpression = request.getScheduledExpression();
         if (scheduledExpression != null) {
             System.out.println("Scheduled Expression: " + scheduledExpression);
         }
+    }
 
-        // Return the final query
-        return queryBuilder.toString();
+    private static String useDefaultQuery(SchemaCatalog catalog, IllegalArgumentException e) {
+        System.err.println("Validation error: " + e.getMessage());
+        // Use default query from configuration
+        System.out.println("Using default query from configuration.");
+        return catalog.getDefaultQuery();
+    }
+
+    /**
+     * Compiles a validated request into a query plan with a slot for every filter value.
+     */
+    private static QueryPlan compilePlan(QueryRequest request, SchemaCatalog catalog) {
+        QueryPlan.Builder plan = new QueryPlan.Builder();
+        checkPartitionFilters(request, catalog, plan);
+
+        QueryRequest.Page page = request.getPage();
+        List<String> seekColumns = page == null ? Collections.emptyList() : seekColumns(request, catalog);
+        boolean seek = page != null && page.getToken() != null;
+        if (seek && !PageToken.decode(page.getToken()).getColumns().equals(seekColumns)) {
+            throw new IllegalArgumentException("Page token does not belong to this query.");
+        }
+
+        // Build the SELECT part and the joins (if provided)
+        List<QueryRequest.Column> columns = page == null ? request.getColumns() : withSeekColumns(request, catalog, seekColumns);
+        SqlWriter sql = SqlWriter.acquire().select(columns).from(request.getTableName());
+        for (QueryRequest.Join join : request.getJoins()) {
+            sql.join(join.getJoinType(), join.getTableName(), join.getLeftColumn(), join.getRightColumn());
+        }
+        plan.append(sql.finish());
+
+        // Build the WHERE clause (if filters are provided); later pages also seek past the previous one
+        if (!request.getFilters().isEmpty() || seek) {
+            plan.append(" WHERE ");
+            buildWhereClause(request, catalog, plan);
+            if (seek) {
+                plan.append(request.getFilters().isEmpty() ? "" : " AND ");
+                buildSeekPredicate(seekColumns, pageDirection(request), request, catalog, plan);
+            }
+        }
+
+        // Build GROUP BY and ORDER BY clauses (if provided); a page is ordered by its seek columns
+        if (page == null) {
+            plan.append(SqlWriter.acquire().groupBy(request.getGroupBy()).orderBy(request.getOrderBy()).finish());
+        } else {
+            plan.append(SqlWriter.acquire().orderBy(seekColumns, pageDirection(request)).limit(page.getSize()).finish());
+        }
+
+        return plan.build();
+    }
+
+    /**
+     * Returns the columns a page is ordered and resumed by: the requested order column, then
+     * the table's key columns, which make the order total so no row is skipped or repeated.
+     * The order column should not be nullable; rows with a null sort key cannot be resumed after.
+     */
+    private static List<String> seekColumns(QueryRequest request, SchemaCatalog catalog) {
+        SchemaCatalog.Table table = catalog.getTable(request.getTableName());
+        if (table == null) {
+            throw new IllegalArgumentException("Table '" + request.getTableName() + "' is not available.");
+        }
+        if (table.getKeyColumns().isEmpty()) {
+            throw new IllegalArgumentException("Table '" + table.getName() + "' declares no key columns, which pagination requires.");
+        }
+
+        List<String> columns = new ArrayList<>();
+        QueryRequest.OrderBy orderBy = request.getOrderBy();
+        SchemaCatalog.Column orderColumn = null;
+        if (orderBy != null && orderBy.getColumn() != null) {
+            columns.add(orderBy.getColumn());
+            orderColumn = findColumn(request, catalog, orderBy.getColumn());
+        }
+        // Qualify key columns when other tables are joined in, so the names stay unambiguous
+        boolean qualify = !request.getJoins().isEmpty();
+        for (SchemaCatalog.Column key : table.getKeyColumns()) {
+            if (key != orderColumn) {
+                columns.add(qualify ? table.getName() + "." + key.getName() : key.getName());
+            }
+        }
+        return columns;
+    }
+
+    private static String pageDirection(QueryRequest request) {
+        QueryRequest.OrderBy orderBy = request.getOrderBy();
+        return orderBy != null && "DESC".equalsIgnoreCase(orderBy.getDirection()) ? "DESC" : "ASC";
+    }
+
+    /**
+     * Returns the requested columns plus any seek column that is not already selected.
+     */
+    private static List<QueryRequest.Column> withSeekColumns(QueryRequest request, SchemaCatalog catalog, List<String> seekColumns) {
+        List<QueryRequest.Column> columns = new ArrayList<>(request.getColumns());
+        for (String seekColumn : seekColumns) {
+            SchemaCatalog.Column column = findColumn(request, catalog, seekColumn);
+            boolean selected = false;
+            for (QueryRequest.Column requested : request.getColumns()) {
+                if (requested.getAggregation() == null && (requested.getName().equals(seekColumn)
+                        || (column != null && findColumn(request, catalog, requested.getName()) == column))) {
+                    selected = true;
+                    break;
+                }
+            }
+            if (!selected) {
+                columns.add(new QueryRequest.Column(seekColumn, null));
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Builds the keyset predicate that starts a page after the previous page's last row.
+     * Row-value comparison is spelled out, so for (a, b) ascending it is
+     * (a > :a OR (a = :a AND b > :b)), which the warehouse can still use to skip files on a.
+     */
+    private static void buildSeekPredicate(List<String> seekColumns, String direction,
+                                           QueryRequest request, SchemaCatalog catalog, QueryPlan.Builder plan) {
+        String comparison = "DESC".equals(direction) ? " < " : " > ";
+        if (seekColumns.size() > 1) {
+            plan.append("(");
+        }
+        for (int i = 0; i < seekColumns.size(); i++) {
+            if (i > 0) {
+                plan.append(" OR (");
+            }
+            for (int j = 0; j < i; j++) {
+                seekTerm(seekColumns.get(j), " = ", request, catalog, plan);
+                plan.append(" AND ");
+            }
+            seekTerm(seekColumns.get(i), comparison, request, catalog, plan);
+            if (i > 0) {
+                plan.append(")");
+            }
+        }
+        if (seekColumns.size() > 1) {
+            plan.append(")");
+        }
+    }
+
+    private static void seekTerm(String columnName, String operator, QueryRequest request, SchemaCatalog catalog, QueryPlan.Builder plan) {
+        SchemaCatalog.Column column = findColumn(request, catalog, columnName);
+        String type = column != null && column.isTemporal() ? column.getType() : "STRING";
+        plan.append(SqlWriter.quoteIdentifier(columnName) + operator).slot(type, isTemporalKey(column));
     }
 
     /**
      * Builds the WHERE clause based on the provided filters.
-     * Supports AND, OR, and date ranges.
+     * Supports AND, OR, date ranges and IN lists.
      */
-    private static String buildWhereClause(Map<String, Object> filters) {
-        return buildCondition(filters, "AND");
+    private static void buildWhereClause(QueryRequest request, SchemaCatalog catalog, QueryPlan.Builder plan) {
+        buildConditions(request.getFilters(), "AND", request, catalog, plan);
     }
 
     /**
      * Recursively builds SQL conditions (AND/OR) for filtering.
+     * Filter values become plan slots; the plan renders them as quoted literals or parameters.
+     */
+    private static void buildConditions(List<QueryRequest.Filter> conditions, String conditionType,
+                                        QueryRequest request, SchemaCatalog catalog, QueryPlan.Builder plan) {
+        boolean first = true;
+        for (QueryRequest.Filter condition : conditions) {
+            if (!first) {
+                plan.append(" " + conditionType + " ");
+            }
+            first = false;
+
+            if (condition instanceof QueryRequest.Logical) {
+                QueryRequest.Logical logical = (QueryRequest.Logical) condition;
+                plan.append("(");
+                buildConditions(logical.getChildren(), logical.getOperator(), request, catalog, plan);
+                plan.append(")");
+            } else if (condition instanceof QueryRequest.DateRange) {
+                QueryRequest.DateRange dateRange = (QueryRequest.DateRange) condition;
+                SchemaCatalog.Column column = findColumn(request, catalog, dateRange.getColumn());
+                String type = column != null && column.isTemporal() ? column.getType() : "STRING";
+                boolean typed = isTemporalKey(column);
+                plan.append(SqlWriter.quoteIdentifier(dateRange.getColumn()) + " BETWEEN ").slot(type, typed).append(" AND ").slot(type, typed);
+            } else if (condition instanceof QueryRequest.In) {
+                QueryRequest.In in = (QueryRequest.In) condition;
+                SchemaCatalog.Column column = findColumn(request, catalog, in.getColumn());
+                boolean typed = isTemporalKey(column);
+                plan.append(SqlWriter.quoteIdentifier(in.getColumn()) + " IN (");
+                for (int i = 0; i < in.getValues().size(); i++) {
+                    if (i > 0) {
+                        plan.append(", ");
+                    }
+                    plan.slot(typed ? column.getType() : "STRING", typed);
+                }
+                plan.append(")");
+            } else {
+                QueryRequest.Equals equals = (QueryRequest.Equals) condition;
+                SchemaCatalog.Column column = findColumn(request, catalog, equals.getColumn());
+                boolean typed = isTemporalKey(column);
+                plan.append(SqlWriter.quoteIdentifier(equals.getColumn()) + " = ").slot(typed ? column.getType() : "STRING", typed);
+            }
+        }
+    }
+
+    /**
+     * Returns true for date and timestamp partition or cluster columns. Values compared
+     * against them are written as typed literals (DATE '2024-01-01'), which the warehouse
+     * can use for partition pruning and file skipping; a plain string is only cast at run time.
+     * Date ranges on other date columns still get typed parameters, and all other values
+     * are bound as strings, which matches how the quoted literal form is interpreted.
+     */
+    private static boolean isTemporalKey(SchemaCatalog.Column column) {
+        return column != null && column.isTemporal() && (column.isPartitionKey() || column.isClusterKey());
+    }
+
+    /**
+     * Checks that every large table in the query is filtered on one of its partition columns.
+     * Tables that require a partition filter reject the request; other large tables only
+     * get a warning attached to the plan.
+     */
+    private static void checkPartitionFilters(QueryRequest request, SchemaCatalog catalog, QueryPlan.Builder plan) {
+        List<SchemaCatalog.Table> tables = new ArrayList<>();
+        tables.add(catalog.getTable(request.getTableName()));
+        for (QueryRequest.Join join : request.getJoins()) {
+            tables.add(catalog.getTable(join.getTableName()));
+        }
+
+        for (SchemaCatalog.Table table : tables) {
+            if (!table.isLarge() || prunesPartitions(request.getFilters(), "AND", request, catalog, table)) {
+                continue;
+            }
+            StringJoiner partitionNames = new StringJoiner(", ");
+            for (SchemaCatalog.Column partitionColumn : table.getPartitionColumns()) {
+                partitionNames.add(partitionColumn.getName());
+            }
+            if (table.requiresPartitionFilter()) {
+                throw new IllegalArgumentException("Query on table '" + table.getName()
+                        + "' must filter on a partition column (" + partitionNames + ").");
+            }
+            plan.warn("Query on large table '" + table.getName() + "' has no filter on a partition column ("
+                    + partitionNames + ") and will scan every partition.");
+        }
+    }
+
+    /**
+     * Returns true if the conditions, joined by the given operator, restrict the table to a
+     * subset of its partitions: one conjunct of an AND must do so, or every branch of an OR.
+     */
+    private static boolean prunesPartitions(List<QueryRequest.Filter> conditions, String conditionType,
+                                            QueryRequest request, SchemaCatalog catalog, SchemaCatalog.Table table) {
+        boolean any = false;
+        boolean all = true;
+        for (QueryRequest.Filter condition : conditions) {
+            boolean prunes;
+            if (condition instanceof QueryRequest.Logical) {
+                QueryRequest.Logical logical = (QueryRequest.Logical) condition;
+                prunes = prunesPartitions(logical.getChildren(), logical.getOperator(), request, catalog, table);
+            } else {
+                SchemaCatalog.Column column = findColumn(request, catalog, filterColumn(condition));
+                prunes = column != null && column.getTable() == table && column.isPartitionKey();
+            }
+            any |= prunes;
+            all &= prunes;
+        }
+        return "OR".equals(conditionType) ? all && !conditions.isEmpty() : any;
+    }
+
+    private static String filterColumn(QueryRequest.Filter condition) {
+        if (condition instanceof QueryRequest.DateRange) {
+            return ((QueryRequest.DateRange) condition).getColumn();
+        }
+        if (condition instanceof QueryRequest.In) {
+            return ((QueryRequest.In) condition).getColumn();
+        }
+        return ((QueryRequest.Equals) condition).getColumn();
+    }
+
+    /**
+     * Resolves a filter column against the request's table and then its joined tables.
      */
-    private static String buildCondition(Map<String, Object> condition, String parentConditionType) {
-        StringJoiner conditionJoiner = new StringJoiner(" " + parentConditionType + " ");
+    private static SchemaCatalog.Column findColumn(QueryRequest request, SchemaCatalog catalog, String columnName) {
+        SchemaCatalog.Column column = catalog.getQualifiedColumn(columnName);
+        if (column != null) {
+            return column;
+        }
+        SchemaCatalog.Table table = catalog.getTable(request.getTableName());
+        if (table != null && table.getColumn(columnName) != null) {
+            return table.getColumn(columnName);
+        }
+        for (QueryRequest.Join join : request.getJoins()) {
+            SchemaCatalog.Table joinTable = catalog.getTable(join.getTableName());
+            if (joinTable != null && joinTable.getColumn(columnName) != null) {
+                return joinTable.getColumn(columnName);
+            }
+        }
+        return null;
+    }
 
-        for (String key : condition.keySet()) {
-            Object value = condition.get(key);
+    /**
+     * Writes the structural fingerprint of a request (table, columns, joins, filter tree shape,
+     * grouping and ordering) and collects the filter values in the order the plan binds them.
+     * Every name is length-prefixed so that different shapes can never produce the same key.
+     */
+    private static void describeRequest(QueryRequest request, StringBuilder fingerprint, List<String> values) {
+        appendToken(fingerprint, request.getTableName());
 
-            if (key.equals("AND") || key.equals("OR")) {
-                List<Map<String, Object>> subConditions = (List<Map<String, Object>>) value;
-                StringJoiner subConditionJoiner = new StringJoiner(" " + key + " ");
-                for (Map<String, Object> subCondition : subConditions) {
-                    subConditionJoiner.add(buildCondition(subCondition, key));
+        fingerprint.append("C[");
+        for (QueryRequest.Column column : request.getColumns()) {
+            appendToken(fingerprint, column.getName());
+            appendToken(fingerprint, column.getAggregation());
+        }
+        fingerprint.append(']');
+
+        fingerprint.append("J[");
+        for (QueryRequest.Join join : request.getJoins()) {
+            appendToken(fingerprint, join.getJoinType());
+            appendToken(fingerprint, join.getTableName());
+            appendToken(fingerprint, join.getLeftColumn());
+            appendToken(fingerprint, join.getRightColumn());
+        }
+        fingerprint.append(']');
+
+        fingerprint.append("F[");
+        describeConditions(request.getFilters(), fingerprint, values);
+        fingerprint.append(']');
+
+        fingerprint.append("G[");
+        for (String group : request.getGroupBy()) {
+            appendToken(fingerprint, group);
+        }
+        fingerprint.append(']');
+
+        QueryRequest.OrderBy orderBy = request.getOrderBy();
+        fingerprint.append("O[");
+        if (orderBy != null) {
+            appendToken(fingerprint, orderBy.getColumn());
+            appendToken(fingerprint, orderBy.getDirection());
+        }
+        fingerprint.append(']');
+
+        // The seek values follow the filter values, in the order buildSeekPredicate uses them
+        QueryRequest.Page page = request.getPage();
+        if (page != null) {
+            fingerprint.append("P[").append(page.getSize());
+            if (page.getToken() != null) {
+                PageToken token = PageToken.decode(page.getToken());
+                for (String column : token.getColumns()) {
+                    appendToken(fingerprint, column);
                 }
-                conditionJoiner.add("(" + subConditionJoiner.toString() + ")");
-            } else if (key.equals("dateRange")) {
-                Map<String, String> dateRange = (Map<String, String>) value;
-                String dateColumn = dateRange.get("column");
-                String startDate = dateRange.get("startDate");
-                String endDate = dateRange.get("endDate");
-                conditionJoiner.add(dateColumn + " BETWEEN '" + startDate + "' AND '" + endDate + "'");
+                List<String> seekValues = token.getValues();
+                for (int i = 0; i < seekValues.size(); i++) {
+                    values.addAll(seekValues.subList(0, i + 1));
+                }
+            }
+            fingerprint.append(']');
+        }
+    }
+
+    /**
+     * Describes a list of filters, mirroring the traversal order of buildConditions.
+     */
+    private static void describeConditions(List<QueryRequest.Filter> conditions, StringBuilder fingerprint, List<String> values) {
+        for (QueryRequest.Filter condition : conditions) {
+            if (condition instanceof QueryRequest.Logical) {
+                QueryRequest.Logical logical = (QueryRequest.Logical) condition;
+                appendToken(fingerprint, logical.getOperator());
+                fingerprint.append('[');
+                describeConditions(logical.getChildren(), fingerprint, values);
+                fingerprint.append(']');
+            } else if (condition instanceof QueryRequest.DateRange) {
+                QueryRequest.DateRange dateRange = (QueryRequest.DateRange) condition;
+                fingerprint.append('D');
+                appendToken(fingerprint, dateRange.getColumn());
+                values.add(dateRange.getStartDate());
+                values.add(dateRange.getEndDate());
+            } else if (condition instanceof QueryRequest.In) {
+                QueryRequest.In in = (QueryRequest.In) condition;
+                fingerprint.append('I').append(in.getValues().size());
+                appendToken(fingerprint, in.getColumn());
+                values.addAll(in.getValues());
             } else {
-                conditionJoiner.add(key + " = '" + value + "'");
+                QueryRequest.Equals equals = (QueryRequest.Equals) condition;
+                fingerprint.append('E');
+                appendToken(fingerprint, equals.getColumn());
+                values.add(equals.getValue());
             }
         }
+    }
 
-        return conditionJoiner.toString();
+    private static void appendToken(StringBuilder fingerprint, String token) {
+        if (token == null) {
+            fingerprint.append('~');
+        } else {
+            fingerprint.append(token.length()).append(':').append(token);
+        }
     }
 
     /**
-     * Validates the input JSON against the configuration.
+     * Validates the request against the schema catalog.
+     * Every check is a hash lookup, so the cost grows only with the number of columns and joins.
      */
-    private static void validateInput(Map<String, Object> jsonMap) throws IllegalArgumentException {
+    private static void validateInput(QueryRequest request, SchemaCatalog catalog) throws IllegalArgumentException {
         // Validate table name
-        String tableName = (String) jsonMap.get("tableName");
-        Map<String, Object> tables = (Map<String, Object>) config.get("tables");
-        if (!tables.containsKey(tableName)) {
+        String tableName = request.getTableName();
+        SchemaCatalog.Table table = catalog.getTable(tableName);
+        if (table == null) {
             throw new IllegalArgumentException("Table '" + tableName + "' is not available.");
         }
 
         // Validate columns
-        Map<String, Object> tableColumns = (Map<String, Object>) ((Map<String, Object>) tables.get(tableName)).get("columns");
-        List<Map<String, String>> columns = (List<Map<String, String>>) jsonMap.get("columns");
-        if (columns == null || columns.isEmpty()) {
+        List<QueryRequest.Column> columns = request.getColumns();
+        if (columns.isEmpty()) {
             throw new IllegalArgumentException("At least one column must be specified.");
         }
 
-        for (Map<String, String> column : columns) {
-            String columnName = column.get("name");
-            String aggregation = column.get("aggregation");
+        for (QueryRequest.Column column : columns) {
+            String columnName = column.getName();
+            String aggregation = column.getAggregation();
 
             // Check if the column exists in the table
-            if (!tableColumns.containsKey(columnName)) {
+            SchemaCatalog.Column tableColumn = table.getColumn(columnName);
+            if (tableColumn == null) {
                 throw new IllegalArgumentException("Column '" + columnName + "' does not exist in table '" + tableName + "'.");
             }
 
             // Check if the aggregation is supported for the column
-            if (aggregation != null) {
-                List<String> supportedAggregations = (List<String>) ((Map<String, Object>) tableColumns.get(columnName)).get("aggregations");
-                if (!supportedAggregations.contains(aggregation)) {
-                    throw new IllegalArgumentException("Aggregation '" + aggregation + "' is not supported for column '" + columnName + "'.");
-                }
+            if (aggregation != null && !catalog.supportsAggregation(tableColumn, aggregation)) {
+                throw new IllegalArgumentException("Aggregation '" + aggregation + "' is not supported for column '" + columnName + "'.");
             }
         }
 
         // Validate joins
-        List<Map<String, Object>> joins = (List<Map<String, Object>>) jsonMap.get("joins");
-        if (joins != null) {
-            for (Map<String, Object> join : joins) {
-                String joinTableName = (String) join.get("tableName");
-
-                // Check if the join table exists
-                if (!tables.containsKey(joinTableName)) {
-                    throw new IllegalArgumentException("Join table '" + joinTableName + "' is not available.");
-                }
-
-                // Validate join columns
-                Map<String, String> onClause = (Map<String, String>) join.get("on");
-                String leftColumn = onClause.get("leftColumn");
-                String rightColumn = onClause.get("rightColumn");
+        for (QueryRequest.Join join : request.getJoins()) {
+            String joinTableName = join.getTableName();
 
-                // Extract table and column names
-                String[] leftParts = leftColumn.split("\\.");
-                String[] rightParts = rightColumn.split("\\.");
-
-                if (leftParts.length != 2 || rightParts.length != 2) {
-                    throw new IllegalArgumentException("Invalid join column format.");
-                }
+            // Check if the join table exists
+            if (catalog.getTable(joinTableName) == null) {
+                throw new IllegalArgumentException("Join table '" + joinTableName + "' is not available.");
+            }
 
-                String leftTable = leftParts[0];
-                String leftCol = leftParts[1];
-                String rightTable = rightParts[0];
-                String rightCol = rightParts[1];
+            // Validate join columns, which are indexed by their "table.column" name
+            String leftColumn = join.getLeftColumn();
+            String rightColumn = join.getRightColumn();
+            if (leftColumn == null || rightColumn == null) {
+                throw new IllegalArgumentException("Join on '" + joinTableName + "' requires leftColumn and rightColumn.");
+            }
 
-                // Validate left column
-                if (!tables.containsKey(leftTable) || !((Map<String, Object>) ((Map<String, Object>) tables.get(leftTable)).get("columns")).containsKey(leftCol)) {
-                    throw new IllegalArgumentException("Column '" + leftCol + "' does not exist in table '" + leftTable + "'.");
-                }
+            if (catalog.getQualifiedColumn(leftColumn) == null || catalog.getQualifiedColumn(rightColumn) == null) {
+                throw invalidJoinColumn(catalog, leftColumn, rightColumn);
+            }
+        }
 
-                // Validate right column
-                if (!tables.containsKey(rightTable) || !((Map<String, Object>) ((Map<String, Object>) tables.get(rightTable)).get("columns")).containsKey(rightCol)) {
-                    throw new IllegalArgumentException("Column '" + rightCol + "' does not exist in table '" + rightTable + "'.");
-                }
+        // Validate pagination; keyset pages are only defined over plain rows
+        QueryRequest.Page page = request.getPage();
+        if (page != null) {
+            if (page.getSize() > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("Page size must not exceed " + MAX_PAGE_SIZE + ".");
+            }
+            boolean aggregated = !request.getGroupBy().isEmpty();
+            for (QueryRequest.Column column : columns) {
+                aggregated |= column.getAggregation() != null;
+            }
+            if (aggregated) {
+                throw new IllegalArgumentException("Pagination is not supported for grouped or aggregated queries.");
+            }
+            QueryRequest.OrderBy orderBy = request.getOrderBy();
+            if (orderBy != null && orderBy.getColumn() != null && findColumn(request, catalog, orderBy.getColumn()) == null) {
+                throw new IllegalArgumentException("Order column '" + orderBy.getColumn() + "' does not exist.");
             }
         }
 
         // Additional validations can be added here (e.g., for filters, groupBy, orderBy)
     }
+
+    /**
+     * Explains why a join column lookup failed. Only runs on the error path.
+     */
+    private static IllegalArgumentException invalidJoinColumn(SchemaCatalog catalog, String leftColumn, String rightColumn) {
+        String[] leftParts = leftColumn.split("\\.");
+        String[] rightParts = rightColumn.split("\\.");
+
+        if (leftParts.length != 2 || rightParts.length != 2) {
+            return new IllegalArgumentException("Invalid join column format.");
+        }
+
+        String[] missing = catalog.getQualifiedColumn(leftColumn) == null ? leftParts : rightParts;
+        return new IllegalArgumentException("Column '" + missing[1] + "' does not exist in table '" + missing[0] + "'.");
+    }
 }
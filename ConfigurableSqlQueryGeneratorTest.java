@@ -0,0 +1,331 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+public class ConfigurableSqlQueryGeneratorTest {
+
+    private static final String SAMPLE_REQUEST = "{"
+            + "\"tableName\": \"sales\","
+            + "\"columns\": [{\"name\": \"product_name\", \"aggregation\": null}, {\"name\": \"total_sales\", \"aggregation\": \"SUM\"}],"
+            + "\"joins\": [{\"joinType\": \"INNER\", \"tableName\": \"regions\", \"on\": {\"leftColumn\": \"sales.region_id\", \"rightColumn\": \"regions.id\"}}],"
+            + "\"filters\": {\"AND\": [{\"dateRange\": {\"column\": \"sales_date\", \"startDate\": \"2024-01-01\", \"endDate\": \"2024-12-31\"}},"
+            + "                       {\"OR\": [{\"productCategory\": \"Electronics\"}, {\"region\": \"North America\"}]}]},"
+            + "\"groupBy\": [\"product_name\"],"
+            + "\"orderBy\": {\"column\": \"total_sales\", \"direction\": \"DESC\"}"
+            + "}";
+
+    @BeforeEach
+    public void setUp() {
+        SchemaCatalog.install(SchemaCatalog.fromConfig(Map.of(
+            "tables", Map.of(
+                "sales", Map.of("columns", Map.of(
+                    "product_name", Map.of("type", "VARCHAR", "aggregations", List.of()),
+                    "total_sales", Map.of("type", "DECIMAL", "aggregations", List.of("SUM", "AVG", "MIN", "MAX")),
+                    "sales_date", Map.of("type", "DATE", "aggregations", List.of()),
+                    "region_id", Map.of("type", "INTEGER", "aggregations", List.of())
+                )),
+                "regions", Map.of("columns", Map.of(
+                    "id", Map.of("type", "INTEGER", "aggregations", List.of()),
+                    "region", Map.of("type", "VARCHAR", "aggregations", List.of())
+                ))
+            ),
+            "defaultQuery", "SELECT * FROM sales LIMIT 10"
+        )));
+    }
+
+    @Test
+    public void testGenerateSqlQuery_SampleRequest() {
+        String expectedSQL = "SELECT product_name, SUM(total_sales) FROM sales INNER JOIN regions ON sales.region_id = regions.id"
+                + " WHERE sales_date BETWEEN '2024-01-01' AND '2024-12-31' AND (productCategory = 'Electronics' OR region = 'North America')"
+                + " GROUP BY product_name ORDER BY total_sales DESC";
+        assertEquals(expectedSQL, ConfigurableSqlQueryGenerator.generateSqlQuery(SAMPLE_REQUEST));
+    }
+
+    @Test
+    public void testGenerateSqlQuery_PlanIsReusedUntilTheCatalogChanges() {
+        long compilations = ConfigurableSqlQueryGenerator.getPlanCompilations();
+        ConfigurableSqlQueryGenerator.generateSqlQuery(SAMPLE_REQUEST);
+        ConfigurableSqlQueryGenerator.generateSqlQuery(SAMPLE_REQUEST.replace("Electronics", "Toys"));
+        assertEquals(compilations + 1, ConfigurableSqlQueryGenerator.getPlanCompilations());
+        assertEquals(1, ConfigurableSqlQueryGenerator.getCachedPlanCount());
+
+        // Installing a configuration gives it a new version, which retires the cached plans
+        setUp();
+        ConfigurableSqlQueryGenerator.generateSqlQuery(SAMPLE_REQUEST);
+        assertEquals(compilations + 2, ConfigurableSqlQueryGenerator.getPlanCompilations());
+        assertEquals(1, ConfigurableSqlQueryGenerator.getCachedPlanCount());
+    }
+
+    @Test
+    public void testGenerateSqlQuery_CachedPlanBindsNewValues() {
+        ConfigurableSqlQueryGenerator.generateSqlQuery(SAMPLE_REQUEST);
+        String sql = ConfigurableSqlQueryGenerator.generateSqlQuery(SAMPLE_REQUEST
+                .replace("2024-01-01", "2023-06-01")
+                .replace("Electronics", "Toys"));
+
+        assertTrue(sql.contains("sales_date BETWEEN '2023-06-01' AND '2024-12-31'"));
+        assertTrue(sql.contains("productCategory = 'Toys'"));
+    }
+
+    @Test
+    public void testGenerateSqlQuery_InvalidRequestUsesDefaultQuery() {
+        String request = "{\"tableName\": \"sales\", \"columns\": [{\"name\": \"product_name\", \"aggregation\": \"SUM\"}]}";
+        assertEquals("SELECT * FROM sales LIMIT 10", ConfigurableSqlQueryGenerator.generateSqlQuery(request));
+        assertEquals("SELECT * FROM sales LIMIT 10", ConfigurableSqlQueryGenerator.generateSqlQuery("not json"));
+    }
+
+    @Test
+    public void testGenerateParameterizedQuery() {
+        ParameterizedQuery first = ConfigurableSqlQueryGenerator.generateParameterizedQuery(QueryRequestParser.parse(SAMPLE_REQUEST));
+        ParameterizedQuery second = ConfigurableSqlQueryGenerator.generateParameterizedQuery(
+                QueryRequestParser.parse(SAMPLE_REQUEST.replace("Electronics", "Toys")));
+
+        assertEquals("SELECT product_name, SUM(total_sales) FROM sales INNER JOIN regions ON sales.region_id = regions.id"
+                + " WHERE sales_date BETWEEN :p0 AND :p1 AND (productCategory = :p2 OR region = :p3)"
+                + " GROUP BY product_name ORDER BY total_sales DESC", first.getSql());
+        assertEquals(first.getSql(), second.getSql());
+
+        assertEquals(4, first.getParameters().size());
+        assertEquals("DATE", first.getParameters().get(0).getType());
+        assertEquals("2024-12-31", first.getParameters().get(1).getValue());
+        assertEquals("STRING", first.getParameters().get(2).getType());
+        assertEquals("Toys", second.getParameters().get(2).getValue());
+    }
+
+    @Test
+    public void testGenerateSqlQuery_RedundantFiltersAreOptimized() {
+        String request = "{\"tableName\": \"sales\", \"columns\": [\"product_name\"],"
+                + "\"filters\": {\"AND\": [{\"OR\": [{\"region\": \"A\"}, {\"region\": \"B\"}, {\"region\": \"A\"}]},"
+                + " {\"dateRange\": {\"column\": \"sales_date\", \"startDate\": \"2024-01-01\", \"endDate\": \"2024-12-31\"}},"
+                + " {\"AND\": [{\"dateRange\": {\"column\": \"sales_date\", \"startDate\": \"2024-03-01\", \"endDate\": \"2025-01-31\"}}]}]}}";
+
+        assertEquals("SELECT product_name FROM sales WHERE region IN ('A', 'B') AND sales_date BETWEEN '2024-03-01' AND '2024-12-31'",
+                ConfigurableSqlQueryGenerator.generateSqlQuery(request));
+
+        ParameterizedQuery parameterized = ConfigurableSqlQueryGenerator.generateParameterizedQuery(QueryRequestParser.parse(request));
+        assertEquals("SELECT product_name FROM sales WHERE region IN (:p0, :p1) AND sales_date BETWEEN :p2 AND :p3",
+                parameterized.getSql());
+        assertEquals("DATE", parameterized.getParameters().get(2).getType());
+    }
+
+    @Test
+    public void testGenerateSqlQueries_KeepsOrderAndReportsErrorsPerItem() {
+        List<Object> requests = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            requests.add(SAMPLE_REQUEST.replace("Electronics", "Category" + i));
+        }
+        requests.set(50, "not json");
+        requests.set(120, Map.of("tableName", "orders", "columns", List.of("id")));
+        requests.set(150, QueryRequestParser.parse(SAMPLE_REQUEST));
+
+        List<ConfigurableSqlQueryGenerator.BatchResult> results = ConfigurableSqlQueryGenerator.generateSqlQueries(requests);
+
+        assertEquals(200, results.size());
+        assertTrue(results.get(7).isSuccess());
+        assertTrue(results.get(7).getSql().contains("productCategory = 'Category7'"));
+        assertTrue(results.get(199).getSql().contains("productCategory = 'Category199'"));
+        assertTrue(results.get(150).getSql().contains("productCategory = 'Electronics'"));
+
+        assertFalse(results.get(50).isSuccess());
+        assertNull(results.get(50).getSql());
+        assertTrue(results.get(50).getError().startsWith("Malformed request JSON"));
+        assertEquals("Table 'orders' is not available.", results.get(120).getError());
+    }
+
+    private static void installPartitionedCatalog(boolean requirePartitionFilter) {
+        SchemaCatalog.install(SchemaCatalog.fromConfig(Map.of(
+            "tables", Map.of(
+                "sales", Map.of(
+                    "partitionColumns", List.of("sales_date"),
+                    "large", true,
+                    "requirePartitionFilter", requirePartitionFilter,
+                    "columns", Map.of(
+                        "product_name", Map.of("type", "VARCHAR", "aggregations", List.of()),
+                        "sales_date", Map.of("type", "DATE", "aggregations", List.of())
+                    )
+                )
+            ),
+            "defaultQuery", "SELECT * FROM sales LIMIT 10"
+        )));
+    }
+
+    @Test
+    public void testGenerateSqlQuery_PartitionColumnsUseTypedLiterals() {
+        installPartitionedCatalog(false);
+        String request = "{\"tableName\": \"sales\", \"columns\": [\"product_name\"],"
+                + "\"filters\": {\"OR\": [{\"sales_date\": \"2024-01-01\"},"
+                + " {\"dateRange\": {\"column\": \"sales_date\", \"startDate\": \"2024-06-01\", \"endDate\": \"2024-06-30\"}}]}}";
+
+        assertEquals("SELECT product_name FROM sales"
+                + " WHERE (sales_date = DATE '2024-01-01' OR sales_date BETWEEN DATE '2024-06-01' AND DATE '2024-06-30')",
+                ConfigurableSqlQueryGenerator.generateSqlQuery(request));
+
+        ParameterizedQuery parameterized = ConfigurableSqlQueryGenerator.generateParameterizedQuery(QueryRequestParser.parse(request));
+        assertEquals("SELECT product_name FROM sales WHERE (sales_date = :p0 OR sales_date BETWEEN :p1 AND :p2)",
+                parameterized.getSql());
+        assertEquals("DATE", parameterized.getParameters().get(0).getType());
+    }
+
+    @Test
+    public void testGenerateSqlQuery_MissingPartitionFilter() {
+        String unfiltered = "{\"tableName\": \"sales\", \"columns\": [\"product_name\"], \"filters\": {\"product_name\": \"x\"}}";
+        String partlyFiltered = "{\"tableName\": \"sales\", \"columns\": [\"product_name\"],"
+                + "\"filters\": {\"OR\": [{\"product_name\": \"x\"}, {\"sales_date\": \"2024-01-01\"}]}}";
+
+        // Large tables only warn
+        installPartitionedCatalog(false);
+        assertEquals("SELECT product_name FROM sales WHERE product_name = 'x'",
+                ConfigurableSqlQueryGenerator.generateSqlQuery(unfiltered));
+
+        // Tables that require a partition filter fall back to the default query
+        installPartitionedCatalog(true);
+        assertEquals("SELECT * FROM sales LIMIT 10", ConfigurableSqlQueryGenerator.generateSqlQuery(unfiltered));
+        assertEquals("SELECT * FROM sales LIMIT 10", ConfigurableSqlQueryGenerator.generateSqlQuery(partlyFiltered));
+    }
+
+    private static void installKeyedCatalog() {
+        SchemaCatalog.install(SchemaCatalog.fromConfig(Map.of(
+            "tables", Map.of(
+                "sales", Map.of(
+                    "keyColumns", List.of("sale_id"),
+                    "columns", Map.of(
+                        "sale_id", Map.of("type", "BIGINT", "aggregations", List.of()),
+                        "product_name", Map.of("type", "VARCHAR", "aggregations", List.of()),
+                        "total_sales", Map.of("type", "DECIMAL", "aggregations", List.of("SUM")),
+                        "sales_date", Map.of("type", "DATE", "aggregations", List.of())
+                    )
+                )
+            ),
+            "defaultQuery", "SELECT * FROM sales LIMIT 10"
+        )));
+    }
+
+    @Test
+    public void testGenerateSqlQuery_KeysetPages() {
+        installKeyedCatalog();
+        String firstPage = "{\"tableName\": \"sales\", \"columns\": [\"product_name\"],"
+                + "\"filters\": {\"product_name\": \"x\"},"
+                + "\"orderBy\": {\"column\": \"sales_date\", \"direction\": \"DESC\"},"
+                + "\"page\": {\"size\": 100}}";
+
+        // Seek columns are added to the SELECT list so the caller can build the next token
+        assertEquals("SELECT product_name, sales_date, sale_id FROM sales WHERE product_name = 'x'"
+                + " ORDER BY sales_date DESC, sale_id DESC LIMIT 100",
+                ConfigurableSqlQueryGenerator.generateSqlQuery(firstPage));
+
+        QueryRequest request = QueryRequestParser.parse(firstPage);
+        String token = ConfigurableSqlQueryGenerator.nextPageToken(request,
+                Map.of("product_name", "x", "sales_date", "2024-05-01", "sale_id", 42L));
+        QueryRequest nextPage = request.withPage(new QueryRequest.Page(100, token));
+
+        assertEquals("SELECT product_name, sales_date, sale_id FROM sales WHERE product_name = 'x'"
+                + " AND (sales_date < '2024-05-01' OR (sales_date = '2024-05-01' AND sale_id < '42'))"
+                + " ORDER BY sales_date DESC, sale_id DESC LIMIT 100",
+                ConfigurableSqlQueryGenerator.generateSqlQuery(nextPage));
+
+        ParameterizedQuery parameterized = ConfigurableSqlQueryGenerator.generateParameterizedQuery(nextPage);
+        assertEquals("SELECT product_name, sales_date, sale_id FROM sales WHERE product_name = :p0"
+                + " AND (sales_date < :p1 OR (sales_date = :p2 AND sale_id < :p3))"
+                + " ORDER BY sales_date DESC, sale_id DESC LIMIT 100", parameterized.getSql());
+        assertEquals("DATE", parameterized.getParameters().get(1).getType());
+        assertEquals("42", parameterized.getParameters().get(3).getValue());
+    }
+
+    @Test
+    public void testGenerateSqlQuery_InvalidPagesUseDefaultQuery() {
+        installKeyedCatalog();
+        String byDate = "{\"tableName\": \"sales\", \"columns\": [\"product_name\"],"
+                + "\"orderBy\": {\"column\": \"sales_date\"}, \"page\": {\"size\": 10}}";
+        String token = ConfigurableSqlQueryGenerator.nextPageToken(QueryRequestParser.parse(byDate),
+                Map.of("sales_date", "2024-05-01", "sale_id", "7"));
+
+        // Without an order column the page is ordered by the key alone, so the token does not fit
+        String byKey = "{\"tableName\": \"sales\", \"columns\": [\"sale_id\"], \"page\": {\"size\": 10, \"token\": \"" + token + "\"}}";
+        assertEquals("SELECT * FROM sales LIMIT 10", ConfigurableSqlQueryGenerator.generateSqlQuery(byKey));
+
+        String aggregated = "{\"tableName\": \"sales\", \"columns\": [{\"name\": \"total_sales\", \"aggregation\": \"SUM\"}],"
+                + "\"page\": {\"size\": 10}}";
+        assertEquals("SELECT * FROM sales LIMIT 10", ConfigurableSqlQueryGenerator.generateSqlQuery(aggregated));
+
+        assertEquals("SELECT * FROM sales LIMIT 10", ConfigurableSqlQueryGenerator.generateSqlQuery(
+                "{\"tableName\": \"sales\", \"columns\": [\"sale_id\"], \"page\": {\"size\": 10, \"token\": \"not-a-token\"}}"));
+    }
+
+    @Test
+    public void testGenerateSqlQuery_SeekValuesAreEscapedAndTokensSigned() {
+        installKeyedCatalog();
+        String byName = "{\"tableName\": \"sales\", \"columns\": [\"product_name\"],"
+                + "\"orderBy\": {\"column\": \"product_name\"}, \"page\": {\"size\": 10}}";
+        QueryRequest request = QueryRequestParser.parse(byName);
+        String token = ConfigurableSqlQueryGenerator.nextPageToken(request, Map.of("product_name", "O'Brien", "sale_id", 7L));
+
+        String sql = ConfigurableSqlQueryGenerator.generateSqlQuery(request.withPage(new QueryRequest.Page(10, token)));
+        assertTrue(sql.contains("product_name > 'O''Brien'"), sql);
+
+        // A token whose values were edited no longer matches its signature
+        String payload = token.substring(0, token.lastIndexOf('.'));
+        String json = new String(Base64.getUrlDecoder().decode(payload), StandardCharsets.UTF_8);
+        String forged = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                json.replace("O'Brien", "x') OR 1=1 --").getBytes(StandardCharsets.UTF_8))
+                + token.substring(token.lastIndexOf('.'));
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode(forged));
+        assertEquals("SELECT * FROM sales LIMIT 10", ConfigurableSqlQueryGenerator.generateSqlQuery(
+                request.withPage(new QueryRequest.Page(10, forged))));
+    }
+
+    private static void installRollupCatalog() {
+        SchemaCatalog.install(SchemaCatalog.fromConfig(Map.of(
+            "tables", Map.of(
+                "sales", Map.of("columns", Map.of(
+                    "product_name", Map.of("type", "VARCHAR", "aggregations", List.of()),
+                    "total_sales", Map.of("type", "DECIMAL", "aggregations", List.of("SUM", "AVG")),
+                    "sales_date", Map.of("type", "DATE", "aggregations", List.of()),
+                    "region_id", Map.of("type", "INTEGER", "aggregations", List.of())
+                )),
+                "regions", Map.of("columns", Map.of(
+                    "id", Map.of("type", "INTEGER", "aggregations", List.of()),
+                    "region", Map.of("type", "VARCHAR", "aggregations", List.of())
+                ))
+            ),
+            "rollups", Map.of(
+                "sales_daily", Map.of("baseTable", "sales", "grain", "DAY", "rowCount", 5000000,
+                    "keys", List.of("product_name", "region_id", "sales_date"),
+                    "measures", Map.of("total_sales", List.of("SUM"))),
+                "sales_monthly", Map.of("baseTable", "sales", "grain", "MONTH", "rowCount", 200000,
+                    "keys", List.of("product_name", "region_id", "sales_date"),
+                    "measures", Map.of("total_sales", List.of("SUM")))
+            ),
+            "defaultQuery", "SELECT * FROM sales LIMIT 10"
+        )));
+    }
+
+    @Test
+    public void testGenerateSqlQuery_RoutesToSmallestCoveringRollup() {
+        installRollupCatalog();
+        String request = "{\"tableName\": \"sales\", \"columns\": [\"product_name\", {\"name\": \"total_sales\", \"aggregation\": \"SUM\"}],"
+                + "\"joins\": [{\"joinType\": \"INNER\", \"tableName\": \"regions\", \"on\": {\"leftColumn\": \"sales.region_id\", \"rightColumn\": \"regions.id\"}}],"
+                + "\"filters\": {\"AND\": [{\"dateRange\": {\"column\": \"sales_date\", \"startDate\": \"2024-01-01\", \"endDate\": \"2024-03-31\"}},"
+                + " {\"region\": \"North America\"}]},"
+                + "\"groupBy\": [\"product_name\"]}";
+
+        // Whole months: the monthly rollup answers it
+        assertEquals("SELECT product_name, SUM(total_sales) FROM sales_monthly INNER JOIN regions ON sales_monthly.region_id = regions.id"
+                + " WHERE sales_date BETWEEN '2024-01-01' AND '2024-03-31' AND region = 'North America' GROUP BY product_name",
+                ConfigurableSqlQueryGenerator.generateSqlQuery(request));
+
+        // A range ending mid-month needs daily values
+        assertTrue(ConfigurableSqlQueryGenerator.generateSqlQuery(request.replace("2024-03-31", "2024-03-15"))
+                .contains(" FROM sales_daily INNER JOIN regions ON sales_daily.region_id = regions.id"));
+
+        // AVG cannot be computed from the stored sums, so the base table is used
+        assertTrue(ConfigurableSqlQueryGenerator.generateSqlQuery(request.replace("SUM", "AVG"))
+                .startsWith("SELECT product_name, AVG(total_sales) FROM sales INNER JOIN"));
+    }
+}
@@ -0,0 +1,316 @@
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The HTTP transport for every Databricks call in the container. One pooled client is built
+ * when the class is first used and kept for the life of the container, so warm Lambda
+ * invocations reuse open keep-alive connections instead of paying DNS, TCP and TLS setup
+ * for each statement. Callers that poll many statements at once use the non-blocking client
+ * (executeAsync), which is started on first use and negotiates HTTP/2 over TLS where the
+ * workspace offers it, so concurrent requests share connections.
+ *
+ * Pool limits come from DATABRICKS_MAX_CONNECTIONS (default 20), DATABRICKS_MAX_CONNECTIONS_PER_ROUTE
+ * (default 10) and DATABRICKS_KEEP_ALIVE_SECONDS (default 60), and apply to each of the two
+ * clients. Connections idle for longer than two seconds are validated before reuse, since the
+ * container may have been frozen meanwhile.
+ *
+ * Metrics: requests, connections opened (every other request reused one), and the time
+ * spent waiting to lease a connection from the pool, for the blocking client; requests for
+ * the non-blocking one.
+ */
+public final class DatabricksTransport implements Closeable {
+
+    private static final int DEFAULT_MAX_CONNECTIONS = 20;
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+    private static final int DEFAULT_KEEP_ALIVE_SECONDS = 60;
+    private static final Timeout CONNECT_TIMEOUT = Timeout.ofSeconds(10);
+    private static final TimeValue VALIDATE_AFTER_INACTIVITY = TimeValue.ofSeconds(2);
+
+    // Built on first use, then shared by every caller in the container
+    private static final class Holder {
+        static final DatabricksTransport SHARED = new DatabricksTransport(
+                intSetting("DATABRICKS_MAX_CONNECTIONS", DEFAULT_MAX_CONNECTIONS),
+                intSetting("DATABRICKS_MAX_CONNECTIONS_PER_ROUTE", DEFAULT_MAX_CONNECTIONS_PER_ROUTE),
+                intSetting("DATABRICKS_KEEP_ALIVE_SECONDS", DEFAULT_KEEP_ALIVE_SECONDS));
+    }
+
+    /**
+     * Status code and body of a response; the connection is back in the pool once this exists.
+     */
+    public static final class Response {
+        private final int statusCode;
+        private final String body;
+
+        Response(int statusCode, String body) {
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public boolean isSuccessful() {
+            return statusCode >= 200 && statusCode < 300;
+        }
+    }
+
+    private final int maxConnections;
+    private final int maxConnectionsPerRoute;
+    private final TimeValue keepAlive;
+    private final PoolingHttpClientConnectionManager pool;
+    private final RequestConfig defaultRequestConfig;
+    private final CloseableHttpClient httpClient;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong leaseNanos = new AtomicLong();
+    private final AtomicLong maxLeaseNanos = new AtomicLong();
+    private final AtomicLong asyncRequests = new AtomicLong();
+    // Started on first use; a container that only makes blocking calls never runs an IO reactor
+    private volatile CloseableHttpAsyncClient asyncClient;
+
+    DatabricksTransport(int maxConnections, int maxConnectionsPerRoute, int keepAliveSeconds) {
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.keepAlive = TimeValue.ofSeconds(keepAliveSeconds);
+        this.pool = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(CONNECT_TIMEOUT)
+                        .setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY)
+                        .build())
+                .build();
+        this.defaultRequestConfig = RequestConfig.custom()
+                .setConnectionKeepAlive(keepAlive)
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(new MeteredConnectionManager(pool))
+                .setDefaultRequestConfig(defaultRequestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAlive)
+                .build();
+    }
+
+    /**
+     * The transport shared by the container.
+     */
+    public static DatabricksTransport shared() {
+        return Holder.SHARED;
+    }
+
+    /**
+     * POSTs a JSON body with a bearer token and returns the response, whatever its status.
+     * The response timeout bounds the wait for the statement API to answer.
+     */
+    public Response postJson(String url, String authToken, String json, Timeout responseTimeout) throws IOException {
+        HttpPost request = new HttpPost(url);
+        request.setHeader("Authorization", "Bearer " + authToken);
+        request.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+        // A request's own config replaces the client default, so it starts from a copy
+        request.setConfig(RequestConfig.copy(defaultRequestConfig)
+                .setResponseTimeout(responseTimeout)
+                .build());
+
+        requests.incrementAndGet();
+        // The handler reads the whole body, which returns the connection to the pool for the next call
+        return httpClient.execute(request, response -> new Response(response.getCode(),
+                response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Sends a request on the non-blocking client with a bearer token. The callback runs on the
+     * IO reactor, so it must not block; cancelling the returned future aborts the exchange.
+     */
+    public Future<SimpleHttpResponse> executeAsync(SimpleHttpRequest request, String authToken, Timeout responseTimeout,
+                                                   FutureCallback<SimpleHttpResponse> callback) {
+        request.setHeader("Authorization", "Bearer " + authToken);
+        request.setConfig(RequestConfig.copy(defaultRequestConfig)
+                .setResponseTimeout(responseTimeout)
+                .build());
+        asyncRequests.incrementAndGet();
+        return asyncClient().execute(request, callback);
+    }
+
+    private CloseableHttpAsyncClient asyncClient() {
+        CloseableHttpAsyncClient client = asyncClient;
+        if (client == null) {
+            synchronized (this) {
+                client = asyncClient;
+                if (client == null) {
+                    client = HttpAsyncClients.custom()
+                            .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+                                    .setMaxConnTotal(maxConnections)
+                                    .setMaxConnPerRoute(maxConnectionsPerRoute)
+                                    .setDefaultConnectionConfig(ConnectionConfig.custom()
+                                            .setConnectTimeout(CONNECT_TIMEOUT)
+                                            .setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY)
+                                            .build())
+                                    // HTTP/2 where ALPN offers it, HTTP/1.1 otherwise
+                                    .setDefaultTlsConfig(TlsConfig.custom()
+                                            .setVersionPolicy(HttpVersionPolicy.NEGOTIATE)
+                                            .build())
+                                    .build())
+                            .setDefaultRequestConfig(defaultRequestConfig)
+                            .evictIdleConnections(keepAlive)
+                            .build();
+                    client.start();
+                    asyncClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private static int intSetting(String name, int defaultValue) {
+        return Optional.ofNullable(System.getenv(name)).map(Integer::parseInt).orElse(defaultValue);
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getAsyncRequests() {
+        return asyncRequests.get();
+    }
+
+    public long getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    /**
+     * Requests that were sent over a connection an earlier request had opened.
+     */
+    public long getConnectionsReused() {
+        return Math.max(0, requests.get() - connectionsOpened.get());
+    }
+
+    public double getAverageLeaseMillis() {
+        long count = leases.get();
+        return count == 0 ? 0.0 : leaseNanos.get() / 1_000_000.0 / count;
+    }
+
+    public double getMaxLeaseMillis() {
+        return maxLeaseNanos.get() / 1_000_000.0;
+    }
+
+    public PoolStats getPoolStats() {
+        return pool.getTotalStats();
+    }
+
+    @Override
+    public String toString() {
+        return "DatabricksTransport[requests=" + requests.get() + ", connectionsOpened=" + connectionsOpened.get()
+                + ", connectionsReused=" + getConnectionsReused()
+                + String.format(", averageLeaseMs=%.3f, maxLeaseMs=%.3f", getAverageLeaseMillis(), getMaxLeaseMillis())
+                + ", pool=" + pool.getTotalStats() + ", asyncRequests=" + asyncRequests.get() + "]";
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+        CloseableHttpAsyncClient client = asyncClient;
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    // Delegates to the pool, timing each lease and counting the connections it has to open
+    private final class MeteredConnectionManager implements HttpClientConnectionManager {
+        private final PoolingHttpClientConnectionManager delegate;
+
+        MeteredConnectionManager(PoolingHttpClientConnectionManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+            LeaseRequest lease = delegate.lease(id, route, requestTimeout, state);
+            return new LeaseRequest() {
+                @Override
+                public ConnectionEndpoint get(Timeout timeout) throws InterruptedException, ExecutionException, TimeoutException {
+                    long start = System.nanoTime();
+                    try {
+                        return lease.get(timeout);
+                    } finally {
+                        long elapsed = System.nanoTime() - start;
+                        leases.incrementAndGet();
+                        leaseNanos.addAndGet(elapsed);
+                        maxLeaseNanos.accumulateAndGet(elapsed, Math::max);
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return lease.cancel();
+                }
+            };
+        }
+
+        @Override
+        public void release(ConnectionEndpoint endpoint, Object newState, TimeValue validDuration) {
+            delegate.release(endpoint, newState, validDuration);
+        }
+
+        @Override
+        public void connect(ConnectionEndpoint endpoint, TimeValue connectTimeout, HttpContext context) throws IOException {
+            // Only called for an endpoint without an open connection
+            connectionsOpened.incrementAndGet();
+            delegate.connect(endpoint, connectTimeout, context);
+        }
+
+        @Override
+        public void upgrade(ConnectionEndpoint endpoint, HttpContext context) throws IOException {
+            delegate.upgrade(endpoint, context);
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public void close(CloseMode closeMode) {
+            delegate.close(closeMode);
+        }
+    }
+}
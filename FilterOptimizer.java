@@ -0,0 +1,262 @@
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Normalizes a request's filter tree before it is rendered.
+ * Clients often send redundant trees (long ORs over one column, nested single-child groups,
+ * repeated predicates, overlapping date ranges). The rewritten tree selects the same rows
+ * but renders to fewer, sargable predicates:
+ * - nested groups with the same operator are flattened, and single-child groups are unwrapped
+ * - duplicate predicates within a group are removed
+ * - equality predicates on the same column under an OR are folded into one IN list
+ * - date ranges on the same column under an AND are intersected into one range
+ */
+public final class FilterOptimizer {
+
+    private FilterOptimizer() {
+    }
+
+    /**
+     * Optimizes the top-level filters of a request, which are combined with AND.
+     */
+    public static List<QueryRequest.Filter> optimize(List<QueryRequest.Filter> filters) {
+        if (filters.isEmpty()) {
+            return filters;
+        }
+        return optimizeGroup("AND", filters);
+    }
+
+    /**
+     * Returns the request with its filter tree optimized, or the request itself if the
+     * tree was already minimal.
+     */
+    public static QueryRequest optimize(QueryRequest request) {
+        List<QueryRequest.Filter> optimized = optimize(request.getFilters());
+        return optimized.equals(request.getFilters()) ? request : request.withFilters(optimized);
+    }
+
+    private static QueryRequest.Filter optimizeNode(QueryRequest.Filter filter) {
+        if (!(filter instanceof QueryRequest.Logical)) {
+            return filter;
+        }
+        QueryRequest.Logical logical = (QueryRequest.Logical) filter;
+        List<QueryRequest.Filter> children = optimizeGroup(logical.getOperator(), logical.getChildren());
+        if (children.size() == 1) {
+            // A group with one child is just that child
+            return children.get(0);
+        }
+        if (children.equals(logical.getChildren())) {
+            return logical;
+        }
+        return new QueryRequest.Logical(logical.getOperator(), children);
+    }
+
+    /**
+     * Optimizes the children of a group joined by the given operator.
+     * The relative order of the remaining predicates is preserved.
+     */
+    private static List<QueryRequest.Filter> optimizeGroup(String operator, List<QueryRequest.Filter> children) {
+        // Optimize children first and splice in any child group with the same operator
+        List<QueryRequest.Filter> flattened = new ArrayList<>(children.size());
+        for (QueryRequest.Filter child : children) {
+            QueryRequest.Filter optimized = optimizeNode(child);
+            if (optimized instanceof QueryRequest.Logical
+                    && ((QueryRequest.Logical) optimized).getOperator().equals(operator)) {
+                flattened.addAll(((QueryRequest.Logical) optimized).getChildren());
+            } else {
+                flattened.add(optimized);
+            }
+        }
+
+        List<QueryRequest.Filter> merged = "OR".equals(operator) ? foldEqualities(flattened) : intersectDateRanges(flattened);
+        List<QueryRequest.Filter> result = removeDuplicates(merged);
+        return result.equals(children) ? children : result;
+    }
+
+    /**
+     * Folds equality and IN predicates on the same column into a single IN list,
+     * placed where the first of them was.
+     */
+    private static List<QueryRequest.Filter> foldEqualities(List<QueryRequest.Filter> filters) {
+        Map<String, Set<String>> valuesByColumn = new LinkedHashMap<>();
+        for (QueryRequest.Filter filter : filters) {
+            String column = membershipColumn(filter);
+            if (column != null) {
+                valuesByColumn.computeIfAbsent(column, k -> new LinkedHashSet<>()).addAll(membershipValues(filter));
+            }
+        }
+
+        List<QueryRequest.Filter> result = new ArrayList<>(filters.size());
+        Set<String> emitted = new HashSet<>();
+        for (QueryRequest.Filter filter : filters) {
+            String column = membershipColumn(filter);
+            if (column == null) {
+                result.add(filter);
+            } else if (emitted.add(column)) {
+                Set<String> values = valuesByColumn.get(column);
+                if (values.size() == 1 && filter instanceof QueryRequest.Equals) {
+                    result.add(filter);
+                } else if (values.size() == 1) {
+                    result.add(new QueryRequest.Equals(column, values.iterator().next()));
+                } else {
+                    result.add(new QueryRequest.In(column, new ArrayList<>(values)));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String membershipColumn(QueryRequest.Filter filter) {
+        if (filter instanceof QueryRequest.Equals) {
+            return ((QueryRequest.Equals) filter).getColumn();
+        }
+        if (filter instanceof QueryRequest.In) {
+            return ((QueryRequest.In) filter).getColumn();
+        }
+        return null;
+    }
+
+    private static List<String> membershipValues(QueryRequest.Filter filter) {
+        if (filter instanceof QueryRequest.Equals) {
+            return Collections.singletonList(((QueryRequest.Equals) filter).getValue());
+        }
+        return ((QueryRequest.In) filter).getValues();
+    }
+
+    /**
+     * Intersects date ranges on the same column into the range they have in common,
+     * placed where the first of them was. Ranges whose bounds are not plain ISO dates
+     * (e.g. timestamps) are left as they are.
+     */
+    private static List<QueryRequest.Filter> intersectDateRanges(List<QueryRequest.Filter> filters) {
+        Map<String, QueryRequest.DateRange> rangeByColumn = new HashMap<>();
+        boolean intersected = false;
+        for (QueryRequest.Filter filter : filters) {
+            if (!isDateRange(filter)) {
+                continue;
+            }
+            QueryRequest.DateRange range = (QueryRequest.DateRange) filter;
+            QueryRequest.DateRange existing = rangeByColumn.get(range.getColumn());
+            if (existing == null) {
+                rangeByColumn.put(range.getColumn(), range);
+            } else {
+                // An empty intersection keeps start after end, which still matches no rows
+                String start = later(existing.getStartDate(), range.getStartDate());
+                String end = earlier(existing.getEndDate(), range.getEndDate());
+                rangeByColumn.put(range.getColumn(), new QueryRequest.DateRange(range.getColumn(), start, end));
+                intersected = true;
+            }
+        }
+        if (!intersected) {
+            return filters;
+        }
+
+        List<QueryRequest.Filter> result = new ArrayList<>(filters.size());
+        Set<String> emitted = new HashSet<>();
+        for (QueryRequest.Filter filter : filters) {
+            if (!isDateRange(filter)) {
+                result.add(filter);
+            } else {
+                String column = ((QueryRequest.DateRange) filter).getColumn();
+                if (emitted.add(column)) {
+                    result.add(rangeByColumn.get(column));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isDateRange(QueryRequest.Filter filter) {
+        if (!(filter instanceof QueryRequest.DateRange)) {
+            return false;
+        }
+        QueryRequest.DateRange range = (QueryRequest.DateRange) filter;
+        return isIsoDate(range.getStartDate()) && isIsoDate(range.getEndDate());
+    }
+
+    private static boolean isIsoDate(String value) {
+        try {
+            LocalDate.parse(value);
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static String later(String first, String second) {
+        return LocalDate.parse(first).isBefore(LocalDate.parse(second)) ? second : first;
+    }
+
+    private static String earlier(String first, String second) {
+        return LocalDate.parse(second).isBefore(LocalDate.parse(first)) ? second : first;
+    }
+
+    /**
+     * Drops predicates that are identical to an earlier one in the same group.
+     */
+    private static List<QueryRequest.Filter> removeDuplicates(List<QueryRequest.Filter> filters) {
+        if (filters.size() < 2) {
+            return filters;
+        }
+        Set<String> seen = new HashSet<>();
+        List<QueryRequest.Filter> result = new ArrayList<>(filters.size());
+        for (QueryRequest.Filter filter : filters) {
+            if (seen.add(canonicalKey(filter))) {
+                result.add(filter);
+            }
+        }
+        return result.size() == filters.size() ? filters : result;
+    }
+
+    /**
+     * A key that is equal for predicates selecting the same rows in the same way.
+     * Children of a group and IN values are order-insensitive.
+     */
+    private static String canonicalKey(QueryRequest.Filter filter) {
+        StringBuilder key = new StringBuilder();
+        if (filter instanceof QueryRequest.Logical) {
+            QueryRequest.Logical logical = (QueryRequest.Logical) filter;
+            List<String> childKeys = new ArrayList<>();
+            for (QueryRequest.Filter child : logical.getChildren()) {
+                childKeys.add(canonicalKey(child));
+            }
+            Collections.sort(childKeys);
+            appendToken(key.append('L'), logical.getOperator());
+            for (String childKey : childKeys) {
+                appendToken(key, childKey);
+            }
+        } else if (filter instanceof QueryRequest.DateRange) {
+            QueryRequest.DateRange range = (QueryRequest.DateRange) filter;
+            appendToken(key.append('D'), range.getColumn());
+            appendToken(key, range.getStartDate());
+            appendToken(key, range.getEndDate());
+        } else if (filter instanceof QueryRequest.In) {
+            QueryRequest.In in = (QueryRequest.In) filter;
+            List<String> values = new ArrayList<>(new TreeSet<>(in.getValues()));
+            if (values.size() == 1) {
+                // "col IN ('x')" selects the same rows as "col = 'x'"
+                appendToken(key.append('E'), in.getColumn());
+                appendToken(key, values.get(0));
+            } else {
+                appendToken(key.append('I'), in.getColumn());
+                for (String value : values) {
+                    appendToken(key, value);
+                }
+            }
+        } else {
+            QueryRequest.Equals equals = (QueryRequest.Equals) filter;
+            appendToken(key.append('E'), equals.getColumn());
+            appendToken(key, equals.getValue());
+        }
+        return key.toString();
+    }
+
+    private static void appendToken(StringBuilder key, String token) {
+        if (token == null) {
+            key.append('~');
+        } else {
+            key.append(token.length()).append(':').append(token);
+        }
+    }
+}
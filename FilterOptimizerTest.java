@@ -0,0 +1,73 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class FilterOptimizerTest {
+
+    private static List<QueryRequest.Filter> optimize(String filtersJson) {
+        String json = "{\"tableName\": \"sales\", \"columns\": [\"product_name\"], \"filters\": " + filtersJson + "}";
+        return FilterOptimizer.optimize(QueryRequestParser.parse(json).getFilters());
+    }
+
+    @Test
+    public void testFlattensNestedSameOperatorGroups() {
+        List<QueryRequest.Filter> filters = optimize("{\"AND\": [{\"AND\": [{\"a\": \"1\"}, {\"AND\": [{\"b\": \"2\"}]}]},"
+                + " {\"OR\": [{\"c\": \"3\"}, {\"OR\": [{\"d\": \"4\"}, {\"e\": \"5\"}]}]}]}");
+
+        assertEquals(3, filters.size());
+        assertEquals("a", ((QueryRequest.Equals) filters.get(0)).getColumn());
+        assertEquals("b", ((QueryRequest.Equals) filters.get(1)).getColumn());
+        QueryRequest.Logical or = (QueryRequest.Logical) filters.get(2);
+        assertEquals("OR", or.getOperator());
+        assertEquals(3, or.getChildren().size());
+    }
+
+    @Test
+    public void testRemovesDuplicatePredicates() {
+        List<QueryRequest.Filter> filters = optimize("{\"AND\": [{\"a\": \"1\"}, {\"a\": \"1\"},"
+                + " {\"OR\": [{\"b\": \"2\"}, {\"c\": \"3\"}]}, {\"OR\": [{\"c\": \"3\"}, {\"b\": \"2\"}]}]}");
+
+        assertEquals(2, filters.size());
+        assertEquals("1", ((QueryRequest.Equals) filters.get(0)).getValue());
+        assertTrue(filters.get(1) instanceof QueryRequest.Logical);
+    }
+
+    @Test
+    public void testFoldsSameColumnEqualitiesIntoIn() {
+        List<QueryRequest.Filter> filters = optimize("{\"OR\": [{\"region\": \"A\"}, {\"channel\": \"web\"},"
+                + " {\"region\": \"B\"}, {\"OR\": [{\"region\": \"C\"}, {\"region\": \"A\"}]}]}");
+
+        QueryRequest.Logical or = (QueryRequest.Logical) filters.get(0);
+        assertEquals(2, or.getChildren().size());
+        QueryRequest.In in = (QueryRequest.In) or.getChildren().get(0);
+        assertEquals("region", in.getColumn());
+        assertEquals(Arrays.asList("A", "B", "C"), in.getValues());
+        assertEquals("channel", ((QueryRequest.Equals) or.getChildren().get(1)).getColumn());
+    }
+
+    @Test
+    public void testIntersectsDateRangesOnTheSameColumn() {
+        List<QueryRequest.Filter> filters = optimize("{\"AND\": ["
+                + "{\"dateRange\": {\"column\": \"sales_date\", \"startDate\": \"2024-01-01\", \"endDate\": \"2024-12-31\"}},"
+                + "{\"dateRange\": {\"column\": \"ship_date\", \"startDate\": \"2024-01-01\", \"endDate\": \"2024-01-31\"}},"
+                + "{\"dateRange\": {\"column\": \"sales_date\", \"startDate\": \"2024-06-01\", \"endDate\": \"2025-06-30\"}}]}");
+
+        assertEquals(2, filters.size());
+        QueryRequest.DateRange sales = (QueryRequest.DateRange) filters.get(0);
+        assertEquals("2024-06-01", sales.getStartDate());
+        assertEquals("2024-12-31", sales.getEndDate());
+        assertEquals("ship_date", ((QueryRequest.DateRange) filters.get(1)).getColumn());
+    }
+
+    @Test
+    public void testKeepsDateRangesUnderOr() {
+        List<QueryRequest.Filter> filters = optimize("{\"OR\": ["
+                + "{\"dateRange\": {\"column\": \"sales_date\", \"startDate\": \"2024-01-01\", \"endDate\": \"2024-01-31\"}},"
+                + "{\"dateRange\": {\"column\": \"sales_date\", \"startDate\": \"2024-06-01\", \"endDate\": \"2024-06-30\"}}]}");
+
+        assertEquals(2, ((QueryRequest.Logical) filters.get(0)).getChildren().size());
+    }
+}
@@ -1,41 +1,26 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.StringJoiner;
 
 public class QueryBuilder {
 
     public static String buildQuery(Map<String, Object> jsonMap) {
-        StringBuilder queryBuilder = new StringBuilder("SELECT * FROM ");
-        
-        // Assuming the main table name is in jsonMap
-        String tableName = (String) jsonMap.get("tableName");
-        queryBuilder.append(tableName);
-
-        // Handle joins with Optional
-        Optional.ofNullable((List<Map<String, Object>>) jsonMap.get("joins"))
-                .ifPresent(joins -> joins.forEach(join -> {
-                    String joinType = Optional.ofNullable((String) join.get("joinType")).orElse("INNER");
-                    String joinTable = (String) join.get("tableName");
-                    Map<String, String> onClause = (Map<String, String>) join.get("on");
+        return buildQuery(QueryRequestParser.fromMap(jsonMap));
+    }
 
-                    // Handle the join conditions using Optional to avoid null pointer issues
-                    Optional<String> leftColumn = Optional.ofNullable(onClause.get("leftColumn"));
-                    Optional<String> rightColumn = Optional.ofNullable(onClause.get("rightColumn"));
+    public static String buildQuery(QueryRequest request) {
+        // The main table name is required by QueryRequestParser
+        SqlWriter sql = SqlWriter.acquire().append("SELECT *").from(request.getTableName());
 
-                    if (leftColumn.isPresent() && rightColumn.isPresent()) {
-                        queryBuilder.append(" ")
-                                .append(joinType)
-                                .append(" JOIN ")
-                                .append(joinTable)
-                                .append(" ON ")
-                                .append(leftColumn.get())
-                                .append(" = ")
-                                .append(rightColumn.get());
-                    }
-                }));
+        // Handle joins, defaulting to INNER and skipping joins without both columns
+        for (QueryRequest.Join join : request.getJoins()) {
+            String joinType = Optional.ofNullable(join.getJoinType()).orElse("INNER");
+            if (join.getLeftColumn() != null && join.getRightColumn() != null) {
+                sql.join(joinType, join.getTableName(), join.getLeftColumn(), join.getRightColumn());
+            }
+        }
 
-        return queryBuilder.toString();
+        return sql.finish();
     }
 
     public static void main(String[] args) {
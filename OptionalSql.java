@@ -1,78 +1,114 @@
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class ReportLambda {
     
     // This method generates the SQL based on input and uses Optional for joins, filters, and conditions
     public String generateSqlFromInput(Map<String, Object> input, Map<String, Object> config) {
-        String tableName = Optional.ofNullable((String) input.get("tableName"))
-                                   .orElseThrow(() -> new IllegalArgumentException("Missing tableName"));
-        
-        List<String> columns = Optional.ofNullable((List<String>) input.get("columns"))
-                                       .orElseThrow(() -> new IllegalArgumentException("Missing columns"));
-        
-        List<Map<String, String>> joins = (List<Map<String, String>>) input.get("joins"); // Optional joins
-
-        Map<String, Object> filters = (Map<String, Object>) input.get("filters");
-        List<String> groupBy = (List<String>) input.get("groupBy");
-        Map<String, String> orderBy = (Map<String, String>) input.get("orderBy");
-        
+        Optional.ofNullable((String) input.get("tableName"))
+                .orElseThrow(() -> new IllegalArgumentException("Missing tableName"));
+        Optional.ofNullable((List<String>) input.get("columns"))
+                .orElseThrow(() -> new IllegalArgumentException("Missing columns"));
+
+        return generateSqlFromInput(QueryRequestParser.fromMap(input), config);
+    }
+
+    // Generates the SQL from a request already parsed by QueryRequestParser.
+    // Table names, columns, GROUP BY and ORDER BY entries are SQL text from the report definition
+    // (expressions such as "SUM(total_sales) AS total" included), so they are written as given
+    // instead of being quoted as identifiers; only filter values are escaped as literals
+    public String generateSqlFromInput(QueryRequest input, Map<String, Object> config) {
+        String tableName = input.getTableName();
+
+        List<QueryRequest.Column> columns = Optional.of(input.getColumns())
+                                                    .filter(c -> !c.isEmpty())
+                                                    .orElseThrow(() -> new IllegalArgumentException("Missing columns"));
+
         // Base query with columns
-        StringBuilder sql = new StringBuilder("SELECT ")
-            .append(columns.stream().collect(Collectors.joining(", ")))
-            .append(" FROM ").append(tableName);
+        SqlWriter sql = SqlWriter.acquire().append("SELECT ");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            QueryRequest.Column column = columns.get(i);
+            if (column.getAggregation() != null) {
+                sql.append(column.getAggregation()).append('(').append(column.getName()).append(')');
+            } else {
+                sql.append(column.getName());
+            }
+        }
+        sql.append(" FROM ").append(tableName);
 
         // Append JOINs if available
-        Optional.ofNullable(joins).ifPresent(j -> sql.append(" ").append(buildJoinClause(j, config)));
+        for (QueryRequest.Join join : input.getJoins()) {
+            appendJoin(sql, join, config);
+        }
 
         // Add WHERE clause based on filters
-        Optional.ofNullable(filters).ifPresent(f -> sql.append(" WHERE ").append(buildWhereClause(f)));
+        List<QueryRequest.Filter> conditions = whereConditions(input.getFilters());
+        for (int i = 0; i < conditions.size(); i++) {
+            sql.append(i == 0 ? " WHERE " : " AND ");
+            appendCondition(sql, conditions.get(i));
+        }
 
         // Add GROUP BY clause
-        Optional.ofNullable(groupBy).ifPresent(g -> sql.append(" GROUP BY ").append(String.join(", ", g)));
+        List<String> groupBy = input.getGroupBy();
+        for (int i = 0; i < groupBy.size(); i++) {
+            sql.append(i == 0 ? " GROUP BY " : ", ").append(groupBy.get(i));
+        }
 
         // Add ORDER BY clause
-        Optional.ofNullable(orderBy).ifPresent(o -> sql.append(" ORDER BY ")
-            .append(o.get("column"))
-            .append(" ")
-            .append(o.get("direction")));
+        QueryRequest.OrderBy orderBy = input.getOrderBy();
+        if (orderBy != null) {
+            sql.append(" ORDER BY ").append(orderBy.getColumn()).append(' ').append(orderBy.getDirection());
+        }
+
+        return sql.finish();
+    }
 
-        return sql.toString();
+    // Append a JOIN clause built from input and config
+    private void appendJoin(SqlWriter sql, QueryRequest.Join join, Map<String, Object> config) {
+        String joinType = Optional.ofNullable(join.getJoinType()).orElse("INNER"); // Default to INNER JOIN
+        sql.append(' ').append(joinType).append(" JOIN ").append(join.getTableName()).append(" ON ");
+        if (join.getCondition() != null) {
+            sql.append(join.getCondition());
+        } else {
+            sql.append(join.getLeftColumn()).append(" = ").append(join.getRightColumn());
+        }
     }
 
-    // Build JOIN clause dynamically from input and config
-    private String buildJoinClause(List<Map<String, String>> joins, Map<String, Object> config) {
-        return joins.stream()
-                .map(join -> {
-                    String joinTable = join.get("table");
-                    String joinCondition = join.get("condition");
-                    String joinType = Optional.ofNullable(join.get("type")).orElse("INNER"); // Default to INNER JOIN
-                    return joinType + " JOIN " + joinTable + " ON " + joinCondition;
-                })
-                .collect(Collectors.joining(" "));
+    // Append one of the conditions picked by whereConditions
+    private void appendCondition(SqlWriter sql, QueryRequest.Filter filter) {
+        if (filter instanceof QueryRequest.DateRange) {
+            QueryRequest.DateRange range = (QueryRequest.DateRange) filter;
+            sql.append(range.getColumn()).append(" BETWEEN ").literal(range.getStartDate())
+               .append(" AND ").literal(range.getEndDate());
+        } else {
+            QueryRequest.Equals equals = (QueryRequest.Equals) filter;
+            sql.append(equals.getColumn()).append(" = ").literal(equals.getValue());
+        }
     }
 
-    // Build WHERE clause with complex filtering including AND/OR conditions
-    private String buildWhereClause(Map<String, Object> filters) {
-        List<String> conditions = new ArrayList<>();
+    // Pick the filters for the WHERE clause; they are combined with AND
+    private List<QueryRequest.Filter> whereConditions(List<QueryRequest.Filter> filters) {
+        List<QueryRequest.Filter> conditions = new ArrayList<>(2);
 
         // Example: Handle a date range filter
-        Optional.ofNullable(filters.get("dateRange")).ifPresent(dateRange -> {
-            Map<String, String> range = (Map<String, String>) dateRange;
-            String column = range.get("column");
-            String startDate = range.get("startDate");
-            String endDate = range.get("endDate");
-            conditions.add(column + " BETWEEN '" + startDate + "' AND '" + endDate + "'");
-        });
+        for (QueryRequest.Filter filter : filters) {
+            if (filter instanceof QueryRequest.DateRange) {
+                conditions.add(filter);
+                break;
+            }
+        }
 
         // Example: Handle product category
-        Optional.ofNullable(filters.get("productCategory")).ifPresent(category -> {
-            conditions.add("productCategory = '" + category + "'");
-        });
+        for (QueryRequest.Filter filter : filters) {
+            if (filter instanceof QueryRequest.Equals && ((QueryRequest.Equals) filter).getColumn().equals("productCategory")) {
+                conditions.add(filter);
+                break;
+            }
+        }
 
         // More conditions can be added here similarly
-
-        // Combine conditions using AND/OR
-        return conditions.stream().collect(Collectors.joining(" AND "));
+        return conditions;
     }
 }
@@ -0,0 +1,162 @@
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Opaque continuation token for keyset pagination. It holds the sort key of the last row
+ * of a page (the seek columns and their values), so the next page can start right after
+ * that row instead of skipping over all earlier rows with OFFSET.
+ *
+ * The token is URL-safe base64 of {"c": [columns], "v": [values]}, a dot, and an HMAC-SHA256
+ * signature of that text; callers should treat it as an opaque string and only pass it back in
+ * the request's "page" object. A token that was not issued here (or was edited) is rejected
+ * before its values reach a query. The key is PAGE_TOKEN_SECRET, which every instance serving
+ * the same clients must share; without it each process signs with a random key of its own.
+ */
+public final class PageToken {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String SIGNATURE_ALGORITHM = "HmacSHA256";
+    private static final SecretKeySpec SIGNING_KEY = new SecretKeySpec(signingSecret(), SIGNATURE_ALGORITHM);
+
+    private final List<String> columns;
+    private final List<String> values;
+
+    private PageToken(List<String> columns, List<String> values) {
+        this.columns = Collections.unmodifiableList(columns);
+        this.values = Collections.unmodifiableList(values);
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public List<String> getValues() {
+        return values;
+    }
+
+    /**
+     * Encodes the seek columns and the last row's values for them.
+     */
+    public static String encode(List<String> columns, List<String> values) {
+        if (columns.size() != values.size()) {
+            throw new IllegalArgumentException("Page token needs one value per column.");
+        }
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+            generator.writeStartObject();
+            writeArray(generator, "c", columns);
+            writeArray(generator, "v", values);
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write page token", e);
+        }
+        String payload = Base64.getUrlEncoder().withoutPadding().encodeToString(json.toString().getBytes(StandardCharsets.UTF_8));
+        return payload + '.' + Base64.getUrlEncoder().withoutPadding().encodeToString(sign(payload));
+    }
+
+    private static byte[] signingSecret() {
+        String secret = System.getenv("PAGE_TOKEN_SECRET");
+        if (secret != null && !secret.isEmpty()) {
+            return secret.getBytes(StandardCharsets.UTF_8);
+        }
+        System.err.println("PAGE_TOKEN_SECRET is not set; page tokens are only valid in this process.");
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+
+    private static byte[] sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(SIGNATURE_ALGORITHM);
+            mac.init(SIGNING_KEY);
+            return mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to sign page token", e);
+        }
+    }
+
+    private static void writeArray(JsonGenerator generator, String field, List<String> items) throws IOException {
+        generator.writeArrayFieldStart(field);
+        for (String item : items) {
+            generator.writeString(item);
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Decodes a token produced by encode(). Throws IllegalArgumentException if it is not one.
+     */
+    public static PageToken decode(String token) {
+        int dot = token.lastIndexOf('.');
+        if (dot < 0) {
+            throw new IllegalArgumentException("Invalid page token.");
+        }
+        String payload = token.substring(0, dot);
+        byte[] json;
+        try {
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, sign(payload))) {
+                throw new IllegalArgumentException("Invalid page token.");
+            }
+            json = Base64.getUrlDecoder().decode(payload);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token.", e);
+        }
+
+        List<String> columns = null;
+        List<String> values = null;
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Invalid page token.");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("c".equals(field)) {
+                    columns = readArray(parser);
+                } else if ("v".equals(field)) {
+                    values = readArray(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid page token.", e);
+        }
+        if (columns == null || values == null || columns.isEmpty() || columns.size() != values.size()) {
+            throw new IllegalArgumentException("Invalid page token.");
+        }
+        return new PageToken(columns, values);
+    }
+
+    private static List<String> readArray(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("Invalid page token.");
+        }
+        List<String> items = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.VALUE_STRING) {
+                throw new IllegalArgumentException("Invalid page token.");
+            }
+            items.add(parser.getText());
+        }
+        return items;
+    }
+}
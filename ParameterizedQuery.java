@@ -0,0 +1,67 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SQL text with named parameter markers (":p0", ":p1", ...) and the typed values bound to them.
+ * Requests of the same shape produce identical SQL text, so the warehouse can reuse
+ * cached plans and results across them.
+ */
+public final class ParameterizedQuery {
+    private final String sql;
+    private final List<Parameter> parameters;
+
+    public ParameterizedQuery(String sql, List<Parameter> parameters) {
+        this.sql = sql;
+        this.parameters = Collections.unmodifiableList(parameters);
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<Parameter> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Returns the parameters in the shape of the statement API's "parameters" field.
+     */
+    public List<Map<String, String>> toStatementParameters() {
+        List<Map<String, String>> statementParameters = new ArrayList<>(parameters.size());
+        for (Parameter parameter : parameters) {
+            Map<String, String> entry = new LinkedHashMap<>();
+            entry.put("name", parameter.getName());
+            entry.put("value", parameter.getValue());
+            entry.put("type", parameter.getType());
+            statementParameters.add(entry);
+        }
+        return statementParameters;
+    }
+
+    public static final class Parameter {
+        private final String name;
+        private final String value;
+        private final String type;
+
+        public Parameter(String name, String value, String type) {
+            this.name = name;
+            this.value = value;
+            this.type = type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public String getType() {
+            return type;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * When to check a running statement's status again.
+ *
+ * If the report's usual runtime is known, the first check is made when a run usually finishes.
+ * After that (or from the start, for a report without history) the delay grows exponentially
+ * from a tenth of the usual runtime, or MIN_DELAY_MILLIS, up to MAX_DELAY_MILLIS. Every delay
+ * is jittered ("equal jitter": half fixed, half random) so statements started together do not
+ * poll the API in lockstep.
+ */
+public class PollSchedule {
+    static final long MIN_DELAY_MILLIS = 250L;
+    static final long MAX_DELAY_MILLIS = 10_000L;
+    static final double BACKOFF_RATE = 2.0;
+
+    private final Long expectedMillis;
+    private final Random random;
+    private long step;
+    private int polls;
+
+    /**
+     * expectedMillis is the report's usual runtime, or null if it has no history.
+     */
+    public PollSchedule(Long expectedMillis) {
+        this(expectedMillis, ThreadLocalRandom.current());
+    }
+
+    PollSchedule(Long expectedMillis, Random random) {
+        this.expectedMillis = expectedMillis;
+        this.random = random;
+        this.step = expectedMillis == null ? MIN_DELAY_MILLIS : clamp(expectedMillis / 10);
+    }
+
+    /**
+     * Returns the delay before the next status check and counts the check.
+     */
+    public long nextDelayMillis(long elapsedMillis) {
+        long delay;
+        if (polls == 0 && expectedMillis != null && elapsedMillis < expectedMillis) {
+            delay = expectedMillis - elapsedMillis;
+        } else {
+            delay = step;
+            step = clamp((long) (step * BACKOFF_RATE));
+        }
+        polls++;
+        return jitter(delay);
+    }
+
+    /**
+     * Number of status checks scheduled so far.
+     */
+    public int getPolls() {
+        return polls;
+    }
+
+    /**
+     * Delay for a caller that keeps no state between checks (a Step Functions Wait state): until
+     * the report usually finishes if it has not run that long yet, otherwise a quarter of the time
+     * the statement has been running, which grows like exponential backoff.
+     */
+    public static long delayForElapsedMillis(Long expectedMillis, long elapsedMillis) {
+        long delay = expectedMillis != null && elapsedMillis < expectedMillis
+                ? expectedMillis - elapsedMillis
+                : clamp(elapsedMillis / 4);
+        return jitter(delay, ThreadLocalRandom.current());
+    }
+
+    private long jitter(long delay) {
+        return jitter(delay, random);
+    }
+
+    private static long jitter(long delay, Random random) {
+        long half = delay / 2;
+        return delay - half + (long) (random.nextDouble() * (half + 1));
+    }
+
+    private static long clamp(long delay) {
+        return Math.max(MIN_DELAY_MILLIS, Math.min(MAX_DELAY_MILLIS, delay));
+    }
+}
@@ -0,0 +1,57 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class PollScheduleTest {
+
+    @Test
+    public void testFirstCheckIsWhenTheReportUsuallyFinishes() {
+        PollSchedule schedule = new PollSchedule(8000L, new Random(1));
+        long first = schedule.nextDelayMillis(3000L);
+
+        // Equal jitter keeps the delay between half and all of the 5s still expected
+        assertTrue(first >= 2500L && first <= 5000L, "first delay " + first);
+        // Then backoff starts from a tenth of the usual runtime
+        long second = schedule.nextDelayMillis(8000L);
+        assertTrue(second >= 400L && second <= 800L, "second delay " + second);
+        assertEquals(2, schedule.getPolls());
+    }
+
+    @Test
+    public void testBackoffDoublesUpToTheCap() {
+        PollSchedule schedule = new PollSchedule(null, new Random(7));
+        long step = PollSchedule.MIN_DELAY_MILLIS;
+        for (int i = 0; i < 12; i++) {
+            long delay = schedule.nextDelayMillis(0L);
+            assertTrue(delay >= step / 2 && delay <= step, "poll " + i + " delay " + delay + " for step " + step);
+            step = Math.min(PollSchedule.MAX_DELAY_MILLIS, step * 2);
+        }
+        assertEquals(12, schedule.getPolls());
+    }
+
+    @Test
+    public void testOverdueRunSkipsTheSeededCheck() {
+        PollSchedule schedule = new PollSchedule(2000L, new Random(3));
+        long delay = schedule.nextDelayMillis(5000L);
+        assertTrue(delay >= PollSchedule.MIN_DELAY_MILLIS / 2 && delay <= PollSchedule.MIN_DELAY_MILLIS, "delay " + delay);
+    }
+
+    @Test
+    public void testStatelessDelayGrowsWithElapsedTime() {
+        assertTrue(PollSchedule.delayForElapsedMillis(null, 0L) <= PollSchedule.MIN_DELAY_MILLIS);
+        long delay = PollSchedule.delayForElapsedMillis(null, 20_000L);
+        assertTrue(delay >= 2500L && delay <= 5000L, "delay " + delay);
+        assertTrue(PollSchedule.delayForElapsedMillis(null, 600_000L) <= PollSchedule.MAX_DELAY_MILLIS);
+    }
+
+    @Test
+    public void testStatelessDelayWaitsForTheUsualRuntime() {
+        long delay = PollSchedule.delayForElapsedMillis(90_000L, 60_000L);
+        assertTrue(delay >= 15_000L && delay <= 30_000L, "delay " + delay);
+        // An overdue run backs off from its elapsed time
+        delay = PollSchedule.delayForElapsedMillis(30_000L, 60_000L);
+        assertTrue(delay >= 5000L && delay <= PollSchedule.MAX_DELAY_MILLIS, "delay " + delay);
+    }
+}
@@ -0,0 +1,153 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compiled report query.
+ * The SQL text is stored as literal segments with value slots in between, so requests
+ * that share the same shape only need their filter values bound in. Each slot can be
+ * rendered as a quoted literal or as a named parameter marker.
+ */
+public class QueryPlan {
+
+    // Literal SQL text around the slots; always one more segment than there are slots
+    private final String[] segments;
+
+    // Statement API type of each slot's value, e.g. STRING or DATE
+    private final String[] slotTypes;
+
+    // Keyword written before a slot's quoted literal, e.g. "DATE " for a typed literal; null for none
+    private final String[] literalPrefixes;
+
+    // Combined length of the literal segments, used to pre-size the output buffer
+    private final int literalLength;
+
+    // The SQL with ":pN" markers in the slots; identical for every request of this shape
+    private final String parameterizedSql;
+
+    // Problems found while compiling that did not stop the query, reported on every use
+    private final List<String> warnings;
+
+    private QueryPlan(List<String> segments, List<String> slotTypes, List<String> literalPrefixes, List<String> warnings) {
+        this.warnings = Collections.unmodifiableList(warnings);
+        this.segments = segments.toArray(new String[0]);
+        this.slotTypes = slotTypes.toArray(new String[0]);
+        this.literalPrefixes = literalPrefixes.toArray(new String[0]);
+        int length = 0;
+        for (String segment : this.segments) {
+            length += segment.length();
+        }
+        for (String prefix : this.literalPrefixes) {
+            length += prefix == null ? 0 : prefix.length();
+        }
+        this.literalLength = length;
+
+        StringBuilder sql = new StringBuilder(literalLength + this.slotTypes.length * 4);
+        sql.append(this.segments[0]);
+        for (int i = 0; i < this.slotTypes.length; i++) {
+            sql.append(':').append(parameterName(i)).append(this.segments[i + 1]);
+        }
+        this.parameterizedSql = sql.toString();
+    }
+
+    private static String parameterName(int slot) {
+        return "p" + slot;
+    }
+
+    public int getSlotCount() {
+        return slotTypes.length;
+    }
+
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * Renders the SQL for this plan with the given values quoted into the slots in order.
+     */
+    public String bind(List<String> values) {
+        checkValueCount(values);
+
+        int valuesLength = 0;
+        for (String value : values) {
+            valuesLength += value.length() + 2;
+        }
+
+        SqlWriter sql = SqlWriter.acquire(literalLength + valuesLength);
+        sql.append(segments[0]);
+        for (int i = 0; i < values.size(); i++) {
+            if (literalPrefixes[i] != null) {
+                sql.append(literalPrefixes[i]);
+            }
+            sql.literal(values.get(i)).append(segments[i + 1]);
+        }
+        return sql.finish();
+    }
+
+    /**
+     * Returns the shared parameterized SQL for this plan together with the given values
+     * as typed parameters.
+     */
+    public ParameterizedQuery bindParameters(List<String> values) {
+        checkValueCount(values);
+
+        List<ParameterizedQuery.Parameter> parameters = new ArrayList<>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            parameters.add(new ParameterizedQuery.Parameter(parameterName(i), values.get(i), slotTypes[i]));
+        }
+        return new ParameterizedQuery(parameterizedSql, parameters);
+    }
+
+    private void checkValueCount(List<String> values) {
+        if (values.size() != getSlotCount()) {
+            throw new IllegalArgumentException("Query plan expects " + getSlotCount() + " values but got " + values.size() + ".");
+        }
+    }
+
+    /**
+     * Collects literal SQL text and slots while a request is being compiled.
+     */
+    public static class Builder {
+        private final List<String> segments = new ArrayList<>();
+        private final List<String> slotTypes = new ArrayList<>();
+        private final List<String> literalPrefixes = new ArrayList<>();
+        private final List<String> warnings = new ArrayList<>();
+        private StringBuilder current = new StringBuilder();
+
+        public Builder append(String literal) {
+            current.append(literal);
+            return this;
+        }
+
+        /**
+         * Adds a value slot. The type is what the value is bound as in parameterized mode.
+         */
+        public Builder slot(String type) {
+            return slot(type, false);
+        }
+
+        /**
+         * Adds a value slot that, when typed, renders as a typed literal such as DATE '2024-01-01'
+         * rather than a plain quoted string. Parameters are already typed, so the parameterized
+         * form is unchanged.
+         */
+        public Builder slot(String type, boolean typedLiteral) {
+            segments.add(current.toString());
+            slotTypes.add(type);
+            literalPrefixes.add(typedLiteral ? type + " " : null);
+            current = new StringBuilder();
+            return this;
+        }
+
+        public Builder warn(String warning) {
+            warnings.add(warning);
+            return this;
+        }
+
+        public QueryPlan build() {
+            List<String> all = new ArrayList<>(segments);
+            all.add(current.toString());
+            return new QueryPlan(all, slotTypes, literalPrefixes, warnings);
+        }
+    }
+}
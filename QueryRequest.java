@@ -0,0 +1,281 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Typed form of a report request as sent to the SQL generators.
+ * Instances are created by QueryRequestParser and are immutable.
+ */
+public final class QueryRequest {
+    private final String tableName;
+    private final List<Column> columns;
+    private final List<Join> joins;
+    private final List<Filter> filters;  // Top-level filters, combined with AND
+    private final List<String> groupBy;
+    private final OrderBy orderBy;
+    private final String scheduledExpression;
+    private final Page page;  // Null unless the caller wants one page of the result
+
+    public QueryRequest(String tableName, List<Column> columns, List<Join> joins, List<Filter> filters,
+                        List<String> groupBy, OrderBy orderBy, String scheduledExpression) {
+        this(tableName, columns, joins, filters, groupBy, orderBy, scheduledExpression, null);
+    }
+
+    public QueryRequest(String tableName, List<Column> columns, List<Join> joins, List<Filter> filters,
+                        List<String> groupBy, OrderBy orderBy, String scheduledExpression, Page page) {
+        this.tableName = tableName;
+        this.columns = immutable(columns);
+        this.joins = immutable(joins);
+        this.filters = immutable(filters);
+        this.groupBy = immutable(groupBy);
+        this.orderBy = orderBy;
+        this.scheduledExpression = scheduledExpression;
+        this.page = page;
+    }
+
+    private static <T> List<T> immutable(List<T> list) {
+        return list == null ? Collections.emptyList() : Collections.unmodifiableList(list);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    public List<Join> getJoins() {
+        return joins;
+    }
+
+    public List<Filter> getFilters() {
+        return filters;
+    }
+
+    public List<String> getGroupBy() {
+        return groupBy;
+    }
+
+    public OrderBy getOrderBy() {
+        return orderBy;
+    }
+
+    public String getScheduledExpression() {
+        return scheduledExpression;
+    }
+
+    public Page getPage() {
+        return page;
+    }
+
+    /**
+     * Returns a copy of this request with the top-level filters replaced.
+     */
+    public QueryRequest withFilters(List<Filter> newFilters) {
+        return new QueryRequest(tableName, columns, joins, newFilters, groupBy, orderBy, scheduledExpression, page);
+    }
+
+    /**
+     * Returns a copy of this request asking for the given page, e.g. the next one.
+     */
+    public QueryRequest withPage(Page newPage) {
+        return new QueryRequest(tableName, columns, joins, filters, groupBy, orderBy, scheduledExpression, newPage);
+    }
+
+    /**
+     * A selected column with an optional aggregation.
+     */
+    public static final class Column {
+        private final String name;
+        private final String aggregation;
+
+        public Column(String name, String aggregation) {
+            this.name = name;
+            this.aggregation = aggregation;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getAggregation() {
+            return aggregation;
+        }
+    }
+
+    /**
+     * A join, either with structured "on" columns or with a raw condition string.
+     */
+    public static final class Join {
+        private final String joinType;
+        private final String tableName;
+        private final String leftColumn;
+        private final String rightColumn;
+        private final String condition;
+
+        public Join(String joinType, String tableName, String leftColumn, String rightColumn, String condition) {
+            this.joinType = joinType;
+            this.tableName = tableName;
+            this.leftColumn = leftColumn;
+            this.rightColumn = rightColumn;
+            this.condition = condition;
+        }
+
+        public String getJoinType() {
+            return joinType;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public String getLeftColumn() {
+            return leftColumn;
+        }
+
+        public String getRightColumn() {
+            return rightColumn;
+        }
+
+        public String getCondition() {
+            return condition;
+        }
+    }
+
+    public static final class OrderBy {
+        private final String column;
+        private final String direction;
+
+        public OrderBy(String column, String direction) {
+            this.column = column;
+            this.direction = direction;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public String getDirection() {
+            return direction;
+        }
+    }
+
+    /**
+     * One page of the result: at most "size" rows, starting after the row the continuation
+     * token points at. A page without a token is the first page.
+     */
+    public static final class Page {
+        private final int size;
+        private final String token;
+
+        public Page(int size, String token) {
+            this.size = size;
+            this.token = token;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public String getToken() {
+            return token;
+        }
+    }
+
+    /**
+     * Base type of the filter tree.
+     */
+    public abstract static class Filter {
+    }
+
+    /**
+     * An AND/OR group. Rendered in parentheses with its children joined by the operator.
+     */
+    public static final class Logical extends Filter {
+        private final String operator;
+        private final List<Filter> children;
+
+        public Logical(String operator, List<Filter> children) {
+            this.operator = operator;
+            this.children = Collections.unmodifiableList(children);
+        }
+
+        public String getOperator() {
+            return operator;
+        }
+
+        public List<Filter> getChildren() {
+            return children;
+        }
+    }
+
+    /**
+     * An inclusive date range on a single column.
+     */
+    public static final class DateRange extends Filter {
+        private final String column;
+        private final String startDate;
+        private final String endDate;
+
+        public DateRange(String column, String startDate, String endDate) {
+            this.column = column;
+            this.startDate = startDate;
+            this.endDate = endDate;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public String getStartDate() {
+            return startDate;
+        }
+
+        public String getEndDate() {
+            return endDate;
+        }
+    }
+
+    /**
+     * A membership predicate on a single column. Produced by FilterOptimizer when it folds
+     * equality predicates on the same column under an OR.
+     */
+    public static final class In extends Filter {
+        private final String column;
+        private final List<String> values;
+
+        public In(String column, List<String> values) {
+            this.column = column;
+            this.values = Collections.unmodifiableList(values);
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public List<String> getValues() {
+            return values;
+        }
+    }
+
+    /**
+     * An equality predicate, e.g. {"region": "North America"}.
+     */
+    public static final class Equals extends Filter {
+        private final String column;
+        private final String value;
+
+        public Equals(String column, String value) {
+            this.column = column;
+            this.value = value;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a report request into a QueryRequest in a single pass over the JSON tokens,
+ * without building an intermediate Map tree. Malformed requests are rejected with an
+ * IllegalArgumentException as soon as the offending token is reached.
+ */
+public final class QueryRequestParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private QueryRequestParser() {
+    }
+
+    public static QueryRequest parse(String json) {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            return readRequest(parser);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed request JSON: " + e.getMessage(), e);
+        }
+    }
+
+    public static QueryRequest parse(InputStream json) {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            return readRequest(parser);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed request JSON: " + e.getMessage(), e);
+        }
+    }
+
+    private static QueryRequest readRequest(JsonParser parser) throws IOException {
+        expect(parser, parser.nextToken(), JsonToken.START_OBJECT, "request");
+
+        String tableName = null;
+        List<QueryRequest.Column> columns = null;
+        List<QueryRequest.Join> joins = null;
+        List<QueryRequest.Filter> filters = null;
+        List<String> groupBy = null;
+        QueryRequest.OrderBy orderBy = null;
+        String scheduledExpression = null;
+        QueryRequest.Page page = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+
+            switch (field) {
+                case "tableName":
+                    tableName = readString(parser, token, field);
+                    break;
+                case "columns":
+                    columns = readColumns(parser, token);
+                    break;
+                case "joins":
+                    joins = readJoins(parser, token);
+                    break;
+                case "filters":
+                    expect(parser, token, JsonToken.START_OBJECT, field);
+                    filters = new ArrayList<>();
+                    readFilterObject(parser, filters);
+                    break;
+                case "groupBy":
+                    groupBy = readStringArray(parser, token, field);
+                    break;
+                case "orderBy":
+                    orderBy = readOrderBy(parser, token);
+                    break;
+                case "scheduledExpression":
+                    scheduledExpression = readString(parser, token, field);
+                    break;
+                case "page":
+                    page = readPage(parser, token);
+                    break;
+                default:
+                    // Fields the generators do not use are skipped without being materialized
+                    parser.skipChildren();
+            }
+        }
+
+        if (parser.nextToken() != null) {
+            throw new IllegalArgumentException("Unexpected content after the request object.");
+        }
+        if (tableName == null) {
+            throw new IllegalArgumentException("Table name is required.");
+        }
+        return new QueryRequest(tableName, columns, joins, filters, groupBy, orderBy, scheduledExpression, page);
+    }
+
+    // Columns are either {"name": ..., "aggregation": ...} objects or plain column names
+    private static List<QueryRequest.Column> readColumns(JsonParser parser, JsonToken token) throws IOException {
+        expect(parser, token, JsonToken.START_ARRAY, "columns");
+        List<QueryRequest.Column> columns = new ArrayList<>();
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.VALUE_STRING) {
+                columns.add(new QueryRequest.Column(parser.getText(), null));
+                continue;
+            }
+            expect(parser, token, JsonToken.START_OBJECT, "column");
+            String name = null;
+            String aggregation = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                token = parser.nextToken();
+                if ("name".equals(field)) {
+                    name = readNullableString(parser, token, field);
+                } else if ("aggregation".equals(field)) {
+                    aggregation = readNullableString(parser, token, field);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (name == null) {
+                throw new IllegalArgumentException("Column name is required.");
+            }
+            columns.add(new QueryRequest.Column(name, aggregation));
+        }
+        return columns;
+    }
+
+    // Joins use either joinType/tableName/on or the shorter type/table/condition form
+    private static List<QueryRequest.Join> readJoins(JsonParser parser, JsonToken token) throws IOException {
+        expect(parser, token, JsonToken.START_ARRAY, "joins");
+        List<QueryRequest.Join> joins = new ArrayList<>();
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            expect(parser, token, JsonToken.START_OBJECT, "join");
+            String joinType = null;
+            String tableName = null;
+            String leftColumn = null;
+            String rightColumn = null;
+            String condition = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                token = parser.nextToken();
+                switch (field) {
+                    case "joinType":
+                    case "type":
+                        joinType = readNullableString(parser, token, field);
+                        break;
+                    case "tableName":
+                    case "table":
+                        tableName = readNullableString(parser, token, field);
+                        break;
+                    case "condition":
+                        condition = readNullableString(parser, token, field);
+                        break;
+                    case "on":
+                        expect(parser, token, JsonToken.START_OBJECT, field);
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String onField = parser.getCurrentName();
+                            token = parser.nextToken();
+                            if ("leftColumn".equals(onField)) {
+                                leftColumn = readNullableString(parser, token, onField);
+                            } else if ("rightColumn".equals(onField)) {
+                                rightColumn = readNullableString(parser, token, onField);
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            if (tableName == null) {
+                throw new IllegalArgumentException("Join table name is required.");
+            }
+            joins.add(new QueryRequest.Join(joinType, tableName, leftColumn, rightColumn, condition));
+        }
+        return joins;
+    }
+
+    /**
+     * Reads the entries of one filter object into the given list.
+     * Every key is a predicate; "AND"/"OR" hold a list of nested filter objects.
+     */
+    private static void readFilterObject(JsonParser parser, List<QueryRequest.Filter> out) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+
+            if (key.equals("AND") || key.equals("OR")) {
+                expect(parser, token, JsonToken.START_ARRAY, key);
+                List<QueryRequest.Filter> children = new ArrayList<>();
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    expect(parser, token, JsonToken.START_OBJECT, key + " condition");
+                    int before = children.size();
+                    readFilterObject(parser, children);
+                    if (children.size() == before) {
+                        throw new IllegalArgumentException("Empty condition in '" + key + "' filter.");
+                    }
+                }
+                if (children.isEmpty()) {
+                    throw new IllegalArgumentException("Condition list for '" + key + "' must not be empty.");
+                }
+                out.add(new QueryRequest.Logical(key, children));
+            } else if (key.equals("dateRange")) {
+                expect(parser, token, JsonToken.START_OBJECT, key);
+                String column = null;
+                String startDate = null;
+                String endDate = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    token = parser.nextToken();
+                    if ("column".equals(field)) {
+                        column = readNullableString(parser, token, field);
+                    } else if ("startDate".equals(field)) {
+                        startDate = readNullableString(parser, token, field);
+                    } else if ("endDate".equals(field)) {
+                        endDate = readNullableString(parser, token, field);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (column == null || startDate == null || endDate == null) {
+                    throw new IllegalArgumentException("dateRange requires column, startDate and endDate.");
+                }
+                out.add(new QueryRequest.DateRange(column, startDate, endDate));
+            } else {
+                if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                    throw new IllegalArgumentException("Filter value for '" + key + "' must be a scalar.");
+                }
+                out.add(new QueryRequest.Equals(key, token == JsonToken.VALUE_NULL ? "null" : parser.getText()));
+            }
+        }
+    }
+
+    private static QueryRequest.OrderBy readOrderBy(JsonParser parser, JsonToken token) throws IOException {
+        expect(parser, token, JsonToken.START_OBJECT, "orderBy");
+        String column = null;
+        String direction = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            token = parser.nextToken();
+            if ("column".equals(field)) {
+                column = readNullableString(parser, token, field);
+            } else if ("direction".equals(field)) {
+                direction = readNullableString(parser, token, field);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new QueryRequest.OrderBy(column, direction);
+    }
+
+    // {"size": 100, "token": "..."}; the token is omitted for the first page
+    private static QueryRequest.Page readPage(JsonParser parser, JsonToken token) throws IOException {
+        expect(parser, token, JsonToken.START_OBJECT, "page");
+        Integer size = null;
+        String pageToken = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            token = parser.nextToken();
+            if ("size".equals(field)) {
+                expect(parser, token, JsonToken.VALUE_NUMBER_INT, field);
+                size = parser.getIntValue();
+            } else if ("token".equals(field)) {
+                pageToken = readNullableString(parser, token, field);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return page(size, pageToken);
+    }
+
+    private static QueryRequest.Page page(Integer size, String token) {
+        if (size == null || size <= 0) {
+            throw new IllegalArgumentException("Page size must be a positive number.");
+        }
+        return new QueryRequest.Page(size, token);
+    }
+
+    private static List<String> readStringArray(JsonParser parser, JsonToken token, String field) throws IOException {
+        expect(parser, token, JsonToken.START_ARRAY, field);
+        List<String> values = new ArrayList<>();
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            values.add(readString(parser, token, field));
+        }
+        return values;
+    }
+
+    private static String readString(JsonParser parser, JsonToken token, String field) throws IOException {
+        expect(parser, token, JsonToken.VALUE_STRING, field);
+        return parser.getText();
+    }
+
+    private static String readNullableString(JsonParser parser, JsonToken token, String field) throws IOException {
+        return token == JsonToken.VALUE_NULL ? null : readString(parser, token, field);
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected, String field) {
+        if (actual != expected) {
+            throw new IllegalArgumentException("Expected " + describe(expected) + " for '" + field + "' but found "
+                    + describe(actual) + " at " + parser.getCurrentLocation().getLineNr() + ":" + parser.getCurrentLocation().getColumnNr() + ".");
+        }
+    }
+
+    private static String describe(JsonToken token) {
+        if (token == null) {
+            return "end of input";
+        }
+        switch (token) {
+            case START_OBJECT:
+                return "an object";
+            case START_ARRAY:
+                return "an array";
+            case VALUE_STRING:
+                return "a string";
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return "a number";
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return "a boolean";
+            default:
+                return token.asString() != null ? "'" + token.asString() + "'" : token.name().toLowerCase();
+        }
+    }
+
+    /**
+     * Builds a QueryRequest from an already deserialized request, e.g. a Lambda event map.
+     * Applies the same structural rules as the streaming reader.
+     */
+    public static QueryRequest fromMap(Map<String, Object> jsonMap) {
+        try {
+            String tableName = (String) jsonMap.get("tableName");
+            if (tableName == null) {
+                throw new IllegalArgumentException("Table name is required.");
+            }
+
+            List<QueryRequest.Column> columns = null;
+            List<Object> columnList = (List<Object>) jsonMap.get("columns");
+            if (columnList != null) {
+                columns = new ArrayList<>();
+                for (Object column : columnList) {
+                    if (column instanceof String) {
+                        columns.add(new QueryRequest.Column((String) column, null));
+                    } else {
+                        Map<String, String> columnMap = (Map<String, String>) column;
+                        if (columnMap.get("name") == null) {
+                            throw new IllegalArgumentException("Column name is required.");
+                        }
+                        columns.add(new QueryRequest.Column(columnMap.get("name"), columnMap.get("aggregation")));
+                    }
+                }
+            }
+
+            List<QueryRequest.Join> joins = null;
+            List<Map<String, Object>> joinList = (List<Map<String, Object>>) jsonMap.get("joins");
+            if (joinList != null) {
+                joins = new ArrayList<>();
+                for (Map<String, Object> join : joinList) {
+                    String joinTable = (String) firstNonNull(join.get("tableName"), join.get("table"));
+                    if (joinTable == null) {
+                        throw new IllegalArgumentException("Join table name is required.");
+                    }
+                    Map<String, String> onClause = (Map<String, String>) join.get("on");
+                    joins.add(new QueryRequest.Join(
+                            (String) firstNonNull(join.get("joinType"), join.get("type")),
+                            joinTable,
+                            onClause == null ? null : onClause.get("leftColumn"),
+                            onClause == null ? null : onClause.get("rightColumn"),
+                            (String) join.get("condition")));
+                }
+            }
+
+            List<QueryRequest.Filter> filters = null;
+            Map<String, Object> filterMap = (Map<String, Object>) jsonMap.get("filters");
+            if (filterMap != null) {
+                filters = new ArrayList<>();
+                readFilterMap(filterMap, filters);
+            }
+
+            QueryRequest.OrderBy orderBy = null;
+            Map<String, String> orderByMap = (Map<String, String>) jsonMap.get("orderBy");
+            if (orderByMap != null) {
+                orderBy = new QueryRequest.OrderBy(orderByMap.get("column"), orderByMap.get("direction"));
+            }
+
+            QueryRequest.Page page = null;
+            Map<String, Object> pageMap = (Map<String, Object>) jsonMap.get("page");
+            if (pageMap != null) {
+                Number size = (Number) pageMap.get("size");
+                page = page(size == null ? null : size.intValue(), (String) pageMap.get("token"));
+            }
+
+            return new QueryRequest(tableName, columns, joins, filters, (List<String>) jsonMap.get("groupBy"),
+                    orderBy, (String) jsonMap.get("scheduledExpression"), page);
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException("Malformed request: " + e.getMessage(), e);
+        }
+    }
+
+    private static void readFilterMap(Map<String, Object> condition, List<QueryRequest.Filter> out) {
+        for (Map.Entry<String, Object> entry : condition.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+
+            if (key.equals("AND") || key.equals("OR")) {
+                List<QueryRequest.Filter> children = new ArrayList<>();
+                for (Map<String, Object> subCondition : (List<Map<String, Object>>) value) {
+                    if (subCondition.isEmpty()) {
+                        throw new IllegalArgumentException("Empty condition in '" + key + "' filter.");
+                    }
+                    readFilterMap(subCondition, children);
+                }
+                if (children.isEmpty()) {
+                    throw new IllegalArgumentException("Condition list for '" + key + "' must not be empty.");
+                }
+                out.add(new QueryRequest.Logical(key, children));
+            } else if (key.equals("dateRange")) {
+                Map<String, String> dateRange = (Map<String, String>) value;
+                if (dateRange.get("column") == null || dateRange.get("startDate") == null || dateRange.get("endDate") == null) {
+                    throw new IllegalArgumentException("dateRange requires column, startDate and endDate.");
+                }
+                out.add(new QueryRequest.DateRange(dateRange.get("column"), dateRange.get("startDate"), dateRange.get("endDate")));
+            } else {
+                if (value instanceof Map || value instanceof List) {
+                    throw new IllegalArgumentException("Filter value for '" + key + "' must be a scalar.");
+                }
+                out.add(new QueryRequest.Equals(key, String.valueOf(value)));
+            }
+        }
+    }
+
+    private static Object firstNonNull(Object first, Object second) {
+        return first != null ? first : second;
+    }
+}
@@ -0,0 +1,94 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class QueryRequestParserTest {
+
+    private static final String SAMPLE_REQUEST = "{"
+            + "\"tableName\": \"sales\","
+            + "\"columns\": [{\"name\": \"product_name\", \"aggregation\": null}, {\"name\": \"total_sales\", \"aggregation\": \"SUM\"}],"
+            + "\"joins\": [{\"joinType\": \"INNER\", \"tableName\": \"regions\", \"on\": {\"leftColumn\": \"sales.region_id\", \"rightColumn\": \"regions.id\"}}],"
+            + "\"filters\": {\"AND\": [{\"dateRange\": {\"column\": \"sales_date\", \"startDate\": \"2024-01-01\", \"endDate\": \"2024-12-31\"}},"
+            + "                       {\"OR\": [{\"productCategory\": \"Electronics\"}, {\"region\": \"North America\"}]}]},"
+            + "\"groupBy\": [\"product_name\"],"
+            + "\"orderBy\": {\"column\": \"total_sales\", \"direction\": \"DESC\"},"
+            + "\"scheduledExpression\": \"rate(1 day)\","
+            + "\"ignored\": {\"nested\": [1, 2, 3]}"
+            + "}";
+
+    @Test
+    public void testParseSampleRequest() {
+        QueryRequest request = QueryRequestParser.parse(SAMPLE_REQUEST);
+
+        assertEquals("sales", request.getTableName());
+        assertEquals(2, request.getColumns().size());
+        assertNull(request.getColumns().get(0).getAggregation());
+        assertEquals("SUM", request.getColumns().get(1).getAggregation());
+        assertEquals("regions.id", request.getJoins().get(0).getRightColumn());
+        assertEquals(List.of("product_name"), request.getGroupBy());
+        assertEquals("DESC", request.getOrderBy().getDirection());
+        assertEquals("rate(1 day)", request.getScheduledExpression());
+
+        QueryRequest.Logical and = (QueryRequest.Logical) request.getFilters().get(0);
+        assertEquals("AND", and.getOperator());
+        QueryRequest.DateRange dateRange = (QueryRequest.DateRange) and.getChildren().get(0);
+        assertEquals("2024-12-31", dateRange.getEndDate());
+        QueryRequest.Logical or = (QueryRequest.Logical) and.getChildren().get(1);
+        assertEquals("region", ((QueryRequest.Equals) or.getChildren().get(1)).getColumn());
+    }
+
+    @Test
+    public void testParseMatchesFromMap() {
+        Map<String, Object> jsonMap = Map.of(
+            "tableName", "sales",
+            "columns", List.of("product_name"),
+            "filters", Map.of("OR", List.of(Map.of("region", "A"), Map.of("region", "B")))
+        );
+
+        QueryRequest fromMap = QueryRequestParser.fromMap(jsonMap);
+        QueryRequest parsed = QueryRequestParser.parse(
+            "{\"tableName\": \"sales\", \"columns\": [\"product_name\"], \"filters\": {\"OR\": [{\"region\": \"A\"}, {\"region\": \"B\"}]}}");
+
+        assertEquals(parsed.getColumns().get(0).getName(), fromMap.getColumns().get(0).getName());
+        QueryRequest.Logical mapOr = (QueryRequest.Logical) fromMap.getFilters().get(0);
+        QueryRequest.Logical parsedOr = (QueryRequest.Logical) parsed.getFilters().get(0);
+        assertEquals(parsedOr.getChildren().size(), mapOr.getChildren().size());
+    }
+
+    @Test
+    public void testNonStringValuesKeepTheirText() {
+        QueryRequest request = QueryRequestParser.parse(
+            "{\"tableName\": \"sales\", \"filters\": {\"product_id\": 42, \"active\": true, \"region\": null}}");
+
+        assertEquals("42", ((QueryRequest.Equals) request.getFilters().get(0)).getValue());
+        assertEquals("true", ((QueryRequest.Equals) request.getFilters().get(1)).getValue());
+        assertEquals("null", ((QueryRequest.Equals) request.getFilters().get(2)).getValue());
+    }
+
+    @Test
+    public void testRejectsMalformedRequests() {
+        assertThrows(IllegalArgumentException.class, () -> QueryRequestParser.parse("[]"));
+        assertThrows(IllegalArgumentException.class, () -> QueryRequestParser.parse("{\"columns\": []}"));
+        assertThrows(IllegalArgumentException.class, () -> QueryRequestParser.parse("{\"tableName\": 7}"));
+        assertThrows(IllegalArgumentException.class, () -> QueryRequestParser.parse("{\"tableName\": \"sales\"} trailing"));
+        assertThrows(IllegalArgumentException.class, () -> QueryRequestParser.parse("{\"tableName\": \"sales\", \"filters\": {\"OR\": []}}"));
+        assertThrows(IllegalArgumentException.class, () -> QueryRequestParser.parse("{\"tableName\": \"sales\", \"filters\": {\"region\": [\"A\"]}}"));
+        assertThrows(IllegalArgumentException.class, () -> QueryRequestParser.parse("{\"tableName\": \"sales\", \"filters\": {\"dateRange\": {\"column\": \"sales_date\"}}}"));
+        assertThrows(IllegalArgumentException.class, () -> QueryRequestParser.parse("{\"tableName\": \"sales\", \"page\": {\"size\": 0}}"));
+    }
+
+    @Test
+    public void testParsePage() {
+        QueryRequest parsed = QueryRequestParser.parse("{\"tableName\": \"sales\", \"page\": {\"size\": 50, \"token\": \"abc\"}}");
+        QueryRequest fromMap = QueryRequestParser.fromMap(Map.of("tableName", "sales", "page", Map.of("size", 50)));
+
+        assertEquals(50, parsed.getPage().getSize());
+        assertEquals("abc", parsed.getPage().getToken());
+        assertEquals(50, fromMap.getPage().getSize());
+        assertNull(fromMap.getPage().getToken());
+        assertNull(QueryRequestParser.parse("{\"tableName\": \"sales\"}").getPage());
+    }
+}
@@ -0,0 +1,74 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+public class ReportLambdaTest {
+
+    // ReportLambda as it rendered before SqlWriter, kept to check the output has not changed
+    private static String legacySql(Map<String, Object> input) {
+        List<String> columns = (List<String>) input.get("columns");
+        List<Map<String, String>> joins = (List<Map<String, String>>) input.get("joins");
+        Map<String, Object> filters = (Map<String, Object>) input.get("filters");
+        List<String> groupBy = (List<String>) input.get("groupBy");
+        Map<String, String> orderBy = (Map<String, String>) input.get("orderBy");
+
+        StringBuilder sql = new StringBuilder("SELECT ")
+            .append(columns.stream().collect(Collectors.joining(", ")))
+            .append(" FROM ").append(input.get("tableName"));
+        Optional.ofNullable(joins).ifPresent(j -> sql.append(" ").append(j.stream()
+            .map(join -> Optional.ofNullable(join.get("type")).orElse("INNER") + " JOIN " + join.get("table") + " ON " + join.get("condition"))
+            .collect(Collectors.joining(" "))));
+        Optional.ofNullable(filters).ifPresent(f -> {
+            List<String> conditions = new ArrayList<>();
+            Optional.ofNullable((Map<String, String>) f.get("dateRange")).ifPresent(range -> conditions.add(
+                    range.get("column") + " BETWEEN '" + range.get("startDate") + "' AND '" + range.get("endDate") + "'"));
+            Optional.ofNullable(f.get("productCategory")).ifPresent(category -> conditions.add("productCategory = '" + category + "'"));
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        });
+        Optional.ofNullable(groupBy).ifPresent(g -> sql.append(" GROUP BY ").append(String.join(", ", g)));
+        Optional.ofNullable(orderBy).ifPresent(o -> sql.append(" ORDER BY ").append(o.get("column")).append(" ").append(o.get("direction")));
+        return sql.toString();
+    }
+
+    @Test
+    public void testMatchesTheLegacyRenderer() {
+        List<Map<String, Object>> inputs = List.of(
+            Map.of("tableName", "sales",
+                   "columns", List.of("region", "SUM(total_sales) AS total"),
+                   "groupBy", List.of("region"),
+                   "orderBy", Map.of("column", "total", "direction", "DESC")),
+            Map.of("tableName", "sales s",
+                   "columns", List.of("s.region", "r.name", "COUNT(*)"),
+                   "joins", List.of(Map.of("type", "LEFT", "table", "regions r", "condition", "s.region_id = r.id")),
+                   "filters", Map.of(
+                           "dateRange", Map.of("column", "s.sales_date", "startDate", "2024-01-01", "endDate", "2024-12-31"),
+                           "productCategory", "Electronics"),
+                   "groupBy", List.of("s.region", "r.name"),
+                   "orderBy", Map.of("column", "COUNT(*)", "direction", "ASC")),
+            Map.of("tableName", "main.reporting.sales",
+                   "columns", List.of("*"),
+                   "joins", List.of(Map.of("table", "regions", "condition", "sales.region_id = regions.id")),
+                   "filters", Map.of("productCategory", "Home & Garden")));
+
+        ReportLambda reportLambda = new ReportLambda();
+        for (Map<String, Object> input : inputs) {
+            assertEquals(legacySql(input), reportLambda.generateSqlFromInput(input, Map.of()));
+        }
+    }
+
+    @Test
+    public void testFilterValuesAreStillEscaped() {
+        Map<String, Object> input = Map.of("tableName", "sales",
+                "columns", List.of("region"),
+                "filters", Map.of("productCategory", "x\\' OR 1=1 --"));
+
+        assertEquals("SELECT region FROM sales WHERE productCategory = 'x\\\\'' OR 1=1 --'",
+                new ReportLambda().generateSqlFromInput(input, Map.of()));
+    }
+}
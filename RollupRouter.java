@@ -0,0 +1,229 @@
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Redirects aggregate requests from a fact table to the smallest of its rollups (declared
+ * in config.json, see SchemaCatalog) that can answer them with the same result. A rollup
+ * covers a request when, for every base-table column the request uses:
+ * - selected, grouped, joined or compared for equality: the column is a rollup key
+ * - aggregated: the column is a rollup measure with that aggregation
+ * - filtered by a date range: the column is a key, and the range is aligned to the grain
+ * Columns of joined tables are not affected, and the join stays in place. Requests that
+ * aggregate nothing, ask for a page, or use a raw join condition are left on the base table.
+ */
+public final class RollupRouter {
+
+    private RollupRouter() {
+    }
+
+    /**
+     * Returns the request rewritten to read from the smallest covering rollup, or the request
+     * itself if there is none.
+     */
+    public static QueryRequest route(QueryRequest request, SchemaCatalog catalog) {
+        SchemaCatalog.Table base = catalog.getTable(request.getTableName());
+        if (base == null || base.getRollups().isEmpty() || request.getPage() != null || !isAggregated(request)) {
+            return request;
+        }
+        for (SchemaCatalog.Rollup rollup : base.getRollups()) {
+            if (covers(rollup, request, catalog)) {
+                return rewrite(request, rollup);
+            }
+        }
+        return request;
+    }
+
+    private static boolean isAggregated(QueryRequest request) {
+        for (QueryRequest.Column column : request.getColumns()) {
+            if (column.getAggregation() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean covers(SchemaCatalog.Rollup rollup, QueryRequest request, SchemaCatalog catalog) {
+        SchemaCatalog.Table base = rollup.getBaseTable();
+
+        for (QueryRequest.Column requested : request.getColumns()) {
+            SchemaCatalog.Column column = resolve(request, catalog, requested.getName());
+            if (column == null) {
+                return false;
+            }
+            if (column.getTable() != base) {
+                continue;
+            }
+            if (requested.getAggregation() == null ? !isExactKey(rollup, column) : !isMeasure(rollup, catalog, column, requested.getAggregation())) {
+                return false;
+            }
+        }
+
+        for (String group : request.getGroupBy()) {
+            if (!coversExactly(rollup, request, catalog, group)) {
+                return false;
+            }
+        }
+
+        QueryRequest.OrderBy orderBy = request.getOrderBy();
+        if (orderBy != null && orderBy.getColumn() != null) {
+            SchemaCatalog.Column column = resolve(request, catalog, orderBy.getColumn());
+            if (column == null || (column.getTable() == base && !isExactKey(rollup, column)
+                    && (rollup.getColumn(column) == null || rollup.isKey(column)))) {
+                return false;
+            }
+        }
+
+        for (QueryRequest.Join join : request.getJoins()) {
+            if (join.getLeftColumn() == null || join.getRightColumn() == null
+                    || !coversExactly(rollup, request, catalog, join.getLeftColumn())
+                    || !coversExactly(rollup, request, catalog, join.getRightColumn())) {
+                return false;
+            }
+        }
+
+        return coversFilters(rollup, request, catalog, request.getFilters());
+    }
+
+    private static boolean coversFilters(SchemaCatalog.Rollup rollup, QueryRequest request, SchemaCatalog catalog,
+                                         List<QueryRequest.Filter> filters) {
+        for (QueryRequest.Filter filter : filters) {
+            boolean covered;
+            if (filter instanceof QueryRequest.Logical) {
+                covered = coversFilters(rollup, request, catalog, ((QueryRequest.Logical) filter).getChildren());
+            } else if (filter instanceof QueryRequest.DateRange) {
+                QueryRequest.DateRange dateRange = (QueryRequest.DateRange) filter;
+                SchemaCatalog.Column column = resolve(request, catalog, dateRange.getColumn());
+                covered = column != null && (column.getTable() != rollup.getBaseTable() || isExactKey(rollup, column)
+                        || (rollup.isKey(column) && "DATE".equals(column.getType())
+                            && isAligned(dateRange.getStartDate(), dateRange.getEndDate(), rollup.getGrain())));
+            } else if (filter instanceof QueryRequest.In) {
+                covered = coversExactly(rollup, request, catalog, ((QueryRequest.In) filter).getColumn());
+            } else {
+                covered = coversExactly(rollup, request, catalog, ((QueryRequest.Equals) filter).getColumn());
+            }
+            if (!covered) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // True for columns of joined tables and for base columns the rollup keeps with their exact values
+    private static boolean coversExactly(SchemaCatalog.Rollup rollup, QueryRequest request, SchemaCatalog catalog, String columnName) {
+        SchemaCatalog.Column column = resolve(request, catalog, columnName);
+        return column != null && (column.getTable() != rollup.getBaseTable() || isExactKey(rollup, column));
+    }
+
+    /**
+     * Returns true if the rollup holds the column's values unchanged: a key that is not a
+     * date, or a DATE key of a daily rollup. Coarser date keys hold truncated values.
+     */
+    private static boolean isExactKey(SchemaCatalog.Rollup rollup, SchemaCatalog.Column column) {
+        if (!rollup.isKey(column)) {
+            return false;
+        }
+        return !column.isTemporal() || ("DATE".equals(column.getType()) && "DAY".equals(rollup.getGrain()));
+    }
+
+    private static boolean isMeasure(SchemaCatalog.Rollup rollup, SchemaCatalog catalog, SchemaCatalog.Column column, String aggregation) {
+        SchemaCatalog.Column rollupColumn = rollup.getColumn(column);
+        return rollupColumn != null && !rollup.isKey(column) && catalog.supportsAggregation(rollupColumn, aggregation);
+    }
+
+    /**
+     * Returns true if the inclusive range starts and ends on the boundaries of the grain.
+     */
+    private static boolean isAligned(String startDate, String endDate, String grain) {
+        try {
+            LocalDate start = LocalDate.parse(startDate);
+            LocalDate end = LocalDate.parse(endDate);
+            switch (grain) {
+                case "DAY":
+                    return true;
+                case "MONTH":
+                    return start.getDayOfMonth() == 1 && end.getDayOfMonth() == end.lengthOfMonth();
+                default:
+                    return start.getDayOfYear() == 1 && end.getDayOfYear() == end.lengthOfYear();
+            }
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Resolves a column name the way the generator does: "table.column" first, then the
+     * request's table, then its joined tables. Returns null for unknown columns.
+     */
+    private static SchemaCatalog.Column resolve(QueryRequest request, SchemaCatalog catalog, String columnName) {
+        SchemaCatalog.Column column = catalog.getQualifiedColumn(columnName);
+        if (column != null) {
+            return column;
+        }
+        SchemaCatalog.Table table = catalog.getTable(request.getTableName());
+        if (table != null && table.getColumn(columnName) != null) {
+            return table.getColumn(columnName);
+        }
+        for (QueryRequest.Join join : request.getJoins()) {
+            SchemaCatalog.Table joinTable = catalog.getTable(join.getTableName());
+            if (joinTable != null && joinTable.getColumn(columnName) != null) {
+                return joinTable.getColumn(columnName);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Points the request at the rollup. Rollup columns keep their base names, so only the
+     * table name and names qualified with it change.
+     */
+    private static QueryRequest rewrite(QueryRequest request, SchemaCatalog.Rollup rollup) {
+        String prefix = rollup.getBaseTable().getName() + ".";
+        String rollupName = rollup.getTable().getName();
+
+        List<QueryRequest.Column> columns = new ArrayList<>();
+        for (QueryRequest.Column column : request.getColumns()) {
+            columns.add(new QueryRequest.Column(rename(column.getName(), prefix, rollupName), column.getAggregation()));
+        }
+        List<QueryRequest.Join> joins = new ArrayList<>();
+        for (QueryRequest.Join join : request.getJoins()) {
+            joins.add(new QueryRequest.Join(join.getJoinType(), join.getTableName(),
+                    rename(join.getLeftColumn(), prefix, rollupName), rename(join.getRightColumn(), prefix, rollupName), join.getCondition()));
+        }
+        List<String> groupBy = new ArrayList<>();
+        for (String group : request.getGroupBy()) {
+            groupBy.add(rename(group, prefix, rollupName));
+        }
+        QueryRequest.OrderBy orderBy = request.getOrderBy() == null ? null
+                : new QueryRequest.OrderBy(rename(request.getOrderBy().getColumn(), prefix, rollupName), request.getOrderBy().getDirection());
+
+        return new QueryRequest(rollupName, columns, joins, renameFilters(request.getFilters(), prefix, rollupName),
+                groupBy, orderBy, request.getScheduledExpression(), request.getPage());
+    }
+
+    private static List<QueryRequest.Filter> renameFilters(List<QueryRequest.Filter> filters, String prefix, String rollupName) {
+        List<QueryRequest.Filter> renamed = new ArrayList<>(filters.size());
+        for (QueryRequest.Filter filter : filters) {
+            if (filter instanceof QueryRequest.Logical) {
+                QueryRequest.Logical logical = (QueryRequest.Logical) filter;
+                renamed.add(new QueryRequest.Logical(logical.getOperator(), renameFilters(logical.getChildren(), prefix, rollupName)));
+            } else if (filter instanceof QueryRequest.DateRange) {
+                QueryRequest.DateRange dateRange = (QueryRequest.DateRange) filter;
+                renamed.add(new QueryRequest.DateRange(rename(dateRange.getColumn(), prefix, rollupName),
+                        dateRange.getStartDate(), dateRange.getEndDate()));
+            } else if (filter instanceof QueryRequest.In) {
+                QueryRequest.In in = (QueryRequest.In) filter;
+                renamed.add(new QueryRequest.In(rename(in.getColumn(), prefix, rollupName), in.getValues()));
+            } else {
+                QueryRequest.Equals equals = (QueryRequest.Equals) filter;
+                renamed.add(new QueryRequest.Equals(rename(equals.getColumn(), prefix, rollupName), equals.getValue()));
+            }
+        }
+        return renamed;
+    }
+
+    private static String rename(String name, String prefix, String rollupName) {
+        return name != null && name.startsWith(prefix) ? rollupName + "." + name.substring(prefix.length()) : name;
+    }
+}
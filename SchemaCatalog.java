@@ -0,0 +1,494 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Immutable, indexed view of the tables and columns declared in config.json.
+ * Built once per configuration version and swapped atomically when the file changes,
+ * so request validation only does hash lookups and never walks the raw config map.
+ *
+ * Besides columns, a table may declare its physical layout:
+ * - "partitionColumns" / "clusterColumns": the warehouse partition and clustering keys
+ * - "large": true if queries without a partition predicate should be reported
+ * - "requirePartitionFilter": true if such queries should be rejected instead
+ * - "keyColumns": columns that together identify a row, used for keyset pagination
+ *
+ * The optional "rollups" section declares pre-aggregated copies of a table, e.g.
+ *   "sales_daily": {"baseTable": "sales", "keys": ["product_name", "region_id", "sales_date"],
+ *                   "measures": {"total_sales": ["SUM", "MAX"]}, "grain": "DAY", "rowCount": 2000000}
+ * Keys are the base columns the rollup is grouped by; measures are base columns stored
+ * pre-aggregated under the same name, with the aggregations that can be applied again
+ * (SUM, MIN, MAX). Date keys hold values truncated to the grain (DAY, MONTH or YEAR).
+ * A rollup is also a queryable table; RollupRouter redirects requests to it.
+ */
+public final class SchemaCatalog {
+
+    // Location of config.json unless overridden through the CONFIG_PATH environment variable
+    private static final String DEFAULT_CONFIG_PATH = "config.json";
+
+    // How often get() looks at the config file's modification time
+    private static final long RELOAD_CHECK_INTERVAL_MS = 5000L;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Set<String> ROLLUP_GRAINS = Set.of("DAY", "MONTH", "YEAR");
+    // Aggregations that give the same result when applied to already aggregated values
+    private static final Set<String> ROLLUP_AGGREGATIONS = Set.of("SUM", "MIN", "MAX");
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    private static final AtomicReference<SchemaCatalog> CURRENT = new AtomicReference<>();
+    private static final AtomicBoolean RELOADING = new AtomicBoolean();
+    private static volatile long nextReloadCheck;
+
+    private final long version;
+    private final File source;
+    private final long sourceLastModified;
+    private final String defaultQuery;
+    private final Map<String, Table> tables;
+    // Join keys are written as "table.column", so every column is also indexed under that name
+    private final Map<String, Column> qualifiedColumns;
+    // Each distinct aggregation name gets one bit in the per-column aggregation masks
+    private final Map<String, Integer> aggregationBits;
+
+    private SchemaCatalog(Map<String, Object> config, File source, long sourceLastModified) {
+        this.version = VERSIONS.incrementAndGet();
+        this.source = source;
+        this.sourceLastModified = sourceLastModified;
+        this.defaultQuery = (String) config.get("defaultQuery");
+
+        Map<String, Table> tableIndex = new HashMap<>();
+        Map<String, Column> qualifiedIndex = new HashMap<>();
+        Map<String, Integer> bits = new HashMap<>();
+
+        Map<String, Object> tableConfigs = (Map<String, Object>) config.get("tables");
+        if (tableConfigs == null) {
+            throw new IllegalArgumentException("Configuration does not declare any tables.");
+        }
+
+        int nextTableId = 0;
+        int nextColumnId = 0;
+        for (Map.Entry<String, Object> tableEntry : tableConfigs.entrySet()) {
+            String tableName = tableEntry.getKey().intern();
+            Map<String, Object> tableConfig = (Map<String, Object>) tableEntry.getValue();
+            Map<String, Object> columnConfigs = (Map<String, Object>) tableConfig.get("columns");
+            List<String> partitionNames = keyColumnNames(tableConfig, "partitionColumns");
+            List<String> clusterNames = keyColumnNames(tableConfig, "clusterColumns");
+            List<String> keyNames = keyColumnNames(tableConfig, "keyColumns");
+            boolean requirePartitionFilter = Boolean.TRUE.equals(tableConfig.get("requirePartitionFilter"));
+            boolean large = requirePartitionFilter || Boolean.TRUE.equals(tableConfig.get("large"));
+
+            Map<String, Column> columnIndex = new HashMap<>();
+            List<Column> partitionColumns = new ArrayList<>();
+            List<Column> keyColumns = new ArrayList<>();
+            Table table = new Table(nextTableId++, tableName, columnIndex, partitionColumns, keyColumns, large, requirePartitionFilter);
+            if (columnConfigs != null) {
+                for (Map.Entry<String, Object> columnEntry : columnConfigs.entrySet()) {
+                    String columnName = columnEntry.getKey().intern();
+                    Map<String, Object> columnConfig = (Map<String, Object>) columnEntry.getValue();
+
+                    long aggregationMask = 0L;
+                    List<String> aggregations = (List<String>) columnConfig.get("aggregations");
+                    if (aggregations != null) {
+                        for (String aggregation : aggregations) {
+                            aggregationMask |= 1L << bitFor(bits, aggregation);
+                        }
+                    }
+
+                    Column column = new Column(nextColumnId++, table, columnName, (String) columnConfig.get("type"), aggregationMask,
+                            partitionNames.contains(columnName), clusterNames.contains(columnName));
+                    columnIndex.put(columnName, column);
+                    qualifiedIndex.put(tableName + "." + columnName, column);
+                }
+            }
+
+            // Every declared key column must exist; keep partition and key columns in declared order
+            for (String partitionName : partitionNames) {
+                partitionColumns.add(keyColumn(table, partitionName, "Partition"));
+            }
+            for (String clusterName : clusterNames) {
+                keyColumn(table, clusterName, "Cluster");
+            }
+            for (String keyName : keyNames) {
+                keyColumns.add(keyColumn(table, keyName, "Key"));
+            }
+            if (large && partitionColumns.isEmpty()) {
+                throw new IllegalArgumentException("Table '" + tableName + "' is marked large but declares no partition columns.");
+            }
+            tableIndex.put(tableName, table);
+        }
+
+        Map<String, Object> rollupConfigs = (Map<String, Object>) config.get("rollups");
+        if (rollupConfigs != null) {
+            for (Map.Entry<String, Object> rollupEntry : rollupConfigs.entrySet()) {
+                String rollupName = rollupEntry.getKey().intern();
+                Map<String, Object> rollupConfig = (Map<String, Object>) rollupEntry.getValue();
+                if (tableIndex.containsKey(rollupName)) {
+                    throw new IllegalArgumentException("Rollup '" + rollupName + "' has the same name as a table.");
+                }
+                Table baseTable = tableIndex.get((String) rollupConfig.get("baseTable"));
+                if (baseTable == null) {
+                    throw new IllegalArgumentException("Rollup '" + rollupName + "' refers to unknown table '" + rollupConfig.get("baseTable") + "'.");
+                }
+
+                String grain = rollupConfig.get("grain") == null ? "DAY" : (String) rollupConfig.get("grain");
+                if (!ROLLUP_GRAINS.contains(grain)) {
+                    throw new IllegalArgumentException("Rollup '" + rollupName + "' has unknown grain '" + grain + "'.");
+                }
+                Number rowCount = (Number) rollupConfig.get("rowCount");
+
+                Map<String, Column> columnIndex = new HashMap<>();
+                Set<String> keyNames = new HashSet<>();
+                Table table = new Table(nextTableId++, rollupName, columnIndex, Collections.emptyList(), Collections.emptyList(), false, false);
+                for (String keyName : keyColumnNames(rollupConfig, "keys")) {
+                    Column baseColumn = keyColumn(baseTable, keyName, "Rollup");
+                    Column column = new Column(nextColumnId++, table, baseColumn.getName(), baseColumn.getType(), 0L, false, false);
+                    keyNames.add(column.getName());
+                    columnIndex.put(column.getName(), column);
+                    qualifiedIndex.put(rollupName + "." + column.getName(), column);
+                }
+                Map<String, List<String>> measures = (Map<String, List<String>>) rollupConfig.get("measures");
+                if (measures != null) {
+                    for (Map.Entry<String, List<String>> measure : measures.entrySet()) {
+                        Column baseColumn = keyColumn(baseTable, measure.getKey(), "Rollup");
+                        long aggregationMask = 0L;
+                        for (String aggregation : measure.getValue()) {
+                            if (!ROLLUP_AGGREGATIONS.contains(aggregation)) {
+                                throw new IllegalArgumentException("Rollup '" + rollupName + "' declares aggregation '" + aggregation
+                                        + "', but only SUM, MIN and MAX can be applied to pre-aggregated values.");
+                            }
+                            aggregationMask |= 1L << bitFor(bits, aggregation);
+                        }
+                        Column column = new Column(nextColumnId++, table, baseColumn.getName(), baseColumn.getType(), aggregationMask, false, false);
+                        columnIndex.put(column.getName(), column);
+                        qualifiedIndex.put(rollupName + "." + column.getName(), column);
+                    }
+                }
+
+                tableIndex.put(rollupName, table);
+                baseTable.rollups.add(new Rollup(table, baseTable, keyNames, grain,
+                        rowCount == null ? Long.MAX_VALUE : rowCount.longValue()));
+            }
+            // Routing takes the first rollup that covers a request, so keep the smallest first
+            for (Table table : tableIndex.values()) {
+                table.rollups.sort(Comparator.comparingLong(Rollup::getRowCount)
+                        .thenComparingInt(rollup -> rollup.getTable().columns.size())
+                        .thenComparing(rollup -> rollup.getTable().getName()));
+            }
+        }
+
+        this.tables = Collections.unmodifiableMap(tableIndex);
+        this.qualifiedColumns = Collections.unmodifiableMap(qualifiedIndex);
+        this.aggregationBits = Collections.unmodifiableMap(bits);
+    }
+
+    private static List<String> keyColumnNames(Map<String, Object> tableConfig, String key) {
+        List<String> names = (List<String>) tableConfig.get(key);
+        return names == null ? Collections.emptyList() : names;
+    }
+
+    private static Column keyColumn(Table table, String columnName, String role) {
+        Column column = table.getColumn(columnName);
+        if (column == null) {
+            throw new IllegalArgumentException(role + " column '" + columnName + "' does not exist in table '" + table.getName() + "'.");
+        }
+        return column;
+    }
+
+    private static int bitFor(Map<String, Integer> bits, String aggregation) {
+        Integer bit = bits.get(aggregation);
+        if (bit == null) {
+            if (bits.size() == Long.SIZE) {
+                throw new IllegalArgumentException("Configuration declares more than " + Long.SIZE + " aggregations.");
+            }
+            bit = bits.size();
+            bits.put(aggregation.intern(), bit);
+        }
+        return bit;
+    }
+
+    /**
+     * Builds a catalog from an already parsed configuration map.
+     */
+    public static SchemaCatalog fromConfig(Map<String, Object> config) {
+        return new SchemaCatalog(config, null, 0L);
+    }
+
+    /**
+     * Loads the configuration file and installs the resulting catalog as the current one.
+     */
+    public static SchemaCatalog load(File configFile) throws IOException {
+        SchemaCatalog catalog = read(configFile);
+        CURRENT.set(catalog);
+        nextReloadCheck = System.currentTimeMillis() + RELOAD_CHECK_INTERVAL_MS;
+        return catalog;
+    }
+
+    /**
+     * Installs a catalog as the current one, e.g. one built with fromConfig.
+     */
+    public static void install(SchemaCatalog catalog) {
+        CURRENT.set(catalog);
+    }
+
+    /**
+     * Returns the current catalog, loading config.json on first use and picking up
+     * changes to the file without restarting the container.
+     */
+    public static SchemaCatalog get() {
+        SchemaCatalog catalog = CURRENT.get();
+        if (catalog == null) {
+            synchronized (SchemaCatalog.class) {
+                catalog = CURRENT.get();
+                if (catalog == null) {
+                    String path = Optional.ofNullable(System.getenv("CONFIG_PATH")).orElse(DEFAULT_CONFIG_PATH);
+                    try {
+                        catalog = load(new File(path));
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Unable to load configuration from " + path, e);
+                    }
+                }
+            }
+            return catalog;
+        }
+
+        if (catalog.source != null && System.currentTimeMillis() >= nextReloadCheck && RELOADING.compareAndSet(false, true)) {
+            try {
+                nextReloadCheck = System.currentTimeMillis() + RELOAD_CHECK_INTERVAL_MS;
+                if (catalog.source.lastModified() != catalog.sourceLastModified) {
+                    SchemaCatalog reloaded = read(catalog.source);
+                    // Only replace the catalog we checked; a concurrent load() wins
+                    if (CURRENT.compareAndSet(catalog, reloaded)) {
+                        System.out.println("Reloaded configuration from " + catalog.source + " (version " + reloaded.version + ").");
+                        catalog = reloaded;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // Keep serving the last good catalog if the new file cannot be read
+                System.err.println("Failed to reload configuration: " + e.getMessage());
+            } finally {
+                RELOADING.set(false);
+            }
+        }
+        return catalog;
+    }
+
+    private static SchemaCatalog read(File configFile) throws IOException {
+        long lastModified = configFile.lastModified();
+        Map<String, Object> config = MAPPER.readValue(configFile, Map.class);
+        return new SchemaCatalog(config, configFile, lastModified);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getDefaultQuery() {
+        return defaultQuery;
+    }
+
+    public Table getTable(String tableName) {
+        return tableName == null ? null : tables.get(tableName);
+    }
+
+    /**
+     * Returns every table, including rollups.
+     */
+    public Collection<Table> getTables() {
+        return tables.values();
+    }
+
+    /**
+     * Looks up a column written as "table.column", as used in join conditions.
+     */
+    public Column getQualifiedColumn(String qualifiedName) {
+        return qualifiedName == null ? null : qualifiedColumns.get(qualifiedName);
+    }
+
+    /**
+     * Returns true if the column's configuration lists the given aggregation.
+     */
+    public boolean supportsAggregation(Column column, String aggregation) {
+        Integer bit = aggregationBits.get(aggregation);
+        return bit != null && (column.aggregationMask & (1L << bit)) != 0;
+    }
+
+    public static final class Table {
+        private final int id;
+        private final String name;
+        private final Map<String, Column> columns;
+        private final List<Column> partitionColumns;
+        private final List<Column> keyColumns;
+        private final List<Rollup> rollups = new ArrayList<>();
+        private final boolean large;
+        private final boolean requirePartitionFilter;
+
+        private Table(int id, String name, Map<String, Column> columns, List<Column> partitionColumns,
+                      List<Column> keyColumns, boolean large, boolean requirePartitionFilter) {
+            this.id = id;
+            this.name = name;
+            this.columns = columns;
+            this.partitionColumns = Collections.unmodifiableList(partitionColumns);
+            this.keyColumns = Collections.unmodifiableList(keyColumns);
+            this.large = large;
+            this.requirePartitionFilter = requirePartitionFilter;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Column getColumn(String columnName) {
+            return columnName == null ? null : columns.get(columnName);
+        }
+
+        public Collection<Column> getColumns() {
+            return Collections.unmodifiableCollection(columns.values());
+        }
+
+        public List<Column> getPartitionColumns() {
+            return partitionColumns;
+        }
+
+        /**
+         * Returns the columns that together identify a row, or an empty list if none are declared.
+         */
+        public List<Column> getKeyColumns() {
+            return keyColumns;
+        }
+
+        /**
+         * Returns the rollups of this table, smallest first.
+         */
+        public List<Rollup> getRollups() {
+            return Collections.unmodifiableList(rollups);
+        }
+
+        /**
+         * Returns true if queries on this table should carry a predicate on a partition column.
+         */
+        public boolean isLarge() {
+            return large;
+        }
+
+        /**
+         * Returns true if queries on this table without a partition predicate must be rejected.
+         */
+        public boolean requiresPartitionFilter() {
+            return requirePartitionFilter;
+        }
+    }
+
+    public static final class Column {
+        private final int id;
+        private final Table table;
+        private final String name;
+        private final String type;
+        private final long aggregationMask;
+        private final boolean partitionKey;
+        private final boolean clusterKey;
+
+        private Column(int id, Table table, String name, String type, long aggregationMask,
+                       boolean partitionKey, boolean clusterKey) {
+            this.id = id;
+            this.table = table;
+            this.name = name;
+            this.type = type;
+            this.aggregationMask = aggregationMask;
+            this.partitionKey = partitionKey;
+            this.clusterKey = clusterKey;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public Table getTable() {
+            return table;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public boolean isPartitionKey() {
+            return partitionKey;
+        }
+
+        public boolean isClusterKey() {
+            return clusterKey;
+        }
+
+        /**
+         * Returns true for DATE and TIMESTAMP columns.
+         */
+        public boolean isTemporal() {
+            return "DATE".equals(type) || "TIMESTAMP".equals(type);
+        }
+    }
+
+    /**
+     * A pre-aggregated copy of a base table. Its table holds the key and measure columns
+     * under their base names.
+     */
+    public static final class Rollup {
+        private final Table table;
+        private final Table baseTable;
+        private final Set<String> keyNames;
+        private final String grain;
+        private final long rowCount;
+
+        private Rollup(Table table, Table baseTable, Set<String> keyNames, String grain, long rowCount) {
+            this.table = table;
+            this.baseTable = baseTable;
+            this.keyNames = keyNames;
+            this.grain = grain;
+            this.rowCount = rowCount;
+        }
+
+        public Table getTable() {
+            return table;
+        }
+
+        public Table getBaseTable() {
+            return baseTable;
+        }
+
+        /**
+         * Returns DAY, MONTH or YEAR: the unit date keys are truncated to.
+         */
+        public String getGrain() {
+            return grain;
+        }
+
+        /**
+         * Returns the declared row count, or Long.MAX_VALUE if none was declared.
+         */
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Returns true if the rollup is grouped by the base column.
+         */
+        public boolean isKey(Column baseColumn) {
+            return baseColumn.getTable() == baseTable && keyNames.contains(baseColumn.getName());
+        }
+
+        /**
+         * Returns the rollup's column for a base column, or null if it does not carry it.
+         */
+        public Column getColumn(Column baseColumn) {
+            return baseColumn.getTable() == baseTable ? table.getColumn(baseColumn.getName()) : null;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+public class SchemaCatalogTest {
+
+    private static Map<String, Object> config(String tableName) {
+        return Map.of(
+            "tables", Map.of(
+                tableName, Map.of("columns", Map.of(
+                    "total_sales", Map.of("type", "DECIMAL", "aggregations", List.of("SUM", "AVG")),
+                    "region_id", Map.of("type", "INTEGER", "aggregations", List.of())
+                )),
+                "regions", Map.of("columns", Map.of(
+                    "id", Map.of("type", "INTEGER", "aggregations", List.of("COUNT"))
+                ))
+            ),
+            "defaultQuery", "SELECT * FROM sales LIMIT 10"
+        );
+    }
+
+    @Test
+    public void testLookups() {
+        SchemaCatalog catalog = SchemaCatalog.fromConfig(config("sales"));
+
+        assertNotNull(catalog.getTable("sales"));
+        assertNull(catalog.getTable("orders"));
+        assertEquals("DECIMAL", catalog.getTable("sales").getColumn("total_sales").getType());
+        assertNull(catalog.getTable("sales").getColumn("missing"));
+        assertEquals("SELECT * FROM sales LIMIT 10", catalog.getDefaultQuery());
+    }
+
+    @Test
+    public void testAggregationsArePerColumn() {
+        SchemaCatalog catalog = SchemaCatalog.fromConfig(config("sales"));
+        SchemaCatalog.Column totalSales = catalog.getTable("sales").getColumn("total_sales");
+        SchemaCatalog.Column regionId = catalog.getTable("sales").getColumn("region_id");
+
+        assertTrue(catalog.supportsAggregation(totalSales, "SUM"));
+        assertTrue(catalog.supportsAggregation(totalSales, "AVG"));
+        assertFalse(catalog.supportsAggregation(totalSales, "COUNT"));
+        assertFalse(catalog.supportsAggregation(regionId, "SUM"));
+        assertFalse(catalog.supportsAggregation(totalSales, "MEDIAN"));
+    }
+
+    @Test
+    public void testQualifiedJoinColumns() {
+        SchemaCatalog catalog = SchemaCatalog.fromConfig(config("sales"));
+
+        assertSame(catalog.getTable("sales").getColumn("region_id"), catalog.getQualifiedColumn("sales.region_id"));
+        assertSame(catalog.getTable("regions").getColumn("id"), catalog.getQualifiedColumn("regions.id"));
+        assertNull(catalog.getQualifiedColumn("regions.region_id"));
+        assertNull(catalog.getQualifiedColumn("region_id"));
+    }
+
+    @Test
+    public void testPartitionAndClusterColumns() {
+        SchemaCatalog catalog = SchemaCatalog.fromConfig(Map.of(
+            "tables", Map.of(
+                "sales", Map.of(
+                    "partitionColumns", List.of("sales_date"),
+                    "clusterColumns", List.of("region_id"),
+                    "requirePartitionFilter", true,
+                    "columns", Map.of(
+                        "sales_date", Map.of("type", "DATE", "aggregations", List.of()),
+                        "region_id", Map.of("type", "INTEGER", "aggregations", List.of())
+                    )
+                ),
+                "regions", Map.of("columns", Map.of(
+                    "id", Map.of("type", "INTEGER", "aggregations", List.of())
+                ))
+            )
+        ));
+        SchemaCatalog.Table sales = catalog.getTable("sales");
+
+        assertTrue(sales.isLarge());
+        assertTrue(sales.requiresPartitionFilter());
+        assertEquals(List.of(sales.getColumn("sales_date")), sales.getPartitionColumns());
+        assertTrue(sales.getColumn("sales_date").isPartitionKey());
+        assertTrue(sales.getColumn("sales_date").isTemporal());
+        assertTrue(sales.getColumn("region_id").isClusterKey());
+        assertFalse(sales.getColumn("region_id").isPartitionKey());
+        assertFalse(catalog.getTable("regions").isLarge());
+    }
+
+    @Test
+    public void testUnknownPartitionColumnIsRejected() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> SchemaCatalog.fromConfig(Map.of(
+            "tables", Map.of("sales", Map.of(
+                "partitionColumns", List.of("sale_day"),
+                "columns", Map.of("sales_date", Map.of("type", "DATE", "aggregations", List.of()))
+            ))
+        )));
+        assertEquals("Partition column 'sale_day' does not exist in table 'sales'.", e.getMessage());
+    }
+
+    @Test
+    public void testReloadsWhenConfigFileChanges(@TempDir Path dir) throws Exception {
+        File configFile = dir.resolve("config.json").toFile();
+        Files.writeString(configFile.toPath(), "{\"tables\": {\"sales\": {\"columns\": {}}}}");
+        SchemaCatalog first = SchemaCatalog.load(configFile);
+        assertNotNull(first.getTable("sales"));
+
+        // Rewrite the file with a different modification time and wait out the check interval
+        Files.writeString(configFile.toPath(), "{\"tables\": {\"orders\": {\"columns\": {}}}}");
+        assertTrue(configFile.setLastModified(configFile.lastModified() - 10_000L));
+        Thread.sleep(5100L);
+
+        SchemaCatalog reloaded = SchemaCatalog.get();
+        assertNotSame(first, reloaded);
+        assertTrue(reloaded.getVersion() > first.getVersion());
+        assertNotNull(reloaded.getTable("orders"));
+        assertNull(reloaded.getTable("sales"));
+    }
+
+    @Test
+    public void testRollups() {
+        SchemaCatalog catalog = SchemaCatalog.fromConfig(Map.of(
+            "tables", config("sales").get("tables"),
+            "rollups", Map.of(
+                "sales_by_region", Map.of("baseTable", "sales", "keys", List.of("region_id"),
+                    "measures", Map.of("total_sales", List.of("SUM", "MAX"))),
+                "sales_tiny", Map.of("baseTable", "sales", "keys", List.of("region_id"), "rowCount", 10,
+                    "measures", Map.of("total_sales", List.of("SUM")))
+            )
+        ));
+
+        SchemaCatalog.Table sales = catalog.getTable("sales");
+        assertEquals("sales_tiny", sales.getRollups().get(0).getTable().getName());
+        SchemaCatalog.Rollup byRegion = sales.getRollups().get(1);
+        assertEquals("DAY", byRegion.getGrain());
+        assertTrue(byRegion.isKey(sales.getColumn("region_id")));
+        assertFalse(byRegion.isKey(sales.getColumn("total_sales")));
+        assertTrue(catalog.supportsAggregation(byRegion.getColumn(sales.getColumn("total_sales")), "MAX"));
+        assertSame(byRegion.getTable(), catalog.getTable("sales_by_region"));
+
+        assertThrows(IllegalArgumentException.class, () -> SchemaCatalog.fromConfig(Map.of(
+            "tables", config("sales").get("tables"),
+            "rollups", Map.of("bad", Map.of("baseTable", "sales", "keys", List.of("region_id"),
+                "measures", Map.of("total_sales", List.of("AVG")))))));
+        assertThrows(IllegalArgumentException.class, () -> SchemaCatalog.fromConfig(Map.of(
+            "tables", config("sales").get("tables"),
+            "rollups", Map.of("bad", Map.of("baseTable", "sales", "keys", List.of("missing"))))));
+    }
+}
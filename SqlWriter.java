@@ -0,0 +1,340 @@
+import java.util.List;
+
+/**
+ * Renders the typed query model into SQL text.
+ * Every generator writes through this class, so clauses are appended straight into one
+ * buffer instead of being assembled from intermediate strings, joiners and streams.
+ * Each thread reuses its own pre-sized buffer; only the final toString() allocates.
+ *
+ * Identifiers are written as they are when they are plain names (letters, digits and
+ * underscores, optionally qualified as "table.column"), which covers every existing
+ * configuration. Anything else is quoted with backticks so it cannot break the statement.
+ */
+public final class SqlWriter {
+
+    // Initial buffer size; large enough for typical report queries without resizing
+    private static final int INITIAL_CAPACITY = 512;
+
+    // Buffers that grew beyond this are dropped after use instead of being kept per thread
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<SqlWriter> CURRENT = ThreadLocal.withInitial(() -> new SqlWriter(INITIAL_CAPACITY));
+
+    private StringBuilder buffer;
+    private boolean inUse;
+
+    private SqlWriter(int capacity) {
+        this.buffer = new StringBuilder(capacity);
+    }
+
+    /**
+     * Returns this thread's writer, emptied and ready for a new statement. If the thread's
+     * writer is already in use (a statement rendered while building another), a separate
+     * writer is returned.
+     */
+    public static SqlWriter acquire() {
+        return acquire(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Like acquire(), but makes sure the buffer can hold the expected length without resizing.
+     */
+    public static SqlWriter acquire(int expectedLength) {
+        SqlWriter writer = CURRENT.get();
+        if (writer.inUse) {
+            return new SqlWriter(Math.max(expectedLength, INITIAL_CAPACITY));
+        }
+        writer.inUse = true;
+        writer.buffer.setLength(0);
+        writer.buffer.ensureCapacity(expectedLength);
+        return writer;
+    }
+
+    /**
+     * Returns the rendered SQL and releases the writer for reuse by this thread.
+     */
+    public String finish() {
+        String sql = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            buffer = new StringBuilder(INITIAL_CAPACITY);
+        }
+        inUse = false;
+        return sql;
+    }
+
+    public int length() {
+        return buffer.length();
+    }
+
+    public SqlWriter append(String text) {
+        buffer.append(text);
+        return this;
+    }
+
+    public SqlWriter append(char c) {
+        buffer.append(c);
+        return this;
+    }
+
+    /**
+     * Appends a table or column name, quoted only if it is not a plain identifier.
+     */
+    public SqlWriter identifier(String name) {
+        if (name == null || isPlainIdentifier(name)) {
+            buffer.append(name);
+            return this;
+        }
+        int start = 0;
+        int dot = name.indexOf('.');
+        while (dot >= 0) {
+            quotePart(name, start, dot);
+            buffer.append('.');
+            start = dot + 1;
+            dot = name.indexOf('.', start);
+        }
+        quotePart(name, start, name.length());
+        return this;
+    }
+
+    private void quotePart(String name, int start, int end) {
+        if (isPlainIdentifier(name, start, end)) {
+            buffer.append(name, start, end);
+            return;
+        }
+        buffer.append('`');
+        for (int i = start; i < end; i++) {
+            char c = name.charAt(i);
+            if (c == '`') {
+                buffer.append('`');
+            }
+            buffer.append(c);
+        }
+        buffer.append('`');
+    }
+
+    /**
+     * Returns the name as it would be written by identifier(), without allocating for plain names.
+     */
+    public static String quoteIdentifier(String name) {
+        if (name == null || isPlainIdentifier(name)) {
+            return name;
+        }
+        SqlWriter writer = new SqlWriter(name.length() + 8);
+        return writer.identifier(name).buffer.toString();
+    }
+
+    /**
+     * Returns true for "*" and for dot-separated plain names, optionally ending in ".*".
+     * Scans the name once; this runs for every identifier written.
+     */
+    private static boolean isPlainIdentifier(String name) {
+        int length = name.length();
+        int partStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (c == '.') {
+                if (i == partStart) {
+                    return false;
+                }
+                partStart = i + 1;
+            } else if (c == '*') {
+                // Only allowed as a whole, final part
+                return i == partStart && i == length - 1;
+            } else if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_'
+                    || (i > partStart && c >= '0' && c <= '9'))) {
+                return false;
+            }
+        }
+        return partStart < length;
+    }
+
+    private static boolean isPlainIdentifier(String name, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = name.charAt(i);
+            boolean letter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+            if (!letter && !(i > start && c >= '0' && c <= '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends a value as a quoted string literal, doubling any single quote or backslash inside it.
+     */
+    public SqlWriter literal(String value) {
+        appendLiteral(buffer, value);
+        return this;
+    }
+
+    /**
+     * Appends a value as a quoted string literal to any buffer; the one escaping routine
+     * for every value inlined into SQL. Databricks reads a backslash inside a literal as an
+     * escape, so backslashes are doubled along with quotes.
+     */
+    public static void appendLiteral(StringBuilder sql, String value) {
+        sql.append('\'');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\'' || c == '\\') {
+                sql.append(c);
+            }
+            sql.append(c);
+        }
+        sql.append('\'');
+    }
+
+    /**
+     * Appends "SELECT " followed by the column list, with aggregations applied.
+     */
+    public SqlWriter select(List<QueryRequest.Column> columns) {
+        buffer.append("SELECT ");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            QueryRequest.Column column = columns.get(i);
+            if (column.getAggregation() != null) {
+                buffer.append(column.getAggregation()).append('(');
+                identifier(column.getName());
+                buffer.append(')');
+            } else {
+                identifier(column.getName());
+            }
+        }
+        return this;
+    }
+
+    public SqlWriter from(String tableName) {
+        buffer.append(" FROM ");
+        return identifier(tableName);
+    }
+
+    /**
+     * Appends " <type> JOIN <table> ON <left> = <right>".
+     */
+    public SqlWriter join(String joinType, String tableName, String leftColumn, String rightColumn) {
+        buffer.append(' ').append(joinType).append(" JOIN ");
+        identifier(tableName);
+        buffer.append(" ON ");
+        identifier(leftColumn);
+        buffer.append(" = ");
+        return identifier(rightColumn);
+    }
+
+    /**
+     * Appends " <type> JOIN <table> ON <condition>" for a join given as a raw condition.
+     */
+    public SqlWriter join(String joinType, String tableName, String condition) {
+        buffer.append(' ').append(joinType).append(" JOIN ");
+        identifier(tableName);
+        buffer.append(" ON ").append(condition);
+        return this;
+    }
+
+    /**
+     * Appends " WHERE " and the filters, combined with AND, with values as quoted literals.
+     * Nothing is written if there are no filters.
+     */
+    public SqlWriter where(List<QueryRequest.Filter> filters) {
+        if (!filters.isEmpty()) {
+            buffer.append(" WHERE ");
+            conditions(filters, "AND");
+        }
+        return this;
+    }
+
+    /**
+     * Appends the conditions joined by the given operator. Nested groups are parenthesized.
+     */
+    public SqlWriter conditions(List<QueryRequest.Filter> conditions, String conditionType) {
+        for (int i = 0; i < conditions.size(); i++) {
+            if (i > 0) {
+                buffer.append(' ').append(conditionType).append(' ');
+            }
+            QueryRequest.Filter condition = conditions.get(i);
+            if (condition instanceof QueryRequest.Logical) {
+                QueryRequest.Logical logical = (QueryRequest.Logical) condition;
+                buffer.append('(');
+                conditions(logical.getChildren(), logical.getOperator());
+                buffer.append(')');
+            } else if (condition instanceof QueryRequest.DateRange) {
+                QueryRequest.DateRange dateRange = (QueryRequest.DateRange) condition;
+                identifier(dateRange.getColumn()).append(" BETWEEN ");
+                literal(dateRange.getStartDate()).append(" AND ");
+                literal(dateRange.getEndDate());
+            } else if (condition instanceof QueryRequest.In) {
+                QueryRequest.In in = (QueryRequest.In) condition;
+                identifier(in.getColumn()).append(" IN (");
+                for (int v = 0; v < in.getValues().size(); v++) {
+                    if (v > 0) {
+                        buffer.append(", ");
+                    }
+                    literal(in.getValues().get(v));
+                }
+                buffer.append(')');
+            } else {
+                QueryRequest.Equals equals = (QueryRequest.Equals) condition;
+                identifier(equals.getColumn()).append(" = ");
+                literal(equals.getValue());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends " GROUP BY " and the columns. Nothing is written if the list is empty.
+     */
+    public SqlWriter groupBy(List<String> columns) {
+        if (!columns.isEmpty()) {
+            buffer.append(" GROUP BY ");
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    buffer.append(", ");
+                }
+                identifier(columns.get(i));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends " ORDER BY <column> <direction>". Nothing is written if there is no ordering.
+     */
+    public SqlWriter orderBy(QueryRequest.OrderBy orderBy) {
+        if (orderBy != null) {
+            buffer.append(" ORDER BY ");
+            identifier(orderBy.getColumn());
+            buffer.append(' ').append(orderBy.getDirection());
+        }
+        return this;
+    }
+
+    /**
+     * Appends " ORDER BY " and the columns, all sorted in the given direction.
+     */
+    public SqlWriter orderBy(List<String> columns, String direction) {
+        buffer.append(" ORDER BY ");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            identifier(columns.get(i));
+            buffer.append(' ').append(direction);
+        }
+        return this;
+    }
+
+    public SqlWriter limit(int rows) {
+        buffer.append(" LIMIT ").append(rows);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return buffer.toString();
+    }
+}
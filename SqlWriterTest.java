@@ -0,0 +1,71 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class SqlWriterTest {
+
+    @Test
+    public void testPlainIdentifiersAreNotQuoted() {
+        assertEquals("sales.region_id", SqlWriter.quoteIdentifier("sales.region_id"));
+        assertEquals("total_sales2", SqlWriter.quoteIdentifier("total_sales2"));
+        assertEquals("*", SqlWriter.quoteIdentifier("*"));
+        assertEquals("sales.*", SqlWriter.quoteIdentifier("sales.*"));
+    }
+
+    @Test
+    public void testOtherIdentifiersAreQuoted() {
+        assertEquals("`product name`", SqlWriter.quoteIdentifier("product name"));
+        assertEquals("sales.`2024`", SqlWriter.quoteIdentifier("sales.2024"));
+        assertEquals("`a``b`", SqlWriter.quoteIdentifier("a`b"));
+        assertEquals("`x; DROP TABLE sales`", SqlWriter.quoteIdentifier("x; DROP TABLE sales"));
+    }
+
+    @Test
+    public void testLiteralsDoubleQuotes() {
+        assertEquals("'O''Brien'", SqlWriter.acquire().literal("O'Brien").finish());
+        assertEquals("'x'' OR ''1''=''1'", SqlWriter.acquire().literal("x' OR '1'='1").finish());
+    }
+
+    @Test
+    public void testLiteralsDoubleBackslashes() {
+        // A trailing backslash must not escape the quote that follows it
+        assertEquals("'x\\\\'' OR 1=1 --'", SqlWriter.acquire().literal("x\\' OR 1=1 --").finish());
+        assertEquals("'C:\\\\temp'", SqlWriter.acquire().literal("C:\\temp").finish());
+    }
+
+    @Test
+    public void testRendersTypedModel() {
+        QueryRequest request = QueryRequestParser.parse("{\"tableName\": \"sales\","
+                + "\"columns\": [\"product_name\", {\"name\": \"total_sales\", \"aggregation\": \"SUM\"}],"
+                + "\"filters\": {\"OR\": [{\"region\": \"A\"}, {\"dateRange\": {\"column\": \"sales_date\", \"startDate\": \"2024-01-01\", \"endDate\": \"2024-01-31\"}}]},"
+                + "\"groupBy\": [\"product_name\"], \"orderBy\": {\"column\": \"total_sales\", \"direction\": \"DESC\"}}");
+
+        String sql = SqlWriter.acquire()
+                .select(request.getColumns())
+                .from(request.getTableName())
+                .join("LEFT", "regions", "sales.region_id", "regions.id")
+                .where(request.getFilters())
+                .groupBy(request.getGroupBy())
+                .orderBy(request.getOrderBy())
+                .finish();
+
+        assertEquals("SELECT product_name, SUM(total_sales) FROM sales LEFT JOIN regions ON sales.region_id = regions.id"
+                + " WHERE (region = 'A' OR sales_date BETWEEN '2024-01-01' AND '2024-01-31')"
+                + " GROUP BY product_name ORDER BY total_sales DESC", sql);
+    }
+
+    @Test
+    public void testWriterIsReusedAndNestedUseGetsItsOwnBuffer() {
+        SqlWriter outer = SqlWriter.acquire().append("SELECT 1");
+        SqlWriter inner = SqlWriter.acquire().append("SELECT 2");
+        assertNotSame(outer, inner);
+        assertEquals("SELECT 2", inner.finish());
+        assertEquals("SELECT 1", outer.finish());
+
+        SqlWriter reused = SqlWriter.acquire();
+        assertSame(outer, reused);
+        assertEquals("", reused.where(List.of()).finish());
+    }
+}
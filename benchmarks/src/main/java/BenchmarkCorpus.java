@@ -0,0 +1,120 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * The requests the benchmarks run on, all derived from the report request in sample.json:
+ * - "sample": the request as it is (minus its schedule, so nothing is logged)
+ * - "wide": the same request selecting 40 columns
+ * - "deep": the same filters nested six AND/OR levels deep
+ * Each shape is available as JSON text, as a typed QueryRequest and as the equivalent
+ * OData $filter string, so the JSON and OData paths are measured on the same predicates.
+ */
+public final class BenchmarkCorpus {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String json;
+    private final QueryRequest request;
+    private final String odataFilter;
+
+    private BenchmarkCorpus(Map<String, Object> requestMap) throws IOException {
+        this.json = MAPPER.writeValueAsString(requestMap);
+        this.request = QueryRequestParser.parse(json);
+        this.odataFilter = toOData((Map<String, Object>) requestMap.get("filters"));
+    }
+
+    /**
+     * Loads sample.json (from the "sample.path" system property, default ../sample.json)
+     * and reshapes it.
+     */
+    public static BenchmarkCorpus load(String shape) throws IOException {
+        String samplePath = System.getProperty("sample.path", "../sample.json");
+        Map<String, Object> sample = MAPPER.readValue(new File(samplePath), Map.class);
+        return new BenchmarkCorpus(reshape(sample, shape));
+    }
+
+    static Map<String, Object> reshape(Map<String, Object> sample, String shape) {
+        Map<String, Object> request = new LinkedHashMap<>(sample);
+        request.remove("scheduledExpression");
+        if ("wide".equals(shape)) {
+            List<Object> columns = new ArrayList<>((List<Object>) sample.get("columns"));
+            for (int i = 0; i < 36; i++) {
+                Map<String, Object> column = new LinkedHashMap<>();
+                column.put("name", "metric_" + i);
+                column.put("aggregation", i % 2 == 0 ? "SUM" : null);
+                columns.add(column);
+            }
+            request.put("columns", columns);
+        } else if ("deep".equals(shape)) {
+            Map<String, Object> tree = (Map<String, Object>) sample.get("filters");
+            for (int depth = 0; depth < 6; depth++) {
+                String operator = depth % 2 == 0 ? "OR" : "AND";
+                tree = Map.of(operator, List.of(tree,
+                        Map.of("productCategory", "Category" + depth),
+                        Map.of("region", "Region" + depth)));
+            }
+            request.put("filters", tree);
+        } else if (!"sample".equals(shape)) {
+            throw new IllegalArgumentException("Unknown corpus shape '" + shape + "'.");
+        }
+        return request;
+    }
+
+    /**
+     * Writes a request filter object as an OData $filter expression.
+     */
+    static String toOData(Map<String, Object> filters) {
+        StringJoiner terms = new StringJoiner(" and ");
+        for (Map.Entry<String, Object> entry : filters.entrySet()) {
+            String key = entry.getKey();
+            if (key.equals("AND") || key.equals("OR")) {
+                StringJoiner children = new StringJoiner(" " + key.toLowerCase() + " ", "(", ")");
+                for (Map<String, Object> child : (List<Map<String, Object>>) entry.getValue()) {
+                    children.add(toOData(child));
+                }
+                terms.add(children.toString());
+            } else if (key.equals("dateRange")) {
+                Map<String, String> range = (Map<String, String>) entry.getValue();
+                terms.add(range.get("column") + " ge '" + range.get("startDate") + "' and "
+                        + range.get("column") + " le '" + range.get("endDate") + "'");
+            } else {
+                terms.add(key + " eq '" + entry.getValue() + "'");
+            }
+        }
+        return terms.toString();
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    public QueryRequest getRequest() {
+        return request;
+    }
+
+    public String getODataFilter() {
+        return odataFilter;
+    }
+
+    /**
+     * Installs a catalog that accepts every column the corpus selects.
+     */
+    public void installCatalog() {
+        Map<String, Object> columns = new HashMap<>();
+        for (QueryRequest.Column column : request.getColumns()) {
+            columns.put(column.getName(), Map.of("type", "VARCHAR", "aggregations", List.of("SUM", "AVG", "MIN", "MAX")));
+        }
+        columns.put("sales_date", Map.of("type", "DATE", "aggregations", List.of()));
+        columns.put("region_id", Map.of("type", "INTEGER", "aggregations", List.of()));
+        SchemaCatalog.install(SchemaCatalog.fromConfig(Map.of(
+            "tables", Map.of(
+                "sales", Map.of("columns", columns),
+                "regions", Map.of("columns", Map.of("id", Map.of("type", "INTEGER", "aggregations", List.of())))
+            ),
+            "defaultQuery", "SELECT * FROM sales LIMIT 10"
+        )));
+    }
+}
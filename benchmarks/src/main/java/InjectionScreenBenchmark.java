@@ -0,0 +1,85 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The injection validators on InjectionScreen against the regular expressions they replaced
+ * (LegacyInjectionValidators), on:
+ * - "sample": the corpus filter written as OData
+ * - "quotedCalls": "'a(" repeated 100 times, which makes the old SQLInjectionValidator
+ *   expression backtrack for seconds per call (it grows with the fourth power of the length)
+ * - "long": 8 KB of plain comparisons; the old SQLInjectionValidator expression is quadratic
+ *   here (seconds per call), and the old ODataQueryValidator upper-cases the input once per
+ *   forbidden pattern
+ * Reported as time per call, since the legacy expression on "quotedCalls" is far too slow
+ * for throughput numbers to be meaningful.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class InjectionScreenBenchmark {
+
+    @Param({"sample", "quotedCalls", "long"})
+    public String input;
+
+    private String filter;
+    private PrintStream originalOut;
+
+    @Setup
+    public void setUp() throws IOException {
+        switch (input) {
+            case "sample":
+                filter = BenchmarkCorpus.load("sample").getODataFilter();
+                break;
+            case "quotedCalls":
+                filter = "'a(".repeat(100);
+                break;
+            default:
+                filter = "price_level ge 10 ".repeat(8 * 1024 / 18);
+        }
+
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public boolean sqlInjectionValidator() {
+        return SQLInjectionValidator.isValidODataQuery(filter);
+    }
+
+    @Benchmark
+    public boolean legacySqlInjectionValidator() {
+        return LegacyInjectionValidators.sqlInjectionValidator(filter);
+    }
+
+    @Benchmark
+    public boolean odataQueryValidator() {
+        return ODataQueryValidator.isValidODataQuery(filter);
+    }
+
+    @Benchmark
+    public boolean legacyODataQueryValidator() {
+        return LegacyInjectionValidators.odataQueryValidator(filter);
+    }
+
+    @Benchmark
+    public boolean odataInputValidator() {
+        return ODataInputValidator.validateODataFilter(filter);
+    }
+
+    @Benchmark
+    public boolean legacyODataInputValidator() {
+        return LegacyInjectionValidators.odataInputValidator(filter);
+    }
+}
@@ -0,0 +1,44 @@
+import java.util.regex.Pattern;
+
+/**
+ * The regular expressions the injection validators used before InjectionScreen, kept
+ * verbatim (minus logging) so the benchmarks can compare against them.
+ */
+public final class LegacyInjectionValidators {
+
+    private static final Pattern SQL_INJECTION = Pattern.compile(
+            ".*(\\b(SELECT|INSERT|UPDATE|DELETE|DROP|UNION|WHERE|OR|AND|LIKE|CAST|CONVERT|EXEC|EXECUTE|FROM|HAVING|JOIN|NULL|TRUE|FALSE|IS|IN)\\b|--|;|'(?!\\w+\\s*\\()|\\w+\\s*\\([^)]*'.*'[^)]*\\)).*",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern ODATA_INPUT = Pattern.compile(
+            "([';]|--|\\/\\*|\\*\\/|\\bor\\b|\\band\\b|\\bselect\\b|\\binsert\\b|\\bdelete\\b|\\bupdate\\b|\\bdrop\\b|\\bunion\\b|\\b--\\b)",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final String[] FORBIDDEN_PATTERNS = {
+        "--", ";", "\\*", "DROP", "INSERT", "DELETE", "1=1", "OR ", "AND ", "UNION ", "xp_",
+        "/*", "*/", "CHAR(", "EXEC", "CAST(", "CONVERT("
+    };
+
+    private LegacyInjectionValidators() {
+    }
+
+    // SQLInjectionValidator.isValidODataQuery
+    public static boolean sqlInjectionValidator(String input) {
+        return !SQL_INJECTION.matcher(input).find();
+    }
+
+    // ODataQueryValidator.isValidODataQuery
+    public static boolean odataQueryValidator(String query) {
+        for (String pattern : FORBIDDEN_PATTERNS) {
+            if (query.toUpperCase().contains(pattern.toUpperCase())) {
+                return false;
+            }
+        }
+        return query.matches("[\\w\\s=><'(),./-]+");
+    }
+
+    // The injection check of ODataInputValidator.validateODataFilter
+    public static boolean odataInputValidator(String filter) {
+        return !ODATA_INPUT.matcher(filter).find();
+    }
+}
@@ -0,0 +1,186 @@
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * The SQL rendering code paths the generators used before SqlWriter, kept verbatim
+ * (apart from taking the typed request) so the benchmarks can compare against them,
+ * and SQLQueryModifier's filter splicing from before SqlClauseIndex.
+ */
+public final class LegacySqlRenderers {
+
+    private LegacySqlRenderers() {
+    }
+
+    // ExtendedSqlQueryGenerator / ConfigurableSqlQueryGenerator: StringJoiner chains
+    public static String joiners(QueryRequest request) {
+        StringBuilder queryBuilder = new StringBuilder();
+
+        StringJoiner columnJoiner = new StringJoiner(", ");
+        for (QueryRequest.Column column : request.getColumns()) {
+            String columnName = column.getName();
+            String aggregation = column.getAggregation();
+            if (aggregation != null) {
+                columnJoiner.add(aggregation + "(" + columnName + ")");
+            } else {
+                columnJoiner.add(columnName);
+            }
+        }
+
+        queryBuilder.append("SELECT ").append(columnJoiner.toString()).append(" FROM ").append(request.getTableName());
+
+        for (QueryRequest.Join join : request.getJoins()) {
+            queryBuilder.append(" ").append(join.getJoinType()).append(" JOIN ").append(join.getTableName())
+                        .append(" ON ").append(join.getLeftColumn()).append(" = ").append(join.getRightColumn());
+        }
+
+        if (!request.getFilters().isEmpty()) {
+            queryBuilder.append(" WHERE ").append(buildCondition(request.getFilters(), "AND"));
+        }
+
+        if (!request.getGroupBy().isEmpty()) {
+            StringJoiner groupByJoiner = new StringJoiner(", ");
+            for (String group : request.getGroupBy()) {
+                groupByJoiner.add(group);
+            }
+            queryBuilder.append(" GROUP BY ").append(groupByJoiner.toString());
+        }
+
+        QueryRequest.OrderBy orderBy = request.getOrderBy();
+        if (orderBy != null) {
+            queryBuilder.append(" ORDER BY ").append(orderBy.getColumn()).append(" ").append(orderBy.getDirection());
+        }
+
+        return queryBuilder.toString();
+    }
+
+    private static String buildCondition(List<QueryRequest.Filter> conditions, String conditionType) {
+        StringJoiner conditionJoiner = new StringJoiner(" " + conditionType + " ");
+
+        for (QueryRequest.Filter condition : conditions) {
+            if (condition instanceof QueryRequest.Logical) {
+                QueryRequest.Logical logical = (QueryRequest.Logical) condition;
+                conditionJoiner.add("(" + buildCondition(logical.getChildren(), logical.getOperator()) + ")");
+            } else if (condition instanceof QueryRequest.DateRange) {
+                QueryRequest.DateRange dateRange = (QueryRequest.DateRange) condition;
+                conditionJoiner.add(dateRange.getColumn() + " BETWEEN '" + dateRange.getStartDate() + "' AND '" + dateRange.getEndDate() + "'");
+            } else if (condition instanceof QueryRequest.In) {
+                QueryRequest.In in = (QueryRequest.In) condition;
+                StringJoiner valueJoiner = new StringJoiner(", ", in.getColumn() + " IN (", ")");
+                for (String value : in.getValues()) {
+                    valueJoiner.add("'" + value + "'");
+                }
+                conditionJoiner.add(valueJoiner.toString());
+            } else {
+                QueryRequest.Equals equals = (QueryRequest.Equals) condition;
+                conditionJoiner.add(equals.getColumn() + " = '" + equals.getValue() + "'");
+            }
+        }
+
+        return conditionJoiner.toString();
+    }
+
+    // ReportLambda: streams and Collectors.joining
+    public static String streams(QueryRequest input) {
+        StringBuilder sql = new StringBuilder("SELECT ")
+            .append(input.getColumns().stream()
+                .map(c -> c.getAggregation() != null ? c.getAggregation() + "(" + c.getName() + ")" : c.getName())
+                .collect(Collectors.joining(", ")))
+            .append(" FROM ").append(input.getTableName());
+
+        Optional.of(input.getJoins()).filter(j -> !j.isEmpty())
+            .ifPresent(j -> sql.append(" ").append(j.stream()
+                .map(join -> {
+                    String joinCondition = Optional.ofNullable(join.getCondition())
+                            .orElseGet(() -> join.getLeftColumn() + " = " + join.getRightColumn());
+                    String joinType = Optional.ofNullable(join.getJoinType()).orElse("INNER");
+                    return joinType + " JOIN " + join.getTableName() + " ON " + joinCondition;
+                })
+                .collect(Collectors.joining(" "))));
+
+        List<String> conditions = new ArrayList<>();
+        input.getFilters().stream()
+            .filter(QueryRequest.DateRange.class::isInstance)
+            .map(QueryRequest.DateRange.class::cast)
+            .findFirst()
+            .ifPresent(range -> conditions.add(range.getColumn() + " BETWEEN '" + range.getStartDate() + "' AND '" + range.getEndDate() + "'"));
+        input.getFilters().stream()
+            .filter(QueryRequest.Equals.class::isInstance)
+            .map(QueryRequest.Equals.class::cast)
+            .filter(equals -> equals.getColumn().equals("productCategory"))
+            .findFirst()
+            .ifPresent(category -> conditions.add("productCategory = '" + category.getValue() + "'"));
+        Optional.of(conditions.stream().collect(Collectors.joining(" AND "))).filter(w -> !w.isEmpty())
+            .ifPresent(w -> sql.append(" WHERE ").append(w));
+
+        Optional.of(input.getGroupBy()).filter(g -> !g.isEmpty())
+            .ifPresent(g -> sql.append(" GROUP BY ").append(String.join(", ", g)));
+
+        Optional.ofNullable(input.getOrderBy()).ifPresent(o -> sql.append(" ORDER BY ")
+            .append(o.getColumn())
+            .append(" ")
+            .append(o.getDirection()));
+
+        return sql.toString();
+    }
+
+    // QueryBuilder: Optional-heavy appends
+    public static String optionals(QueryRequest request) {
+        StringBuilder queryBuilder = new StringBuilder("SELECT * FROM ");
+        queryBuilder.append(request.getTableName());
+
+        request.getJoins().forEach(join -> {
+            String joinType = Optional.ofNullable(join.getJoinType()).orElse("INNER");
+            Optional<String> leftColumn = Optional.ofNullable(join.getLeftColumn());
+            Optional<String> rightColumn = Optional.ofNullable(join.getRightColumn());
+
+            if (leftColumn.isPresent() && rightColumn.isPresent()) {
+                queryBuilder.append(" ")
+                        .append(joinType)
+                        .append(" JOIN ")
+                        .append(join.getTableName())
+                        .append(" ON ")
+                        .append(leftColumn.get())
+                        .append(" = ")
+                        .append(rightColumn.get());
+            }
+        });
+
+        return queryBuilder.toString();
+    }
+
+    // SQLQueryModifier.appendFiltersToQuery: lower-cased copy and three regular expressions per call
+    public static String appendFiltersToQuery(String originalQuery, String newFilters) {
+        String lowerCaseQuery = originalQuery.toLowerCase();
+        String whereClause = " WHERE ";
+
+        Pattern groupByPattern = Pattern.compile("\\sGROUP\\s+BY\\s", Pattern.CASE_INSENSITIVE);
+        Pattern orderByPattern = Pattern.compile("\\sORDER\\s+BY\\s", Pattern.CASE_INSENSITIVE);
+        Pattern joinPattern = Pattern.compile("\\sJOIN\\s", Pattern.CASE_INSENSITIVE);
+
+        if (lowerCaseQuery.contains(" where ")) {
+            originalQuery = originalQuery.replaceFirst("(?i)where", "WHERE");
+            whereClause = " AND ";
+        } else {
+            Matcher groupByMatcher = groupByPattern.matcher(originalQuery);
+            Matcher orderByMatcher = orderByPattern.matcher(originalQuery);
+            Matcher joinMatcher = joinPattern.matcher(originalQuery);
+
+            int insertionPoint = originalQuery.length();
+            if (groupByMatcher.find()) {
+                insertionPoint = groupByMatcher.start();
+            }
+            if (orderByMatcher.find() && orderByMatcher.start() < insertionPoint) {
+                insertionPoint = orderByMatcher.start();
+            }
+            if (joinMatcher.find() && joinMatcher.start() < insertionPoint) {
+                insertionPoint = joinMatcher.start();
+            }
+            return new StringBuilder(originalQuery)
+                    .insert(insertionPoint, " WHERE " + newFilters)
+                    .toString();
+        }
+        return originalQuery + whereClause + newFilters;
+    }
+}
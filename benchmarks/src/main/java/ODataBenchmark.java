@@ -0,0 +1,85 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The OData filter path of the consumption API: the three injection validators, the
+ * OData-to-SQL conversion (served from ODataFilterCache after the first call, and parsed
+ * from scratch for comparison) and appending the converted filter to a generated query
+ * (through SqlClauseIndex, and with the regular expressions it replaced).
+ * The filters are the corpus requests' filters written as OData (see BenchmarkCorpus).
+ *
+ * Some validators print on every rejected input; their output is discarded here, but
+ * the cost of producing it is still measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ODataBenchmark {
+
+    @Param({"sample", "wide", "deep"})
+    public String shape;
+
+    private String odataFilter;
+    private String convertedFilter;
+    private String baseQuery;
+    private PrintStream originalOut;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkCorpus corpus = BenchmarkCorpus.load(shape);
+        corpus.installCatalog();
+        odataFilter = corpus.getODataFilter() + " and contains(product_name, 'Milk')";
+        convertedFilter = ODataToSQLConverter.convertODataToSQL(odataFilter);
+        baseQuery = ConfigurableSqlQueryGenerator.generateSqlQuery(corpus.getRequest());
+
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public String convertODataToSQL() {
+        return ODataToSQLConverter.convertODataToSQL(odataFilter);
+    }
+
+    @Benchmark
+    public String parseODataToSQL() {
+        return ODataParser.parse(odataFilter).toSql();
+    }
+
+    @Benchmark
+    public boolean odataQueryValidator() {
+        return ODataQueryValidator.isValidODataQuery(odataFilter);
+    }
+
+    @Benchmark
+    public boolean sqlInjectionValidator() {
+        return SQLInjectionValidator.isValidODataQuery(odataFilter);
+    }
+
+    @Benchmark
+    public boolean odataInputValidator() {
+        return ODataInputValidator.validateODataFilter(odataFilter);
+    }
+
+    @Benchmark
+    public String appendFiltersToQuery() {
+        return SQLQueryModifier.appendFiltersToQuery(baseQuery, convertedFilter);
+    }
+
+    @Benchmark
+    public String legacyAppendFiltersToQuery() {
+        return LegacySqlRenderers.appendFiltersToQuery(baseQuery, convertedFilter);
+    }
+}
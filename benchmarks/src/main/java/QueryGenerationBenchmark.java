@@ -0,0 +1,56 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end query generation from the request as the Lambdas receive it: JSON text for
+ * ConfigurableSqlQueryGenerator, a deserialized map for ExtendedSqlQueryGenerator and
+ * ReportLambda. Parsing, validation, plan lookup and rendering are all included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryGenerationBenchmark {
+
+    @Param({"sample", "wide", "deep"})
+    public String shape;
+
+    private String json;
+    private Map<String, Object> requestMap;
+    private ReportLambda reportLambda;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkCorpus corpus = BenchmarkCorpus.load(shape);
+        corpus.installCatalog();
+        json = corpus.getJson();
+        requestMap = new ObjectMapper().readValue(json, Map.class);
+        reportLambda = new ReportLambda();
+    }
+
+    @Benchmark
+    public String configurableFromJson() {
+        return ConfigurableSqlQueryGenerator.generateSqlQuery(json);
+    }
+
+    @Benchmark
+    public ParameterizedQuery configurableParameterized() {
+        return ConfigurableSqlQueryGenerator.generateParameterizedQuery(QueryRequestParser.parse(json));
+    }
+
+    @Benchmark
+    public String extendedFromMap() {
+        return ExtendedSqlQueryGenerator.generateSqlQuery(requestMap);
+    }
+
+    @Benchmark
+    public String reportLambdaFromMap() {
+        return reportLambda.generateSqlFromInput(requestMap, Map.of());
+    }
+}
@@ -0,0 +1,78 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares SqlWriter against the rendering code it replaced, for the request in sample.json
+ * and for wider and deeper variants of it (see BenchmarkCorpus).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlRenderingBenchmark {
+
+    @Param({"sample", "wide", "deep"})
+    public String shape;
+
+    private QueryRequest request;
+    private ReportLambda reportLambda;
+    private final Map<String, Object> reportConfig = Collections.emptyMap();
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkCorpus corpus = BenchmarkCorpus.load(shape);
+        corpus.installCatalog();
+        request = corpus.getRequest();
+        reportLambda = new ReportLambda();
+    }
+
+    @Benchmark
+    public String renderStringJoiners() {
+        return LegacySqlRenderers.joiners(request);
+    }
+
+    @Benchmark
+    public String renderSqlWriter() {
+        SqlWriter sql = SqlWriter.acquire().select(request.getColumns()).from(request.getTableName());
+        for (QueryRequest.Join join : request.getJoins()) {
+            sql.join(join.getJoinType(), join.getTableName(), join.getLeftColumn(), join.getRightColumn());
+        }
+        return sql.where(request.getFilters()).groupBy(request.getGroupBy()).orderBy(request.getOrderBy()).finish();
+    }
+
+    @Benchmark
+    public String reportLambdaStreams() {
+        return LegacySqlRenderers.streams(request);
+    }
+
+    @Benchmark
+    public String reportLambdaSqlWriter() {
+        return reportLambda.generateSqlFromInput(request, reportConfig);
+    }
+
+    @Benchmark
+    public String queryBuilderOptionals() {
+        return LegacySqlRenderers.optionals(request);
+    }
+
+    @Benchmark
+    public String queryBuilderSqlWriter() {
+        return QueryBuilder.buildQuery(request);
+    }
+
+    @Benchmark
+    public String extendedGenerator() {
+        return ExtendedSqlQueryGenerator.generateSqlQuery(request);
+    }
+
+    @Benchmark
+    public String configurableGenerator() {
+        return ConfigurableSqlQueryGenerator.generateSqlQuery(request);
+    }
+}
@@ -1,17 +1,14 @@
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.hc.core5.http.io.entity.EntityUtils;
-import org.apache.hc.client5.http.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.core5.http.ParseException;
+import org.apache.hc.core5.util.Timeout;
 import java.io.IOException;
 
 public class DatabricksQueryExecutor {
 
     private static final ObjectMapper objectMapper = new ObjectMapper();
     private static final String DATABRICKS_URL = "https://<databricks-instance>/api/2.0/sql/queries";
+    private static final Timeout RESPONSE_TIMEOUT = Timeout.ofSeconds(60);
 
     public static void main(String[] args) {
         try {
@@ -24,24 +21,17 @@ public class DatabricksQueryExecutor {
     }
 
     public static String executeDatabricksQuery() throws IOException, ParseException {
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-
-        // Set up the POST request (this should be set up with the proper URL and headers)
-        HttpPost postRequest = new HttpPost(DATABRICKS_URL);
-        postRequest.setHeader("Authorization", "Bearer <your-token>");
-        postRequest.setHeader("Content-Type", "application/json");
-
-        // Execute the request and get the response
-        try (CloseableHttpResponse response = httpClient.execute(postRequest)) {
-            // Check for successful status code
-            int statusCode = response.getCode();
-            if (statusCode == 200 || statusCode == 201) {
-                // Parse the response body
-                String responseBody = EntityUtils.toString(response.getEntity());
-                return extractStatementId(responseBody);
-            } else {
-                throw new IOException("Failed to execute query. HTTP error code: " + statusCode);
-            }
+        // Execute the request over the container's pooled Databricks connections
+        DatabricksTransport.Response response = DatabricksTransport.shared()
+                .postJson(DATABRICKS_URL, "<your-token>", "{}", RESPONSE_TIMEOUT);
+
+        // Check for successful status code
+        int statusCode = response.getStatusCode();
+        if (statusCode == 200 || statusCode == 201) {
+            // Parse the response body
+            return extractStatementId(response.getBody());
+        } else {
+            throw new IOException("Failed to execute query. HTTP error code: " + statusCode);
         }
     }
 
@@ -1,61 +1,368 @@
-import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
-import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
-import org.apache.hc.client5.http.nio.AsyncEntityProducer;
-import org.apache.hc.core5.http.HttpHeaders;
-import org.apache.hc.core5.http.HttpResponse;
-import org.apache.hc.core5.http.nio.support.BasicRequestProducer;
-import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.util.Timeout;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Non-blocking client for the Databricks SQL Statement Execution API. databricksUrl is the
+ * API base (https://<workspace>/api/2.0).
+ *
+ * Every call is a CompletableFuture stage on the non-blocking client of the shared
+ * DatabricksTransport, so a single container can drive many statements without a thread per
+ * query: submit, getStatus, getResultChunk and cancel are single requests, and executeStatement
+ * composes them into submit, poll until the statement finishes, and return its final status.
+ * Polls follow a PollSchedule and are scheduled with a delayed executor rather than a sleeping
+ * thread.
+ *
+ * A statement still running DATABRICKS_STATEMENT_TIMEOUT_SECONDS (default 900) after the call is
+ * canceled and its future fails. Cancelling the future returned by executeStatement stops the
+ * polling and cancels the statement in the warehouse.
+ *
+ * executeStatement holds one of DATABRICKS_MAX_IN_FLIGHT_STATEMENTS permits (default 32) from
+ * submit until the statement finishes or is canceled; statements over the limit queue for a
+ * permit without blocking the caller.
+ */
 public class DatabricksAsyncClient {
+
+    private static final int DEFAULT_MAX_IN_FLIGHT_STATEMENTS = 32;
+    private static final int DEFAULT_STATEMENT_TIMEOUT_SECONDS = 900;
+    private static final Timeout RESPONSE_TIMEOUT = Timeout.ofSeconds(30);
+
+    // Built on first use and shared by every client in the container
+    private static final class Holder {
+        static final StatementPermits PERMITS = new StatementPermits(
+                intSetting("DATABRICKS_MAX_IN_FLIGHT_STATEMENTS", DEFAULT_MAX_IN_FLIGHT_STATEMENTS));
+        static final long STATEMENT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(
+                intSetting("DATABRICKS_STATEMENT_TIMEOUT_SECONDS", DEFAULT_STATEMENT_TIMEOUT_SECONDS));
+    }
+
     private final String databricksUrl;
     private final String authToken;
+    private final String warehouseId;
 
     public DatabricksAsyncClient(String databricksUrl, String authToken) {
+        this(databricksUrl, authToken, System.getenv("DATABRICKS_WAREHOUSE_ID"));
+    }
+
+    public DatabricksAsyncClient(String databricksUrl, String authToken, String warehouseId) {
         this.databricksUrl = databricksUrl;
         this.authToken = authToken;
+        this.warehouseId = warehouseId;
     }
 
     public CompletableFuture<String> executeQueryAsync(String query) {
-        // Prepare the Databricks API payload
+        return executeStatement(query).thenApply(JSONObject::toString);
+    }
+
+    /**
+     * Runs the statement to completion and returns its final status response, or fails with a
+     * RuntimeException if it failed, was canceled or was closed.
+     */
+    public CompletableFuture<JSONObject> executeStatement(String query) {
+        return execute(statementPayload(query));
+    }
+
+    // Submits SQL with named parameter markers; the values travel in the statement's parameters field
+    public CompletableFuture<JSONObject> executeStatement(ParameterizedQuery query) {
+        return execute(statementPayload(query));
+    }
+
+    private CompletableFuture<JSONObject> execute(JSONObject payload) {
+        StatementPermits permits = Holder.PERMITS;
+        Execution execution = new Execution(System.currentTimeMillis() + Holder.STATEMENT_TIMEOUT_MILLIS);
+        // The permit is released when the pipeline ends, never when the caller cancels, so it is
+        // never released before it was granted or while a request of the statement is in flight
+        permits.acquire()
+                .thenCompose(permit -> execution.result.isDone()
+                        ? CompletableFuture.<JSONObject>failedFuture(new CancellationException("Databricks statement was canceled."))
+                        : post(payload))
+                .thenCompose(status -> awaitCompletion(execution, status))
+                .thenApply(DatabricksAsyncClient::requireSucceeded)
+                .whenComplete((status, error) -> {
+                    permits.release();
+                    if (execution.result.isCancelled()) {
+                        execution.cancelStatement();
+                    }
+                    if (error == null) {
+                        execution.result.complete(status);
+                    } else {
+                        execution.result.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+                    }
+                });
+        execution.result.whenComplete((status, error) -> {
+            if (error instanceof CancellationException) {
+                execution.cancel();
+            }
+        });
+        return execution.result;
+    }
+
+    /**
+     * Submits the statement without waiting for it and returns the API response, which carries
+     * statement_id and the initial status.
+     */
+    public CompletableFuture<JSONObject> submit(String query) {
+        return post(statementPayload(query));
+    }
+
+    private CompletableFuture<JSONObject> post(JSONObject payload) {
+        return send(SimpleRequestBuilder.post(databricksUrl + "/sql/statements")
+                .setBody(payload.toString(), ContentType.APPLICATION_JSON));
+    }
+
+    public CompletableFuture<JSONObject> getStatus(String statementId) {
+        return send(SimpleRequestBuilder.get(databricksUrl + "/sql/statements/" + statementId));
+    }
+
+    /**
+     * The external links of one result chunk; the last link names the next chunk, if any.
+     */
+    public CompletableFuture<JSONObject> getResultChunk(String statementId, int chunkIndex) {
+        return send(SimpleRequestBuilder.get(databricksUrl + "/sql/statements/" + statementId + "/result/chunks/" + chunkIndex));
+    }
+
+    /**
+     * Follows the chunk chain from chunk 0 and returns every external link in chunk order.
+     */
+    public CompletableFuture<List<String>> fetchChunkLinks(String statementId) {
+        return collectChunkLinks(statementId, 0, new ArrayList<>());
+    }
+
+    private CompletableFuture<List<String>> collectChunkLinks(String statementId, int chunkIndex, List<String> links) {
+        return getResultChunk(statementId, chunkIndex).thenCompose(chunk -> {
+            JSONArray externalLinks = chunk.optJSONArray("external_links");
+            int nextChunkIndex = -1;
+            for (int i = 0; externalLinks != null && i < externalLinks.length(); i++) {
+                JSONObject link = externalLinks.getJSONObject(i);
+                links.add(link.getString("external_link"));
+                nextChunkIndex = link.optInt("next_chunk_index", -1);
+            }
+            return nextChunkIndex < 0
+                    ? CompletableFuture.completedFuture(links)
+                    : collectChunkLinks(statementId, nextChunkIndex, links);
+        });
+    }
+
+    public CompletableFuture<Void> cancel(String statementId) {
+        return send(SimpleRequestBuilder.post(databricksUrl + "/sql/statements/" + statementId + "/cancel"))
+                .thenApply(response -> null);
+    }
+
+    // Polls until the statement reaches a final state; each poll is scheduled, not slept for
+    private CompletableFuture<JSONObject> awaitCompletion(Execution execution, JSONObject status) {
+        String statementId = status.optString("statement_id", null);
+        execution.statementId = statementId;
+        if (isFinal(state(status))) {
+            return CompletableFuture.completedFuture(status);
+        }
+        long now = System.currentTimeMillis();
+        if (execution.result.isDone()) {
+            return CompletableFuture.failedFuture(new CancellationException("Databricks statement " + statementId + " was canceled."));
+        }
+        if (now >= execution.deadline) {
+            execution.cancelStatement();
+            return CompletableFuture.failedFuture(new RuntimeException("Databricks statement " + statementId + " did not finish within "
+                    + TimeUnit.MILLISECONDS.toSeconds(Holder.STATEMENT_TIMEOUT_MILLIS) + " seconds and was canceled."));
+        }
+        long delay = Math.min(execution.schedule.nextDelayMillis(now - execution.started), execution.deadline - now);
+        Executor delayed = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+        return CompletableFuture.supplyAsync(() -> statementId, delayed)
+                .thenCompose(execution::poll)
+                .thenCompose(next -> awaitCompletion(execution, next));
+    }
+
+    private void cancelQuietly(String statementId) {
+        cancel(statementId).exceptionally(error -> {
+            System.err.println("Failed to cancel Databricks statement " + statementId + ": " + error.getMessage());
+            return null;
+        });
+    }
+
+    private CompletableFuture<JSONObject> send(SimpleRequestBuilder builder) {
+        SimpleHttpRequest request = builder.build();
+
+        CompletableFuture<JSONObject> responseFuture = new CompletableFuture<>();
+        Future<SimpleHttpResponse> exchange = DatabricksTransport.shared().executeAsync(request, authToken, RESPONSE_TIMEOUT,
+                new FutureCallback<SimpleHttpResponse>() {
+                    @Override
+                    public void completed(SimpleHttpResponse response) {
+                        int statusCode = response.getCode();
+                        if (statusCode == 200) {
+                            String body = response.getBodyText();
+                            try {
+                                responseFuture.complete(body == null || body.isEmpty() ? new JSONObject() : new JSONObject(body));
+                            } catch (RuntimeException e) {
+                                responseFuture.completeExceptionally(e);
+                            }
+                        } else {
+                            responseFuture.completeExceptionally(new RuntimeException(
+                                    "Databricks query failed with status code: " + statusCode));
+                        }
+                    }
+
+                    @Override
+                    public void failed(Exception ex) {
+                        responseFuture.completeExceptionally(ex);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        responseFuture.cancel(false);
+                    }
+                });
+        // Cancelling the returned future aborts the exchange
+        responseFuture.whenComplete((response, error) -> {
+            if (responseFuture.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return responseFuture;
+    }
+
+    private JSONObject statementPayload(String query) {
+        // wait_timeout 0s returns at once with the statement id; completion is polled for
         JSONObject payload = new JSONObject();
-        payload.put("query", query);
-
-        // Create an asynchronous HTTP client
-        IOReactorConfig reactorConfig = IOReactorConfig.custom()
-                .setSoTimeout(Timeout.ofSeconds(30))
-                .build();
-
-        try (CloseableHttpAsyncClient httpClient = HttpAsyncClients.custom()
-                .setIOReactorConfig(reactorConfig)
-                .build()) {
-
-            // Start the client
-            httpClient.start();
-
-            // Prepare the HTTP POST request
-            BasicRequestProducer requestProducer = new BasicRequestProducer(
-                    "POST", URI.create(databricksUrl + "/sql/execute"),
-                    AsyncEntityProducer.create(payload.toString(), "application/json"));
-
-            // Execute the asynchronous request
-            CompletableFuture<String> responseFuture = new CompletableFuture<>();
-            httpClient.execute(requestProducer, (HttpResponse response) -> {
-                int statusCode = response.getCode();
-                if (statusCode == 200) {
-                    responseFuture.complete(response.getEntity().toString());
-                } else {
-                    responseFuture.completeExceptionally(new RuntimeException(
-                            "Databricks query failed with status code: " + statusCode));
+        payload.put("statement", query);
+        payload.put("warehouse_id", warehouseId);
+        payload.put("wait_timeout", "0s");
+        payload.put("disposition", "EXTERNAL_LINKS");
+        payload.put("format", "JSON_ARRAY");
+        return payload;
+    }
+
+    private JSONObject statementPayload(ParameterizedQuery query) {
+        JSONArray parameters = new JSONArray();
+        for (ParameterizedQuery.Parameter parameter : query.getParameters()) {
+            parameters.put(new JSONObject()
+                    .put("name", parameter.getName())
+                    .put("value", parameter.getValue())
+                    .put("type", parameter.getType()));
+        }
+        return statementPayload(query.getSql()).put("parameters", parameters);
+    }
+
+    private static String state(JSONObject status) {
+        JSONObject statementStatus = status.optJSONObject("status");
+        return statementStatus == null ? "" : statementStatus.optString("state");
+    }
+
+    private static boolean isFinal(String state) {
+        return "SUCCEEDED".equals(state) || "FAILED".equals(state) || "CANCELED".equals(state) || "CLOSED".equals(state);
+    }
+
+    private static JSONObject requireSucceeded(JSONObject status) {
+        String state = state(status);
+        if ("SUCCEEDED".equals(state)) {
+            return status;
+        }
+        JSONObject error = status.getJSONObject("status").optJSONObject("error");
+        throw new RuntimeException("Databricks statement " + status.optString("statement_id") + " ended in state "
+                + state + (error == null ? "" : ": " + error.optString("message")));
+    }
+
+    private static int intSetting(String name, int defaultValue) {
+        return Optional.ofNullable(System.getenv(name)).map(Integer::parseInt).orElse(defaultValue);
+    }
+
+    // One executeStatement call: its deadline, poll schedule, the result handed to the caller,
+    // and the request in flight, so a caller's cancel can abort it and cancel the statement
+    private final class Execution {
+        final long started = System.currentTimeMillis();
+        final long deadline;
+        final PollSchedule schedule = new PollSchedule(null);
+        final CompletableFuture<JSONObject> result = new CompletableFuture<>();
+        volatile String statementId;
+        private volatile CompletableFuture<JSONObject> inFlight;
+        private final AtomicBoolean statementCanceled = new AtomicBoolean();
+
+        Execution(long deadline) {
+            this.deadline = deadline;
+        }
+
+        // Asks for the statement's status unless the caller has already canceled it. The submit
+        // is never aborted, since its response carries the id needed to cancel the statement
+        CompletableFuture<JSONObject> poll(String id) {
+            if (result.isDone()) {
+                return CompletableFuture.failedFuture(new CancellationException("Databricks statement " + id + " was canceled."));
+            }
+            CompletableFuture<JSONObject> future = getStatus(id);
+            inFlight = future;
+            if (result.isCancelled()) {
+                future.cancel(false);
+            }
+            return future;
+        }
+
+        // The caller canceled: abort the poll in flight and stop the statement if it has an id
+        void cancel() {
+            CompletableFuture<JSONObject> request = inFlight;
+            if (request != null) {
+                request.cancel(false);
+            }
+            cancelStatement();
+        }
+
+        // Sent at most once, whether the caller, the deadline or the end of the pipeline asks first
+        void cancelStatement() {
+            String id = statementId;
+            if (id != null && statementCanceled.compareAndSet(false, true)) {
+                cancelQuietly(id);
+            }
+        }
+    }
+
+    // Counts statements in flight; callers over the limit get a future that completes when a permit frees up
+    private static final class StatementPermits {
+        private final int limit;
+        private final ArrayDeque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+        private int inFlight;
+
+        StatementPermits(int limit) {
+            if (limit < 1) {
+                throw new IllegalArgumentException("In-flight statement limit must be positive: " + limit);
+            }
+            this.limit = limit;
+        }
+
+        CompletableFuture<Void> acquire() {
+            synchronized (this) {
+                if (inFlight < limit) {
+                    inFlight++;
+                    return CompletableFuture.completedFuture(null);
                 }
-            });
+                CompletableFuture<Void> permit = new CompletableFuture<>();
+                waiting.add(permit);
+                return permit;
+            }
+        }
 
-            return responseFuture;
+        void release() {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    inFlight--;
+                    return;
+                }
+            }
+            // The permit passes straight to the next waiter; completed outside the lock
+            next.completeAsync(() -> null);
         }
     }
 }
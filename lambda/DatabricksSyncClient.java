@@ -1,14 +1,8 @@
-import org.apache.hc.client5.http.classic.methods.HttpPost;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.core5.http.io.entity.StringEntity;
 import org.apache.hc.core5.util.Timeout;
 import org.apache.hc.core5.http.ParseException;
 
 import java.io.IOException;
-import java.time.Duration;
-import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 public class DatabricksSyncClient {
@@ -26,28 +20,37 @@ public class DatabricksSyncClient {
         payload.put("query", query);
         payload.put("timeout", timeoutSeconds);
 
-        // Create an HttpClient with a timeout
-        try (CloseableHttpClient httpClient = HttpClients.custom()
-                .setConnectionTimeToLive(Timeout.of(timeoutSeconds, TimeUnit.SECONDS))
-                .build()) {
-
-            // Build the HTTP POST request
-            HttpPost postRequest = new HttpPost(databricksUrl + "/sql/execute");
-            postRequest.setHeader("Authorization", "Bearer " + authToken);
-            postRequest.setHeader("Content-Type", "application/json");
-            postRequest.setEntity(new StringEntity(payload.toString()));
-
-            // Execute the request
-            try (CloseableHttpResponse response = httpClient.execute(postRequest)) {
-                int statusCode = response.getCode();
-                String responseBody = new String(response.getEntity().getContent().readAllBytes());
-
-                if (statusCode == 200) {
-                    return responseBody;
-                } else {
-                    throw new RuntimeException("Databricks query failed with status code: " + statusCode);
-                }
-            }
+        return execute(payload, timeoutSeconds);
+    }
+
+    // Submits SQL with named parameter markers; the values travel in the statement's parameters field
+    public String executeQuerySync(ParameterizedQuery query, int timeoutSeconds) throws IOException, ParseException {
+        JSONArray parameters = new JSONArray();
+        for (ParameterizedQuery.Parameter parameter : query.getParameters()) {
+            parameters.put(new JSONObject()
+                    .put("name", parameter.getName())
+                    .put("value", parameter.getValue())
+                    .put("type", parameter.getType()));
+        }
+
+        // Prepare the Databricks API payload
+        JSONObject payload = new JSONObject();
+        payload.put("query", query.getSql());
+        payload.put("parameters", parameters);
+        payload.put("timeout", timeoutSeconds);
+
+        return execute(payload, timeoutSeconds);
+    }
+
+    private String execute(JSONObject payload, int timeoutSeconds) throws IOException, ParseException {
+        // Sent over the container's pooled connections; nothing is set up or torn down per query
+        DatabricksTransport.Response response = DatabricksTransport.shared()
+                .postJson(databricksUrl + "/sql/execute", authToken, payload.toString(), Timeout.ofSeconds(timeoutSeconds));
+
+        if (response.getStatusCode() == 200) {
+            return response.getBody();
+        } else {
+            throw new RuntimeException("Databricks query failed with status code: " + response.getStatusCode());
         }
     }
 }
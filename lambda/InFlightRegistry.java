@@ -0,0 +1,151 @@
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Single-flight registry for report requests, shared by all Lambda containers through a
+ * DynamoDB lease table. The first request for a given query takes the lease with a
+ * conditional write and is executed; identical requests that arrive while the lease is held
+ * get the leader's request id instead of starting another warehouse statement.
+ *
+ * The leader's request id and the lease key travel with the request through the state machine
+ * onto its status item, and QueryExecution releases the lease when the request completes or
+ * fails. If query generation or execution fails, the state machine releases the lease before it
+ * fails. A lease also expires on its own after LEASE_SECONDS, so a crashed execution cannot
+ * block a query forever.
+ *
+ * A request only attaches to a leader that started within the report's result_ttl_seconds
+ * (ReportConfigTable, the freshness rule ResultCache applies); otherwise it takes the lease
+ * over and runs. A report with a TTL of 0 therefore always runs its own statement.
+ */
+public class InFlightRegistry {
+    private static final String LEASE_TABLE_NAME = "QueryInFlightTable";  // Replace with your lease table name
+    private static final String REPORTS_CONFIG_TABLE = "ReportConfigTable";
+    private static final long LEASE_SECONDS = 900L;
+    // Same default as ResultCache, for reports without a result_ttl_seconds
+    private static final long DEFAULT_RESULT_TTL_SECONDS = 300L;
+
+    // Canonical JSON: object keys in sorted order, so key order in the request does not matter
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private final AmazonDynamoDB dynamoDBClient;
+
+    public InFlightRegistry(AmazonDynamoDB dynamoDBClient) {
+        this.dynamoDBClient = dynamoDBClient;
+    }
+
+    /**
+     * Returns the coalescing key for a request: the SHA-256 of its canonical JSON, in hex.
+     */
+    public static String requestKey(Map<String, Object> request) {
+        try {
+            byte[] canonical = CANONICAL_MAPPER.writeValueAsString(request).getBytes(StandardCharsets.UTF_8);
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(canonical);
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Unable to compute request key", e);
+        }
+    }
+
+    /**
+     * Tries to take the lease for the key on behalf of the request. Returns null if the lease
+     * was taken, so the caller should execute the request, or the id of the request that
+     * already holds it, which the caller should attach to. A holder that started longer ago
+     * than the report's result_ttl_seconds is taken over rather than attached to; the TTL is
+     * only read when the lease is already held.
+     */
+    public String acquire(String key, String requestId, String reportName) {
+        long nowMillis = System.currentTimeMillis();
+        long now = nowMillis / 1000L;
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("inflight_key", new AttributeValue().withS(key));
+        item.put("request_id", new AttributeValue().withS(requestId));
+        item.put("started_at", new AttributeValue().withN(Long.toString(nowMillis)));
+        item.put("lease_expires_at", new AttributeValue().withN(Long.toString(now + LEASE_SECONDS)));
+
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":now", new AttributeValue().withN(Long.toString(now)));
+        String condition = "attribute_not_exists(inflight_key) OR lease_expires_at < :now";
+
+        Long maxAgeSeconds = null;
+        for (int attempt = 0; attempt < 3; attempt++) {
+            try {
+                dynamoDBClient.putItem(new PutItemRequest()
+                        .withTableName(LEASE_TABLE_NAME)
+                        .withItem(item)
+                        .withConditionExpression(condition)
+                        .withExpressionAttributeValues(values));
+                return null;
+            } catch (ConditionalCheckFailedException e) {
+                Map<String, AttributeValue> holder = dynamoDBClient.getItem(new GetItemRequest()
+                        .withTableName(LEASE_TABLE_NAME)
+                        .withKey(Map.of("inflight_key", new AttributeValue().withS(key)))
+                        .withConsistentRead(true)).getItem();
+                if (holder == null || !holder.containsKey("request_id")) {
+                    // The lease was released between the two calls; try to take it again
+                    continue;
+                }
+                if (maxAgeSeconds == null) {
+                    maxAgeSeconds = resultTtlSeconds(reportName);
+                    long oldest = nowMillis - maxAgeSeconds * 1000L;
+                    if (holder.containsKey("started_at") && Long.parseLong(holder.get("started_at").getN()) < oldest) {
+                        // The holder's result would be older than the report allows; take the lease over
+                        values.put(":oldest", new AttributeValue().withN(Long.toString(oldest)));
+                        condition += " OR started_at < :oldest";
+                        continue;
+                    }
+                }
+                return holder.get("request_id").getS();
+            }
+        }
+        return null;
+    }
+
+    // The report's result_ttl_seconds, or the default when the report does not set one
+    private long resultTtlSeconds(String reportName) {
+        if (reportName == null) {
+            return DEFAULT_RESULT_TTL_SECONDS;
+        }
+        Map<String, AttributeValue> config = dynamoDBClient.getItem(new GetItemRequest()
+                .withTableName(REPORTS_CONFIG_TABLE)
+                .withKey(Map.of("report_name", new AttributeValue().withS(reportName)))
+                .withProjectionExpression("result_ttl_seconds")).getItem();
+        if (config == null || !config.containsKey("result_ttl_seconds")) {
+            return DEFAULT_RESULT_TTL_SECONDS;
+        }
+        return Long.parseLong(config.get("result_ttl_seconds").getN());
+    }
+
+    /**
+     * Releases the lease if it is still held by the request, so the next identical request
+     * starts a new execution. A lease taken over by another request is left alone.
+     */
+    public void release(String key, String requestId) {
+        try {
+            dynamoDBClient.deleteItem(new DeleteItemRequest()
+                    .withTableName(LEASE_TABLE_NAME)
+                    .withKey(Map.of("inflight_key", new AttributeValue().withS(key)))
+                    .withConditionExpression("request_id = :rid")
+                    .withExpressionAttributeValues(Map.of(":rid", new AttributeValue().withS(requestId))));
+        } catch (ConditionalCheckFailedException e) {
+            // Already released or expired and taken by a newer request
+        }
+    }
+}
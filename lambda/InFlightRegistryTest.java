@@ -0,0 +1,151 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class InFlightRegistryTest {
+
+    // Holds leases and report configurations in maps and applies the registry's write conditions
+    private static class FakeDynamoDB extends AbstractAmazonDynamoDB {
+        private final Map<String, Map<String, AttributeValue>> leases = new HashMap<>();
+        private final Map<String, Map<String, AttributeValue>> reportConfigs = new HashMap<>();
+        private int configReads;
+
+        void holdLease(String key, String requestId, long startedAtMillis) {
+            Map<String, AttributeValue> lease = new HashMap<>();
+            lease.put("inflight_key", new AttributeValue().withS(key));
+            lease.put("request_id", new AttributeValue().withS(requestId));
+            lease.put("started_at", new AttributeValue().withN(Long.toString(startedAtMillis)));
+            lease.put("lease_expires_at", new AttributeValue().withN(Long.toString(startedAtMillis / 1000L + 900L)));
+            leases.put(key, lease);
+        }
+
+        void setResultTtl(String reportName, long ttlSeconds) {
+            reportConfigs.put(reportName, Map.of("result_ttl_seconds", new AttributeValue().withN(Long.toString(ttlSeconds))));
+        }
+
+        String holder(String key) {
+            Map<String, AttributeValue> lease = leases.get(key);
+            return lease == null ? null : lease.get("request_id").getS();
+        }
+
+        @Override
+        public PutItemResult putItem(PutItemRequest request) {
+            String key = request.getItem().get("inflight_key").getS();
+            Map<String, AttributeValue> current = leases.get(key);
+            if (current != null) {
+                Map<String, AttributeValue> values = request.getExpressionAttributeValues();
+                boolean expired = number(current, "lease_expires_at") < number(values, ":now");
+                boolean tooOld = request.getConditionExpression().contains("started_at < :oldest")
+                        && number(current, "started_at") < number(values, ":oldest");
+                if (!expired && !tooOld) {
+                    throw new ConditionalCheckFailedException("The lease is held.");
+                }
+            }
+            leases.put(key, new HashMap<>(request.getItem()));
+            return new PutItemResult();
+        }
+
+        @Override
+        public GetItemResult getItem(GetItemRequest request) {
+            if ("ReportConfigTable".equals(request.getTableName())) {
+                configReads++;
+                return new GetItemResult().withItem(reportConfigs.get(request.getKey().get("report_name").getS()));
+            }
+            return new GetItemResult().withItem(leases.get(request.getKey().get("inflight_key").getS()));
+        }
+
+        @Override
+        public DeleteItemResult deleteItem(DeleteItemRequest request) {
+            String key = request.getKey().get("inflight_key").getS();
+            String requestId = request.getExpressionAttributeValues().get(":rid").getS();
+            if (!requestId.equals(holder(key))) {
+                throw new ConditionalCheckFailedException("The lease belongs to another request.");
+            }
+            leases.remove(key);
+            return new DeleteItemResult();
+        }
+
+        private static long number(Map<String, AttributeValue> item, String name) {
+            return Long.parseLong(item.get(name).getN());
+        }
+    }
+
+    @Test
+    public void testRequestKeyIgnoresKeyOrder() {
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("report_name", "daily_sales");
+        first.put("parameters", new LinkedHashMap<>(Map.of("region", "West", "year", 2024)));
+        first.put("columns", List.of("region", "total_sales"));
+
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("year", 2024);
+        parameters.put("region", "West");
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("columns", List.of("region", "total_sales"));
+        second.put("parameters", parameters);
+        second.put("report_name", "daily_sales");
+
+        String key = InFlightRegistry.requestKey(first);
+        assertEquals(key, InFlightRegistry.requestKey(second));
+        assertTrue(key.matches("[0-9a-f]{64}"), key);
+
+        // List order and values still matter
+        second.put("columns", List.of("total_sales", "region"));
+        assertNotEquals(key, InFlightRegistry.requestKey(second));
+        parameters.put("year", 2025);
+        second.put("columns", List.of("region", "total_sales"));
+        assertNotEquals(key, InFlightRegistry.requestKey(second));
+    }
+
+    @Test
+    public void testFirstRequestLeadsAndIdenticalRequestsAttach() {
+        FakeDynamoDB dynamoDB = new FakeDynamoDB();
+        InFlightRegistry registry = new InFlightRegistry(dynamoDB);
+
+        assertNull(registry.acquire("k", "r1", "daily_sales"));
+        assertEquals(0, dynamoDB.configReads);
+        assertEquals("r1", registry.acquire("k", "r2", "daily_sales"));
+        assertEquals("r1", dynamoDB.holder("k"));
+        assertEquals(1, dynamoDB.configReads);
+
+        // Only the leader's release counts; afterwards the next request leads
+        registry.release("k", "r2");
+        assertEquals("r1", dynamoDB.holder("k"));
+        registry.release("k", "r1");
+        assertNull(registry.acquire("k", "r3", "daily_sales"));
+        assertEquals("r3", dynamoDB.holder("k"));
+    }
+
+    @Test
+    public void testLeaderOlderThanTheResultTtlIsTakenOver() {
+        FakeDynamoDB dynamoDB = new FakeDynamoDB();
+        InFlightRegistry registry = new InFlightRegistry(dynamoDB);
+        dynamoDB.holdLease("k", "r1", System.currentTimeMillis() - 5000L);
+
+        dynamoDB.setResultTtl("daily_sales", 10L);
+        assertEquals("r1", registry.acquire("k", "r2", "daily_sales"));
+
+        // A report that must never reuse results does not attach either
+        dynamoDB.setResultTtl("daily_sales", 0L);
+        assertNull(registry.acquire("k", "r3", "daily_sales"));
+        assertEquals("r3", dynamoDB.holder("k"));
+
+        // The old leader finishing later leaves the new lease alone
+        registry.release("k", "r1");
+        assertEquals("r3", dynamoDB.holder("k"));
+    }
+}
@@ -0,0 +1,317 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+
+/**
+ * Screens filter input for SQL injection in one pass, in time linear in the input length
+ * whatever the input looks like, so it cannot be slowed down the way backtracking regular
+ * expressions can.
+ *
+ * A screen is built from a rule set:
+ * - substrings: matched anywhere, ignoring ASCII case ("--", "drop")
+ * - words: matched only as whole words, \b style ("or" matches "a or b" but not "order")
+ * - allowed characters: any other character is rejected
+ * - quotesOnlyBeforeCalls: a quote must be followed by a function call ("'to_date(")
+ * - noQuotedCallArguments: a call whose arguments hold a quoted value is rejected
+ * Substrings and words are found with one Aho-Corasick automaton, stepped once per character;
+ * the other rules are small state machines driven by the same loop.
+ */
+public final class InjectionScreen {
+
+    public static final String WORD_CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789_";
+    public static final String WHITESPACE = " \t\n\u000B\f\r";
+
+    // Only ASCII is folded and matched; other characters never continue a pattern
+    private static final int ALPHABET = 128;
+
+    private final int[][] transitions;
+    // For each state, the patterns that end there (including through failure links)
+    private final int[][] outputs;
+    private final String[] patterns;
+    private final boolean[] wholeWord;
+    private final boolean[] allowed;
+    private final boolean quotesOnlyBeforeCalls;
+    private final boolean noQuotedCallArguments;
+
+    private InjectionScreen(Builder builder) {
+        int count = builder.patterns.size();
+        this.patterns = builder.patterns.toArray(new String[0]);
+        this.wholeWord = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            wholeWord[i] = builder.wholeWord.get(i);
+        }
+        this.allowed = builder.allowed;
+        this.quotesOnlyBeforeCalls = builder.quotesOnlyBeforeCalls;
+        this.noQuotedCallArguments = builder.noQuotedCallArguments;
+
+        // Build the trie
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        trie.add(newState());
+        ends.add(new ArrayList<>());
+        for (int p = 0; p < count; p++) {
+            int state = 0;
+            for (char c : patterns[p].toCharArray()) {
+                int next = trie.get(state)[c];
+                if (next < 0) {
+                    next = trie.size();
+                    trie.add(newState());
+                    ends.add(new ArrayList<>());
+                    trie.get(state)[c] = next;
+                }
+                state = next;
+            }
+            ends.get(state).add(p);
+        }
+
+        // Add failure links breadth first, turning the trie into a complete automaton
+        int[] failure = new int[trie.size()];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = trie.get(0)[c];
+            if (next < 0) {
+                trie.get(0)[c] = 0;
+            } else {
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            ends.get(state).addAll(ends.get(failure[state]));
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = trie.get(state)[c];
+                if (next < 0) {
+                    trie.get(state)[c] = trie.get(failure[state])[c];
+                } else {
+                    failure[next] = trie.get(failure[state])[c];
+                    queue.add(next);
+                }
+            }
+        }
+
+        this.transitions = trie.toArray(new int[0][]);
+        this.outputs = new int[ends.size()][];
+        for (int s = 0; s < ends.size(); s++) {
+            outputs[s] = ends.get(s).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private static int[] newState() {
+        int[] state = new int[ALPHABET];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * What a screen found: the rule that matched and where.
+     */
+    public static final class Finding {
+        private final String rule;
+        private final int start;
+        private final int end;
+
+        Finding(String rule, int start, int end) {
+            this.rule = rule;
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getRule() {
+            return rule;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return "\"" + rule + "\" at indices: " + start + " to " + end;
+        }
+    }
+
+    public boolean isClean(String input) {
+        return screen(input) == null;
+    }
+
+    /**
+     * Returns the first rule the input breaks, or null if it breaks none.
+     */
+    public Finding screen(String input) {
+        int length = input.length();
+        int state = 0;
+
+        // quotesOnlyBeforeCalls: a quote opens a check that must see word characters,
+        // optional whitespace and then "("
+        int pendingQuote = -1;
+        boolean pendingSawWord = false;
+        boolean pendingSawSpace = false;
+
+        // noQuotedCallArguments: "name(" then a quote before any ")", another quote, then a ")"
+        char lastNonSpace = 0;
+        int callStart = -1;
+        int quotesInCall = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+
+            if (allowed != null && (c >= ALPHABET || !allowed[c])) {
+                return new Finding(String.valueOf(c), i, i + 1);
+            }
+
+            if (transitions.length > 1) {
+                state = c < ALPHABET ? transitions[state][fold(c)] : 0;
+                for (int p : outputs[state]) {
+                    int start = i - patterns[p].length() + 1;
+                    if (!wholeWord[p] || (isWordBoundary(input, start) && isWordBoundary(input, i + 1))) {
+                        return new Finding(input.substring(start, i + 1), start, i + 1);
+                    }
+                }
+            }
+
+            if (quotesOnlyBeforeCalls) {
+                if (pendingQuote >= 0) {
+                    if (isWordCharacter(c) && !pendingSawSpace) {
+                        pendingSawWord = true;
+                    } else if (isWhitespace(c) && pendingSawWord) {
+                        pendingSawSpace = true;
+                    } else if (c == '(' && pendingSawWord) {
+                        pendingQuote = -1;
+                    } else {
+                        return new Finding("'", pendingQuote, pendingQuote + 1);
+                    }
+                }
+                if (c == '\'') {
+                    pendingQuote = i;
+                    pendingSawWord = false;
+                    pendingSawSpace = false;
+                }
+            }
+
+            if (noQuotedCallArguments) {
+                if (quotesInCall == 0) {
+                    if (c == '(' && isWordCharacter(lastNonSpace)) {
+                        if (callStart < 0) {
+                            callStart = i;
+                        }
+                    } else if (c == ')') {
+                        callStart = -1;
+                    } else if (c == '\'' && callStart >= 0) {
+                        quotesInCall = 1;
+                    }
+                } else if (c == '\'') {
+                    quotesInCall = 2;
+                } else if (c == ')' && quotesInCall == 2) {
+                    return new Finding(input.substring(callStart, i + 1), callStart, i + 1);
+                }
+                if (!isWhitespace(c)) {
+                    lastNonSpace = c;
+                }
+            }
+        }
+
+        if (pendingQuote >= 0) {
+            return new Finding("'", pendingQuote, pendingQuote + 1);
+        }
+        return null;
+    }
+
+    private static int fold(char c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    // Boundaries follow java.util.regex \b on Java 11, which counts any Unicode letter or digit
+    private static boolean isWordBoundary(String input, int position) {
+        return position == 0 || position == input.length() || !isBoundaryCharacter(input.charAt(position - 1))
+                || !isBoundaryCharacter(input.charAt(position));
+    }
+
+    private static boolean isBoundaryCharacter(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    static boolean isWordCharacter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    public static final class Builder {
+        private final List<String> patterns = new ArrayList<>();
+        private final List<Boolean> wholeWord = new ArrayList<>();
+        private boolean[] allowed;
+        private boolean quotesOnlyBeforeCalls;
+        private boolean noQuotedCallArguments;
+
+        private Builder() {
+        }
+
+        /**
+         * Rejects input containing any of these texts anywhere, ignoring ASCII case.
+         */
+        public Builder substrings(String... texts) {
+            return add(texts, false);
+        }
+
+        /**
+         * Rejects input containing any of these keywords as a whole word, ignoring ASCII case.
+         */
+        public Builder words(String... keywords) {
+            return add(keywords, true);
+        }
+
+        private Builder add(String[] texts, boolean word) {
+            for (String text : texts) {
+                if (text.isEmpty() || !text.chars().allMatch(c -> c < ALPHABET)) {
+                    throw new IllegalArgumentException("Screen patterns must be non-empty ASCII: '" + text + "'.");
+                }
+                patterns.add(text.toLowerCase(Locale.ROOT));
+                wholeWord.add(word);
+            }
+            return this;
+        }
+
+        /**
+         * Rejects input containing any character not listed. May be called more than once.
+         */
+        public Builder allowOnly(String characters) {
+            if (allowed == null) {
+                allowed = new boolean[ALPHABET];
+            }
+            for (char c : characters.toCharArray()) {
+                if (c < ALPHABET) {
+                    allowed[c] = true;
+                }
+            }
+            return this;
+        }
+
+        public Builder quotesOnlyBeforeCalls() {
+            this.quotesOnlyBeforeCalls = true;
+            return this;
+        }
+
+        public Builder noQuotedCallArguments() {
+            this.noQuotedCallArguments = true;
+            return this;
+        }
+
+        public InjectionScreen build() {
+            return new InjectionScreen(this);
+        }
+    }
+}
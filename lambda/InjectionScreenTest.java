@@ -0,0 +1,75 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class InjectionScreenTest {
+
+    // The expression SQLInjectionValidator used before the screen; the screen must decide the same
+    private static final Pattern LEGACY_SQL_INJECTION = Pattern.compile(
+            ".*(\\b(SELECT|INSERT|UPDATE|DELETE|DROP|UNION|WHERE|OR|AND|LIKE|CAST|CONVERT|EXEC|EXECUTE|FROM|HAVING|JOIN|NULL|TRUE|FALSE|IS|IN)\\b|--|;|'(?!\\w+\\s*\\()|\\w+\\s*\\([^)]*'.*'[^)]*\\)).*",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final List<String> INPUTS = List.of(
+            "",
+            "runmode eq 5",
+            "price gt 100 and price le 500",
+            "Order eq 5 or Island eq 3",
+            "runmode eq 'production'",
+            "timestamp ge to_date('01/10/2023','MM/DD/YY')",
+            "ts ge 'to_date(x)",
+            "f(x) eq g(y)",
+            "f(x, 'a) eq 1",
+            "f (x, 'a' eq 1",
+            "f (x, 'a', 'b')",
+            "name eq 'John' OR 1=1--",
+            "timestamp ge 2024-01-01; DROP TABLE users;",
+            "'a(".repeat(20),
+            "status_in eq 1 and isactive",
+            "name eq NULL");
+
+    @Test
+    public void testMatchesTheLegacySqlInjectionExpression() {
+        for (String input : INPUTS) {
+            assertEquals(!LEGACY_SQL_INJECTION.matcher(input).find(), SQLInjectionValidator.isValidODataQuery(input), input);
+        }
+    }
+
+    @Test
+    public void testSubstringsIgnoreCaseAndWordsNeedBoundaries() {
+        InjectionScreen screen = InjectionScreen.builder().substrings("drop", "--").words("or", "union").build();
+
+        assertFalse(screen.isClean("x eq 1; DrOp table"));
+        assertFalse(screen.isClean("a eq 1 -- comment"));
+        assertFalse(screen.isClean("a eq 1 OR b eq 2"));
+        assertFalse(screen.isClean("or"));
+        assertTrue(screen.isClean("order eq 1 and floor eq 2 and reunion eq 3"));
+        assertEquals("UNION", screen.screen("x UNION select").getRule());
+        assertEquals(2, screen.screen("x UNION select").getStart());
+    }
+
+    @Test
+    public void testAllowedCharacters() {
+        InjectionScreen screen = InjectionScreen.builder().allowOnly(InjectionScreen.WORD_CHARACTERS + " '").build();
+
+        assertTrue(screen.isClean("name eq 'Milk'"));
+        assertFalse(screen.isClean("name eq \"Milk\""));
+        assertFalse(screen.isClean("name eq 'M\u00f6lk'"));
+    }
+
+    @Test
+    public void testAdversarialInputsStayLinear() {
+        // Each of these takes the legacy expression seconds or longer
+        String quotedCalls = "'a(".repeat(20_000);
+        String openCalls = "a(".repeat(30_000) + "'x";
+
+        long start = System.nanoTime();
+        assertTrue(SQLInjectionValidator.isValidODataQuery(quotedCalls));
+        assertFalse(SQLInjectionValidator.isValidODataQuery(openCalls));
+        assertTrue(ODataQueryValidator.isValidODataQuery(quotedCalls));
+        assertFalse(ODataInputValidator.validateODataFilter(quotedCalls));
+        assertTrue((System.nanoTime() - start) / 1_000_000L < 2_000L);
+    }
+}
@@ -1,46 +1,42 @@
+import java.util.Map;
+import java.util.Set;
+
 public class ODataToSQLConverter {
 
     // Convert OData query to SQL WHERE clause
     public static String convertODataToSQL(String odataQuery) {
-        // Mapping OData operators to SQL equivalents
-        String[][] odataToSqlMapping = {
-            {" eq ", " = "},
-            {" ne ", " != "},
-            {" gt ", " > "},
-            {" ge ", " >= "},
-            {" lt ", " < "},
-            {" le ", " <= "},
-            {" and ", " AND "},
-            {" or ", " OR "},
-            {" not ", " NOT "},
-            {"null", " IS NULL"},
-            {"to_date", "TO_DATE"}  // OData to SQL function mapping
-        };
-
-        // First, handle the string functions (contains, startswith, endswith)
-        odataQuery = handleStringFunctions(odataQuery);
-
-        // Then, iterate through the mapping and replace OData operators with SQL equivalents
-        String sqlQuery = odataQuery;
-        for (String[] map : odataToSqlMapping) {
-            sqlQuery = sqlQuery.replace(map[0], map[1]);
+        if (odataQuery == null || odataQuery.trim().isEmpty()) {
+            return "";
         }
-
-        return sqlQuery;
+        // Tokenize and parse once, then render SQL from the syntax tree; literals are never rewritten.
+        // Repeated filters are served from the compiled-filter cache
+        return ODataFilterCache.shared().compile(odataQuery).getSql();
     }
 
-    // Handle OData string functions like startswith(), endswith(), and contains()
-    private static String handleStringFunctions(String query) {
-        // Handle startswith function: startswith(Property, Value) -> Property LIKE 'Value%'
-        query = query.replaceAll("startswith\\((\\w+),\\s*'([^']+)'\\)", "$1 LIKE '$2%'");
-
-        // Handle endswith function: endswith(Property, Value) -> Property LIKE '%Value'
-        query = query.replaceAll("endswith\\((\\w+),\\s*'([^']+)'\\)", "$1 LIKE '%$2'");
+    // Apply $apply, $filter, $select, $orderby, $top and $skip to a report query, so the warehouse
+    // returns only the requested rows and columns (see ODataQueryOptions)
+    public static String applyQueryOptions(String baseQuery, Map<String, String> queryOptions) {
+        return ODataQueryOptions.parse(queryOptions).toSql(baseQuery);
+    }
 
-        // Handle contains function: contains(Property, Value) -> Property LIKE '%Value%'
-        query = query.replaceAll("contains\\((\\w+),\\s*'([^']+)'\\)", "$1 LIKE '%$2%'");
+    // Same, with $apply aggregations checked against the given per-column whitelist instead of config.json
+    public static String applyQueryOptions(String baseQuery, Map<String, String> queryOptions, Map<String, Set<String>> aggregations) {
+        return ODataQueryOptions.parse(queryOptions, aggregations).toSql(baseQuery);
+    }
 
-        return query;
+    // A query is valid if it is empty or parses as an OData filter; anything else (stray
+    // semicolons, comments, SQL operators) is outside the grammar and rejected
+    public static boolean isValidODataQuery(String odataQuery) {
+        if (odataQuery == null || odataQuery.trim().isEmpty()) {
+            return true;
+        }
+        try {
+            ODataFilterCache.shared().compile(odataQuery);
+            return true;
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid OData query: " + e.getMessage());
+            return false;
+        }
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,262 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An OData $apply: filter, groupby and aggregate transformations, compiled into GROUP BY SQL
+ * so totals are computed in the warehouse instead of on raw rows pulled by the client:
+ *
+ *   groupby((region),aggregate(total_sales with sum as total))
+ *   -> SELECT region, SUM(total_sales) AS total FROM (<report query>) odata_source GROUP BY region
+ *
+ * A filter before a groupby or aggregate becomes its WHERE clause; each further groupby or
+ * aggregate reads from the previous one. Every aggregation must be allowed for its column
+ * by the "aggregations" lists of the current SchemaCatalog (or the whitelist passed to parse).
+ */
+public final class ODataApply {
+
+    static final String COUNT = "$count";
+
+    // OData aggregation methods and the config.json aggregation each one needs
+    static final Map<String, String> METHODS = Map.of(
+            "sum", "SUM",
+            "min", "MIN",
+            "max", "MAX",
+            "average", "AVG",
+            "countdistinct", "COUNT");
+
+    // Whitelist built from the catalog it was built from; rebuilt when SchemaCatalog reloads
+    private static volatile Whitelist whitelist;
+
+    private static final class Whitelist {
+        final long catalogVersion;
+        final Map<String, Set<String>> aggregations;
+
+        Whitelist(long catalogVersion, Map<String, Set<String>> aggregations) {
+            this.catalogVersion = catalogVersion;
+            this.aggregations = aggregations;
+        }
+    }
+
+    /**
+     * One aggregate: "property with method as alias", or "$count as alias" (property null).
+     */
+    public static final class Aggregate {
+        private final String property;
+        private final String method;
+        private final String alias;
+
+        Aggregate(String property, String method, String alias) {
+            this.property = property;
+            this.method = method;
+            this.alias = alias;
+        }
+
+        public String getProperty() {
+            return property;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getAlias() {
+            return alias;
+        }
+
+        void appendSql(StringBuilder sql) {
+            if (property == null) {
+                sql.append("COUNT(*)");
+            } else if ("countdistinct".equals(method)) {
+                sql.append("COUNT(DISTINCT ").append(property.replace('/', '.')).append(')');
+            } else {
+                sql.append(METHODS.get(method)).append('(').append(property.replace('/', '.')).append(')');
+            }
+            sql.append(" AS ").append(alias);
+        }
+    }
+
+    /**
+     * One transformation: a filter (condition set), or a groupby / aggregate (an aggregate
+     * on its own is a groupby without properties).
+     */
+    public static final class Step {
+        private final ODataFilter condition;
+        private final List<String> groupBy;
+        private final List<Aggregate> aggregates;
+
+        private Step(ODataFilter condition, List<String> groupBy, List<Aggregate> aggregates) {
+            this.condition = condition;
+            this.groupBy = Collections.unmodifiableList(groupBy);
+            this.aggregates = Collections.unmodifiableList(aggregates);
+        }
+
+        static Step filter(ODataFilter condition) {
+            return new Step(condition, Collections.emptyList(), Collections.emptyList());
+        }
+
+        static Step groupBy(List<String> groupBy, List<Aggregate> aggregates) {
+            return new Step(null, groupBy, aggregates);
+        }
+
+        public boolean isFilter() {
+            return condition != null;
+        }
+
+        public ODataFilter getCondition() {
+            return condition;
+        }
+
+        public List<String> getGroupBy() {
+            return groupBy;
+        }
+
+        public List<Aggregate> getAggregates() {
+            return aggregates;
+        }
+    }
+
+    private final List<Step> steps;
+
+    private ODataApply(List<Step> steps) {
+        this.steps = Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * Parses $apply and checks each aggregation against the whitelist, which maps a column
+     * name to the aggregations (SUM, AVG, MIN, MAX, COUNT) allowed on it.
+     * Throws IllegalArgumentException for invalid syntax or an aggregation that is not allowed.
+     */
+    public static ODataApply parse(String apply, Map<String, Set<String>> aggregations) {
+        List<Step> steps = ODataParser.parseApply(apply);
+        for (Step step : steps) {
+            Set<String> names = new HashSet<>();
+            for (String property : step.groupBy) {
+                if (!names.add(property)) {
+                    throw new IllegalArgumentException("Property '" + property + "' is grouped more than once.");
+                }
+            }
+            for (Aggregate aggregate : step.aggregates) {
+                if (!names.add(aggregate.alias)) {
+                    throw new IllegalArgumentException("Alias '" + aggregate.alias + "' is already used in the same transformation.");
+                }
+                if (aggregate.property == null) {
+                    continue;
+                }
+                Set<String> allowed = aggregations.getOrDefault(aggregate.property.replace('/', '.'), Collections.emptySet());
+                if (!allowed.contains(METHODS.get(aggregate.method))) {
+                    throw new IllegalArgumentException("Aggregation '" + aggregate.method + "' is not allowed on '" + aggregate.property + "'.");
+                }
+            }
+        }
+        return new ODataApply(steps);
+    }
+
+    /**
+     * Parses $apply against the aggregations configured in the current SchemaCatalog.
+     */
+    public static ODataApply parse(String apply) {
+        return parse(apply, configuredAggregations());
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * Compiles the transformations over the source (a derived table with its alias). Returns
+     * the SELECT of the last groupby or aggregate, or null if there are only filters. Filters
+     * after the last groupby or aggregate are added to conditions, for the caller's WHERE clause.
+     */
+    String toSql(String source, List<ODataFilter> conditions) {
+        String select = null;
+        int stage = 0;
+        for (Step step : steps) {
+            if (step.isFilter()) {
+                conditions.add(step.condition);
+                continue;
+            }
+            if (select != null) {
+                source = "(" + select + ") odata_step" + (++stage);
+            }
+            StringBuilder sql = new StringBuilder(source.length() + 64);
+            sql.append("SELECT ");
+            List<String> columns = new ArrayList<>();
+            for (String property : step.groupBy) {
+                columns.add(property.replace('/', '.'));
+            }
+            sql.append(String.join(", ", columns));
+            for (int i = 0; i < step.aggregates.size(); i++) {
+                if (i > 0 || !columns.isEmpty()) {
+                    sql.append(", ");
+                }
+                step.aggregates.get(i).appendSql(sql);
+            }
+            sql.append(" FROM ").append(source);
+            if (!conditions.isEmpty()) {
+                sql.append(" WHERE ");
+                allOf(conditions).appendSql(sql);
+                conditions.clear();
+            }
+            if (!columns.isEmpty()) {
+                sql.append(" GROUP BY ").append(String.join(", ", columns));
+            }
+            select = sql.toString();
+        }
+        return select;
+    }
+
+    static ODataFilter allOf(List<ODataFilter> conditions) {
+        return conditions.size() == 1 ? conditions.get(0) : new ODataFilter.Logical("and", new ArrayList<>(conditions));
+    }
+
+    /**
+     * The per-column aggregations of the current catalog. A column name shared by several
+     * tables allows only the aggregations every one of them allows; "table.column" names the
+     * column of one table, including rollup tables.
+     */
+    static Map<String, Set<String>> configuredAggregations() {
+        SchemaCatalog catalog = SchemaCatalog.get();
+        Whitelist current = whitelist;
+        if (current == null || current.catalogVersion != catalog.getVersion()) {
+            current = new Whitelist(catalog.getVersion(), readAggregations(catalog));
+            whitelist = current;
+        }
+        return current.aggregations;
+    }
+
+    static Map<String, Set<String>> readAggregations(SchemaCatalog catalog) {
+        Set<SchemaCatalog.Table> rollupTables = new HashSet<>();
+        for (SchemaCatalog.Table table : catalog.getTables()) {
+            for (SchemaCatalog.Rollup rollup : table.getRollups()) {
+                rollupTables.add(rollup.getTable());
+            }
+        }
+        Map<String, Set<String>> aggregations = new HashMap<>();
+        for (SchemaCatalog.Table table : catalog.getTables()) {
+            for (SchemaCatalog.Column column : table.getColumns()) {
+                Set<String> columnAggregations = new LinkedHashSet<>();
+                for (String aggregation : METHODS.values()) {
+                    if (catalog.supportsAggregation(column, aggregation)) {
+                        columnAggregations.add(aggregation);
+                    }
+                }
+                aggregations.put(table.getName() + "." + column.getName(), columnAggregations);
+                // Rollups hold base columns under their base names; only base tables decide bare names
+                if (rollupTables.contains(table)) {
+                    continue;
+                }
+                aggregations.merge(column.getName(), new LinkedHashSet<>(columnAggregations), (shared, other) -> {
+                    shared.retainAll(other);
+                    return shared;
+                });
+            }
+        }
+        return Collections.unmodifiableMap(aggregations);
+    }
+}
@@ -0,0 +1,698 @@
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Typed syntax tree of an OData $filter expression, as built by ODataParser.
+ * Every node renders itself as SQL; the rendering adds parentheses only where operator
+ * precedence needs them, and writes literals back from their parsed values.
+ *
+ * A filter can also be evaluated against result rows in process (test), with the SQL
+ * meaning: a comparison involving NULL is unknown, and a row only matches if the whole
+ * condition is true. Row values are compared as numbers when either side is a number,
+ * otherwise as text, so ISO dates compare chronologically.
+ */
+public abstract class ODataFilter {
+
+    // SQL names of the supported functions that map one to one; the rest are rendered specially
+    static final Map<String, String> SQL_FUNCTIONS = Map.of(
+            "tolower", "LOWER",
+            "toupper", "UPPER",
+            "trim", "TRIM",
+            "length", "LENGTH",
+            "concat", "CONCAT",
+            "year", "YEAR",
+            "month", "MONTH",
+            "day", "DAY",
+            "to_date", "TO_DATE");
+
+    private static final int OR = 1;
+    private static final int AND = 2;
+    private static final int NOT = 3;
+    private static final int OPERAND = 4;
+
+    ODataFilter() {
+    }
+
+    /**
+     * Returns the SQL condition (or expression) for this node.
+     */
+    public String toSql() {
+        StringBuilder sql = new StringBuilder(64);
+        appendSql(sql);
+        return sql.toString();
+    }
+
+    abstract void appendSql(StringBuilder sql);
+
+    /**
+     * True if the row (column name to value, e.g. one object of a stored JSON result)
+     * satisfies this condition. Throws IllegalArgumentException if the filter names a
+     * column the row does not have.
+     */
+    public boolean test(Map<String, ?> row) {
+        return Boolean.TRUE.equals(toBoolean(evaluate(row)));
+    }
+
+    /**
+     * True if test can evaluate this filter. to_date depends on the warehouse's date
+     * formats, so filters using it can only run in SQL.
+     */
+    public boolean isEvaluable() {
+        return true;
+    }
+
+    // The node's value for the row: null, String, BigDecimal or Boolean (or a row's own value)
+    abstract Object evaluate(Map<String, ?> row);
+
+    int precedence() {
+        return OPERAND;
+    }
+
+    void appendOperand(StringBuilder sql, ODataFilter operand, int minPrecedence) {
+        if (operand.precedence() < minPrecedence) {
+            sql.append('(');
+            operand.appendSql(sql);
+            sql.append(')');
+        } else {
+            operand.appendSql(sql);
+        }
+    }
+
+    static Boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof String) {
+            if ("true".equalsIgnoreCase((String) value)) {
+                return Boolean.TRUE;
+            }
+            if ("false".equalsIgnoreCase((String) value)) {
+                return Boolean.FALSE;
+            }
+        }
+        return null;
+    }
+
+    static BigDecimal toNumber(Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof Number || value instanceof String) {
+            try {
+                return new BigDecimal(value.toString().trim());
+            } catch (NumberFormatException e) {
+                // Not a number, as a failed cast in SQL
+                return null;
+            }
+        }
+        return null;
+    }
+
+    static String toText(Object value) {
+        if (value == null) {
+            return null;
+        }
+        return value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+    }
+
+    // Compares two values as SQL would after implicit casts; null if either is NULL or cannot be cast
+    static Integer compare(Object left, Object right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        if (left instanceof Number || right instanceof Number) {
+            BigDecimal leftNumber = toNumber(left);
+            BigDecimal rightNumber = toNumber(right);
+            return leftNumber == null || rightNumber == null ? null : leftNumber.compareTo(rightNumber);
+        }
+        if (left instanceof Boolean || right instanceof Boolean) {
+            Boolean leftBoolean = toBoolean(left);
+            Boolean rightBoolean = toBoolean(right);
+            return leftBoolean == null || rightBoolean == null ? null : leftBoolean.compareTo(rightBoolean);
+        }
+        return Integer.signum(toText(left).compareTo(toText(right)));
+    }
+
+    /**
+     * "and" / "or" over two or more operands.
+     */
+    public static final class Logical extends ODataFilter {
+        private final String operator;
+        private final List<ODataFilter> operands;
+
+        Logical(String operator, List<ODataFilter> operands) {
+            this.operator = operator;
+            this.operands = Collections.unmodifiableList(operands);
+        }
+
+        public String getOperator() {
+            return operator;
+        }
+
+        public List<ODataFilter> getOperands() {
+            return operands;
+        }
+
+        @Override
+        int precedence() {
+            return "and".equals(operator) ? AND : OR;
+        }
+
+        @Override
+        public boolean isEvaluable() {
+            for (ODataFilter operand : operands) {
+                if (!operand.isEvaluable()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        Object evaluate(Map<String, ?> row) {
+            // Three-valued: "and" is false if any operand is false, "or" true if any is true,
+            // otherwise unknown if any operand is unknown
+            Boolean decisive = "and".equals(operator) ? Boolean.FALSE : Boolean.TRUE;
+            boolean unknown = false;
+            for (ODataFilter operand : operands) {
+                Boolean value = toBoolean(operand.evaluate(row));
+                if (decisive.equals(value)) {
+                    return decisive;
+                }
+                unknown |= value == null;
+            }
+            return unknown ? null : !decisive;
+        }
+
+        @Override
+        void appendSql(StringBuilder sql) {
+            String separator = "and".equals(operator) ? " AND " : " OR ";
+            for (int i = 0; i < operands.size(); i++) {
+                if (i > 0) {
+                    sql.append(separator);
+                }
+                appendOperand(sql, operands.get(i), precedence());
+            }
+        }
+    }
+
+    public static final class Not extends ODataFilter {
+        private final ODataFilter operand;
+
+        Not(ODataFilter operand) {
+            this.operand = operand;
+        }
+
+        public ODataFilter getOperand() {
+            return operand;
+        }
+
+        @Override
+        int precedence() {
+            return NOT;
+        }
+
+        @Override
+        public boolean isEvaluable() {
+            return operand.isEvaluable();
+        }
+
+        @Override
+        Object evaluate(Map<String, ?> row) {
+            Boolean value = toBoolean(operand.evaluate(row));
+            return value == null ? null : !value;
+        }
+
+        @Override
+        void appendSql(StringBuilder sql) {
+            sql.append("NOT ");
+            // Comparisons are parenthesized too, so the negation reads unambiguously
+            boolean simple = operand instanceof Property || operand instanceof Literal || operand instanceof Not;
+            if (simple) {
+                operand.appendSql(sql);
+            } else {
+                sql.append('(');
+                operand.appendSql(sql);
+                sql.append(')');
+            }
+        }
+    }
+
+    /**
+     * eq, ne, gt, ge, lt or le between two operands.
+     */
+    public static final class Comparison extends ODataFilter {
+        private final String operator;
+        private final ODataFilter left;
+        private final ODataFilter right;
+
+        Comparison(String operator, ODataFilter left, ODataFilter right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        public String getOperator() {
+            return operator;
+        }
+
+        public ODataFilter getLeft() {
+            return left;
+        }
+
+        public ODataFilter getRight() {
+            return right;
+        }
+
+        @Override
+        public boolean isEvaluable() {
+            return left.isEvaluable() && right.isEvaluable();
+        }
+
+        @Override
+        Object evaluate(Map<String, ?> row) {
+            boolean nullRight = Literal.isNull(right);
+            if ((nullRight || Literal.isNull(left)) && ("eq".equals(operator) || "ne".equals(operator))) {
+                boolean isNull = (nullRight ? left : right).evaluate(row) == null;
+                return "eq".equals(operator) == isNull;
+            }
+            Integer comparison = compare(left.evaluate(row), right.evaluate(row));
+            if (comparison == null) {
+                return null;
+            }
+            switch (operator) {
+                case "eq": return comparison == 0;
+                case "ne": return comparison != 0;
+                case "gt": return comparison > 0;
+                case "ge": return comparison >= 0;
+                case "lt": return comparison < 0;
+                default: return comparison <= 0;
+            }
+        }
+
+        @Override
+        void appendSql(StringBuilder sql) {
+            boolean nullRight = Literal.isNull(right);
+            if ((nullRight || Literal.isNull(left)) && ("eq".equals(operator) || "ne".equals(operator))) {
+                (nullRight ? left : right).appendSql(sql);
+                sql.append("eq".equals(operator) ? " IS NULL" : " IS NOT NULL");
+                return;
+            }
+            left.appendSql(sql);
+            sql.append(' ').append(sqlOperator(operator)).append(' ');
+            right.appendSql(sql);
+        }
+
+        private static String sqlOperator(String operator) {
+            switch (operator) {
+                case "eq": return "=";
+                case "ne": return "!=";
+                case "gt": return ">";
+                case "ge": return ">=";
+                case "lt": return "<";
+                default: return "<=";
+            }
+        }
+    }
+
+    /**
+     * "operand in (value, ...)".
+     */
+    public static final class In extends ODataFilter {
+        private final ODataFilter operand;
+        private final List<Literal> values;
+
+        In(ODataFilter operand, List<Literal> values) {
+            this.operand = operand;
+            this.values = Collections.unmodifiableList(values);
+        }
+
+        public ODataFilter getOperand() {
+            return operand;
+        }
+
+        public List<Literal> getValues() {
+            return values;
+        }
+
+        @Override
+        public boolean isEvaluable() {
+            return operand.isEvaluable();
+        }
+
+        @Override
+        Object evaluate(Map<String, ?> row) {
+            Object value = operand.evaluate(row);
+            if (value == null) {
+                return null;
+            }
+            boolean unknown = false;
+            for (Literal candidate : values) {
+                Integer comparison = compare(value, candidate.evaluate(row));
+                if (comparison == null) {
+                    unknown = true;
+                } else if (comparison == 0) {
+                    return Boolean.TRUE;
+                }
+            }
+            return unknown ? null : Boolean.FALSE;
+        }
+
+        @Override
+        void appendSql(StringBuilder sql) {
+            operand.appendSql(sql);
+            sql.append(" IN (");
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                values.get(i).appendSql(sql);
+            }
+            sql.append(')');
+        }
+    }
+
+    /**
+     * A function call. contains, startswith and endswith are conditions, rendered as LIKE;
+     * the others are values.
+     */
+    public static final class Function extends ODataFilter {
+        private final String name;
+        private final List<ODataFilter> arguments;
+
+        Function(String name, List<ODataFilter> arguments) {
+            this.name = name;
+            this.arguments = Collections.unmodifiableList(arguments);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<ODataFilter> getArguments() {
+            return arguments;
+        }
+
+        public boolean isCondition() {
+            return isCondition(name);
+        }
+
+        static boolean isCondition(String name) {
+            return "contains".equals(name) || "startswith".equals(name) || "endswith".equals(name);
+        }
+
+        @Override
+        public boolean isEvaluable() {
+            if ("to_date".equals(name)) {
+                return false;
+            }
+            for (ODataFilter argument : arguments) {
+                if (!argument.isEvaluable()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        Object evaluate(Map<String, ?> row) {
+            List<Object> values = new ArrayList<>(arguments.size());
+            for (ODataFilter argument : arguments) {
+                Object value = argument.evaluate(row);
+                // Every supported function returns NULL for a NULL argument
+                if (value == null) {
+                    return null;
+                }
+                values.add(value);
+            }
+            String text = toText(values.get(0));
+            switch (name) {
+                case "contains":
+                    return text.contains(toText(values.get(1)));
+                case "startswith":
+                    return text.startsWith(toText(values.get(1)));
+                case "endswith":
+                    return text.endsWith(toText(values.get(1)));
+                case "tolower":
+                    return text.toLowerCase(Locale.ROOT);
+                case "toupper":
+                    return text.toUpperCase(Locale.ROOT);
+                case "trim":
+                    return trimSpaces(text);
+                case "length":
+                    return BigDecimal.valueOf(text.codePointCount(0, text.length()));
+                case "concat":
+                    return text + toText(values.get(1));
+                case "indexof":
+                    return BigDecimal.valueOf(text.indexOf(toText(values.get(1))));
+                case "substring":
+                    return substring(text, toNumber(values.get(1)), values.size() > 2 ? toNumber(values.get(2)) : null, values.size() > 2);
+                case "year":
+                case "month":
+                case "day":
+                    return datePart(text);
+                default:
+                    throw new UnsupportedOperationException("Function '" + name + "' cannot be evaluated in process.");
+            }
+        }
+
+        // SQL TRIM removes spaces only
+        private static String trimSpaces(String text) {
+            int start = 0;
+            int end = text.length();
+            while (start < end && text.charAt(start) == ' ') {
+                start++;
+            }
+            while (end > start && text.charAt(end - 1) == ' ') {
+                end--;
+            }
+            return text.substring(start, end);
+        }
+
+        // OData positions start at 0; a position or length that is not a number gives NULL
+        private static String substring(String text, BigDecimal position, BigDecimal length, boolean hasLength) {
+            if (position == null || (hasLength && length == null)) {
+                return null;
+            }
+            int start = Math.max(0, Math.min(position.intValue(), text.length()));
+            int end = hasLength ? Math.min(text.length(), start + Math.max(0, length.intValue())) : text.length();
+            return text.substring(start, end);
+        }
+
+        private BigDecimal datePart(String text) {
+            try {
+                LocalDate date = LocalDate.parse(text.length() > 10 ? text.substring(0, 10) : text);
+                int part = "year".equals(name) ? date.getYear() : "month".equals(name) ? date.getMonthValue() : date.getDayOfMonth();
+                return BigDecimal.valueOf(part);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+
+        @Override
+        void appendSql(StringBuilder sql) {
+            switch (name) {
+                case "contains":
+                    appendLike(sql, true, true);
+                    return;
+                case "startswith":
+                    appendLike(sql, false, true);
+                    return;
+                case "endswith":
+                    appendLike(sql, true, false);
+                    return;
+                case "substring":
+                    // OData positions start at 0, SQL positions at 1
+                    sql.append("SUBSTRING(");
+                    arguments.get(0).appendSql(sql);
+                    sql.append(", ");
+                    appendPosition(sql, arguments.get(1));
+                    if (arguments.size() > 2) {
+                        sql.append(", ");
+                        arguments.get(2).appendSql(sql);
+                    }
+                    sql.append(')');
+                    return;
+                case "indexof":
+                    sql.append("(INSTR(");
+                    arguments.get(0).appendSql(sql);
+                    sql.append(", ");
+                    arguments.get(1).appendSql(sql);
+                    sql.append(") - 1)");
+                    return;
+                default:
+                    sql.append(SQL_FUNCTIONS.get(name)).append('(');
+                    for (int i = 0; i < arguments.size(); i++) {
+                        if (i > 0) {
+                            sql.append(", ");
+                        }
+                        arguments.get(i).appendSql(sql);
+                    }
+                    sql.append(')');
+            }
+        }
+
+        private void appendLike(StringBuilder sql, boolean leadingWildcard, boolean trailingWildcard) {
+            arguments.get(0).appendSql(sql);
+            sql.append(" LIKE ");
+            ODataFilter pattern = arguments.get(1);
+            if (pattern instanceof Literal && ((Literal) pattern).getType() == Literal.Type.STRING) {
+                // Wildcards in the value itself are escaped, so they match literally
+                sql.append('\'');
+                if (leadingWildcard) {
+                    sql.append('%');
+                }
+                String value = ((Literal) pattern).getValue();
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    if (c == '\\') {
+                        // Escaped once for the pattern and once more for the string literal
+                        sql.append("\\\\\\");
+                    } else if (c == '%' || c == '_') {
+                        sql.append('\\');
+                    } else if (c == '\'') {
+                        sql.append('\'');
+                    }
+                    sql.append(c);
+                }
+                if (trailingWildcard) {
+                    sql.append('%');
+                }
+                sql.append('\'');
+            } else {
+                sql.append("CONCAT(");
+                if (leadingWildcard) {
+                    sql.append("'%', ");
+                }
+                pattern.appendSql(sql);
+                if (trailingWildcard) {
+                    sql.append(", '%'");
+                }
+                sql.append(')');
+            }
+        }
+
+        private static void appendPosition(StringBuilder sql, ODataFilter position) {
+            if (position instanceof Literal && ((Literal) position).getType() == Literal.Type.NUMBER
+                    && ((Literal) position).getValue().matches("\\d+")) {
+                sql.append(Long.parseLong(((Literal) position).getValue()) + 1);
+            } else {
+                sql.append('(');
+                position.appendSql(sql);
+                sql.append(" + 1)");
+            }
+        }
+    }
+
+    /**
+     * A column, written as in the filter; navigation paths (Address/City) become Address.City.
+     */
+    public static final class Property extends ODataFilter {
+        private final String name;
+
+        Property(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // A navigation path (Address/City) comes back from the warehouse as its last segment
+        @Override
+        Object evaluate(Map<String, ?> row) {
+            if (row.containsKey(name)) {
+                return row.get(name);
+            }
+            String column = name.substring(name.lastIndexOf('/') + 1);
+            if (row.containsKey(column)) {
+                return row.get(column);
+            }
+            throw new IllegalArgumentException("Column '" + name + "' is not in the result.");
+        }
+
+        @Override
+        void appendSql(StringBuilder sql) {
+            sql.append(name.replace('/', '.'));
+        }
+    }
+
+    public static final class Literal extends ODataFilter {
+        public enum Type { STRING, NUMBER, BOOLEAN, NULL, DATE, DATETIME }
+
+        private final Type type;
+        private final String value;
+
+        Literal(Type type, String value) {
+            this.type = type;
+            this.value = value;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * The literal's value: the unquoted text of a string, the digits of a number,
+         * "true"/"false", the ISO text of a date, or null.
+         */
+        public String getValue() {
+            return value;
+        }
+
+        static boolean isNull(ODataFilter node) {
+            return node instanceof Literal && ((Literal) node).type == Type.NULL;
+        }
+
+        @Override
+        Object evaluate(Map<String, ?> row) {
+            switch (type) {
+                case NUMBER:
+                    return new BigDecimal(value);
+                case BOOLEAN:
+                    return Boolean.valueOf(value);
+                default:
+                    // Strings, and dates as ISO text; null for NULL
+                    return value;
+            }
+        }
+
+        @Override
+        void appendSql(StringBuilder sql) {
+            switch (type) {
+                case STRING:
+                    // The warehouse reads a backslash as an escape, so it is doubled along with quotes
+                    sql.append('\'');
+                    for (int i = 0; i < value.length(); i++) {
+                        char c = value.charAt(i);
+                        if (c == '\'' || c == '\\') {
+                            sql.append(c);
+                        }
+                        sql.append(c);
+                    }
+                    sql.append('\'');
+                    return;
+                case BOOLEAN:
+                    sql.append("true".equals(value) ? "TRUE" : "FALSE");
+                    return;
+                case NULL:
+                    sql.append("NULL");
+                    return;
+                case DATE:
+                    sql.append("DATE '").append(value).append('\'');
+                    return;
+                case DATETIME:
+                    sql.append("TIMESTAMP '").append(value).append('\'');
+                    return;
+                default:
+                    sql.append(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded LRU cache from $filter text to its parsed syntax tree and SQL, so filters that
+ * arrive over and over are tokenized, validated and rendered once per container.
+ *
+ * Keys are the filter with whitespace outside string literals collapsed, so "a eq 1" and
+ * " a  eq 1 " share an entry. Only filters that parse are cached; invalid ones are rejected
+ * with the parser's IllegalArgumentException every time. The cache holds at most
+ * ODATA_FILTER_CACHE_SIZE entries (default 1000) and skips filters longer than
+ * MAX_CACHED_LENGTH characters, so a flood of unique filters cannot grow it without bound.
+ */
+public final class ODataFilterCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final int MAX_CACHED_LENGTH = 4096;
+
+    private static final ODataFilterCache SHARED = new ODataFilterCache(
+            Optional.ofNullable(System.getenv("ODATA_FILTER_CACHE_SIZE")).map(Integer::parseInt).orElse(DEFAULT_MAX_ENTRIES));
+
+    /**
+     * A parsed filter and its SQL. Both are immutable and shared between callers.
+     */
+    public static final class CompiledFilter {
+        private final ODataFilter filter;
+        private final String sql;
+
+        CompiledFilter(ODataFilter filter) {
+            this.filter = filter;
+            this.sql = filter.toSql();
+        }
+
+        public ODataFilter getFilter() {
+            return filter;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, CompiledFilter> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ODataFilterCache(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        // Access order: every hit moves the entry to the end, the eldest is the least recently used
+        this.entries = new LinkedHashMap<String, CompiledFilter>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledFilter> eldest) {
+                if (size() > ODataFilterCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * The cache used by ODataToSQLConverter and ODataQueryOptions.
+     */
+    public static ODataFilterCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the compiled filter, parsing it on a miss.
+     * Throws IllegalArgumentException if the filter is not valid OData.
+     */
+    public CompiledFilter compile(String filter) {
+        String key = normalize(filter);
+        if (key.length() > MAX_CACHED_LENGTH) {
+            misses.incrementAndGet();
+            return new CompiledFilter(ODataParser.parse(filter));
+        }
+        CompiledFilter compiled;
+        synchronized (entries) {
+            compiled = entries.get(key);
+        }
+        if (compiled != null) {
+            hits.incrementAndGet();
+            return compiled;
+        }
+
+        misses.incrementAndGet();
+        // Parsed outside the lock; two threads missing on the same filter both parse it and one result is kept
+        compiled = new CompiledFilter(ODataParser.parse(filter));
+        synchronized (entries) {
+            CompiledFilter existing = entries.putIfAbsent(key, compiled);
+            return existing != null ? existing : compiled;
+        }
+    }
+
+    // Collapses whitespace runs outside string literals into one space and trims the ends;
+    // a doubled quote ('') inside a literal leaves and re-enters it, which keeps it intact
+    static String normalize(String filter) {
+        if (isNormalized(filter)) {
+            return filter;
+        }
+        StringBuilder normalized = new StringBuilder(filter.length());
+        boolean inString = false;
+        boolean pendingSpace = false;
+        for (int i = 0; i < filter.length(); i++) {
+            char c = filter.charAt(i);
+            if (!inString && Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                normalized.append(' ');
+                pendingSpace = false;
+            }
+            if (c == '\'') {
+                inString = !inString;
+            }
+            normalized.append(c);
+        }
+        return normalized.toString();
+    }
+
+    // Most filters arrive already normalized; checking first avoids copying them on every lookup
+    private static boolean isNormalized(String filter) {
+        int length = filter.length();
+        if (length > 0 && (Character.isWhitespace(filter.charAt(0)) || Character.isWhitespace(filter.charAt(length - 1)))) {
+            return false;
+        }
+        boolean inString = false;
+        for (int i = 0; i < length; i++) {
+            char c = filter.charAt(i);
+            if (c == '\'') {
+                inString = !inString;
+            } else if (!inString && Character.isWhitespace(c) && (c != ' ' || Character.isWhitespace(filter.charAt(i + 1)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ODataFilterCache[size=" + size() + "/" + maxEntries + ", hits=" + hits.get()
+                + ", misses=" + misses.get() + ", evictions=" + evictions.get() + "]";
+    }
+}
@@ -0,0 +1,59 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class ODataFilterCacheTest {
+
+    @Test
+    public void testRepeatedFiltersAreParsedOnce() {
+        ODataFilterCache cache = new ODataFilterCache(10);
+        ODataFilterCache.CompiledFilter first = cache.compile("runmode eq 'production' and price ge 10");
+        ODataFilterCache.CompiledFilter second = cache.compile("  runmode  eq 'production'\tand price ge 10 ");
+
+        assertSame(first, second);
+        assertEquals("runmode = 'production' AND price >= 10", second.getSql());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testWhitespaceInsideLiteralsIsKept() {
+        assertEquals("name eq 'a  b' and x eq 1", ODataFilterCache.normalize(" name  eq 'a  b'  and x eq 1"));
+        assertEquals("name eq 'it''s  here' and x eq 1", ODataFilterCache.normalize("name eq 'it''s  here'   and x eq 1"));
+
+        ODataFilterCache cache = new ODataFilterCache(10);
+        assertEquals("name = 'a b'", cache.compile("name eq 'a b'").getSql());
+        assertEquals("name = 'a  b'", cache.compile("name eq 'a  b'").getSql());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        ODataFilterCache cache = new ODataFilterCache(2);
+        ODataFilterCache.CompiledFilter a = cache.compile("a eq 1");
+        cache.compile("b eq 1");
+        cache.compile("a eq 1");
+        cache.compile("c eq 1");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertSame(a, cache.compile("a eq 1"));
+        cache.compile("b eq 1");
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void testInvalidAndOversizedFiltersAreNotCached() {
+        ODataFilterCache cache = new ODataFilterCache(10);
+        assertThrows(IllegalArgumentException.class, () -> cache.compile("name eq 'John' OR 1=1--"));
+        assertThrows(IllegalArgumentException.class, () -> cache.compile("name eq 'John' OR 1=1--"));
+
+        String oversized = "price ge 1" + " and price ge 1".repeat(ODataFilterCache.MAX_CACHED_LENGTH / 10);
+        cache.compile(oversized);
+        cache.compile(oversized);
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+    }
+}
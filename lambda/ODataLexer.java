@@ -0,0 +1,218 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits an OData $filter (or $select / $orderby / $apply) expression into tokens in one pass over the text.
+ * Operators and keywords (eq, and, null, ...) come out as IDENTIFIER tokens and are told
+ * apart by the parser. String literals are returned with their quotes removed and doubled
+ * quotes ('') collapsed, so nothing inside a literal is ever interpreted.
+ */
+public final class ODataLexer {
+
+    public enum TokenType { IDENTIFIER, STRING, NUMBER, DATE, DATETIME, OPEN, CLOSE, COMMA, SLASH, END }
+
+    public static final class Token {
+        private final TokenType type;
+        private final String text;
+        private final int position;
+
+        Token(TokenType type, String text, int position) {
+            this.type = type;
+            this.text = text;
+            this.position = position;
+        }
+
+        public TokenType getType() {
+            return type;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        public boolean is(TokenType type, String text) {
+            return this.type == type && this.text.equals(text);
+        }
+
+        @Override
+        public String toString() {
+            return type == TokenType.END ? "end of input" : "'" + text + "'";
+        }
+    }
+
+    private final String input;
+    private int position;
+
+    private ODataLexer(String input) {
+        this.input = input;
+    }
+
+    /**
+     * Returns the tokens of the expression, ending with an END token.
+     * Throws IllegalArgumentException at the first character that cannot start a token.
+     */
+    public static List<Token> tokenize(String input) {
+        return new ODataLexer(input).tokens();
+    }
+
+    private List<Token> tokens() {
+        List<Token> tokens = new ArrayList<>();
+        int length = input.length();
+        while (true) {
+            while (position < length && Character.isWhitespace(input.charAt(position))) {
+                position++;
+            }
+            if (position >= length) {
+                tokens.add(new Token(TokenType.END, "", position));
+                return tokens;
+            }
+            char c = input.charAt(position);
+            int start = position;
+            if (c == '(') {
+                position++;
+                tokens.add(new Token(TokenType.OPEN, "(", start));
+            } else if (c == ')') {
+                position++;
+                tokens.add(new Token(TokenType.CLOSE, ")", start));
+            } else if (c == ',') {
+                position++;
+                tokens.add(new Token(TokenType.COMMA, ",", start));
+            } else if (c == '/') {
+                // Separates $apply transformations; inside a name it is part of a navigation path
+                position++;
+                tokens.add(new Token(TokenType.SLASH, "/", start));
+            } else if (c == '\'') {
+                tokens.add(string());
+            } else if (isDigit(c) || (c == '-' && position + 1 < length && isDigit(input.charAt(position + 1)))) {
+                tokens.add(number());
+            } else if (isNameStart(c) || c == '$') {
+                // "$" starts OData's own names, such as $count
+                tokens.add(identifier());
+            } else {
+                throw error("Unexpected character '" + c + "'", start);
+            }
+        }
+    }
+
+    private Token string() {
+        int start = position;
+        StringBuilder value = new StringBuilder();
+        position++;
+        while (position < input.length()) {
+            char c = input.charAt(position++);
+            if (c == '\'') {
+                if (position < input.length() && input.charAt(position) == '\'') {
+                    value.append('\'');
+                    position++;
+                } else {
+                    return new Token(TokenType.STRING, value.toString(), start);
+                }
+            } else {
+                value.append(c);
+            }
+        }
+        throw error("Unterminated string literal", start);
+    }
+
+    // Numbers, and dates (2024-01-31) or date-times (2024-01-31T10:00:00Z) written without quotes
+    private Token number() {
+        int start = position;
+        if (input.charAt(position) == '-') {
+            position++;
+        }
+        int digitsStart = position;
+        skipDigits();
+        if (position - digitsStart == 4 && position < input.length() && input.charAt(position) == '-' && start == digitsStart) {
+            return temporal(start);
+        }
+        if (position < input.length() && input.charAt(position) == '.') {
+            position++;
+            if (!skipDigits()) {
+                throw error("Invalid number", start);
+            }
+        }
+        if (position < input.length() && (input.charAt(position) == 'e' || input.charAt(position) == 'E')) {
+            position++;
+            if (position < input.length() && (input.charAt(position) == '+' || input.charAt(position) == '-')) {
+                position++;
+            }
+            if (!skipDigits()) {
+                throw error("Invalid number", start);
+            }
+        }
+        if (position < input.length() && isNameStart(input.charAt(position))) {
+            throw error("Invalid number", start);
+        }
+        return new Token(TokenType.NUMBER, input.substring(start, position), start);
+    }
+
+    private Token temporal(int start) {
+        while (position < input.length() && isTemporalChar(input.charAt(position))) {
+            position++;
+        }
+        String text = input.substring(start, position);
+        try {
+            if (text.indexOf('T') < 0) {
+                LocalDate.parse(text);
+                return new Token(TokenType.DATE, text, start);
+            }
+            if (text.endsWith("Z") || text.lastIndexOf('+') > 0 || text.lastIndexOf('-') > text.indexOf('T')) {
+                OffsetDateTime.parse(text);
+            } else {
+                LocalDateTime.parse(text);
+            }
+            return new Token(TokenType.DATETIME, text, start);
+        } catch (DateTimeParseException e) {
+            throw error("Invalid date '" + text + "'", start);
+        }
+    }
+
+    private Token identifier() {
+        int start = position;
+        position++;
+        while (position < input.length()) {
+            char c = input.charAt(position);
+            if (isNameStart(c) || isDigit(c)) {
+                position++;
+            } else if (c == '/' && position + 1 < input.length() && isNameStart(input.charAt(position + 1))) {
+                // Navigation path: Address/City
+                position++;
+            } else {
+                break;
+            }
+        }
+        return new Token(TokenType.IDENTIFIER, input.substring(start, position), start);
+    }
+
+    private boolean skipDigits() {
+        int start = position;
+        while (position < input.length() && isDigit(input.charAt(position))) {
+            position++;
+        }
+        return position > start;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isNameStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isTemporalChar(char c) {
+        return isDigit(c) || c == '-' || c == ':' || c == '.' || c == 'T' || c == 'Z' || c == '+';
+    }
+
+    static IllegalArgumentException error(String message, int position) {
+        return new IllegalArgumentException(message + " at position " + position + ".");
+    }
+}
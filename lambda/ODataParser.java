@@ -0,0 +1,413 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive-descent parser for OData $filter expressions, for the $select and $orderby
+ * lists, and for $apply transformations. Precedence, from loosest to tightest: or, and, not, then comparisons (eq ne gt ge lt
+ * le) and "in". Parentheses group conditions. Supported functions: contains, startswith,
+ * endswith, tolower, toupper, trim, length, concat, substring, indexof, year, month, day and
+ * to_date.
+ *
+ * The expression is tokenized once by ODataLexer and read once, left to right. Anything
+ * outside this grammar is rejected with an IllegalArgumentException naming the position,
+ * including nesting (parentheses, "not" and function calls) deeper than MAX_DEPTH levels,
+ * which would otherwise exhaust the stack.
+ */
+public final class ODataParser {
+
+    static final int MAX_DEPTH = 100;
+
+    private final List<ODataLexer.Token> tokens;
+    private int next;
+    private int depth;
+
+    private ODataParser(List<ODataLexer.Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Parses a $filter expression into its syntax tree.
+     */
+    public static ODataFilter parse(String filter) {
+        ODataParser parser = new ODataParser(ODataLexer.tokenize(filter));
+        ODataFilter condition = parser.or();
+        parser.expect(ODataLexer.TokenType.END, "end of input");
+        return condition;
+    }
+
+    /**
+     * Parses a $select list into its property names. "*" selects everything and gives an empty list.
+     */
+    public static List<String> parseSelect(String select) {
+        List<String> properties = new ArrayList<>();
+        if (select.trim().equals("*")) {
+            return properties;
+        }
+        ODataParser parser = new ODataParser(ODataLexer.tokenize(select));
+        do {
+            properties.add(parser.property());
+        } while (parser.acceptComma());
+        parser.expect(ODataLexer.TokenType.END, "',' or end of input");
+        return properties;
+    }
+
+    /**
+     * Parses an $orderby list: properties or value functions, each optionally followed by asc or desc.
+     */
+    public static List<ODataQueryOptions.OrderItem> parseOrderBy(String orderBy) {
+        ODataParser parser = new ODataParser(ODataLexer.tokenize(orderBy));
+        List<ODataQueryOptions.OrderItem> items = new ArrayList<>();
+        do {
+            ODataLexer.Token token = parser.peek();
+            ODataFilter expression = parser.operand();
+            if (expression instanceof ODataFilter.Literal
+                    || (expression instanceof ODataFilter.Function && ((ODataFilter.Function) expression).isCondition())) {
+                throw ODataLexer.error("Expected a property but found " + token, token.getPosition());
+            }
+            boolean descending = parser.acceptKeyword("desc");
+            if (!descending) {
+                parser.acceptKeyword("asc");
+            }
+            items.add(new ODataQueryOptions.OrderItem(expression, descending));
+        } while (parser.acceptComma());
+        parser.expect(ODataLexer.TokenType.END, "',' or end of input");
+        return items;
+    }
+
+    /**
+     * Parses $apply: transformations separated by "/", applied left to right. Supported are
+     * filter(condition), aggregate(...) and groupby((properties)[,aggregate(...)]), where each
+     * aggregate is "property with sum|min|max|average|countdistinct as alias" or "$count as alias".
+     */
+    public static List<ODataApply.Step> parseApply(String apply) {
+        ODataParser parser = new ODataParser(ODataLexer.tokenize(apply));
+        List<ODataApply.Step> steps = new ArrayList<>();
+        do {
+            steps.add(parser.transformation());
+        } while (parser.accept(ODataLexer.TokenType.SLASH));
+        parser.expect(ODataLexer.TokenType.END, "'/' or end of input");
+        return steps;
+    }
+
+    private ODataApply.Step transformation() {
+        ODataLexer.Token name = advance();
+        if (name.is(ODataLexer.TokenType.IDENTIFIER, "filter")) {
+            expect(ODataLexer.TokenType.OPEN, "'('");
+            ODataFilter condition = or();
+            expect(ODataLexer.TokenType.CLOSE, "')'");
+            return ODataApply.Step.filter(condition);
+        }
+        if (name.is(ODataLexer.TokenType.IDENTIFIER, "aggregate")) {
+            return ODataApply.Step.groupBy(new ArrayList<>(), aggregates());
+        }
+        if (name.is(ODataLexer.TokenType.IDENTIFIER, "groupby")) {
+            expect(ODataLexer.TokenType.OPEN, "'('");
+            expect(ODataLexer.TokenType.OPEN, "'('");
+            List<String> properties = new ArrayList<>();
+            do {
+                properties.add(property());
+            } while (acceptComma());
+            expect(ODataLexer.TokenType.CLOSE, "')'");
+            List<ODataApply.Aggregate> aggregates = new ArrayList<>();
+            if (acceptComma()) {
+                expectKeyword("aggregate");
+                aggregates = aggregates();
+            }
+            expect(ODataLexer.TokenType.CLOSE, "')'");
+            return ODataApply.Step.groupBy(properties, aggregates);
+        }
+        throw ODataLexer.error("Expected filter, groupby or aggregate but found " + name, name.getPosition());
+    }
+
+    private List<ODataApply.Aggregate> aggregates() {
+        expect(ODataLexer.TokenType.OPEN, "'('");
+        List<ODataApply.Aggregate> aggregates = new ArrayList<>();
+        do {
+            String property = null;
+            String method = ODataApply.COUNT;
+            if (!accept(ODataLexer.TokenType.IDENTIFIER, "$count")) {
+                property = property();
+                expectKeyword("with");
+                ODataLexer.Token token = advance();
+                method = token.getText();
+                if (token.getType() != ODataLexer.TokenType.IDENTIFIER || !ODataApply.METHODS.containsKey(method)) {
+                    throw ODataLexer.error("Unsupported aggregation method " + token, token.getPosition());
+                }
+            }
+            expectKeyword("as");
+            ODataLexer.Token token = peek();
+            String alias = property();
+            if (alias.indexOf('/') >= 0) {
+                throw ODataLexer.error("Expected an alias but found " + token, token.getPosition());
+            }
+            aggregates.add(new ODataApply.Aggregate(property, method, alias));
+        } while (acceptComma());
+        expect(ODataLexer.TokenType.CLOSE, "')'");
+        return aggregates;
+    }
+
+    private String property() {
+        ODataLexer.Token token = peek();
+        ODataFilter property = operand();
+        if (!(property instanceof ODataFilter.Property)) {
+            throw ODataLexer.error("Expected a property but found " + token, token.getPosition());
+        }
+        return ((ODataFilter.Property) property).getName();
+    }
+
+    private ODataFilter or() {
+        ODataFilter first = and();
+        if (!peekKeyword("or")) {
+            return first;
+        }
+        List<ODataFilter> operands = new ArrayList<>();
+        operands.add(first);
+        while (acceptKeyword("or")) {
+            operands.add(and());
+        }
+        return new ODataFilter.Logical("or", operands);
+    }
+
+    private ODataFilter and() {
+        ODataFilter first = not();
+        if (!peekKeyword("and")) {
+            return first;
+        }
+        List<ODataFilter> operands = new ArrayList<>();
+        operands.add(first);
+        while (acceptKeyword("and")) {
+            operands.add(not());
+        }
+        return new ODataFilter.Logical("and", operands);
+    }
+
+    private ODataFilter not() {
+        if (acceptKeyword("not")) {
+            descend();
+            ODataFilter negated = new ODataFilter.Not(not());
+            depth--;
+            return negated;
+        }
+        return condition();
+    }
+
+    private ODataFilter condition() {
+        if (peek().getType() == ODataLexer.TokenType.OPEN) {
+            advance();
+            descend();
+            ODataFilter grouped = or();
+            expect(ODataLexer.TokenType.CLOSE, "')'");
+            depth--;
+            return grouped;
+        }
+
+        ODataLexer.Token start = peek();
+        ODataFilter operand = operand();
+        ODataLexer.Token operator = peek();
+        if (operator.getType() == ODataLexer.TokenType.IDENTIFIER) {
+            switch (operator.getText()) {
+                case "eq":
+                case "ne":
+                case "gt":
+                case "ge":
+                case "lt":
+                case "le":
+                    advance();
+                    return new ODataFilter.Comparison(operator.getText(), operand, operand());
+                case "in":
+                    advance();
+                    return new ODataFilter.In(operand, literalList());
+                default:
+                    break;
+            }
+        }
+        // A condition on its own: a boolean column, true/false, or contains/startswith/endswith
+        boolean isCondition = operand instanceof ODataFilter.Property
+                || (operand instanceof ODataFilter.Literal && ((ODataFilter.Literal) operand).getType() == ODataFilter.Literal.Type.BOOLEAN)
+                || (operand instanceof ODataFilter.Function && ((ODataFilter.Function) operand).isCondition());
+        if (!isCondition) {
+            throw ODataLexer.error("Expected a condition but found " + start, start.getPosition());
+        }
+        return operand;
+    }
+
+    private ODataFilter operand() {
+        ODataLexer.Token token = advance();
+        switch (token.getType()) {
+            case STRING:
+                return new ODataFilter.Literal(ODataFilter.Literal.Type.STRING, token.getText());
+            case NUMBER:
+                return new ODataFilter.Literal(ODataFilter.Literal.Type.NUMBER, token.getText());
+            case DATE:
+                return new ODataFilter.Literal(ODataFilter.Literal.Type.DATE, token.getText());
+            case DATETIME:
+                return new ODataFilter.Literal(ODataFilter.Literal.Type.DATETIME, token.getText());
+            case IDENTIFIER:
+                break;
+            default:
+                throw ODataLexer.error("Expected a value but found " + token, token.getPosition());
+        }
+
+        String name = token.getText();
+        switch (name) {
+            case "null":
+                return new ODataFilter.Literal(ODataFilter.Literal.Type.NULL, null);
+            case "true":
+            case "false":
+                return new ODataFilter.Literal(ODataFilter.Literal.Type.BOOLEAN, name);
+            case "and":
+            case "or":
+            case "not":
+            case "eq":
+            case "ne":
+            case "gt":
+            case "ge":
+            case "lt":
+            case "le":
+            case "in":
+                throw ODataLexer.error("Expected a value but found " + token, token.getPosition());
+            default:
+                // $count and the like are only meaningful where the grammar asks for them
+                if (name.startsWith("$")) {
+                    throw ODataLexer.error("Expected a value but found " + token, token.getPosition());
+                }
+                break;
+        }
+        if (peek().getType() != ODataLexer.TokenType.OPEN) {
+            return new ODataFilter.Property(name);
+        }
+        return function(token);
+    }
+
+    private ODataFilter function(ODataLexer.Token nameToken) {
+        String name = nameToken.getText();
+        int min;
+        int max;
+        switch (name) {
+            case "contains":
+            case "startswith":
+            case "endswith":
+            case "concat":
+            case "indexof":
+                min = max = 2;
+                break;
+            case "substring":
+                min = 2;
+                max = 3;
+                break;
+            case "to_date":
+                min = 1;
+                max = 2;
+                break;
+            default:
+                if (!ODataFilter.SQL_FUNCTIONS.containsKey(name)) {
+                    throw ODataLexer.error("Unsupported function '" + name + "'", nameToken.getPosition());
+                }
+                min = max = 1;
+        }
+
+        expect(ODataLexer.TokenType.OPEN, "'('");
+        descend();
+        List<ODataFilter> arguments = new ArrayList<>();
+        if (peek().getType() != ODataLexer.TokenType.CLOSE) {
+            arguments.add(operand());
+            while (peek().getType() == ODataLexer.TokenType.COMMA) {
+                advance();
+                arguments.add(operand());
+            }
+        }
+        expect(ODataLexer.TokenType.CLOSE, "')'");
+        depth--;
+        if (arguments.size() < min || arguments.size() > max) {
+            throw ODataLexer.error("Wrong number of arguments for '" + name + "'", nameToken.getPosition());
+        }
+        return new ODataFilter.Function(name, arguments);
+    }
+
+    // Enters one more level of nesting; the matching exit is a plain depth-- once the level is parsed
+    private void descend() {
+        if (++depth > MAX_DEPTH) {
+            throw ODataLexer.error("Expression is nested more than " + MAX_DEPTH + " levels deep", peek().getPosition());
+        }
+    }
+
+    private List<ODataFilter.Literal> literalList() {
+        expect(ODataLexer.TokenType.OPEN, "'('");
+        List<ODataFilter.Literal> values = new ArrayList<>();
+        values.add(literal());
+        while (peek().getType() == ODataLexer.TokenType.COMMA) {
+            advance();
+            values.add(literal());
+        }
+        expect(ODataLexer.TokenType.CLOSE, "')'");
+        return values;
+    }
+
+    private ODataFilter.Literal literal() {
+        ODataLexer.Token token = peek();
+        ODataFilter value = operand();
+        if (!(value instanceof ODataFilter.Literal) || ODataFilter.Literal.isNull(value)) {
+            throw ODataLexer.error("Expected a literal but found " + token, token.getPosition());
+        }
+        return (ODataFilter.Literal) value;
+    }
+
+    private ODataLexer.Token peek() {
+        return tokens.get(next);
+    }
+
+    private ODataLexer.Token advance() {
+        ODataLexer.Token token = tokens.get(next);
+        if (token.getType() != ODataLexer.TokenType.END) {
+            next++;
+        }
+        return token;
+    }
+
+    private boolean acceptComma() {
+        return accept(ODataLexer.TokenType.COMMA);
+    }
+
+    private boolean accept(ODataLexer.TokenType type) {
+        if (peek().getType() == type) {
+            next++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean accept(ODataLexer.TokenType type, String text) {
+        if (peek().is(type, text)) {
+            next++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean peekKeyword(String keyword) {
+        return peek().is(ODataLexer.TokenType.IDENTIFIER, keyword);
+    }
+
+    private boolean acceptKeyword(String keyword) {
+        if (peekKeyword(keyword)) {
+            next++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expectKeyword(String keyword) {
+        ODataLexer.Token token = peek();
+        if (!acceptKeyword(keyword)) {
+            throw ODataLexer.error("Expected '" + keyword + "' but found " + token, token.getPosition());
+        }
+    }
+
+    private void expect(ODataLexer.TokenType type, String description) {
+        ODataLexer.Token token = peek();
+        if (token.getType() != type) {
+            throw ODataLexer.error("Expected " + description + " but found " + token, token.getPosition());
+        }
+        advance();
+    }
+}
@@ -0,0 +1,226 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The OData system query options of a request: $apply, $filter, $select, $orderby, $top and
+ * $skip. They are compiled into SQL around the report query, so the warehouse does the
+ * aggregation, filtering, projection, sorting and paging and only the requested rows and
+ * columns leave it:
+ *
+ *   SELECT <$select> FROM (<report query>) odata_source WHERE <$filter>
+ *   ORDER BY <$orderby> LIMIT <$top> OFFSET <$skip>
+ *
+ * With $apply the report query is aggregated first (see ODataApply) and the other options
+ * apply to its result. Options apply to the report's result columns, as OData defines them
+ * on the returned entity set. Parameters not starting with "$" are left to the caller.
+ */
+public final class ODataQueryOptions {
+
+    private static final String SOURCE_ALIAS = "odata_source";
+    private static final String APPLY_ALIAS = "odata_apply";
+
+    /**
+     * One $orderby item: a property or value function, and its direction.
+     */
+    public static final class OrderItem {
+        private final ODataFilter expression;
+        private final boolean descending;
+
+        OrderItem(ODataFilter expression, boolean descending) {
+            this.expression = expression;
+            this.descending = descending;
+        }
+
+        public ODataFilter getExpression() {
+            return expression;
+        }
+
+        public boolean isDescending() {
+            return descending;
+        }
+    }
+
+    private final ODataApply apply;
+    private final ODataFilter filter;
+    private final List<String> select;
+    private final List<OrderItem> orderBy;
+    private final Long top;
+    private final Long skip;
+
+    private ODataQueryOptions(ODataApply apply, ODataFilter filter, List<String> select, List<OrderItem> orderBy, Long top, Long skip) {
+        this.apply = apply;
+        this.filter = filter;
+        this.select = Collections.unmodifiableList(select);
+        this.orderBy = Collections.unmodifiableList(orderBy);
+        this.top = top;
+        this.skip = skip;
+    }
+
+    /**
+     * Parses the query options from request parameters (e.g. API Gateway's queryStringParameters).
+     * Throws IllegalArgumentException naming the option for an invalid value or an unsupported
+     * system query option. $apply aggregations are checked against config.json.
+     */
+    public static ODataQueryOptions parse(Map<String, String> parameters) {
+        return parse(parameters, null);
+    }
+
+    /**
+     * Parses the query options, checking $apply aggregations against the given whitelist
+     * (column name to allowed aggregations) instead of config.json.
+     */
+    public static ODataQueryOptions parse(Map<String, String> parameters, Map<String, Set<String>> aggregations) {
+        ODataApply apply = null;
+        ODataFilter filter = null;
+        List<String> select = Collections.emptyList();
+        List<OrderItem> orderBy = Collections.emptyList();
+        Long top = null;
+        Long skip = null;
+
+        if (parameters != null) {
+            for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+                String name = parameter.getKey();
+                String value = parameter.getValue();
+                if (!name.startsWith("$") || value == null || value.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    switch (name) {
+                        case "$apply":
+                            apply = aggregations == null ? ODataApply.parse(value) : ODataApply.parse(value, aggregations);
+                            break;
+                        case "$filter":
+                            filter = ODataFilterCache.shared().compile(value).getFilter();
+                            break;
+                        case "$select":
+                            select = ODataParser.parseSelect(value);
+                            break;
+                        case "$orderby":
+                            orderBy = ODataParser.parseOrderBy(value);
+                            break;
+                        case "$top":
+                            top = count(value);
+                            break;
+                        case "$skip":
+                            skip = count(value);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unsupported query option.");
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid " + name + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return new ODataQueryOptions(apply, filter, select, orderBy, top, skip);
+    }
+
+    private static long count(String value) {
+        try {
+            long count = Long.parseLong(value.trim());
+            if (count >= 0) {
+                return count;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Expected a non-negative whole number but found '" + value + "'.");
+    }
+
+    public ODataApply getApply() {
+        return apply;
+    }
+
+    public ODataFilter getFilter() {
+        return filter;
+    }
+
+    public List<String> getSelect() {
+        return select;
+    }
+
+    public List<OrderItem> getOrderBy() {
+        return orderBy;
+    }
+
+    public Long getTop() {
+        return top;
+    }
+
+    public Long getSkip() {
+        return skip;
+    }
+
+    public boolean isEmpty() {
+        return apply == null && filter == null && select.isEmpty() && orderBy.isEmpty() && top == null && skip == null;
+    }
+
+    /**
+     * Returns the report query with the options applied, or the query itself if there are none.
+     */
+    public String toSql(String baseQuery) {
+        if (isEmpty()) {
+            return baseQuery;
+        }
+        String source = "(" + stripTerminator(baseQuery) + ") " + SOURCE_ALIAS;
+        List<ODataFilter> conditions = new ArrayList<>();
+        if (apply != null) {
+            String aggregated = apply.toSql(source, conditions);
+            if (aggregated != null) {
+                // Nothing else to apply: the aggregation is the whole query
+                if (conditions.isEmpty() && filter == null && select.isEmpty() && orderBy.isEmpty() && top == null && skip == null) {
+                    return aggregated;
+                }
+                source = "(" + aggregated + ") " + APPLY_ALIAS;
+            }
+        }
+        if (filter != null) {
+            conditions.add(filter);
+        }
+
+        StringBuilder sql = new StringBuilder(baseQuery.length() + 128);
+        sql.append("SELECT ");
+        if (select.isEmpty()) {
+            sql.append('*');
+        } else {
+            for (int i = 0; i < select.size(); i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(select.get(i).replace('/', '.'));
+            }
+        }
+        sql.append(" FROM ").append(source);
+
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ");
+            ODataApply.allOf(conditions).appendSql(sql);
+        }
+        if (!orderBy.isEmpty()) {
+            sql.append(" ORDER BY ");
+            for (int i = 0; i < orderBy.size(); i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                orderBy.get(i).expression.appendSql(sql);
+                sql.append(orderBy.get(i).descending ? " DESC" : " ASC");
+            }
+        }
+        if (top != null) {
+            sql.append(" LIMIT ").append(top);
+        }
+        if (skip != null && skip > 0) {
+            sql.append(" OFFSET ").append(skip);
+        }
+        return sql.toString();
+    }
+
+    // A trailing semicolon would end the statement inside the derived table
+    private static String stripTerminator(String query) {
+        String trimmed = query.trim();
+        return trimmed.endsWith(";") ? trimmed.substring(0, trimmed.length() - 1).trim() : trimmed;
+    }
+}
@@ -1,43 +1,24 @@
 public class ODataQueryValidator {
 
+    // Forbidden patterns, matched anywhere ignoring case, and the characters an OData filter may use
+    // (word characters, whitespace, single quotes, comparison signs, parentheses, commas, dots,
+    // slashes and dashes); both are checked in one pass by the shared screen
+    private static final InjectionScreen SCREEN = InjectionScreen.builder()
+            .substrings("--", ";", "*", "DROP", "INSERT", "DELETE", "1=1", "OR ", "AND ", "UNION ", "xp_",
+                    "/*", "*/", "CHAR(", "EXEC", "CAST(", "CONVERT(")
+            .allowOnly(InjectionScreen.WORD_CHARACTERS + InjectionScreen.WHITESPACE + "=><'(),./-")
+            .build();
+
     // Basic method to validate OData query syntax
     public static boolean isValidODataQuery(String query) {
-        // Regex patterns for SQL injection
-        String[] forbiddenPatterns = { 
-            "--", 
-            ";", 
-            "\\*", 
-            "DROP", 
-            "INSERT", 
-            "DELETE", 
-            "1=1", 
-            "OR ", 
-            "AND ", 
-            "UNION ", 
-            "xp_", 
-            "/*", 
-            "*/", 
-            "CHAR(", 
-            "EXEC", 
-            "CAST(", 
-            "CONVERT(" 
-        };
-
-        // Check for forbidden patterns (excluding valid OData single quotes)
-        for (String pattern : forbiddenPatterns) {
-            if (query.toUpperCase().contains(pattern.toUpperCase()) 
-                && !pattern.equals("'")) {  // Allow single quotes for OData
-                System.out.println("Potential SQL injection detected with pattern: " + pattern);
-                return false;
-            }
+        if (query.isEmpty()) {
+            System.out.println("Invalid characters detected in OData query.");
+            return false;
         }
 
-        // Basic structure validation using a more relaxed regex
-        // Allow alphanumeric characters, spaces, single quotes, and common OData operators
-        // Updated regex to allow valid OData syntax, including function calls, slashes, and spaces
-        String validCharactersRegex = "[\\w\\s=><'(),./-]+";
-        if (!query.matches(validCharactersRegex)) {
-            System.out.println("Invalid characters detected in OData query.");
+        InjectionScreen.Finding finding = SCREEN.screen(query);
+        if (finding != null) {
+            System.out.println("Potential SQL injection detected with pattern: " + finding.getRule());
             return false;
         }
 
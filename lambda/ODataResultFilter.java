@@ -0,0 +1,228 @@
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Re-filters a result that is already materialized instead of running its query again.
+ *
+ * When a report is re-run with the same base query and a narrower $filter, every row of the
+ * new result is in the old one: if covers(cachedFilter, requestedFilter) holds, streaming the
+ * cached result through filter() gives the same rows as the warehouse would. The check is
+ * conservative; a false answer only means the query has to run.
+ *
+ * Results are read as a JSON array of row objects, the layout MultiChunkDataConverter writes
+ * (a trailing comma after the last row is accepted), one row at a time, so memory does not
+ * grow with the result.
+ *
+ * No handler in this module parses OData yet (ODataToSQLConverter is only a library), so
+ * nothing calls this class; a handler that does should check covers() against the filter
+ * the cached result was written with before submitting the statement.
+ */
+public final class ODataResultFilter {
+
+    private static final JsonFactory JSON = JsonFactory.builder()
+            .enable(JsonReadFeature.ALLOW_TRAILING_COMMA)
+            .build();
+    private static final ObjectMapper MAPPER = new ObjectMapper(JSON);
+
+    private ODataResultFilter() {
+    }
+
+    /**
+     * True if every row matching the requested filter also matches the cached one (a null
+     * cached filter matched every row), and the requested filter can be evaluated in process.
+     */
+    public static boolean covers(ODataFilter cached, ODataFilter requested) {
+        if (requested == null) {
+            return cached == null;
+        }
+        return requested.isEvaluable() && (cached == null || implies(requested, cached));
+    }
+
+    /**
+     * Copies the rows of the JSON result that match the filter to out, as a JSON array.
+     * Returns the number of rows written.
+     */
+    @SuppressWarnings("unchecked")
+    public static long filter(InputStream in, OutputStream out, ODataFilter filter) throws IOException {
+        long written = 0;
+        try (JsonParser parser = JSON.createParser(in);
+             JsonGenerator generator = JSON.createGenerator(out)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of rows.");
+            }
+            generator.setCodec(MAPPER);
+            generator.writeStartArray();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                Map<String, Object> row = MAPPER.readValue(parser, Map.class);
+                if (filter.test(row)) {
+                    generator.writeObject(row);
+                    written++;
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new IOException("Expected a row object but found " + parser.currentToken() + ".");
+            }
+            generator.writeEndArray();
+        }
+        return written;
+    }
+
+    // Whether every row satisfying condition also satisfies required
+    static boolean implies(ODataFilter condition, ODataFilter required) {
+        if (condition.toSql().equals(required.toSql())) {
+            return true;
+        }
+        if (isLogical(required, "and")) {
+            for (ODataFilter operand : ((ODataFilter.Logical) required).getOperands()) {
+                if (!implies(condition, operand)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (isLogical(condition, "or")) {
+            for (ODataFilter operand : ((ODataFilter.Logical) condition).getOperands()) {
+                if (!implies(operand, required)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (isLogical(condition, "and")) {
+            for (ODataFilter operand : ((ODataFilter.Logical) condition).getOperands()) {
+                if (implies(operand, required)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (isLogical(required, "or")) {
+            for (ODataFilter operand : ((ODataFilter.Logical) required).getOperands()) {
+                if (implies(condition, operand)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return restrictionImplies(condition, required);
+    }
+
+    private static boolean isLogical(ODataFilter filter, String operator) {
+        return filter instanceof ODataFilter.Logical && operator.equals(((ODataFilter.Logical) filter).getOperator());
+    }
+
+    // Two restrictions of the same property to literal values: "eq", "in" and ranges
+    private static boolean restrictionImplies(ODataFilter condition, ODataFilter required) {
+        String property = restrictedProperty(condition);
+        if (property == null || !property.equals(restrictedProperty(required))) {
+            return false;
+        }
+        if (condition instanceof ODataFilter.In) {
+            for (ODataFilter.Literal value : ((ODataFilter.In) condition).getValues()) {
+                if (!satisfies(value, required)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        ODataFilter.Comparison comparison = (ODataFilter.Comparison) condition;
+        ODataFilter.Literal bound = (ODataFilter.Literal) comparison.getRight();
+        if ("eq".equals(comparison.getOperator())) {
+            return satisfies(bound, required);
+        }
+        if (!(required instanceof ODataFilter.Comparison) || "ne".equals(comparison.getOperator())) {
+            return false;
+        }
+        // A range implies "ne v" for v outside it, and a range in the same direction with a bound that is no tighter
+        String operator = comparison.getOperator();
+        String requiredOperator = ((ODataFilter.Comparison) required).getOperator();
+        Integer order = compareBounds(bound, (ODataFilter.Literal) ((ODataFilter.Comparison) required).getRight());
+        if (order == null || "eq".equals(requiredOperator)) {
+            return false;
+        }
+        boolean lower = "gt".equals(operator) || "ge".equals(operator);
+        boolean strict = "gt".equals(operator) || "lt".equals(operator);
+        if ("ne".equals(requiredOperator)) {
+            return lower ? order > 0 || (order == 0 && strict) : order < 0 || (order == 0 && strict);
+        }
+        if (lower != ("gt".equals(requiredOperator) || "ge".equals(requiredOperator))) {
+            return false;
+        }
+        boolean requiredStrict = "gt".equals(requiredOperator) || "lt".equals(requiredOperator);
+        int tighter = lower ? order : -order;
+        return tighter > 0 || (tighter == 0 && (strict || !requiredStrict));
+    }
+
+    // The property of "property op literal" or "property in (...)", or null for anything else
+    private static String restrictedProperty(ODataFilter filter) {
+        if (filter instanceof ODataFilter.In) {
+            ODataFilter operand = ((ODataFilter.In) filter).getOperand();
+            return operand instanceof ODataFilter.Property ? ((ODataFilter.Property) operand).getName() : null;
+        }
+        if (filter instanceof ODataFilter.Comparison) {
+            ODataFilter.Comparison comparison = (ODataFilter.Comparison) filter;
+            if (comparison.getLeft() instanceof ODataFilter.Property && comparison.getRight() instanceof ODataFilter.Literal
+                    && !ODataFilter.Literal.isNull(comparison.getRight())) {
+                return ((ODataFilter.Property) comparison.getLeft()).getName();
+            }
+        }
+        return null;
+    }
+
+    // Whether a single (non-null) value of the property satisfies the restriction
+    private static boolean satisfies(ODataFilter.Literal value, ODataFilter required) {
+        if (required instanceof ODataFilter.In) {
+            for (ODataFilter.Literal candidate : ((ODataFilter.In) required).getValues()) {
+                Integer order = compareBounds(value, candidate);
+                if (order != null && order == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        ODataFilter.Comparison comparison = (ODataFilter.Comparison) required;
+        Integer order = compareBounds(value, (ODataFilter.Literal) comparison.getRight());
+        if (order == null) {
+            return false;
+        }
+        switch (comparison.getOperator()) {
+            case "eq": return order == 0;
+            case "ne": return order != 0;
+            case "gt": return order > 0;
+            case "ge": return order >= 0;
+            case "lt": return order < 0;
+            default: return order <= 0;
+        }
+    }
+
+    // Orders two literals of the same type: numbers by value and dates by their ISO text.
+    // Strings (ordered by the warehouse's collation) and date-times (whose offsets may be
+    // written differently) are only compared for equality
+    private static Integer compareBounds(ODataFilter.Literal left, ODataFilter.Literal right) {
+        if (left.getType() != right.getType()) {
+            return null;
+        }
+        switch (left.getType()) {
+            case NUMBER:
+                return new BigDecimal(left.getValue()).compareTo(new BigDecimal(right.getValue()));
+            case DATE:
+                return Integer.signum(left.getValue().compareTo(right.getValue()));
+            case DATETIME:
+            case STRING:
+            case BOOLEAN:
+                return left.getValue().equals(right.getValue()) ? 0 : null;
+            default:
+                return null;
+        }
+    }
+}
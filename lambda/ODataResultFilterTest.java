@@ -0,0 +1,77 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ODataResultFilterTest {
+
+    private static Map<String, Object> row(Object... columns) {
+        Map<String, Object> row = new HashMap<>();
+        for (int i = 0; i < columns.length; i += 2) {
+            row.put((String) columns[i], columns[i + 1]);
+        }
+        return row;
+    }
+
+    @Test
+    public void testFiltersEvaluateLikeSql() {
+        Map<String, Object> row = row("region", "West", "total_sales", "1200.50", "sales_date", "2024-03-15", "active", "true", "note", null);
+
+        assertTrue(ODataParser.parse("region eq 'West' and total_sales gt 1000").test(row));
+        assertTrue(ODataParser.parse("total_sales lt 1e4 and sales_date ge 2024-01-01 and month(sales_date) eq 3").test(row));
+        assertTrue(ODataParser.parse("startswith(tolower(region), 'we') and length(region) eq 4 and substring(region, 1, 2) eq 'es'").test(row));
+        assertTrue(ODataParser.parse("active and region in ('East', 'West') and indexof(region, 'st') eq 2").test(row));
+        assertFalse(ODataParser.parse("contains(region, 'east')").test(row));
+
+        // A comparison with NULL is unknown: neither it nor its negation matches
+        assertFalse(ODataParser.parse("note eq 'x'").test(row));
+        assertFalse(ODataParser.parse("not (note eq 'x')").test(row));
+        assertTrue(ODataParser.parse("note eq null or note eq 'x'").test(row));
+        assertTrue(ODataParser.parse("note eq 'x' or region eq 'West'").test(row));
+        assertFalse(ODataParser.parse("total_sales gt 'abc'").test(row));
+
+        assertThrows(IllegalArgumentException.class, () -> ODataParser.parse("missing eq 1").test(row));
+        assertFalse(ODataParser.parse("sales_date ge to_date('01/01/2024', 'MM/DD/YYYY')").isEvaluable());
+    }
+
+    @Test
+    public void testCoversNarrowerFilters() {
+        ODataFilter cached = ODataParser.parse("region in ('East', 'West') and total_sales ge 100");
+
+        assertTrue(ODataResultFilter.covers(null, ODataParser.parse("region eq 'West'")));
+        assertTrue(ODataResultFilter.covers(cached, ODataParser.parse("total_sales ge 100 and region in ('East', 'West')")));
+        assertTrue(ODataResultFilter.covers(cached, ODataParser.parse("region eq 'West' and total_sales gt 500 and contains(product_name, 'Milk')")));
+        assertTrue(ODataResultFilter.covers(cached, ODataParser.parse("(region eq 'East' or region eq 'West') and total_sales eq 100")));
+        assertTrue(ODataResultFilter.covers(ODataParser.parse("sales_date lt 2025-01-01"), ODataParser.parse("sales_date le 2024-12-31")));
+        assertTrue(ODataResultFilter.covers(ODataParser.parse("total_sales ne 5"), ODataParser.parse("total_sales gt 5")));
+
+        assertFalse(ODataResultFilter.covers(cached, ODataParser.parse("region eq 'North' and total_sales ge 100")));
+        assertFalse(ODataResultFilter.covers(cached, ODataParser.parse("region eq 'West' and total_sales gt 50")));
+        assertFalse(ODataResultFilter.covers(cached, ODataParser.parse("region eq 'West'")));
+        assertFalse(ODataResultFilter.covers(ODataParser.parse("total_sales lt 100"), ODataParser.parse("total_sales eq 50 or total_sales gt 10")));
+        assertFalse(ODataResultFilter.covers(ODataParser.parse("total_sales ge 100"), ODataParser.parse("total_sales gt 100 and sales_date ge to_date('x')")));
+        assertFalse(ODataResultFilter.covers(ODataParser.parse("total_sales ge 100"), null));
+    }
+
+    @Test
+    public void testFilterStreamsMatchingRows() throws IOException {
+        // The layout MultiChunkDataConverter writes, trailing comma included
+        String result = "[\n  {\"region\": \"West\", \"total_sales\": \"150\"},\n  {\"region\": \"East\", \"total_sales\": \"90\"},\n"
+                + "  {\"region\": \"West\", \"total_sales\": null},\n]";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long written = ODataResultFilter.filter(new ByteArrayInputStream(result.getBytes(StandardCharsets.UTF_8)), out,
+                ODataParser.parse("total_sales ge 100"));
+
+        assertEquals(1, written);
+        assertEquals("[{\"region\":\"West\",\"total_sales\":\"150\"}]", out.toString(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> ODataResultFilter.filter(
+                new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)), new ByteArrayOutputStream(), ODataParser.parse("a eq 1")));
+    }
+}
@@ -1,6 +1,11 @@
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 public class ODataToSQLConverterTest {
 
     // Tests for isValidODataQuery
@@ -85,4 +90,169 @@ public class ODataToSQLConverterTest {
         String expectedSQL = "name LIKE '%Doe%'";
         assertEquals(expectedSQL, ODataToSQLConverter.convertODataToSQL(odataQuery));
     }
+
+    @Test
+    public void testConvertODataToSQL_LiteralsAreNotRewritten() {
+        String odataQuery = "note eq 'null and void' or name eq 'O''Brien eq x' and contains(city, ' not ')";
+        String expectedSQL = "note = 'null and void' OR name = 'O''Brien eq x' AND city LIKE '% not %'";
+        assertEquals(expectedSQL, ODataToSQLConverter.convertODataToSQL(odataQuery));
+    }
+
+    @Test
+    public void testConvertODataToSQL_PrecedenceAndParentheses() {
+        assertEquals("(a = 1 OR b = 2) AND c = 3",
+                ODataToSQLConverter.convertODataToSQL("(a eq 1 or b eq 2) and c eq 3"));
+        assertEquals("a = 1 OR b = 2 AND c = 3",
+                ODataToSQLConverter.convertODataToSQL("a eq 1 or (b eq 2 and c eq 3)"));
+        assertEquals("NOT (status = 'closed' OR archived) AND NOT (name IS NOT NULL)",
+                ODataToSQLConverter.convertODataToSQL("not (status eq 'closed' or archived) and not name ne null"));
+    }
+
+    @Test
+    public void testConvertODataToSQL_InListsAndTypedLiterals() {
+        assertEquals("region IN ('East', 'West') AND sales_date >= DATE '2024-01-01' AND price < -1.5",
+                ODataToSQLConverter.convertODataToSQL("region in ('East', 'West') and sales_date ge 2024-01-01 and price lt -1.5"));
+        assertEquals("LOWER(name) LIKE 'jo%' AND SUBSTRING(code, 3, 2) = 'AB' AND city LIKE '%50\\%%'",
+                ODataToSQLConverter.convertODataToSQL("startswith(tolower(name), 'jo') and substring(code, 2, 2) eq 'AB' and contains(city, '50%')"));
+    }
+
+    @Test
+    public void testConvertODataToSQL_BackslashesCannotEndALiteral() {
+        String odataQuery = "tenant eq 'x\\' and region eq ' OR 1=1 --'";
+        assertEquals("tenant = 'x\\\\' AND region = ' OR 1=1 --'", ODataToSQLConverter.convertODataToSQL(odataQuery));
+        assertEquals("path LIKE '%a\\\\\\\\b\\_%'", ODataToSQLConverter.convertODataToSQL("contains(path, 'a\\b_')"));
+    }
+
+    @Test
+    public void testConvertODataToSQL_RejectsInvalidFilters() {
+        assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.convertODataToSQL("name eq 'open"));
+        assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.convertODataToSQL("name eq 'a' and"));
+        assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.convertODataToSQL("(name eq 'a'"));
+        assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.convertODataToSQL("drop(users)"));
+        assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.convertODataToSQL("'abc'"));
+    }
+
+    @Test
+    public void testConvertODataToSQL_RejectsDeepNesting() {
+        String nested = "(".repeat(1000) + "a eq 1" + ")".repeat(1000);
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.convertODataToSQL(nested));
+        assertTrue(error.getMessage().contains("nested more than"));
+        assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.convertODataToSQL("not ".repeat(5000) + "active"));
+        assertThrows(IllegalArgumentException.class,
+                () -> ODataToSQLConverter.convertODataToSQL("tolower(".repeat(1000) + "name" + ")".repeat(1000) + " eq 'a'"));
+        assertFalse(ODataToSQLConverter.isValidODataQuery(nested));
+
+        // Nesting up to the limit is still accepted
+        String deepest = "(".repeat(ODataParser.MAX_DEPTH) + "a eq 1" + ")".repeat(ODataParser.MAX_DEPTH);
+        assertEquals("a = 1", ODataToSQLConverter.convertODataToSQL(deepest));
+    }
+
+    // Tests for applyQueryOptions
+    @Test
+    public void testApplyQueryOptions_AllOptions() {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("$filter", "region eq 'West'");
+        options.put("$select", "product_name, total");
+        options.put("$orderby", "total desc, tolower(product_name)");
+        options.put("$top", "50");
+        options.put("$skip", "100");
+        options.put("report", "daily");
+
+        assertEquals("SELECT product_name, total FROM (SELECT product_name, region, SUM(sales) AS total FROM sales GROUP BY product_name, region) odata_source"
+                        + " WHERE region = 'West' ORDER BY total DESC, LOWER(product_name) ASC LIMIT 50 OFFSET 100",
+                ODataToSQLConverter.applyQueryOptions(
+                        "SELECT product_name, region, SUM(sales) AS total FROM sales GROUP BY product_name, region;", options));
+    }
+
+    @Test
+    public void testApplyQueryOptions_NoOptionsLeavesQueryAlone() {
+        assertEquals("SELECT * FROM sales", ODataToSQLConverter.applyQueryOptions("SELECT * FROM sales", Map.of()));
+        assertEquals("SELECT * FROM (SELECT * FROM sales) odata_source LIMIT 10",
+                ODataToSQLConverter.applyQueryOptions("SELECT * FROM sales", Map.of("$select", "*", "$top", "10")));
+    }
+
+    @Test
+    public void testApplyQueryOptions_RejectsInvalidOptions() {
+        assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.applyQueryOptions("SELECT * FROM sales", Map.of("$top", "-1")));
+        assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.applyQueryOptions("SELECT * FROM sales", Map.of("$skip", "ten")));
+        assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.applyQueryOptions("SELECT * FROM sales", Map.of("$select", "a, 'b'")));
+        assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.applyQueryOptions("SELECT * FROM sales", Map.of("$orderby", "price; DROP TABLE users")));
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> ODataToSQLConverter.applyQueryOptions("SELECT * FROM sales", Map.of("$expand", "orders")));
+        assertTrue(error.getMessage().startsWith("Invalid $expand"));
+    }
+
+    // Tests for $apply
+    private static final Map<String, Set<String>> AGGREGATIONS = Map.of(
+            "total_sales", Set.of("SUM", "AVG", "MIN", "MAX"),
+            "product_id", Set.of("COUNT"));
+
+    @Test
+    public void testApplyQueryOptions_GroupByAggregate() {
+        assertEquals("SELECT region, SUM(total_sales) AS total FROM (SELECT * FROM sales) odata_source GROUP BY region",
+                ODataToSQLConverter.applyQueryOptions("SELECT * FROM sales;",
+                        Map.of("$apply", "groupby((region),aggregate(total_sales with sum as total))"), AGGREGATIONS));
+        assertEquals("SELECT AVG(total_sales) AS average, COUNT(DISTINCT product_id) AS products, COUNT(*) AS n"
+                        + " FROM (SELECT * FROM sales) odata_source WHERE sales_date >= DATE '2024-01-01'",
+                ODataToSQLConverter.applyQueryOptions("SELECT * FROM sales", Map.of("$apply",
+                        "filter(sales_date ge 2024-01-01)/aggregate(total_sales with average as average, product_id with countdistinct as products, $count as n)"),
+                        AGGREGATIONS));
+    }
+
+    @Test
+    public void testApplyQueryOptions_ApplyWithOtherOptions() {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("$apply", "filter(region ne null)/groupby((region, product_name),aggregate(total_sales with max as best))/filter(best gt 100)");
+        options.put("$filter", "region eq 'West'");
+        options.put("$orderby", "best desc");
+        options.put("$top", "5");
+
+        assertEquals("SELECT * FROM (SELECT region, product_name, MAX(total_sales) AS best FROM (SELECT * FROM sales) odata_source"
+                        + " WHERE region IS NOT NULL GROUP BY region, product_name) odata_apply"
+                        + " WHERE best > 100 AND region = 'West' ORDER BY best DESC LIMIT 5",
+                ODataToSQLConverter.applyQueryOptions("SELECT * FROM sales", options, AGGREGATIONS));
+        assertEquals("SELECT COUNT(*) AS regions FROM (SELECT region FROM (SELECT * FROM sales) odata_source GROUP BY region) odata_step1",
+                ODataToSQLConverter.applyQueryOptions("SELECT * FROM sales",
+                        Map.of("$apply", "groupby((region))/aggregate($count as regions)"), AGGREGATIONS));
+    }
+
+    @Test
+    public void testApplyQueryOptions_RejectsAggregationsOutsideWhitelist() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.applyQueryOptions(
+                "SELECT * FROM sales", Map.of("$apply", "aggregate(product_id with sum as total)"), AGGREGATIONS));
+        assertEquals("Invalid $apply: Aggregation 'sum' is not allowed on 'product_id'.", error.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.applyQueryOptions(
+                "SELECT * FROM sales", Map.of("$apply", "aggregate(region with max as r)"), AGGREGATIONS));
+        assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.applyQueryOptions(
+                "SELECT * FROM sales", Map.of("$apply", "aggregate(total_sales with median as m)"), AGGREGATIONS));
+        assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.applyQueryOptions(
+                "SELECT * FROM sales", Map.of("$apply", "groupby((region),aggregate(total_sales with sum as region))"), AGGREGATIONS));
+        assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.applyQueryOptions(
+                "SELECT * FROM sales", Map.of("$apply", "groupby((region));drop table sales"), AGGREGATIONS));
+        assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.convertODataToSQL("$count gt 1"));
+    }
+
+    @Test
+    public void testApplyQueryOptions_WhitelistFollowsTheSchemaCatalog() {
+        SchemaCatalog.install(SchemaCatalog.fromConfig(Map.of("tables", Map.of(
+                "sales", Map.of("columns", Map.of(
+                        "total_sales", Map.of("type", "DECIMAL", "aggregations", List.of("SUM", "AVG")))),
+                "returns", Map.of("columns", Map.of(
+                        "total_sales", Map.of("type", "DECIMAL", "aggregations", List.of("SUM"))))))));
+        Map<String, String> average = Map.of("$apply", "aggregate(total_sales with average as a)");
+
+        // A name shared by several tables allows only what all of them allow
+        assertThrows(IllegalArgumentException.class, () -> ODataToSQLConverter.applyQueryOptions("SELECT * FROM sales", average));
+        assertEquals("SELECT SUM(total_sales) AS t FROM (SELECT * FROM sales) odata_source",
+                ODataToSQLConverter.applyQueryOptions("SELECT * FROM sales", Map.of("$apply", "aggregate(total_sales with sum as t)")));
+        assertEquals("SELECT AVG(sales.total_sales) AS a FROM (SELECT * FROM sales) odata_source",
+                ODataToSQLConverter.applyQueryOptions("SELECT * FROM sales", Map.of("$apply", "aggregate(sales/total_sales with average as a)")));
+
+        // A reloaded catalog replaces the whitelist
+        SchemaCatalog.install(SchemaCatalog.fromConfig(Map.of("tables", Map.of(
+                "sales", Map.of("columns", Map.of(
+                        "total_sales", Map.of("type", "DECIMAL", "aggregations", List.of("AVG"))))))));
+        assertEquals("SELECT AVG(total_sales) AS a FROM (SELECT * FROM sales) odata_source",
+                ODataToSQLConverter.applyQueryOptions("SELECT * FROM sales", average));
+    }
 }
@@ -9,6 +9,7 @@ import com.amazonaws.services.eventbridge.model.*;
 import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
 import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.util.HashMap;
@@ -21,6 +22,7 @@ public class WPDPQueryRequestHandler implements RequestHandler<Map<String, Objec
     private final AmazonDynamoDB dynamoDBClient = AmazonDynamoDBClientBuilder.defaultClient();
     private final AmazonEventBridge eventBridgeClient = AmazonEventBridgeClientBuilder.defaultClient();
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final InFlightRegistry inFlightRegistry = new InFlightRegistry(dynamoDBClient);
 
     // Define the SQS queue and table names
     private static final String SQS_QUEUE_URL = "https://sqs.region.amazonaws.com/account-id/wp-dp-q-request-queue";
@@ -41,16 +43,38 @@ public class WPDPQueryRequestHandler implements RequestHandler<Map<String, Objec
             // Generate a unique request ID
             String requestId = UUID.randomUUID().toString();
 
-            // Store parameters in DynamoDB with the request ID
-            storeParametersInDynamoDB(requestId, input, context);
+            // Attach to an identical immediate request that is still running instead of starting another one
+            String inFlightKey = null;
+            if (!input.containsKey("scheduleExpression")) {
+                inFlightKey = InFlightRegistry.requestKey(input);
+                String runningRequestId = inFlightRegistry.acquire(inFlightKey, requestId, (String) input.get("report_name"));
+                if (runningRequestId != null) {
+                    context.getLogger().log("Request coalesced with running request ID: " + runningRequestId);
+                    response.put("statusCode", "200");
+                    response.put("requestId", runningRequestId);
+                    response.put("coalesced", "true");
+                    return response;
+                }
+            }
 
-            // Check if there's a scheduled expression for this request
-            if (input.containsKey("scheduleExpression")) {
-                String scheduleExpression = (String) input.get("scheduleExpression");
-                createEventBridgeRule(requestId, scheduleExpression, context);
-            } else {
-                // No scheduling condition, so publish the message to SQS
-                publishMessageToSQS(requestId, input, context);
+            try {
+                // Store parameters in DynamoDB with the request ID
+                storeParametersInDynamoDB(requestId, input, inFlightKey, context);
+
+                // Check if there's a scheduled expression for this request
+                if (inFlightKey == null) {
+                    String scheduleExpression = (String) input.get("scheduleExpression");
+                    createEventBridgeRule(requestId, scheduleExpression, context);
+                } else {
+                    // No scheduling condition, so publish the message to SQS
+                    publishMessageToSQS(requestId, input, inFlightKey, context);
+                }
+            } catch (Exception e) {
+                // Nothing will run for this request, so don't let others attach to it
+                if (inFlightKey != null) {
+                    inFlightRegistry.release(inFlightKey, requestId);
+                }
+                throw e;
             }
 
             // Return the request ID to the client
@@ -65,11 +89,15 @@ public class WPDPQueryRequestHandler implements RequestHandler<Map<String, Objec
         return response;
     }
 
-    private void storeParametersInDynamoDB(String requestId, Map<String, Object> input, Context context) {
+    private void storeParametersInDynamoDB(String requestId, Map<String, Object> input, String inFlightKey, Context context) {
         // Store the request parameters in DynamoDB with the requestId
         Map<String, Object> item = new HashMap<>();
         item.put("RequestId", requestId);
         item.put("Parameters", input);
+        if (inFlightKey != null) {
+            // The key also travels in the queue message to the status item, where QueryExecution releases it
+            item.put("inflight_key", inFlightKey);
+        }
 
         PutItemRequest putItemRequest = new PutItemRequest()
                 .withTableName(DYNAMO_TABLE_NAME)
@@ -79,11 +107,16 @@ public class WPDPQueryRequestHandler implements RequestHandler<Map<String, Objec
         context.getLogger().log("Stored parameters in DynamoDB for request ID: " + requestId);
     }
 
-    private void publishMessageToSQS(String requestId, Map<String, Object> input, Context context) {
-        // Publish the request to SQS
+    private void publishMessageToSQS(String requestId, Map<String, Object> input, String inFlightKey, Context context)
+            throws JsonProcessingException {
+        // Publish the request to SQS. The message is the state machine's input, so the request id and
+        // lease key ride along to the status item that QueryExecution reads
+        Map<String, Object> message = new HashMap<>(input);
+        message.put("request_id", requestId);
+        message.put("inflight_key", inFlightKey);
         SendMessageRequest sendMessageRequest = new SendMessageRequest()
                 .withQueueUrl(SQS_QUEUE_URL)
-                .withMessageBody(objectMapper.writeValueAsString(input))
+                .withMessageBody(objectMapper.writeValueAsString(message))
                 .addMessageAttributesEntry("RequestId", new MessageAttributeValue().withDataType("String").withStringValue(requestId));
 
         sqsClient.sendMessage(sendMessageRequest);
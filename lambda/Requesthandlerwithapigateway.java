@@ -14,6 +14,7 @@ import com.amazonaws.services.eventbridge.AmazonEventBridge;
 import com.amazonaws.services.eventbridge.AmazonEventBridgeClientBuilder;
 import com.amazonaws.services.eventbridge.model.PutEventsRequest;
 import com.amazonaws.services.eventbridge.model.PutEventsRequestEntry;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.util.HashMap;
@@ -27,6 +28,7 @@ public class WPDPQueryRequestHandler implements RequestHandler<APIGatewayProxyRe
     private final AmazonEventBridge eventBridgeClient = AmazonEventBridgeClientBuilder.defaultClient();
     private final DynamoDB dynamoDB = new DynamoDB(dynamoDBClient);
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final InFlightRegistry inFlightRegistry = new InFlightRegistry(dynamoDBClient);
 
     private static final String DYNAMO_TABLE_NAME = "YourDynamoDBTable";
     private static final String SQS_QUEUE_URL = "https://sqs.region.amazonaws.com/your-account-id/wp-dp-q-request-queue";
@@ -43,18 +45,39 @@ public class WPDPQueryRequestHandler implements RequestHandler<APIGatewayProxyRe
                 return response.withStatusCode(400).withBody("Invalid request body");
             }
 
-            // 2. Generate Request ID and store data in DynamoDB
+            // 2. Generate Request ID; an identical immediate request that is still running is reused
             String requestId = UUID.randomUUID().toString();
-            storeRequestInDynamoDB(requestId, requestBody);
+            String inFlightKey = null;
+            if (!requestBody.containsKey("scheduleExpression")) {
+                inFlightKey = InFlightRegistry.requestKey(requestBody);
+                String runningRequestId = inFlightRegistry.acquire(inFlightKey, requestId, (String) requestBody.get("report_name"));
+                if (runningRequestId != null) {
+                    Map<String, String> responseBody = new HashMap<>();
+                    responseBody.put("requestId", runningRequestId);
+                    responseBody.put("coalesced", "true");
+                    return response.withStatusCode(200).withBody(objectMapper.writeValueAsString(responseBody));
+                }
+            }
+
+            try {
+                // 3. Store data in DynamoDB
+                storeRequestInDynamoDB(requestId, requestBody, inFlightKey);
 
-            // 3. Handle SQS or EventBridge rule based on scheduling condition
-            if (requestBody.containsKey("scheduleExpression")) {
-                triggerEventBridgeRule(requestId, requestBody);
-            } else {
-                sendMessageToSQS(requestId, requestBody);
+                // 4. Handle SQS or EventBridge rule based on scheduling condition
+                if (inFlightKey == null) {
+                    triggerEventBridgeRule(requestId, requestBody);
+                } else {
+                    sendMessageToSQS(requestId, requestBody, inFlightKey);
+                }
+            } catch (Exception e) {
+                // Nothing will run for this request, so don't let others attach to it
+                if (inFlightKey != null) {
+                    inFlightRegistry.release(inFlightKey, requestId);
+                }
+                throw e;
             }
 
-            // 4. Return Request ID to client
+            // 5. Return Request ID to client
             Map<String, String> responseBody = new HashMap<>();
             responseBody.put("requestId", requestId);
             return response.withStatusCode(200).withBody(objectMapper.writeValueAsString(responseBody));
@@ -76,20 +99,29 @@ public class WPDPQueryRequestHandler implements RequestHandler<APIGatewayProxyRe
         return requestBody;
     }
 
-    private void storeRequestInDynamoDB(String requestId, Map<String, Object> requestBody) {
+    private void storeRequestInDynamoDB(String requestId, Map<String, Object> requestBody, String inFlightKey) {
         Table table = dynamoDB.getTable(DYNAMO_TABLE_NAME);
         Map<String, Object> item = new HashMap<>(requestBody);
         item.put("requestId", requestId);
+        if (inFlightKey != null) {
+            // The key also travels in the queue message to the status item, where QueryExecution releases it
+            item.put("inflight_key", inFlightKey);
+        }
         PutItemRequest request = new PutItemRequest()
                 .withTableName(DYNAMO_TABLE_NAME)
                 .withItem(item);
         dynamoDBClient.putItem(request);
     }
 
-    private void sendMessageToSQS(String requestId, Map<String, Object> requestBody) {
+    private void sendMessageToSQS(String requestId, Map<String, Object> requestBody, String inFlightKey) throws JsonProcessingException {
+        // The message is the state machine's input (as JSON, which the consumer parses), so the request id
+        // and lease key ride along to the status item that QueryExecution reads
+        Map<String, Object> message = new HashMap<>(requestBody);
+        message.put("request_id", requestId);
+        message.put("inflight_key", inFlightKey);
         SendMessageRequest sendMsgRequest = new SendMessageRequest()
                 .withQueueUrl(SQS_QUEUE_URL)
-                .withMessageBody("RequestId: " + requestId + ", Parameters: " + requestBody.toString());
+                .withMessageBody(objectMapper.writeValueAsString(message));
         sqsClient.sendMessage(sendMsgRequest);
     }
 
@@ -1,12 +1,13 @@
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 public class SQLInjectionValidator {
-    // Updated regular expression to detect SQL injection patterns and allow valid SQL functions
-    private static final String SQL_INJECTION_PATTERN =
-            ".*(\\b(SELECT|INSERT|UPDATE|DELETE|DROP|UNION|WHERE|OR|AND|LIKE|CAST|CONVERT|EXEC|EXECUTE|FROM|HAVING|JOIN|NULL|TRUE|FALSE|IS|IN)\\b|--|;|'(?!\\w+\\s*\\()|\\w+\\s*\\([^)]*'.*'[^)]*\\)).*";
-
-    private static final Pattern pattern = Pattern.compile(SQL_INJECTION_PATTERN, Pattern.CASE_INSENSITIVE);
+    // SQL keywords as whole words, comment and statement separators, quotes that do not start a
+    // function call, and function calls with quoted arguments; screened in one linear pass
+    private static final InjectionScreen SCREEN = InjectionScreen.builder()
+            .words("SELECT", "INSERT", "UPDATE", "DELETE", "DROP", "UNION", "WHERE", "OR", "AND", "LIKE", "CAST", "CONVERT",
+                    "EXEC", "EXECUTE", "FROM", "HAVING", "JOIN", "NULL", "TRUE", "FALSE", "IS", "IN")
+            .substrings("--", ";")
+            .quotesOnlyBeforeCalls()
+            .noQuotedCallArguments()
+            .build();
 
     /**
      * Validates the input string for SQL injection patterns.
@@ -15,14 +16,10 @@ public class SQLInjectionValidator {
      * @return true if the input is safe, false if it contains SQL injection patterns.
      */
     public static boolean isValidODataQuery(String input) {
-        // Check if the input matches the SQL injection pattern
-        Matcher matcher = pattern.matcher(input);
-        if (matcher.find()) {
-            // Match found, return false
-            int start = matcher.start(1); // Start index of the match
-            int end = matcher.end(1); // End index of the match
+        InjectionScreen.Finding finding = SCREEN.screen(input);
+        if (finding != null) {
             System.out.println("Potential SQL injection detected!");
-            System.out.println("Matched Pattern: \"" + matcher.group(1) + "\" at indices: " + start + " to " + end);
+            System.out.println("Matched Pattern: " + finding);
             return false;
         }
         // No match found, return true
@@ -1,56 +1,39 @@
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 public class SQLQueryModifier {
 
-    // Method to append filters to SQL query
-    public static String appendFiltersToQuery(String originalQuery, String newFilters) {
-        String lowerCaseQuery = originalQuery.toLowerCase();
-        String whereClause = " WHERE ";
-
-        // Regular expressions to match `GROUP BY`, `ORDER BY`, and other clauses.
-        Pattern groupByPattern = Pattern.compile("\\sGROUP\\s+BY\\s", Pattern.CASE_INSENSITIVE);
-        Pattern orderByPattern = Pattern.compile("\\sORDER\\s+BY\\s", Pattern.CASE_INSENSITIVE);
-        Pattern joinPattern = Pattern.compile("\\sJOIN\\s", Pattern.CASE_INSENSITIVE);
-
-        // Check if there's an existing WHERE clause in the SQL query
-        if (lowerCaseQuery.contains(" where ")) {
-            // If WHERE clause exists, we append using AND
-            originalQuery = originalQuery.replaceFirst("(?i)where", "WHERE");
-            whereClause = " AND ";
-        } else {
-            // If there's no WHERE clause, find the first instance of GROUP BY or ORDER BY to insert the filters
-            Matcher groupByMatcher = groupByPattern.matcher(originalQuery);
-            Matcher orderByMatcher = orderByPattern.matcher(originalQuery);
-            Matcher joinMatcher = joinPattern.matcher(originalQuery);
-            
-            int insertionPoint = originalQuery.length(); // Default to the end of the query
-
-            // Check if there's a GROUP BY clause
-            if (groupByMatcher.find()) {
-                insertionPoint = groupByMatcher.start();
-            }
+    private static final String SET_OPERATION_ALIAS = "filtered_source";
 
-            // Check if there's an ORDER BY clause and adjust the insertion point
-            if (orderByMatcher.find() && orderByMatcher.start() < insertionPoint) {
-                insertionPoint = orderByMatcher.start();
-            }
+    // Method to append filters to SQL query: one splice at the offset the clause index found.
+    // Filters are ANDed with an existing top-level WHERE condition, or go into a new WHERE
+    // clause after FROM and its joins; either side is parenthesized if it has a top-level OR,
+    // so the filter cannot be bypassed by operator precedence
+    public static String appendFiltersToQuery(String originalQuery, String newFilters) {
+        SqlClauseIndex index = SqlClauseIndex.of(originalQuery);
+        String filters = SqlClauseIndex.hasTopLevelOr(newFilters) ? "(" + newFilters + ")" : newFilters;
+        StringBuilder modifiedQuery = new StringBuilder(originalQuery.length() + filters.length() + 16);
+
+        if (index.isSetOperation()) {
+            // One WHERE clause cannot filter every branch of a UNION; filter its result instead
+            return modifiedQuery.append("SELECT * FROM (").append(originalQuery, 0, index.getEnd())
+                    .append(") ").append(SET_OPERATION_ALIAS).append(" WHERE ").append(filters)
+                    .append(originalQuery, index.getEnd(), originalQuery.length()).toString();
+        }
 
-            // Check if there's a JOIN clause and adjust the insertion point
-            if (joinMatcher.find() && joinMatcher.start() < insertionPoint) {
-                insertionPoint = joinMatcher.start();
+        if (index.hasWhere()) {
+            int conditionStart = index.getConditionStart();
+            int conditionEnd = index.getConditionEnd();
+            if (index.conditionHasOr()) {
+                modifiedQuery.append(originalQuery, 0, conditionStart).append(" (")
+                        .append(originalQuery.substring(conditionStart, conditionEnd).trim()).append(')');
+            } else {
+                modifiedQuery.append(originalQuery, 0, conditionEnd);
             }
-
-            // If we find a place to insert the WHERE clause, do so
-            originalQuery = new StringBuilder(originalQuery)
-                    .insert(insertionPoint, " WHERE " + newFilters)
-                    .toString();
-
-            return originalQuery;
+            return modifiedQuery.append(" AND ").append(filters)
+                    .append(originalQuery, conditionEnd, originalQuery.length()).toString();
         }
 
-        // Append the new filters to the existing WHERE clause
-        return originalQuery + whereClause + newFilters;
+        int offset = index.getFilterOffset();
+        return modifiedQuery.append(originalQuery, 0, offset).append(" WHERE ").append(filters)
+                .append(originalQuery, offset, originalQuery.length()).toString();
     }
 
     public static void main(String[] args) {
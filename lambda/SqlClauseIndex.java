@@ -0,0 +1,244 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Offsets of the top-level clauses of a SELECT statement, found in one pass that skips string
+ * literals, quoted identifiers, comments and anything inside parentheses (subqueries, CTE
+ * bodies, function calls). SQLQueryModifier uses it to splice a filter into the query at one
+ * offset instead of searching the text for WHERE / GROUP BY / ORDER BY on every call.
+ *
+ * Report queries repeat, so indexes are kept in a small LRU cache keyed by the query text.
+ */
+public final class SqlClauseIndex {
+
+    private static final int MAX_CACHED_INDEXES = 256;
+
+    private static final Map<String, SqlClauseIndex> CACHE = new LinkedHashMap<String, SqlClauseIndex>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SqlClauseIndex> eldest) {
+            return size() > MAX_CACHED_INDEXES;
+        }
+    };
+
+    private final String sql;
+    private int end;
+    private int whereStart = -1;
+    private int conditionStart = -1;
+    private int conditionEnd = -1;
+    private int filterOffset = -1;
+    private boolean conditionHasOr;
+    private boolean setOperation;
+    private boolean inCondition;
+
+    private SqlClauseIndex(String sql, boolean condition) {
+        this.sql = sql;
+        this.inCondition = condition;
+        scan();
+    }
+
+    /**
+     * Returns the index of the query, scanning it only if it is not cached.
+     */
+    public static SqlClauseIndex of(String sql) {
+        synchronized (CACHE) {
+            SqlClauseIndex index = CACHE.get(sql);
+            if (index != null) {
+                return index;
+            }
+        }
+        SqlClauseIndex index = new SqlClauseIndex(sql, false);
+        synchronized (CACHE) {
+            CACHE.put(sql, index);
+        }
+        return index;
+    }
+
+    /**
+     * True if the expression has an OR outside parentheses, literals and comments, so it needs
+     * parentheses before it is combined with AND.
+     */
+    public static boolean hasTopLevelOr(String expression) {
+        // Scanned as if it followed a WHERE keyword
+        return new SqlClauseIndex(expression, true).conditionHasOr;
+    }
+
+    private void scan() {
+        int length = sql.length();
+        int depth = 0;
+        int lastContentEnd = 0;
+        // GROUP or ORDER waiting for BY, and where the content before it ended
+        String pendingWord = null;
+        int pendingContentEnd = -1;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            int tokenStart = i;
+            if (c == '\'' || c == '"' || c == '`') {
+                i = skipQuoted(i, c);
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                i = sql.indexOf('\n', i);
+                i = i < 0 ? length : i + 1;
+                continue;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                i = sql.indexOf("*/", i + 2);
+                i = i < 0 ? length : i + 2;
+                continue;
+            } else if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            } else if (c == '(') {
+                depth++;
+                i++;
+            } else if (c == ')') {
+                depth--;
+                i++;
+            } else if (c == ';' && depth == 0) {
+                // Everything after the terminator is ignored
+                break;
+            } else if (isWordChar(c)) {
+                while (i < length && isWordChar(sql.charAt(i))) {
+                    i++;
+                }
+                if (depth == 0) {
+                    String word = sql.substring(tokenStart, i).toUpperCase();
+                    if ("BY".equals(word) && pendingWord != null) {
+                        clause(pendingContentEnd);
+                        pendingWord = null;
+                        lastContentEnd = i;
+                        continue;
+                    }
+                    pendingWord = null;
+                    switch (word) {
+                        case "WHERE":
+                            if (whereStart < 0 && filterOffset < 0) {
+                                whereStart = tokenStart;
+                                conditionStart = i;
+                                inCondition = true;
+                            }
+                            break;
+                        case "GROUP":
+                        case "ORDER":
+                            pendingWord = word;
+                            pendingContentEnd = lastContentEnd;
+                            break;
+                        case "HAVING":
+                        case "QUALIFY":
+                        case "WINDOW":
+                        case "LIMIT":
+                        case "OFFSET":
+                        case "FETCH":
+                            clause(lastContentEnd);
+                            break;
+                        case "UNION":
+                        case "INTERSECT":
+                        case "EXCEPT":
+                        case "MINUS":
+                            setOperation = true;
+                            clause(lastContentEnd);
+                            break;
+                        case "OR":
+                            if (inCondition) {
+                                conditionHasOr = true;
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                lastContentEnd = i;
+                continue;
+            } else {
+                i++;
+            }
+            pendingWord = null;
+            lastContentEnd = i;
+        }
+        end = lastContentEnd;
+        clause(end);
+    }
+
+    // A clause starts (or the statement ends) after content ending at previousContentEnd: it ends
+    // the WHERE condition, and the first one marks where a WHERE clause would go
+    private void clause(int previousContentEnd) {
+        if (inCondition) {
+            conditionEnd = previousContentEnd;
+            inCondition = false;
+        }
+        if (filterOffset < 0) {
+            filterOffset = previousContentEnd;
+        }
+    }
+
+    private int skipQuoted(int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                // A doubled quote is an escaped quote
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * End of the statement: the last character before a trailing semicolon, comment or whitespace.
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    public boolean hasWhere() {
+        return whereStart >= 0;
+    }
+
+    /**
+     * Offset of the top-level WHERE keyword, or -1.
+     */
+    public int getWhereStart() {
+        return whereStart;
+    }
+
+    /**
+     * Start and end of the WHERE condition, or -1 without a WHERE clause.
+     */
+    public int getConditionStart() {
+        return conditionStart;
+    }
+
+    public int getConditionEnd() {
+        return conditionEnd;
+    }
+
+    /**
+     * Where a WHERE clause goes if there is none: after FROM and its joins, before GROUP BY,
+     * HAVING, ORDER BY, LIMIT and the like.
+     */
+    public int getFilterOffset() {
+        return filterOffset;
+    }
+
+    public boolean conditionHasOr() {
+        return conditionHasOr;
+    }
+
+    /**
+     * True for UNION / INTERSECT / EXCEPT / MINUS at the top level, where one WHERE clause
+     * cannot filter every branch.
+     */
+    public boolean isSetOperation() {
+        return setOperation;
+    }
+}
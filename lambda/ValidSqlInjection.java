@@ -1,4 +1,3 @@
-import java.util.regex.Pattern;
 import java.util.Set;
 import java.util.HashSet;
 
@@ -24,23 +23,16 @@ public class ODataInputValidator {
         VALID_OPERATORS.add("has");
     }
 
-    // Updated regular expression to allow valid SQL functions like to_date() with single quotes
-// Updated regular expression to allow safe SQL expressions while blocking SQL injection attempts
-private static final Pattern SQL_INJECTION_PATTERN1 = Pattern.compile(
-    "(\\b(select|insert|delete|update|drop|union|--|\\/\\*|\\*\\/|;--|\\bor\\b|\\band\\b\\s[^\\w])|'\\s*;|'.*\\bOR\\b|'.*\\bAND\\b|'.*\\bSELECT\\b)",
-    Pattern.CASE_INSENSITIVE
-);
+    // Quotes, statement separators, comments and SQL keywords as whole words
+    private static final InjectionScreen SCREEN = InjectionScreen.builder()
+            .substrings("'", ";", "--", "/*", "*/")
+            .words("or", "and", "select", "insert", "delete", "update", "drop", "union")
+            .build();
 
-    // Regular expression to detect common SQL injection patterns
-    private static final Pattern SQL_INJECTION_PATTERN = Pattern.compile(
-        "([';--]|\\/\\*|\\*\\/|\\bor\\b|\\band\\b|\\bselect\\b|\\binsert\\b|\\bdelete\\b|\\bupdate\\b|\\bdrop\\b|\\bunion\\b|\\b--\\b)", 
-        Pattern.CASE_INSENSITIVE
-    );
-    
     // Function to validate the OData filter string
     public static boolean validateODataFilter(String odataFilter) {
         // Check for SQL injection patterns
-        if (SQL_INJECTION_PATTERN.matcher(odataFilter).find()) {
+        if (!SCREEN.isClean(odataFilter)) {
             return false;  // Detected possible SQL injection
         }
 
@@ -57,8 +49,13 @@ private static final Pattern SQL_INJECTION_PATTERN1 = Pattern.compile(
 
     // Function to validate the OData $orderby clause
     public static boolean validateODataOrderBy(String odataOrderBy) {
-        // Allow only field names followed by optional 'asc' or 'desc'
-        return odataOrderBy.matches("^[a-zA-Z0-9_]+( asc| desc)?(,\\s*[a-zA-Z0-9_]+( asc| desc)?)*$");
+        // Allow only properties (or value functions of them) followed by optional 'asc' or 'desc'
+        try {
+            ODataParser.parseOrderBy(odataOrderBy);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
     }
 
     public static void main(String[] args) {
@@ -43,7 +43,7 @@ public class SQLQueryModifierTest {
     public void testAppendFiltersToQuery_WithJoinClause() {
         String originalQuery = "SELECT customers.name, orders.amount FROM customers JOIN orders ON customers.id = orders.customer_id";
         String newFilters = "age > 25";
-        String expectedQuery = "SELECT customers.name, orders.amount FROM customers WHERE age > 25 JOIN orders ON customers.id = orders.customer_id";
+        String expectedQuery = "SELECT customers.name, orders.amount FROM customers JOIN orders ON customers.id = orders.customer_id WHERE age > 25";
         
         assertEquals(expectedQuery, SQLQueryModifier.appendFiltersToQuery(originalQuery, newFilters));
     }
@@ -74,4 +74,47 @@ public class SQLQueryModifierTest {
         
         assertEquals(expectedQuery, SQLQueryModifier.appendFiltersToQuery(originalQuery, newFilters));
     }
+
+    @Test
+    public void testAppendFiltersToQuery_IgnoresKeywordsInLiteralsCommentsAndSubqueries() {
+        String originalQuery = "SELECT name, 'a where b' AS note FROM (SELECT * FROM customers WHERE active) c"
+                + " -- where order by\n ORDER BY name";
+        String expectedQuery = "SELECT name, 'a where b' AS note FROM (SELECT * FROM customers WHERE active) c WHERE age > 25"
+                + " -- where order by\n ORDER BY name";
+
+        assertEquals(expectedQuery, SQLQueryModifier.appendFiltersToQuery(originalQuery, "age > 25"));
+    }
+
+    @Test
+    public void testAppendFiltersToQuery_ParenthesizesTopLevelOr() {
+        String originalQuery = "SELECT * FROM customers WHERE country = 'US' OR country = 'CA' GROUP BY age";
+        String expectedQuery = "SELECT * FROM customers WHERE (country = 'US' OR country = 'CA') AND (tenant = 1 OR tenant = 2) GROUP BY age";
+
+        assertEquals(expectedQuery, SQLQueryModifier.appendFiltersToQuery(originalQuery, "tenant = 1 OR tenant = 2"));
+        assertEquals("SELECT * FROM customers WHERE (a = 1 OR b = 2) AND age > 25",
+                SQLQueryModifier.appendFiltersToQuery("SELECT * FROM customers WHERE (a = 1 OR b = 2)", "age > 25"));
+    }
+
+    @Test
+    public void testAppendFiltersToQuery_TerminatorAndSetOperations() {
+        assertEquals("SELECT * FROM customers WHERE age > 25 LIMIT 10;",
+                SQLQueryModifier.appendFiltersToQuery("SELECT * FROM customers LIMIT 10;", "age > 25"));
+        assertEquals("SELECT * FROM (SELECT id FROM customers UNION SELECT id FROM prospects) filtered_source WHERE id > 5;",
+                SQLQueryModifier.appendFiltersToQuery("SELECT id FROM customers UNION SELECT id FROM prospects;", "id > 5"));
+    }
+
+    @Test
+    public void testClauseIndex() {
+        String query = "SELECT \"order\", x FROM t WHERE f(a) = 'ORDER BY' ORDER BY x";
+        SqlClauseIndex index = SqlClauseIndex.of(query);
+
+        assertSame(index, SqlClauseIndex.of(query));
+        assertTrue(index.hasWhere());
+        assertEquals(query.indexOf("WHERE"), index.getWhereStart());
+        assertEquals(" f(a) = 'ORDER BY'", query.substring(index.getConditionStart(), index.getConditionEnd()));
+        assertEquals(query.indexOf(" ORDER BY x"), index.getFilterOffset());
+        assertFalse(index.conditionHasOr());
+        assertFalse(SqlClauseIndex.hasTopLevelOr("(a OR b) AND c = 'x or y'"));
+        assertTrue(SqlClauseIndex.hasTopLevelOr("a = 1 or b = 2"));
+    }
 }
@@ -0,0 +1,71 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class QueryExecutionTest {
+
+    // Serves one request's status item and lease; the result cache table is throttling
+    private static class FakeDynamoDB extends AbstractAmazonDynamoDB {
+        private final Map<String, AttributeValue> requestItem = new HashMap<>();
+        private String leaseHolder;
+
+        FakeDynamoDB(String requestId, String inFlightKey, String leaseHolder) {
+            requestItem.put("request_id", new AttributeValue().withS(requestId));
+            requestItem.put("report_name", new AttributeValue().withS("daily_sales"));
+            requestItem.put("sql_query", new AttributeValue().withS("SELECT * FROM sales"));
+            requestItem.put("inflight_key", new AttributeValue().withS(inFlightKey));
+            this.leaseHolder = leaseHolder;
+        }
+
+        @Override
+        public GetItemResult getItem(GetItemRequest request) {
+            switch (request.getTableName()) {
+                case "QueryStatusTable":
+                    return new GetItemResult().withItem(requestItem);
+                case "QueryResultCacheTable":
+                    throw new ProvisionedThroughputExceededException("Rate exceeded");
+                default:
+                    return new GetItemResult();
+            }
+        }
+
+        @Override
+        public DeleteItemResult deleteItem(DeleteItemRequest request) {
+            assertEquals("QueryInFlightTable", request.getTableName());
+            if (!request.getExpressionAttributeValues().get(":rid").getS().equals(leaseHolder)) {
+                throw new ConditionalCheckFailedException("The lease belongs to another request.");
+            }
+            leaseHolder = null;
+            return new DeleteItemResult();
+        }
+    }
+
+    @Test
+    public void testFailedExecutionReleasesItsLease() {
+        FakeDynamoDB dynamoDB = new FakeDynamoDB("r1", "k", "r1");
+
+        assertThrows(ProvisionedThroughputExceededException.class,
+                () -> new QueryExecution(dynamoDB).handleRequest(Map.of("request_id", "r1"), null));
+        assertNull(dynamoDB.leaseHolder);
+    }
+
+    @Test
+    public void testFailedExecutionLeavesANewerLeaseAlone() {
+        FakeDynamoDB dynamoDB = new FakeDynamoDB("r1", "k", "r2");
+
+        assertThrows(ProvisionedThroughputExceededException.class,
+                () -> new QueryExecution(dynamoDB).handleRequest(Map.of("request_id", "r1"), null));
+        assertEquals("r2", dynamoDB.leaseHolder);
+    }
+}
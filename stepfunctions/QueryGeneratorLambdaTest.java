@@ -0,0 +1,156 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class QueryGeneratorLambdaTest {
+
+    // Records the workflow states written through BatchWriteItem
+    private static class FakeStatusClient implements DynamoDbClient {
+        private final List<Map<String, AttributeValue>> items = new ArrayList<>();
+
+        @Override
+        public BatchWriteItemResponse batchWriteItem(BatchWriteItemRequest request) {
+            for (List<WriteRequest> writes : request.requestItems().values()) {
+                for (WriteRequest write : writes) {
+                    items.add(write.putRequest().item());
+                }
+            }
+            return BatchWriteItemResponse.builder().unprocessedItems(Map.of()).build();
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class FakeContext implements Context {
+        private final List<String> log = new ArrayList<>();
+
+        @Override
+        public LambdaLogger getLogger() {
+            return new LambdaLogger() {
+                @Override
+                public void log(String message) {
+                    log.add(message);
+                }
+
+                @Override
+                public void log(byte[] message) {
+                    log.add(new String(message));
+                }
+            };
+        }
+
+        @Override
+        public String getAwsRequestId() {
+            return "test";
+        }
+
+        @Override
+        public String getLogGroupName() {
+            return null;
+        }
+
+        @Override
+        public String getLogStreamName() {
+            return null;
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "QueryGenerator";
+        }
+
+        @Override
+        public String getFunctionVersion() {
+            return null;
+        }
+
+        @Override
+        public String getInvokedFunctionArn() {
+            return null;
+        }
+
+        @Override
+        public CognitoIdentity getIdentity() {
+            return null;
+        }
+
+        @Override
+        public ClientContext getClientContext() {
+            return null;
+        }
+
+        @Override
+        public int getRemainingTimeInMillis() {
+            return 60000;
+        }
+
+        @Override
+        public int getMemoryLimitInMB() {
+            return 512;
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        // The catalog the module packages as config.json
+        SchemaCatalog.load(new File("../configfile"));
+    }
+
+    @Test
+    public void testBatchRequestGeneratesEachReportAndSavesTheirStates() {
+        FakeStatusClient statusClient = new FakeStatusClient();
+        QueryGeneratorLambda lambda = new QueryGeneratorLambda(new AbstractAmazonDynamoDB() { }, statusClient);
+        Map<String, Object> sales = Map.of(
+                "report_name", "sales_by_product",
+                "request", Map.of(
+                        "tableName", "sales",
+                        "columns", List.of(
+                                Map.of("name", "product_name"),
+                                Map.of("name", "total_sales", "aggregation", "SUM")),
+                        "groupBy", List.of("product_name")));
+        Map<String, Object> orders = Map.of(
+                "report_name", "orders",
+                "request", Map.of("tableName", "orders", "columns", List.of("id")));
+
+        Map<String, Object> response = lambda.handleRequest(Map.of("reports", List.of(sales, orders)), new FakeContext());
+
+        List<Map<String, Object>> results = (List<Map<String, Object>>) response.get("results");
+        assertEquals(1, response.get("failed_count"));
+        // The packaged catalog declares a daily rollup of sales that answers this report
+        assertEquals("SELECT product_name, SUM(total_sales) FROM sales_daily_product_region GROUP BY product_name",
+                results.get(0).get("sql_query"));
+        assertEquals("Table 'orders' is not available.", results.get(1).get("error"));
+        assertFalse(results.get(1).containsKey("request_id"));
+
+        // Only the generated report has a workflow to run
+        assertEquals(1, statusClient.items.size());
+        Map<String, AttributeValue> state = statusClient.items.get(0);
+        assertEquals(results.get(0).get("request_id"), state.get("request_id").s());
+        assertEquals("sales_by_product", state.get("report_name").s());
+        assertEquals("QueryGenerated", state.get("workflow_state").s());
+    }
+}
@@ -0,0 +1,124 @@
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.spec.GetItemSpec;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Container-level cache of ReportConfigTable items, so a report run does not read its
+ * configuration from DynamoDB every time.
+ *
+ * An entry is served from memory for ttlSeconds after it was last checked. After that, if the
+ * item has a "config_version" number, only that attribute is read; the cached item is kept
+ * while the version is unchanged and reloaded in full otherwise. Whoever edits a report's
+ * configuration must increment its config_version (items without one are reloaded in full
+ * once their TTL expires). preload() reads the whole table once, for use during init.
+ *
+ * The version read is a GetItem with a projection. DynamoDB charges read capacity for the
+ * whole item either way, so it costs as much as a full read; what it saves is transferring
+ * and parsing a large default_sql that has not changed. The savings in requests come from
+ * the TTL, not from the version check.
+ */
+public class ReportConfigCache {
+    static final String VERSION_ATTRIBUTE = "config_version";
+    static final long DEFAULT_TTL_SECONDS = 300L;
+
+    private final Table table;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public ReportConfigCache(Table table) {
+        this(table, ttlFromEnvironment());
+    }
+
+    public ReportConfigCache(Table table, long ttlSeconds) {
+        this.table = table;
+        this.ttlMillis = ttlSeconds * 1000L;
+    }
+
+    // REPORT_CONFIG_TTL_SECONDS overrides the default; 0 checks the version on every call
+    private static long ttlFromEnvironment() {
+        String ttl = System.getenv("REPORT_CONFIG_TTL_SECONDS");
+        if (ttl == null || ttl.isEmpty()) {
+            return DEFAULT_TTL_SECONDS;
+        }
+        try {
+            return Math.max(0L, Long.parseLong(ttl.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid REPORT_CONFIG_TTL_SECONDS '" + ttl + "'.");
+            return DEFAULT_TTL_SECONDS;
+        }
+    }
+
+    /**
+     * Returns true if the REPORT_CONFIG_PRELOAD environment variable asks for preload() at init.
+     */
+    public static boolean preloadRequested() {
+        return "true".equalsIgnoreCase(System.getenv("REPORT_CONFIG_PRELOAD"));
+    }
+
+    /**
+     * Loads every report configuration with one table scan. Returns the number of reports loaded.
+     */
+    public int preload() {
+        long now = System.currentTimeMillis();
+        int loaded = 0;
+        for (Item item : table.scan()) {
+            entries.put(item.getString("report_name"), new Entry(item, now));
+            loaded++;
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns the report's configuration, or null if the report does not exist.
+     */
+    public Item get(String reportName) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(reportName);
+        if (entry != null && now - entry.checkedAt < ttlMillis) {
+            return entry.item;
+        }
+
+        if (entry != null && entry.version != null) {
+            // Only the version is returned (the read is still billed for the whole item); the
+            // full item is transferred again only if it changed
+            Item current = table.getItem(new GetItemSpec()
+                    .withPrimaryKey("report_name", reportName)
+                    .withProjectionExpression(VERSION_ATTRIBUTE));
+            if (current != null && current.isPresent(VERSION_ATTRIBUTE)
+                    && entry.version.longValue() == current.getLong(VERSION_ATTRIBUTE)) {
+                entries.put(reportName, new Entry(entry.item, now));
+                return entry.item;
+            }
+        }
+
+        Item item = table.getItem("report_name", reportName);
+        if (item == null) {
+            entries.remove(reportName);
+            return null;
+        }
+        entries.put(reportName, new Entry(item, now));
+        return item;
+    }
+
+    /**
+     * Drops the cached configuration of a report, so the next get() reads it again.
+     */
+    public void invalidate(String reportName) {
+        entries.remove(reportName);
+    }
+
+    private static class Entry {
+        private final Item item;
+        private final Long version;
+        private final long checkedAt;
+
+        private Entry(Item item, long checkedAt) {
+            this.item = item;
+            this.version = item.isPresent(VERSION_ATTRIBUTE) ? item.getLong(VERSION_ATTRIBUTE) : null;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.KeyAttribute;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.spec.GetItemSpec;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ReportConfigCacheTest {
+
+    // Serves items from a map and counts full and version-only reads
+    private static class FakeTable extends Table {
+        private final Map<String, Item> items = new HashMap<>();
+        private int fullReads;
+        private int versionReads;
+
+        FakeTable() {
+            super(null, "ReportConfigTable");
+        }
+
+        void put(String reportName, String sql, Long version) {
+            Item item = new Item().withPrimaryKey("report_name", reportName).withString("default_sql", sql);
+            if (version != null) {
+                item.withLong(ReportConfigCache.VERSION_ATTRIBUTE, version);
+            }
+            items.put(reportName, item);
+        }
+
+        @Override
+        public Item getItem(String hashKeyName, Object hashKeyValue) {
+            fullReads++;
+            return items.get(hashKeyValue);
+        }
+
+        @Override
+        public Item getItem(GetItemSpec spec) {
+            versionReads++;
+            assertEquals(ReportConfigCache.VERSION_ATTRIBUTE, spec.getProjectionExpression());
+            KeyAttribute key = spec.getKeyComponents().iterator().next();
+            Item item = items.get(key.getValue());
+            if (item == null) {
+                return null;
+            }
+            Item projected = new Item();
+            if (item.isPresent(ReportConfigCache.VERSION_ATTRIBUTE)) {
+                projected.withLong(ReportConfigCache.VERSION_ATTRIBUTE, item.getLong(ReportConfigCache.VERSION_ATTRIBUTE));
+            }
+            return projected;
+        }
+    }
+
+    @Test
+    public void testServesFromMemoryWithinTheTtl() {
+        FakeTable table = new FakeTable();
+        table.put("daily_sales", "SELECT 1", 1L);
+        ReportConfigCache cache = new ReportConfigCache(table, 300);
+
+        Item first = cache.get("daily_sales");
+        table.put("daily_sales", "SELECT 2", 2L);
+
+        assertSame(first, cache.get("daily_sales"));
+        assertEquals(1, table.fullReads);
+        assertEquals(0, table.versionReads);
+    }
+
+    @Test
+    public void testKeepsTheItemWhileTheVersionIsUnchanged() {
+        FakeTable table = new FakeTable();
+        table.put("daily_sales", "SELECT 1", 1L);
+        ReportConfigCache cache = new ReportConfigCache(table, 0);
+
+        Item first = cache.get("daily_sales");
+        assertSame(first, cache.get("daily_sales"));
+        assertEquals(1, table.fullReads);
+        assertEquals(1, table.versionReads);
+
+        // A new version is read in full
+        table.put("daily_sales", "SELECT 2", 2L);
+        assertEquals("SELECT 2", cache.get("daily_sales").getString("default_sql"));
+        assertEquals(2, table.fullReads);
+        assertEquals(2, table.versionReads);
+    }
+
+    @Test
+    public void testUnversionedAndDeletedItemsAreReadInFull() {
+        FakeTable table = new FakeTable();
+        table.put("daily_sales", "SELECT 1", null);
+        ReportConfigCache cache = new ReportConfigCache(table, 0);
+
+        cache.get("daily_sales");
+        table.put("daily_sales", "SELECT 2", null);
+        assertEquals("SELECT 2", cache.get("daily_sales").getString("default_sql"));
+        assertEquals(2, table.fullReads);
+        assertEquals(0, table.versionReads);
+
+        table.items.clear();
+        assertNull(cache.get("daily_sales"));
+        assertNull(cache.get("unknown_report"));
+    }
+}
@@ -0,0 +1,48 @@
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.Table;
+
+/**
+ * How long each report's statements usually run, used to seed PollSchedule.
+ *
+ * Runtimes are kept per report as an exponentially weighted moving average, so the estimate
+ * follows a report whose data grows without being thrown by one slow run. Concurrent runs may
+ * overwrite each other's update; the average is only a scheduling hint.
+ */
+public class ReportRuntimeHistory {
+    private static final String RUNTIME_TABLE = "ReportRuntimeTable";  // Replace with your runtime history table name
+    private static final double WEIGHT = 0.3;  // Share of the newest run in the average
+
+    private final Table table;
+
+    public ReportRuntimeHistory(DynamoDB dynamoDB) {
+        this.table = dynamoDB.getTable(RUNTIME_TABLE);
+    }
+
+    /**
+     * Returns the report's average runtime in milliseconds, or null if it has no completed runs.
+     */
+    public Long expectedMillis(String reportName) {
+        if (reportName == null) {
+            return null;
+        }
+        Item item = table.getItem("report_name", reportName);
+        return item == null || !item.isPresent("average_millis") ? null : item.getLong("average_millis");
+    }
+
+    /**
+     * Adds a completed run to the report's average.
+     */
+    public void record(String reportName, long runtimeMillis) {
+        if (reportName == null) {
+            return;
+        }
+        Long previous = expectedMillis(reportName);
+        long average = previous == null ? runtimeMillis : Math.round(WEIGHT * runtimeMillis + (1 - WEIGHT) * previous);
+        table.putItem(new Item()
+                .withPrimaryKey("report_name", reportName)
+                .withLong("average_millis", average)
+                .withLong("last_millis", runtimeMillis)
+                .withLong("updated_at", System.currentTimeMillis() / 1000L));
+    }
+}
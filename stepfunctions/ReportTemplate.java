@@ -0,0 +1,210 @@
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A report's default_sql compiled into literal text and placeholder slots, so it is parsed
+ * once per container and rendered in a single pass.
+ *
+ * A placeholder is "{name}" or "{name:TYPE}":
+ * - no type: the value is inserted as it is, as the old string replacement did
+ * - STRING: written as a quoted literal, with quotes in the value doubled
+ * - INTEGER / NUMBER: must parse as a whole / decimal number, written unquoted
+ * - DATE: must be an ISO date (yyyy-MM-dd), written as a quoted literal
+ * Braces that do not form a placeholder, including "{key:value}" where value is not one of
+ * these type names, are kept as literal text. Every placeholder needs a
+ * value; a missing one is an error instead of being left in the SQL.
+ */
+public final class ReportTemplate {
+
+    private static final Map<String, ReportTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private enum SlotType { RAW, STRING, INTEGER, NUMBER, DATE }
+
+    // Type names a placeholder may carry
+    private static final Map<String, SlotType> TYPES = Map.of(
+            "STRING", SlotType.STRING, "INTEGER", SlotType.INTEGER, "NUMBER", SlotType.NUMBER, "DATE", SlotType.DATE);
+
+    private static final class Slot {
+        private final String name;
+        private final SlotType type;
+
+        private Slot(String name, SlotType type) {
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    private final String source;
+    // literals[i] comes before slots[i]; the last literal follows the last slot
+    private final String[] literals;
+    private final Slot[] slots;
+    private final int literalLength;
+
+    private ReportTemplate(String source, List<String> literals, List<Slot> slots) {
+        this.source = source;
+        this.literals = literals.toArray(new String[0]);
+        this.slots = slots.toArray(new Slot[0]);
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Returns the compiled template of a report, compiling it on first use and again
+     * whenever the report's SQL text changes.
+     */
+    public static ReportTemplate forReport(String reportName, String sql) {
+        ReportTemplate cached = CACHE.get(reportName);
+        if (cached != null && cached.source.equals(sql)) {
+            return cached;
+        }
+        ReportTemplate template = compile(sql);
+        CACHE.put(reportName, template);
+        return template;
+    }
+
+    /**
+     * Splits the SQL into literal text and placeholder slots.
+     */
+    public static ReportTemplate compile(String sql) {
+        if (sql == null) {
+            throw new IllegalArgumentException("Report has no default_sql.");
+        }
+        List<String> literals = new ArrayList<>();
+        List<Slot> slots = new ArrayList<>();
+        int literalStart = 0;
+        int open = sql.indexOf('{');
+        while (open >= 0) {
+            int close = sql.indexOf('}', open + 1);
+            if (close < 0) {
+                break;
+            }
+            Slot slot = parseSlot(sql, open + 1, close);
+            if (slot == null) {
+                // Not a placeholder; look for one starting after this brace
+                open = sql.indexOf('{', open + 1);
+                continue;
+            }
+            literals.add(sql.substring(literalStart, open));
+            slots.add(slot);
+            literalStart = close + 1;
+            open = sql.indexOf('{', literalStart);
+        }
+        literals.add(sql.substring(literalStart));
+        return new ReportTemplate(sql, literals, slots);
+    }
+
+    // Returns the slot for "name" or "name:TYPE" between the braces, or null if it is not a placeholder
+    private static Slot parseSlot(String sql, int start, int end) {
+        int colon = sql.indexOf(':', start);
+        int nameEnd = colon >= 0 && colon < end ? colon : end;
+        if (!isName(sql, start, nameEnd)) {
+            return null;
+        }
+        String name = sql.substring(start, nameEnd);
+        if (nameEnd == end) {
+            return new Slot(name, SlotType.RAW);
+        }
+        // Only a known type name makes a typed placeholder; "{key:value}" text such as a JSON or
+        // map literal inside a string constant stays as it is
+        SlotType slotType = TYPES.get(sql.substring(nameEnd + 1, end).trim().toUpperCase(Locale.ROOT));
+        return slotType == null ? null : new Slot(name, slotType);
+    }
+
+    private static boolean isName(String sql, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = sql.charAt(i);
+            boolean letter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+            if (!letter && !(i > start && c >= '0' && c <= '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the names of the placeholders, in the order they appear.
+     */
+    public List<String> getParameterNames() {
+        List<String> names = new ArrayList<>(slots.length);
+        for (Slot slot : slots) {
+            names.add(slot.name);
+        }
+        return names;
+    }
+
+    /**
+     * Writes the SQL with every placeholder replaced by its parameter value. Throws
+     * IllegalArgumentException if a placeholder has no value or a value does not match its type.
+     */
+    public String render(Map<String, Object> parameters) {
+        StringBuilder sql = new StringBuilder(literalLength + slots.length * 16);
+        sql.append(literals[0]);
+        for (int i = 0; i < slots.length; i++) {
+            Slot slot = slots[i];
+            Object value = parameters == null ? null : parameters.get(slot.name);
+            if (value == null) {
+                throw new IllegalArgumentException("Missing values for report parameters " + missing(parameters) + ".");
+            }
+            appendValue(sql, slot, value.toString());
+            sql.append(literals[i + 1]);
+        }
+        return sql.toString();
+    }
+
+    private List<String> missing(Map<String, Object> parameters) {
+        List<String> missing = new ArrayList<>();
+        for (Slot slot : slots) {
+            if ((parameters == null || parameters.get(slot.name) == null) && !missing.contains(slot.name)) {
+                missing.add(slot.name);
+            }
+        }
+        return missing;
+    }
+
+    private static void appendValue(StringBuilder sql, Slot slot, String value) {
+        switch (slot.type) {
+            case STRING:
+                SqlWriter.appendLiteral(sql, value);
+                break;
+            case INTEGER:
+                try {
+                    sql.append(Long.parseLong(value.trim()));
+                } catch (NumberFormatException e) {
+                    throw invalid(slot, value);
+                }
+                break;
+            case NUMBER:
+                try {
+                    sql.append(new BigDecimal(value.trim()).toPlainString());
+                } catch (NumberFormatException e) {
+                    throw invalid(slot, value);
+                }
+                break;
+            case DATE:
+                try {
+                    SqlWriter.appendLiteral(sql, LocalDate.parse(value.trim()).toString());
+                } catch (DateTimeParseException e) {
+                    throw invalid(slot, value);
+                }
+                break;
+            default:
+                sql.append(value);
+        }
+    }
+
+    private static IllegalArgumentException invalid(Slot slot, String value) {
+        return new IllegalArgumentException("Invalid " + slot.type + " value '" + value + "' for report parameter '" + slot.name + "'.");
+    }
+}
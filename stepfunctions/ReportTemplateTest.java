@@ -0,0 +1,83 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ReportTemplateTest {
+
+    @Test
+    public void testRendersRawPlaceholders() {
+        ReportTemplate template = ReportTemplate.compile(
+                "SELECT * FROM sales WHERE region = '{region}' AND sales_date >= '{start}' AND region <> '{region}'");
+
+        assertEquals(List.of("region", "start", "region"), template.getParameterNames());
+        assertEquals("SELECT * FROM sales WHERE region = 'West' AND sales_date >= '2024-01-01' AND region <> 'West'",
+                template.render(Map.of("region", "West", "start", "2024-01-01")));
+    }
+
+    @Test
+    public void testRendersTypedPlaceholders() {
+        ReportTemplate template = ReportTemplate.compile(
+                "SELECT * FROM sales WHERE region = {region:STRING} AND sales_date >= {start:date}"
+                        + " AND total_sales > {min:NUMBER} LIMIT {rows:INTEGER}");
+
+        assertEquals("SELECT * FROM sales WHERE region = 'O''Hara' AND sales_date >= '2024-01-01'"
+                        + " AND total_sales > 10.50 LIMIT 100",
+                template.render(Map.of("region", "O'Hara", "start", "2024-01-01", "min", "10.50", "rows", 100)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> template.render(Map.of("region", "West", "start", "2024-01-01", "min", "10", "rows", "100; DROP TABLE sales")));
+        assertThrows(IllegalArgumentException.class,
+                () -> template.render(Map.of("region", "West", "start", "01/01/2024", "min", "10", "rows", 100)));
+    }
+
+    @Test
+    public void testStringPlaceholdersDoubleBackslashes() {
+        ReportTemplate template = ReportTemplate.compile("SELECT * FROM sales WHERE tenant = {tenant:STRING} AND region = {region:STRING}");
+
+        assertEquals("SELECT * FROM sales WHERE tenant = 'x\\\\' AND region = ' OR 1=1 --'",
+                template.render(Map.of("tenant", "x\\", "region", " OR 1=1 --")));
+    }
+
+    @Test
+    public void testKeepsBracesThatAreNotPlaceholders() {
+        ReportTemplate template = ReportTemplate.compile("SELECT '{ not a slot }', '{}' FROM sales WHERE id = {id}");
+
+        assertEquals(List.of("id"), template.getParameterNames());
+        assertEquals("SELECT '{ not a slot }', '{}' FROM sales WHERE id = 7", template.render(Map.of("id", 7)));
+    }
+
+    @Test
+    public void testKeepsKeyValueTextWithUnknownTypes() {
+        ReportTemplate template = ReportTemplate.compile(
+                "SELECT from_json(payload, '{a:int}'), map_keys('{id:BLOB}') FROM events WHERE id = {id:integer}");
+
+        assertEquals(List.of("id"), template.getParameterNames());
+        assertEquals("SELECT from_json(payload, '{a:int}'), map_keys('{id:BLOB}') FROM events WHERE id = 7",
+                template.render(Map.of("id", "7")));
+    }
+
+    @Test
+    public void testRejectsMissingValues() {
+        ReportTemplate template = ReportTemplate.compile("SELECT * FROM sales WHERE region = '{region}' AND product_id = {product}");
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("product", null);
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> template.render(parameters));
+        assertTrue(error.getMessage().contains("[region, product]"));
+        assertThrows(IllegalArgumentException.class, () -> template.render(null));
+    }
+
+    @Test
+    public void testCachesPerReportUntilTheSqlChanges() {
+        ReportTemplate first = ReportTemplate.forReport("daily_sales", "SELECT * FROM sales WHERE id = {id}");
+
+        assertSame(first, ReportTemplate.forReport("daily_sales", "SELECT * FROM sales WHERE id = {id}"));
+        ReportTemplate changed = ReportTemplate.forReport("daily_sales", "SELECT * FROM sales WHERE id = {id:INTEGER}");
+        assertNotSame(first, changed);
+        assertEquals("SELECT * FROM sales WHERE id = 5", changed.render(Map.of("id", "5")));
+    }
+}
@@ -0,0 +1,110 @@
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.Table;
+
+/**
+ * Index of query results already stored in S3, keyed by SqlCanonicalizer.cacheKey.
+ * An entry only points at the existing S3 object; the result itself is never copied.
+ *
+ * Freshness is decided per report: the report's entry in ReportConfigTable may set
+ * "result_ttl_seconds" (0 disables caching for that report); otherwise results are
+ * reused for DEFAULT_TTL_SECONDS. Entries carry an "expires_at" epoch-seconds attribute,
+ * which is checked on every lookup and can also be enabled as the table's DynamoDB TTL
+ * attribute so expired entries are deleted. The S3 lifecycle rule for results must keep
+ * objects for longer than the largest TTL.
+ */
+public class ResultCache {
+    private static final String CACHE_TABLE = "QueryResultCacheTable";  // Replace with your cache table name
+    private static final String REPORTS_CONFIG_TABLE = "ReportConfigTable";
+    private static final long DEFAULT_TTL_SECONDS = 300L;
+
+    // Shared by every ResultCache in the container, so the TTL lookup rarely reaches DynamoDB
+    private static ReportConfigCache reportConfigs;
+
+    private final Table cacheTable;
+    private final ReportConfigCache reportConfigCache;
+
+    public ResultCache(DynamoDB dynamoDB) {
+        this.cacheTable = dynamoDB.getTable(CACHE_TABLE);
+        this.reportConfigCache = reportConfigs(dynamoDB);
+    }
+
+    private static synchronized ReportConfigCache reportConfigs(DynamoDB dynamoDB) {
+        if (reportConfigs == null) {
+            reportConfigs = new ReportConfigCache(dynamoDB.getTable(REPORTS_CONFIG_TABLE));
+        }
+        return reportConfigs;
+    }
+
+    /**
+     * Returns the cached entry for the key, or null if there is none or it has expired.
+     */
+    public Entry lookup(String cacheKey) {
+        Item item = cacheTable.getItem("cache_key", cacheKey);
+        if (item == null || item.getLong("expires_at") <= System.currentTimeMillis() / 1000L) {
+            return null;
+        }
+        return new Entry(item.getString("s3_bucket"), item.getString("s3_key"), item.getString("request_id"));
+    }
+
+    /**
+     * Records where the result for the key was stored, for as long as the report's TTL allows.
+     */
+    public void put(String cacheKey, String reportName, String requestId, String s3Bucket, String s3Key) {
+        long ttlSeconds = ttlSeconds(reportName);
+        if (ttlSeconds <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis() / 1000L;
+        Item item = new Item()
+                .withPrimaryKey("cache_key", cacheKey)
+                .withString("request_id", requestId)
+                .withString("s3_bucket", s3Bucket)
+                .withString("s3_key", s3Key)
+                .withLong("created_at", now)
+                .withLong("expires_at", now + ttlSeconds);
+        if (reportName != null) {
+            item.withString("report_name", reportName);
+        }
+        cacheTable.putItem(item);
+    }
+
+    // Read the report's freshness rule; reports without one use the default TTL
+    private long ttlSeconds(String reportName) {
+        if (reportName == null) {
+            return DEFAULT_TTL_SECONDS;
+        }
+        Item reportConfig = reportConfigCache.get(reportName);
+        if (reportConfig == null || !reportConfig.isPresent("result_ttl_seconds")) {
+            return DEFAULT_TTL_SECONDS;
+        }
+        return reportConfig.getLong("result_ttl_seconds");
+    }
+
+    /**
+     * Location of a cached result and the request that produced it.
+     */
+    public static class Entry {
+        private final String s3Bucket;
+        private final String s3Key;
+        private final String requestId;
+
+        Entry(String s3Bucket, String s3Key, String requestId) {
+            this.s3Bucket = s3Bucket;
+            this.s3Key = s3Key;
+            this.requestId = requestId;
+        }
+
+        public String getS3Bucket() {
+            return s3Bucket;
+        }
+
+        public String getS3Key() {
+            return s3Key;
+        }
+
+        public String getRequestId() {
+            return requestId;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Reduces a generated query to a canonical text, so that requests which return the same
+ * rows map to the same result cache key even if their SQL differs cosmetically:
+ * - whitespace and comments outside literals are normalized
+ * - named parameters (":p0") are replaced by their bound values as literals
+ * - the items of IN lists made only of literals are sorted and de-duplicated
+ */
+public final class SqlCanonicalizer {
+
+    private SqlCanonicalizer() {
+    }
+
+    /**
+     * Returns the canonical text of a query with no bound parameters.
+     */
+    public static String canonicalize(String sql) {
+        return canonicalize(sql, Collections.emptyList());
+    }
+
+    /**
+     * Returns the canonical text of a query and the parameters bound to it, each a map with
+     * "name", "value" and "type" as stored in sql_parameters.
+     */
+    public static String canonicalize(String sql, List<Map<String, String>> parameters) {
+        Map<String, Map<String, String>> parametersByName = new HashMap<>();
+        for (Map<String, String> parameter : parameters) {
+            parametersByName.put(parameter.get("name"), parameter);
+        }
+
+        List<String> tokens = tokenize(sql, parametersByName);
+        sortInLists(tokens);
+
+        StringBuilder canonical = new StringBuilder(sql.length());
+        String previous = null;
+        for (String token : tokens) {
+            if (previous != null && !previous.equals("(") && !previous.equals(".")
+                    && !token.equals(")") && !token.equals(",") && !token.equals(".")) {
+                canonical.append(' ');
+            }
+            canonical.append(token);
+            previous = token;
+        }
+        return canonical.toString();
+    }
+
+    /**
+     * Returns the result cache key for a query: the SHA-256 of its canonical text, in hex.
+     */
+    public static String cacheKey(String sql, List<Map<String, String>> parameters) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(canonicalize(sql, parameters).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Splits the query into tokens, dropping whitespace and comments. Quoted strings and
+     * backquoted identifiers are kept whole; parameters become the tokens of their literal.
+     */
+    private static List<String> tokenize(String sql, Map<String, Map<String, String>> parameters) {
+        List<String> tokens = new ArrayList<>();
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                while (i < length && sql.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+            } else if (c == '\'' || c == '`' || c == '"') {
+                int end = closingQuote(sql, i);
+                tokens.add(sql.substring(i, end));
+                i = end;
+            } else if (c == ':' && i + 1 < length && Character.isJavaIdentifierStart(sql.charAt(i + 1))) {
+                int end = i + 1;
+                while (end < length && Character.isJavaIdentifierPart(sql.charAt(end))) {
+                    end++;
+                }
+                Map<String, String> parameter = parameters.get(sql.substring(i + 1, end));
+                if (parameter == null) {
+                    tokens.add(sql.substring(i, end));
+                } else {
+                    addParameterLiteral(tokens, parameter);
+                }
+                i = end;
+            } else if (Character.isDigit(c)) {
+                // Numbers, including decimals and exponents
+                int end = i;
+                while (end < length && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '.')) {
+                    end++;
+                }
+                tokens.add(sql.substring(i, end));
+                i = end;
+            } else if (Character.isLetterOrDigit(c) || c == '_') {
+                int end = i;
+                while (end < length && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_')) {
+                    end++;
+                }
+                tokens.add(sql.substring(i, end));
+                i = end;
+            } else if ((c == '<' || c == '>' || c == '!') && i + 1 < length && (sql.charAt(i + 1) == '=' || sql.charAt(i + 1) == '>')) {
+                tokens.add(sql.substring(i, i + 2));
+                i += 2;
+            } else {
+                tokens.add(String.valueOf(c));
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    // Returns the index just past the closing quote; a doubled quote character is an escaped one.
+    // In string literals Databricks also reads a backslash as escaping the character after it
+    private static int closingQuote(String sql, int start) {
+        char quote = sql.charAt(start);
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == '\\' && quote != '`') {
+                i += 2;
+                continue;
+            }
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+    // Renders a bound parameter the way the same value would appear as a literal
+    private static void addParameterLiteral(List<String> tokens, Map<String, String> parameter) {
+        String value = parameter.get("value");
+        String type = parameter.get("type") == null ? "STRING" : parameter.get("type").toUpperCase(Locale.ROOT);
+        if (value == null) {
+            tokens.add("NULL");
+            return;
+        }
+        String quoted = "'" + value.replace("\\", "\\\\").replace("'", "''") + "'";
+        switch (type) {
+            case "DATE":
+            case "TIMESTAMP":
+                tokens.add(type);
+                tokens.add(quoted);
+                break;
+            case "INT":
+            case "BIGINT":
+            case "SMALLINT":
+            case "TINYINT":
+            case "DECIMAL":
+            case "DOUBLE":
+            case "FLOAT":
+            case "BOOLEAN":
+                tokens.add(value);
+                break;
+            default:
+                tokens.add(quoted);
+        }
+    }
+
+    /**
+     * Sorts and de-duplicates IN lists whose items are all literals. A typed literal
+     * (DATE '...') counts as one item.
+     */
+    private static void sortInLists(List<String> tokens) {
+        for (int i = 0; i + 2 < tokens.size(); i++) {
+            if (!tokens.get(i).equalsIgnoreCase("IN") || !tokens.get(i + 1).equals("(")) {
+                continue;
+            }
+            int start = i + 2;
+            List<String> items = new ArrayList<>();
+            int j = start;
+            boolean literalsOnly = true;
+            while (j < tokens.size()) {
+                String item;
+                if ((tokens.get(j).equalsIgnoreCase("DATE") || tokens.get(j).equalsIgnoreCase("TIMESTAMP"))
+                        && j + 1 < tokens.size() && tokens.get(j + 1).startsWith("'")) {
+                    item = tokens.get(j) + " " + tokens.get(j + 1);
+                    j += 2;
+                } else if (isLiteral(tokens.get(j))) {
+                    item = tokens.get(j);
+                    j++;
+                } else {
+                    literalsOnly = false;
+                    break;
+                }
+                items.add(item);
+                if (j < tokens.size() && tokens.get(j).equals(",")) {
+                    j++;
+                } else {
+                    break;
+                }
+            }
+            if (!literalsOnly || j >= tokens.size() || !tokens.get(j).equals(")") || items.size() < 2) {
+                continue;
+            }
+
+            List<String> sorted = new ArrayList<>(new TreeSet<>(items));
+            List<String> replacement = new ArrayList<>();
+            for (int k = 0; k < sorted.size(); k++) {
+                if (k > 0) {
+                    replacement.add(",");
+                }
+                replacement.add(sorted.get(k));
+            }
+            tokens.subList(start, j).clear();
+            tokens.addAll(start, replacement);
+            i = start + replacement.size();
+        }
+    }
+
+    private static boolean isLiteral(String token) {
+        if (token.startsWith("'")) {
+            return true;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (!Character.isDigit(c) && c != '.') {
+                return false;
+            }
+        }
+        return !token.isEmpty();
+    }
+}
@@ -0,0 +1,57 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class SqlCanonicalizerTest {
+
+    @Test
+    public void testNormalizesWhitespaceAndComments() {
+        String a = "SELECT product_name, SUM(total_sales)\n  FROM sales -- nightly\n WHERE region = 'North  America'";
+        String b = "SELECT product_name ,SUM( total_sales ) FROM sales /* report */ WHERE region = 'North  America'";
+
+        assertEquals(SqlCanonicalizer.canonicalize(a), SqlCanonicalizer.canonicalize(b));
+        // Whitespace inside literals is significant
+        assertNotEquals(SqlCanonicalizer.canonicalize(a), SqlCanonicalizer.canonicalize(a.replace("North  America", "North America")));
+    }
+
+    @Test
+    public void testBackslashEscapedQuotesStayInsideTheLiteral() {
+        String a = "SELECT * FROM sales WHERE tenant = 'x\\'  AND region = y'";
+        String b = "SELECT * FROM sales WHERE tenant = 'x\\' AND region = y'";
+
+        assertNotEquals(SqlCanonicalizer.cacheKey(a, List.of()), SqlCanonicalizer.cacheKey(b, List.of()));
+        assertEquals(a, SqlCanonicalizer.canonicalize(a));
+        // A bound value canonicalizes like the literal SqlWriter would inline for it
+        assertEquals(SqlCanonicalizer.canonicalize("SELECT * FROM sales WHERE path = 'C:\\\\temp'"),
+                SqlCanonicalizer.canonicalize("SELECT * FROM sales WHERE path = :p0",
+                        List.of(Map.of("name", "p0", "value", "C:\\temp", "type", "STRING"))));
+    }
+
+    @Test
+    public void testSortsLiteralInLists() {
+        assertEquals(SqlCanonicalizer.canonicalize("SELECT * FROM sales WHERE region IN ('B', 'A', 'B') AND id IN (3, 1)"),
+                SqlCanonicalizer.canonicalize("SELECT * FROM sales WHERE region IN ('A','B') AND id IN (1, 3)"));
+        assertEquals("SELECT * FROM sales WHERE sales_date IN (DATE '2024-01-01', DATE '2024-02-01')",
+                SqlCanonicalizer.canonicalize("SELECT * FROM sales WHERE sales_date IN (DATE '2024-02-01', DATE '2024-01-01')"));
+    }
+
+    @Test
+    public void testInlinesParameterValues() {
+        String parameterized = "SELECT * FROM sales WHERE sales_date BETWEEN :p0 AND :p1 AND region IN (:p2, :p3)";
+        List<Map<String, String>> parameters = List.of(
+                Map.of("name", "p0", "value", "2024-01-01", "type", "DATE"),
+                Map.of("name", "p1", "value", "2024-12-31", "type", "DATE"),
+                Map.of("name", "p2", "value", "West", "type", "STRING"),
+                Map.of("name", "p3", "value", "East", "type", "STRING"));
+
+        assertEquals("SELECT * FROM sales WHERE sales_date BETWEEN DATE '2024-01-01' AND DATE '2024-12-31' AND region IN ('East', 'West')",
+                SqlCanonicalizer.canonicalize(parameterized, parameters));
+        assertEquals(SqlCanonicalizer.cacheKey(parameterized, parameters),
+                SqlCanonicalizer.cacheKey("SELECT * FROM sales WHERE sales_date BETWEEN DATE '2024-01-01' AND DATE '2024-12-31'"
+                        + " AND region IN ('West', 'East')", List.of()));
+        assertEquals(64, SqlCanonicalizer.cacheKey(parameterized, parameters).length());
+    }
+}
@@ -9,32 +9,74 @@ import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 import software.amazon.awssdk.regions.Region;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 public class QueryGeneratorLambda implements RequestHandler<Map<String, Object>, Map<String, Object>> {
 
-    private final AmazonDynamoDB dynamoDBClient = AmazonDynamoDBClientBuilder.defaultClient();
-    private final DynamoDB dynamoDB = new DynamoDB(dynamoDBClient);
+    private final AmazonDynamoDB dynamoDBClient;
+    private final DynamoDB dynamoDB;
     private final String REPORTS_CONFIG_TABLE = "ReportConfigTable";  // Replace with your table name
     private final String STATUS_TABLE = "QueryStatusTable";  // Replace with your status table name
+    private final DynamoDbClient statusClient;
+    // Report configurations are kept for the life of the container, see ReportConfigCache
+    private final ReportConfigCache reportConfigs;
+
+    // Largest number of items DynamoDB accepts in one BatchWriteItem call
+    private static final int MAX_BATCH_WRITE_ITEMS = 25;
+    // BatchWriteItem calls per batch before the items still unprocessed are given up on
+    private static final int MAX_BATCH_WRITE_ATTEMPTS = 8;
+
+    public QueryGeneratorLambda() {
+        this(AmazonDynamoDBClientBuilder.defaultClient(), DynamoDbClient.builder().region(Region.US_EAST_1).build());
+        // Warm the cache during init rather than on the first report run
+        if (ReportConfigCache.preloadRequested()) {
+            System.out.println("Preloaded " + reportConfigs.preload() + " report configurations.");
+        }
+    }
+
+    // For tests, which pass in-memory clients
+    QueryGeneratorLambda(AmazonDynamoDB dynamoDBClient, DynamoDbClient statusClient) {
+        this.dynamoDBClient = dynamoDBClient;
+        this.dynamoDB = new DynamoDB(dynamoDBClient);
+        this.statusClient = statusClient;
+        this.reportConfigs = new ReportConfigCache(dynamoDB.getTable(REPORTS_CONFIG_TABLE));
+    }
 
     @Override
     public Map<String, Object> handleRequest(Map<String, Object> event, Context context) {
 
+        // A schedule tick that fans out many reports sends them in one invocation
+        if (event.containsKey("reports")) {
+            return handleBatchRequest((List<Map<String, Object>>) event.get("reports"), context);
+        }
+
         String reportName = (String) event.get("report_name");
         Map<String, Object> parameters = (Map<String, Object>) event.get("parameters");
 
-        // Generate unique request ID
-        String requestId = UUID.randomUUID().toString();
+        // Keep the id the request handler returned, which coalesced callers also poll; otherwise generate one
+        String requestId = event.get("request_id") == null ? UUID.randomUUID().toString() : (String) event.get("request_id");
+        String inFlightKey = (String) event.get("inflight_key");
 
         try {
-            // Fetch the report configuration from DynamoDB
+            // Fetch the report configuration (cached for the life of the container)
             Item reportConfig = fetchReportConfig(reportName);
+            if (reportConfig == null) {
+                throw new IllegalArgumentException("Unknown report '" + reportName + "'.");
+            }
 
             // Check if the SQL override is true
             boolean sqlOverride = reportConfig.getBoolean("sql-override");
@@ -51,7 +93,7 @@ public class QueryGeneratorLambda implements RequestHandler<Map<String, Object>,
             }
 
             // Store the generated SQL and current workflow state in DynamoDB
-            saveWorkflowState(requestId, reportName, sqlQuery, "QueryGenerated");
+            saveWorkflowState(requestId, reportName, sqlQuery, "QueryGenerated", inFlightKey);
 
             // Prepare response
             Map<String, Object> response = new HashMap<>();
@@ -65,33 +107,124 @@ public class QueryGeneratorLambda implements RequestHandler<Map<String, Object>,
         }
     }
 
-    // Fetch the report configuration from DynamoDB
+    /**
+     * Generates the SQL for a list of reports, each given as {"report_name": ..., "request": {...}}
+     * with a report request in the format of ConfigurableSqlQueryGenerator. The queries are generated
+     * in parallel and the workflow states are written in batches. A report that fails does not stop
+     * the others; the response lists a request_id and sql_query, or an error, for every report in order.
+     * Tables and columns are checked against the catalog in config.json, which is packaged at the root of
+     * the function (the working directory); set CONFIG_PATH to read it from elsewhere.
+     */
+    private Map<String, Object> handleBatchRequest(List<Map<String, Object>> reports, Context context) {
+        List<Object> requests = new ArrayList<>(reports.size());
+        for (Map<String, Object> report : reports) {
+            requests.add(report.get("request"));
+        }
+        List<ConfigurableSqlQueryGenerator.BatchResult> generated = ConfigurableSqlQueryGenerator.generateSqlQueries(requests);
+
+        List<Map<String, Object>> results = new ArrayList<>(reports.size());
+        List<Map<String, AttributeValue>> states = new ArrayList<>();
+        Map<String, Map<String, Object>> entriesByRequestId = new HashMap<>();
+        int failed = 0;
+        for (int i = 0; i < reports.size(); i++) {
+            String reportName = (String) reports.get(i).get("report_name");
+            ConfigurableSqlQueryGenerator.BatchResult result = generated.get(i);
+
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("report_name", reportName);
+            if (result.isSuccess()) {
+                String requestId = UUID.randomUUID().toString();
+                states.add(workflowStateItem(requestId, reportName, result.getSql(), "QueryGenerated"));
+                entry.put("request_id", requestId);
+                entry.put("sql_query", result.getSql());
+                entriesByRequestId.put(requestId, entry);
+            } else {
+                context.getLogger().log("Error generating query for report " + reportName + ": " + result.getError());
+                entry.put("error", result.getError());
+                failed++;
+            }
+            results.add(entry);
+        }
+
+        // A report whose state could not be written has no workflow to run; it fails like a generation error
+        for (String requestId : saveWorkflowStates(states)) {
+            Map<String, Object> entry = entriesByRequestId.get(requestId);
+            entry.remove("request_id");
+            entry.remove("sql_query");
+            entry.put("error", "Could not save the workflow state; the status table is throttling writes.");
+            context.getLogger().log("Giving up on saving the workflow state of report " + entry.get("report_name") + ".");
+            failed++;
+        }
+        context.getLogger().log("Generated " + (reports.size() - failed) + " of " + reports.size() + " report queries.");
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("results", results);
+        response.put("failed_count", failed);
+        return response;
+    }
+
+    // Fetch the report configuration, from DynamoDB only when the cached copy may be stale
     private Item fetchReportConfig(String reportName) {
-        Table table = dynamoDB.getTable(REPORTS_CONFIG_TABLE);
-        return table.getItem("report_name", reportName);  // Assumes report_name is the partition key
+        return reportConfigs.get(reportName);  // Assumes report_name is the partition key
     }
 
-    // Dynamically generate the SQL query
+    // Dynamically generate the SQL query from the report's compiled template
     private String generateSQLQuery(Item reportConfig, Map<String, Object> parameters) {
-        String baseQuery = reportConfig.getString("default_sql");
-        // Replace placeholders in base SQL query with actual parameter values
-        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
-            baseQuery = baseQuery.replace("{" + entry.getKey() + "}", entry.getValue().toString());
-        }
-        return baseQuery;
+        ReportTemplate template = ReportTemplate.forReport(reportConfig.getString("report_name"), reportConfig.getString("default_sql"));
+        return template.render(parameters);
     }
 
     // Store the generated SQL and current state in DynamoDB
-    private void saveWorkflowState(String requestId, String reportName, String sqlQuery, String workflowState) {
+    private void saveWorkflowState(String requestId, String reportName, String sqlQuery, String workflowState, String inFlightKey) {
+        Map<String, AttributeValue> item = workflowStateItem(requestId, reportName, sqlQuery, workflowState);
+        if (inFlightKey != null) {
+            // QueryExecution releases the in-flight lease under this key once the request completes or fails
+            item.put("inflight_key", AttributeValue.builder().s(inFlightKey).build());
+        }
+
+        // Save the item in the status DynamoDB table
+        PutItemRequest request = PutItemRequest.builder().tableName(STATUS_TABLE).item(item).build();
+        statusClient.putItem(request);
+    }
+
+    private Map<String, AttributeValue> workflowStateItem(String requestId, String reportName, String sqlQuery, String workflowState) {
         Map<String, AttributeValue> item = new HashMap<>();
         item.put("request_id", AttributeValue.builder().s(requestId).build());
         item.put("report_name", AttributeValue.builder().s(reportName).build());
         item.put("sql_query", AttributeValue.builder().s(sqlQuery).build());
         item.put("workflow_state", AttributeValue.builder().s(workflowState).build());
+        return item;
+    }
 
-        // Save the item in the status DynamoDB table
-        DynamoDbClient client = DynamoDbClient.builder().region(Region.US_EAST_1).build();
-        PutItemRequest request = PutItemRequest.builder().tableName(STATUS_TABLE).item(item).build();
-        client.putItem(request);
+    // Store many workflow states, 25 items per BatchWriteItem call, retrying unprocessed items up to
+    // MAX_BATCH_WRITE_ATTEMPTS times. Returns the request ids of the items that were never written
+    private Set<String> saveWorkflowStates(List<Map<String, AttributeValue>> items) {
+        Set<String> unsaved = new HashSet<>();
+        for (int from = 0; from < items.size(); from += MAX_BATCH_WRITE_ITEMS) {
+            List<WriteRequest> writes = new ArrayList<>();
+            for (Map<String, AttributeValue> item : items.subList(from, Math.min(from + MAX_BATCH_WRITE_ITEMS, items.size()))) {
+                writes.add(WriteRequest.builder().putRequest(PutRequest.builder().item(item).build()).build());
+            }
+
+            Map<String, List<WriteRequest>> pending = Collections.singletonMap(STATUS_TABLE, writes);
+            for (int attempt = 0; !pending.isEmpty() && attempt < MAX_BATCH_WRITE_ATTEMPTS; attempt++) {
+                if (attempt > 0) {
+                    // Unprocessed items mean the table is throttling; back off before retrying them
+                    try {
+                        Thread.sleep(Math.min(50L << attempt, 2000L));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Interrupted while saving workflow states.", e);
+                    }
+                }
+                BatchWriteItemResponse response = statusClient.batchWriteItem(
+                        BatchWriteItemRequest.builder().requestItems(pending).build());
+                pending = response.unprocessedItems();
+            }
+            for (WriteRequest write : pending.getOrDefault(STATUS_TABLE, Collections.emptyList())) {
+                unsaved.add(write.putRequest().item().get("request_id").s());
+            }
+        }
+        return unsaved;
     }
 }